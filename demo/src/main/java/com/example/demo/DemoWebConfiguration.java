@@ -19,10 +19,12 @@
 package com.example.demo;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import cat.albirar.users.config.UsersRegisterConfiguration;
 import cat.albirar.users.repos.sql.config.EnableUsersRegisterSql;
 
 /**
@@ -33,6 +35,7 @@ import cat.albirar.users.repos.sql.config.EnableUsersRegisterSql;
 @Configuration
 @EnableWebMvc
 @EnableUsersRegisterSql
+@Import(UsersRegisterConfiguration.class)
 public class DemoWebConfiguration implements WebMvcConfigurer {
  
     @Override
@@ -0,0 +1,185 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.benchmarks;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_CACHE_SIZE;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
+
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+import cat.albirar.users.models.tokens.TokenEpochBean;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+import cat.albirar.users.repos.ITokenEpochRepo;
+import cat.albirar.users.services.CompactTokenCodec;
+import cat.albirar.users.services.JwsKeyRing;
+import cat.albirar.users.services.RecoverPasswordTokenCodec;
+import cat.albirar.users.services.TokenCache;
+import cat.albirar.users.services.TokenEpochs;
+import cat.albirar.users.services.TokenLedger;
+import cat.albirar.users.services.TokenManager;
+import cat.albirar.users.tokens.ApprobationTokenCodec;
+import cat.albirar.users.tokens.VerificationTokenCodec;
+
+/**
+ * Minimal configuration for benchmarks, only the token subsystem.
+ * Mirror the token related beans of {@link UsersRegisterServicesConfiguration} without the security and repositories parts.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Configuration
+@PropertySource("classpath:/cat/albirar/users/register/users-register.properties")
+public class BenchmarkConfiguration {
+    /**
+     * The symmetric key to sign the jws token.
+     */
+    @Bean("jwsSecretKey")
+    public SecretKey jwsSecretKey() throws NoSuchAlgorithmException {
+        KeyGenerator keyGenerator;
+        
+        keyGenerator = KeyGenerator.getInstance("HmacSHA256");
+        keyGenerator.init(256, new SecureRandom());
+        return keyGenerator.generateKey();
+    }
+    
+    @Bean
+    public JwsKeyRing jwsKeyRing() {
+        return new JwsKeyRing();
+    }
+    
+    @Bean
+    public TokenCache tokenCache(@Value("${" + TOKEN_PROP_CACHE_SIZE + ":0}") int maxSize) {
+        return new TokenCache(maxSize);
+    }
+    
+    /**
+     * In-memory token epochs, no repository on benchmarks.
+     */
+    @Bean
+    public ITokenEpochRepo tokenEpochRepo() {
+        return new ITokenEpochRepo() {
+            private final Map<String, Long> epochs = new ConcurrentHashMap<>();
+            
+            @Override
+            public long increment(String idUser) {
+                return epochs.merge(idUser, 1L, Long::sum);
+            }
+            
+            @Override
+            public List<TokenEpochBean> findAll() {
+                return epochs.entrySet().stream()
+                        .map(e -> TokenEpochBean.builder().idUser(e.getKey()).epoch(e.getValue()).updated(LocalDateTime.now()).build())
+                        .collect(Collectors.toList())
+                        ;
+            }
+        };
+    }
+    
+    @Bean
+    public TokenEpochs tokenEpochs() {
+        return new TokenEpochs();
+    }
+    
+    /**
+     * In-memory consumed tokens, no repository on benchmarks.
+     */
+    @Bean
+    public IConsumedTokenRepo consumedTokenRepo() {
+        return new IConsumedTokenRepo() {
+            private final Map<String, ConsumedTokenBean> consumed = new ConcurrentHashMap<>();
+            
+            @Override
+            public boolean consume(ConsumedTokenBean token) {
+                return consumed.putIfAbsent(token.getTokenId(), token) == null;
+            }
+            
+            @Override
+            public boolean existsById(String tokenId) {
+                return consumed.containsKey(tokenId);
+            }
+            
+            @Override
+            public List<String> findAllActiveIds() {
+                return new ArrayList<>(consumed.keySet());
+            }
+            
+            @Override
+            public long deleteExpired() {
+                return 0L;
+            }
+        };
+    }
+    
+    @Bean
+    public TokenLedger tokenLedger() {
+        return new TokenLedger();
+    }
+    
+    @Bean
+    public CompactTokenCodec compactTokenCodec() {
+        return new CompactTokenCodec();
+    }
+    
+    @Bean
+    public VerificationTokenCodec verificationTokenCodec() {
+        return new VerificationTokenCodec();
+    }
+    
+    @Bean
+    public ApprobationTokenCodec approbationTokenCodec() {
+        return new ApprobationTokenCodec();
+    }
+    
+    @Bean
+    public RecoverPasswordTokenCodec recoverPasswordTokenCodec() {
+        return new RecoverPasswordTokenCodec();
+    }
+    
+    @Bean
+    public TokenManager tokenManager() {
+        return new TokenManager();
+    }
+    
+    @Bean
+    public LocalValidatorFactoryBean validator() {
+        return new LocalValidatorFactoryBean();
+    }
+    
+    @Bean
+    public MethodValidationPostProcessor validationPostProcessor() {
+        return new MethodValidationPostProcessor();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.verification.ITokenManager;
+
+/**
+ * Time to issue the tokens of a whole cohort of users, one by one and with the batch methods of {@link ITokenManager}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBatchBenchmark {
+    
+    @Param({"100000"})
+    private int users;
+    
+    private AnnotationConfigApplicationContext context;
+    private ITokenManager tokenManager;
+    private List<UserBean> cohort;
+    
+    @Setup
+    public void setup() {
+        int n;
+        
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+        tokenManager = context.getBean(ITokenManager.class);
+        cohort = new ArrayList<>(users);
+        for(n = 0; n < users; n++) {
+            cohort.add(UserBean.builder()
+                    .id(Integer.toString(n + 1))
+                    .username("benchmarkUser" + n)
+                    .preferredLocale(Locale.ENGLISH)
+                    .preferredChannel(CommunicationChannelBean.builder()
+                            .channelType(ECommunicationChannelType.EMAIL)
+                            .channelId("benchmark" + n + "@albirar.cat")
+                            .build())
+                    .secondaryChannel(CommunicationChannelBean.builder()
+                            .channelType(ECommunicationChannelType.MOBILE)
+                            .channelId(String.format("+34600%06d", n))
+                            .build())
+                    .build()
+                    );
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public List<String> verificationOneByOne() {
+        List<String> tokens;
+        
+        tokens = new ArrayList<>(cohort.size());
+        for(UserBean user : cohort) {
+            tokens.add(tokenManager.encodeToken(tokenManager.generateVerificationTokenBean(user, EVerificationProcess.ONE_STEP).get()));
+        }
+        return tokens;
+    }
+    
+    @Benchmark
+    public List<DecodedTokenBean<VerificationTokenBean>> verificationBatch() {
+        return tokenManager.generateVerificationTokens(cohort, EVerificationProcess.ONE_STEP);
+    }
+    
+    @Benchmark
+    public List<String> recoverPasswordOneByOne() {
+        List<String> tokens;
+        RecoverPasswordTokenBean tkBean;
+        
+        tokens = new ArrayList<>(cohort.size());
+        for(UserBean user : cohort) {
+            tkBean = tokenManager.generateRecoverPasswordTokenBean(user, false).get();
+            tokens.add(tokenManager.encodeToken(tkBean, tkBean.getOrigin()));
+        }
+        return tokens;
+    }
+    
+    @Benchmark
+    public List<DecodedTokenBean<RecoverPasswordTokenBean>> recoverPasswordBatch() {
+        return tokenManager.generateRecoverPasswordTokens(cohort, false);
+    }
+}
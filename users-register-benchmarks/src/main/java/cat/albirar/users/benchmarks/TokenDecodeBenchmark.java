@@ -0,0 +1,176 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.verification.ITokenManager;
+
+/**
+ * Throughput of the {@link ITokenManager} operations on the verification endpoint path, for each {@link ETokenClass} and channel type.
+ * <p>Decode is measured for valid, expired, bad signature and malformed tokens, as the rejections are on the same path than the good ones.
+ * Run with {@code -prof gc} to get the bytes allocated per operation.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenDecodeBenchmark {
+    private static final UserBean SAMPLE_USER = UserBean.builder()
+            .id("000000000000000000000006")
+            .username("benchmarkUser")
+            .preferredLocale(Locale.ENGLISH)
+            .preferredChannel(CommunicationChannelBean.builder()
+                    .channelType(ECommunicationChannelType.EMAIL)
+                    .channelId("benchmark@albirar.cat")
+                    .build())
+            .secondaryChannel(CommunicationChannelBean.builder()
+                    .channelType(ECommunicationChannelType.MOBILE)
+                    .channelId("+34600000000")
+                    .build())
+            .build()
+            ;
+    private static final UserBean SAMPLE_APPROVER = SAMPLE_USER.toBuilder()
+            .id("000000000000000000000007")
+            .username("benchmarkApprover")
+            .build()
+            ;
+    
+    @Param
+    private ETokenClass tokenClass;
+    
+    @Param({"EMAIL", "MOBILE"})
+    private ECommunicationChannelType channel;
+    
+    private AnnotationConfigApplicationContext context;
+    private ITokenManager tokenManager;
+    private Class<? extends AbstractTokenBean> beanClass;
+    private AbstractTokenBean tokenBean;
+    private String validToken;
+    private String expiredToken;
+    private String badSignatureToken;
+    private String malformedToken;
+    
+    @Setup
+    public void setup() {
+        LocalDateTime ldt;
+        char [] tampered;
+        
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+        tokenManager = context.getBean(ITokenManager.class);
+        switch(tokenClass) {
+            case VERIFICATION:
+                beanClass = VerificationTokenBean.class;
+                tokenBean = tokenManager.generateVerificationTokenBean(SAMPLE_USER, EVerificationProcess.TWO_STEP).get();
+                break;
+            case APPROBATION:
+                beanClass = ApprobationTokenBean.class;
+                tokenBean = tokenManager.generateApprobationTokenBean(SAMPLE_USER, SAMPLE_APPROVER).get();
+                break;
+            default:
+                beanClass = RecoverPasswordTokenBean.class;
+                tokenBean = tokenManager.generateRecoverPasswordTokenBean(SAMPLE_USER, channel == ECommunicationChannelType.EMAIL).get();
+                break;
+        }
+        // Issued in the past, to be valid right now
+        ldt = LocalDateTime.now().minusMinutes(1);
+        validToken = tokenManager.encodeToken(tokenBean.toBuilder().issued(ldt).build(), channel);
+        expiredToken = tokenManager.encodeToken(tokenBean.toBuilder().issued(ldt.minusDays(2)).expire(ldt.minusDays(1)).build(), channel);
+        // The last chars are on the signature or MAC for both formats
+        tampered = validToken.toCharArray();
+        tampered[tampered.length - 5] = (tampered[tampered.length - 5] == 'A' ? 'B' : 'A');
+        badSignatureToken = new String(tampered);
+        malformedToken = validToken.substring(0, validToken.length() / 2);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public String encodeToken() {
+        return tokenManager.encodeToken(tokenBean, channel);
+    }
+    
+    @Benchmark
+    public Optional<? extends AbstractTokenBean> decodeValid() {
+        return tokenManager.decodeToken(beanClass, validToken);
+    }
+    
+    @Benchmark
+    public Optional<? extends AbstractTokenBean> decodeExpired() {
+        return tokenManager.decodeToken(beanClass, expiredToken);
+    }
+    
+    @Benchmark
+    public Optional<? extends AbstractTokenBean> decodeBadSignature() {
+        return tokenManager.decodeToken(beanClass, badSignatureToken);
+    }
+    
+    @Benchmark
+    public Optional<? extends AbstractTokenBean> decodeMalformed() {
+        return tokenManager.decodeToken(beanClass, malformedToken);
+    }
+    
+    @Benchmark
+    public boolean isTokenValid() {
+        return tokenManager.isTokenValid(validToken);
+    }
+    
+    @Benchmark
+    public boolean isTokenClass() {
+        return tokenManager.isTokenClass(validToken, tokenClass);
+    }
+    
+    @Benchmark
+    public Optional<String> decodeUserId() {
+        return tokenManager.decodeUserId(validToken);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.benchmarks;
+
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.verification.ITokenManager;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+
+/**
+ * Encode and decode throughput of {@link ITokenManager}.
+ * The {@code *PerCall*} benchmarks reproduce the former behaviour, resolving the signature algorithm on each encode and building a new {@link JwtParser} on each decode.
+ * Run with {@code -prof gc} to get the bytes allocated per operation.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenManagerBenchmark {
+    private static final UserBean SAMPLE_USER = UserBean.builder()
+            .id("000000000000000000000006")
+            .username("benchmarkUser")
+            .preferredLocale(Locale.ENGLISH)
+            .preferredChannel(CommunicationChannelBean.builder()
+                    .channelType(ECommunicationChannelType.EMAIL)
+                    .channelId("benchmark@albirar.cat")
+                    .build())
+            .build()
+            ;
+
+    private AnnotationConfigApplicationContext context;
+    private ITokenManager tokenManager;
+    private SecretKey jwsSecretKey;
+    private JwtParser sharedParser;
+    private VerificationTokenBean tokenBean;
+    private String token;
+
+    @Setup
+    public void setup() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+        tokenManager = context.getBean(ITokenManager.class);
+        jwsSecretKey = context.getBean("jwsSecretKey", SecretKey.class);
+        sharedParser = Jwts.parserBuilder()
+                .setSigningKey(jwsSecretKey)
+                .build();
+        tokenBean = tokenManager.generateVerificationTokenBean(SAMPLE_USER, EVerificationProcess.ONE_STEP).get();
+        token = tokenManager.encodeToken(tokenBean);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String encodeToken() {
+        return tokenManager.encodeToken(tokenBean);
+    }
+
+    @Benchmark
+    public String encodeTokenPerCallAlgorithm() {
+        return Jwts.builder()
+                .setId(tokenBean.getTokenId())
+                .setIssuer("benchmark")
+                .setSubject(tokenBean.getUsername())
+                .setIssuedAt(Date.from(tokenBean.getIssued().atZone(ZoneId.systemDefault()).toInstant()))
+                .setExpiration(Date.from(tokenBean.getExpire().atZone(ZoneId.systemDefault()).toInstant()))
+                .claim(ITokenManager.CLAIM_USERID, tokenBean.getIdUser())
+                .claim(ITokenManager.CLAIM_LOCALE, tokenBean.getLocale().toString())
+                .claim(ITokenManager.CLAIM_TOKEN_CLASS, tokenBean.getTokenClass().name())
+                .setAudience(tokenBean.getProcess().name())
+                .signWith(jwsSecretKey)
+                .compact();
+    }
+
+    @Benchmark
+    public Optional<VerificationTokenBean> decodeToken() {
+        return tokenManager.decodeToken(VerificationTokenBean.class, token);
+    }
+
+    @Benchmark
+    public Claims decodeClaimsPerCallParser() {
+        return Jwts.parserBuilder()
+                .setSigningKey(jwsSecretKey)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    @Benchmark
+    public Claims decodeClaimsSharedParser() {
+        return sharedParser.parseClaimsJws(token).getBody();
+    }
+}
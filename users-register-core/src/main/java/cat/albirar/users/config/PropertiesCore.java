@@ -18,9 +18,9 @@
  */
 package cat.albirar.users.config;
 
-import cat.albirar.communications.channels.models.ECommunicationChannelType;
 import cat.albirar.communications.channels.models.ContactBean;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.tokens.EVerificationProcess;
 
 /**
  * The properties of core module.
@@ -54,6 +54,111 @@ public interface PropertiesCore {
      * @see EVerificationProcess
      */
     public static final String VERIFICATION_MODE_PROPERTY_NAME = ROOT_USERS_PROPERTIES + ".verification";
+    /**
+     * The root for all asynchronous registration property configuration.
+     */
+    public static final String ROOT_REGISTRATION_ASYNC = ROOT_USERS_PROPERTIES + ".async";
+    /**
+     * Property name for the maximum number of asynchronous registration tasks running at once.
+     * Zero or negative for the number of available processors.
+     */
+    public static final String REGISTRATION_PROP_ASYNC_THREADS = ROOT_REGISTRATION_ASYNC + ".threads";
+    /**
+     * Property name for the maximum number of asynchronous registration tasks waiting to run, the tasks over this bound are rejected.
+     */
+    public static final String REGISTRATION_PROP_ASYNC_QUEUE = ROOT_REGISTRATION_ASYNC + ".queue";
+    /**
+     * Property name to run each asynchronous registration task on a new virtual thread, if the JDK supports them.
+     */
+    public static final String REGISTRATION_PROP_ASYNC_VIRTUAL = ROOT_REGISTRATION_ASYNC + ".virtual";
+    /**
+     * The root for all messages outbox property configuration.
+     */
+    public static final String ROOT_OUTBOX = ROOT_USERS_PROPERTIES + ".outbox";
+    /**
+     * Property name for the milliseconds between each poll of the outbox for due messages.
+     * Zero or negative disables the background dispatcher, only the explicit dispatches are made.
+     */
+    public static final String OUTBOX_PROP_POLL = ROOT_OUTBOX + ".poll";
+    /**
+     * Property name for the maximum number of messages on each dispatched batch.
+     */
+    public static final String OUTBOX_PROP_BATCH = ROOT_OUTBOX + ".batch";
+    /**
+     * Property name for the number of threads to deliver the messages of a batch in parallel.
+     * Zero or negative for the number of available processors.
+     */
+    public static final String OUTBOX_PROP_THREADS = ROOT_OUTBOX + ".threads";
+    /**
+     * Property name for the maximum number of delivery attempts of a message before marking it as dead.
+     */
+    public static final String OUTBOX_PROP_ATTEMPTS = ROOT_OUTBOX + ".attempts";
+    /**
+     * Property name for the seconds to wait before the first retry of a failed delivery, doubled on each retry.
+     */
+    public static final String OUTBOX_PROP_BACKOFF_INITIAL = ROOT_OUTBOX + ".backoff.initial";
+    /**
+     * Property name for the maximum seconds to wait between retries of a failed delivery.
+     */
+    public static final String OUTBOX_PROP_BACKOFF_MAX = ROOT_OUTBOX + ".backoff.max";
+    /**
+     * Property name for the seconds that a claimed message is reserved to the dispatcher that claims it.
+     * If not delivered nor failed on this time, by example because the instance dies, other dispatcher can claim it again.
+     */
+    public static final String OUTBOX_PROP_LEASE = ROOT_OUTBOX + ".lease";
+    /**
+     * The root for all users availability filter property configuration.
+     */
+    public static final String ROOT_USERS_FILTER = ROOT_USERS_PROPERTIES + ".users.filter";
+    /**
+     * Property name to enable the in-memory filter of usernames and channels.
+     * Only safe if all users are created by instances with the filter enabled, as a user created elsewhere is not seen until the next refresh.
+     */
+    public static final String USERS_FILTER_PROP_ENABLED = ROOT_USERS_FILTER + ".enabled";
+    /**
+     * Property name for the expected number of usernames and channels, to size the in-memory filter.
+     */
+    public static final String USERS_FILTER_PROP_EXPECTED = ROOT_USERS_FILTER + ".expected";
+    /**
+     * Property name for the false positive probability of the in-memory filter.
+     * A false positive only costs a repository lookup.
+     */
+    public static final String USERS_FILTER_PROP_FPP = ROOT_USERS_FILTER + ".fpp";
+    /**
+     * Property name for the seconds between each background rebuild of the in-memory filter from repository.
+     * Zero or negative disables the periodic rebuild, only the users created on this instance are added; a saturated filter is still rebuilt.
+     */
+    public static final String USERS_FILTER_PROP_REFRESH = ROOT_USERS_FILTER + ".refresh";
+    /**
+     * The root for all password hashing property configuration.
+     */
+    public static final String ROOT_HASHING = ROOT_USERS_PROPERTIES + ".hashing";
+    /**
+     * Property name for the number of threads to hash passwords.
+     * Zero or negative for the number of available processors.
+     */
+    public static final String HASHING_PROP_THREADS = ROOT_HASHING + ".threads";
+    /**
+     * Property name for the maximum number of passwords waiting to be hashed, any other is rejected immediately.
+     */
+    public static final String HASHING_PROP_QUEUE = ROOT_HASHING + ".queue";
+    /**
+     * Property name for the fixed BCrypt strength, used if no {@link #HASHING_PROP_TARGET} is configured.
+     */
+    public static final String HASHING_PROP_STRENGTH = ROOT_HASHING + ".strength";
+    /**
+     * Property name for the target latency of one password hash, in milliseconds.
+     * If greater than zero, the BCrypt strength is calibrated at start to the highest one that meets this latency.
+     */
+    public static final String HASHING_PROP_TARGET = ROOT_HASHING + ".target";
+    /**
+     * Property name for the minimum BCrypt strength on calibration, even if slower than target.
+     */
+    public static final String HASHING_PROP_MIN_STRENGTH = ROOT_HASHING + ".strength.min";
+    /**
+     * Property name for the maximum BCrypt strength on calibration.
+     */
+    public static final String HASHING_PROP_MAX_STRENGTH = ROOT_HASHING + ".strength.max";
     /**
      * The root for all 'token' property configuration
      */
@@ -68,6 +173,74 @@ public interface PropertiesCore {
      * @see <a href="https://tools.ietf.org/html/rfc7519#section-4.1.4">https://tools.ietf.org/html/rfc7519#section-4.1.4</a>
      */
     public static final String TOKEN_PROP_EXPIRE = ROOT_TOKENS + ".expire";
+    /**
+     * The root for all token signing keys property configuration.
+     */
+    public static final String ROOT_TOKEN_KEYS = ROOT_TOKENS + ".keys";
+    /**
+     * Property name for the resource (file, classpath...) with the shared signing keys.
+     * <p>Each entry is {@code kid=base64Secret[;validFrom[;validUntil]]}, with dates in ISO local date-time format. By example:</p>
+     * <pre>
+     * key-2020-06=c2VjcmV0LXNlY3JldC1zZWNyZXQtc2VjcmV0LXNlY3JldC0=;2020-06-01T00:00:00;2020-07-11T00:00:00
+     * key-2020-07=c2VjcmV0LXNlY3JldC1zZWNyZXQtc2VjcmV0LXNlY3JldC0=;2020-07-01T00:00:00
+     * </pre>
+     * If empty, no file source is used.
+     */
+    public static final String TOKEN_PROP_KEYS_FILE = ROOT_TOKEN_KEYS + ".file";
+    /**
+     * Property name for the seconds between each background refresh of the signing keys from sources.
+     * Zero or negative disables the refresh.
+     */
+    public static final String TOKEN_PROP_KEYS_REFRESH = ROOT_TOKEN_KEYS + ".refresh";
+    /**
+     * Property name for the maximum number of verified tokens to cache.
+     * Zero disables the cache.
+     */
+    public static final String TOKEN_PROP_CACHE_SIZE = ROOT_TOKENS + ".cache.size";
+    /**
+     * The root for all single-use tokens ledger property configuration.
+     */
+    public static final String ROOT_TOKEN_LEDGER = ROOT_TOKENS + ".ledger";
+    /**
+     * Property name for the expected number of consumed tokens not yet expired, to size the in-memory filter of the ledger.
+     */
+    public static final String TOKEN_PROP_LEDGER_EXPECTED = ROOT_TOKEN_LEDGER + ".expected";
+    /**
+     * Property name for the false positive probability of the in-memory filter of the ledger.
+     * A false positive rejects a never used token as a replay, so this value should be very low.
+     */
+    public static final String TOKEN_PROP_LEDGER_FPP = ROOT_TOKEN_LEDGER + ".fpp";
+    /**
+     * Property name for the seconds between each background refresh of the in-memory token epochs from repository.
+     * Zero or negative disables the refresh, only the invalidations made on this instance are seen.
+     */
+    public static final String TOKEN_PROP_EPOCHS_REFRESH = ROOT_TOKENS + ".epochs.refresh";
+    /**
+     * The root for all token introspection property configuration.
+     */
+    public static final String ROOT_TOKEN_INTROSPECTION = ROOT_TOKENS + ".introspection";
+    /**
+     * Property name for the number of threads to introspect tokens in parallel.
+     * Zero or negative for the number of available processors.
+     */
+    public static final String TOKEN_PROP_INTROSPECTION_THREADS = ROOT_TOKEN_INTROSPECTION + ".threads";
+    /**
+     * Property name for the maximum number of tokens on each introspection request.
+     */
+    public static final String TOKEN_PROP_INTROSPECTION_MAX = ROOT_TOKEN_INTROSPECTION + ".max";
+    /**
+     * The root for all coalescing of verification requests property configuration.
+     */
+    public static final String ROOT_TOKEN_COALESCING = ROOT_TOKENS + ".coalescing";
+    /**
+     * Property name for the milliseconds to serve the result of a verification to repeated requests of the same token.
+     * Zero for only sharing the result with the concurrent requests.
+     */
+    public static final String TOKEN_PROP_COALESCING_WINDOW = ROOT_TOKEN_COALESCING + ".window";
+    /**
+     * Property name for the maximum number of verification results kept for repeated requests.
+     */
+    public static final String TOKEN_PROP_COALESCING_SIZE = ROOT_TOKEN_COALESCING + ".size";
     /**
      * The root for all 'templates' property configuration.
      */
@@ -24,6 +24,8 @@ import java.security.SecureRandom;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -34,28 +36,30 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder.BCryptVe
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
-import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
+import cat.albirar.communications.channels.models.ContactBean;
 import cat.albirar.communications.channels.models.ECommunicationChannelType;
 import cat.albirar.communications.channels.models.LocalizableAttributesCommunicationChannelBean;
-import cat.albirar.communications.channels.models.ContactBean;
 import cat.albirar.users.registration.IRegistrationService;
 import cat.albirar.users.services.SpringSecurityUserService;
 import cat.albirar.users.services.TokenManager;
-import cat.albirar.users.utils.LocaleUtils;
+import cat.albirar.users.tokens.ApprobationTokenCodec;
+import cat.albirar.users.tokens.VerificationTokenCodec;
+import cat.albirar.users.tokens.utils.LocaleUtils;
+import cat.albirar.users.utils.BCryptCalibrator;
 import cat.albirar.users.verification.IVerificationProcessService;
-import cat.albirar.users.web.AuthApiController;
 
 /**
- * Users registry abstract configuration.
+ * Users registry services configuration, without any web front end.
+ * <p>Imported by the repository configurations and by the front ends, as the {@code UsersRegisterConfiguration} of the Spring MVC module.</p>
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
 @Configuration
 @PropertySource("classpath:/cat/albirar/users/register/users-register.properties")
-@ComponentScan(basePackageClasses = {IRegistrationService.class, IVerificationProcessService.class, TokenManager.class, SpringSecurityUserService.class, AuthApiController.class})
-@EnableWebMvc
-public class UsersRegisterConfiguration {
+@ComponentScan(basePackageClasses = {IRegistrationService.class, IVerificationProcessService.class, TokenManager.class, SpringSecurityUserService.class})
+public class UsersRegisterServicesConfiguration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsersRegisterServicesConfiguration.class);
 
     /**
      * Default sender.
@@ -84,11 +88,27 @@ public class UsersRegisterConfiguration {
     
     /**
      * Password encoder by default.
+     * <p>With a fixed strength or calibrated at start to the target latency of this hardware.
+     * The passwords hashed with a lower strength are re-hashed on next successful login, see {@link SpringSecurityUserService#updatePassword(org.springframework.security.core.userdetails.UserDetails, String)}.</p>
+     * @param strength The fixed strength
+     * @param targetMillis The target milliseconds per hash, zero or negative to use the fixed strength
+     * @param minStrength The minimum strength on calibration
+     * @param maxStrength The maximum strength on calibration
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(BCryptVersion.$2Y, 12);
-        return bCryptPasswordEncoder;
+    public PasswordEncoder passwordEncoder(@Value("${" + PropertiesCore.HASHING_PROP_STRENGTH + ":12}") int strength
+            , @Value("${" + PropertiesCore.HASHING_PROP_TARGET + ":0}") long targetMillis
+            , @Value("${" + PropertiesCore.HASHING_PROP_MIN_STRENGTH + ":10}") int minStrength
+            , @Value("${" + PropertiesCore.HASHING_PROP_MAX_STRENGTH + ":16}") int maxStrength) {
+        int s;
+        
+        if(targetMillis > 0) {
+            s = BCryptCalibrator.calibrate(BCryptVersion.$2Y, targetMillis, minStrength, maxStrength);
+            LOGGER.info("Password hashing strength calibrated to {} for a target of {} ms", s, targetMillis);
+        } else {
+            s = strength;
+        }
+        return new BCryptPasswordEncoder(BCryptVersion.$2Y, s);
     }
     /**
      * The symmetric key to sign the jws token.
@@ -102,6 +122,21 @@ public class UsersRegisterConfiguration {
         return keyGenerator.generateKey();
     }
     
+    /**
+     * The codec of verification tokens, from the Spring-free tokens library.
+     */
+    @Bean
+    public VerificationTokenCodec verificationTokenCodec() {
+        return new VerificationTokenCodec();
+    }
+    /**
+     * The codec of approbation tokens, from the Spring-free tokens library.
+     */
+    @Bean
+    public ApprobationTokenCodec approbationTokenCodec() {
+        return new ApprobationTokenCodec();
+    }
+    
     @Bean
     public LocalValidatorFactoryBean validator() {
         return new LocalValidatorFactoryBean();
@@ -0,0 +1,76 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.registration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Contract for the password hashing, on a dedicated and bounded pool so a burst of hashes doesn't starve the threads of other requests.
+ * <p>When the pool and his queue are full, the hashes are rejected immediately with {@link RejectedExecutionException}.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface IPasswordHasher {
+    /**
+     * Encode the indicated raw password, waiting for the result.
+     * @param rawPassword The raw password
+     * @return The encoded password
+     * @throws RejectedExecutionException If too many passwords are waiting to be hashed
+     */
+    String encode(CharSequence rawPassword);
+    /**
+     * Check if the indicated raw password match with the encoded one, waiting for the result.
+     * @param rawPassword The raw password
+     * @param encodedPassword The encoded password
+     * @return true if match and false if not
+     * @throws RejectedExecutionException If too many passwords are waiting to be hashed
+     */
+    boolean matches(CharSequence rawPassword, String encodedPassword);
+    /**
+     * Encode the indicated raw password asynchronously.
+     * @param rawPassword The raw password
+     * @return The future encoded password
+     * @throws RejectedExecutionException If too many passwords are waiting to be hashed
+     */
+    CompletableFuture<String> encodeAsync(CharSequence rawPassword);
+    /**
+     * Check asynchronously if the indicated raw password match with the encoded one.
+     * @param rawPassword The raw password
+     * @param encodedPassword The encoded password
+     * @return The future result, true if match and false if not
+     * @throws RejectedExecutionException If too many passwords are waiting to be hashed
+     */
+    CompletableFuture<Boolean> matchesAsync(CharSequence rawPassword, String encodedPassword);
+    /**
+     * The number of passwords waiting to be hashed, for monitoring.
+     * @return The queue depth
+     */
+    int getQueued();
+    /**
+     * The number of passwords being hashed now, for monitoring.
+     * @return The running hashes
+     */
+    int getRunning();
+    /**
+     * The number of hashes rejected since start, for monitoring.
+     * @return The rejected hashes
+     */
+    long getRejected();
+}
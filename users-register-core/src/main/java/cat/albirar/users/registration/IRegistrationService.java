@@ -20,6 +20,8 @@ package cat.albirar.users.registration;
 
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.validation.Valid;
 import javax.validation.ValidationException;
@@ -36,12 +38,17 @@ import cat.albirar.communications.channels.models.CommunicationChannelBean;
 import cat.albirar.communications.channels.models.ContactBean;
 import cat.albirar.users.config.PropertiesCore;
 import cat.albirar.users.models.registration.RegistrationProcessResultBean;
-import cat.albirar.users.models.tokens.AbstractTokenBean;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
 import cat.albirar.users.models.users.UserBean;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.models.web.ProcessResultBean;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.utils.SingleFlight;
+import cat.albirar.users.verification.IMessageOutbox;
+import cat.albirar.users.verification.ITokenEpochs;
 
 /**
  * Service for registration process.
@@ -146,17 +153,42 @@ public interface IRegistrationService {
      * </li>
      * <li>The user is enabled or disabled</li>
      * </ol>
+     * <p>The verification message is saved on the {@link IMessageOutbox outbox} with the same transaction of the user and delivered later, with retries.</p>
      * @param sender The sender to use
      * @param username The user name of new user
      * @param preferredChannel The preferred channel to register user and send verification message
      * @param locale The preferred locale for this user
      * @param password An optional password provided in case of 
-     * @return The result, with {@link UserBean#getId()} informed and disabled depending on registration process configuration
+     * @return The result, with {@link UserBean#getId()} informed and disabled depending on registration process configuration and the id of verification message on outbox
      * @throws DuplicateKeyException If {@code username} or {@code preferredChannel} exists in register
      * @see #verifyUser(String)
      * @see #approveUser(String) 
      */
     public RegistrationProcessResultBean registerUser(@NotNull @Valid ContactBean sender, @NotBlank String username, @NotNull @Validated CommunicationChannelBean preferredChannel, @NotNull Locale locale, @Nullable String password);
+    /**
+     * Asynchronous version of {@link #registerUser(String, CommunicationChannelBean, Locale, String)}, from {@link PropertiesCore#ROOT_SENDER default sender}.
+     * @param username The user name of new user
+     * @param preferredChannel The preferred channel to register user and send verification message
+     * @param locale The preferred locale for this user
+     * @param password An optional password provided in case of 
+     * @return The future result, completed exceptionally with {@link DuplicateKeyException} if {@code username} or {@code preferredChannel} exists in register
+     * @throws RejectedExecutionException If there are too many pending asynchronous operations
+     * @see #registerUserAsync(ContactBean, String, CommunicationChannelBean, Locale, String)
+     */
+    public CompletableFuture<RegistrationProcessResultBean> registerUserAsync(@NotBlank String username, @NotNull @Validated CommunicationChannelBean preferredChannel, @NotNull Locale locale, @Nullable String password);
+    /**
+     * Asynchronous version of {@link #registerUser(ContactBean, String, CommunicationChannelBean, Locale, String)}.
+     * <p>The operations run on a bounded executor, configured by the {@value PropertiesCore#ROOT_REGISTRATION_ASYNC} properties, so the caller thread never waits for the persistence.
+     * The verification message is saved on the outbox with the user and delivered later, so the result doesn't wait for the communications subsystem either.</p>
+     * @param sender The sender to use
+     * @param username The user name of new user
+     * @param preferredChannel The preferred channel to register user and send verification message
+     * @param locale The preferred locale for this user
+     * @param password An optional password provided in case of 
+     * @return The future result, completed exceptionally with {@link DuplicateKeyException} if {@code username} or {@code preferredChannel} exists in register
+     * @throws RejectedExecutionException If there are too many pending asynchronous operations
+     */
+    public CompletableFuture<RegistrationProcessResultBean> registerUserAsync(@NotNull @Valid ContactBean sender, @NotBlank String username, @NotNull @Validated CommunicationChannelBean preferredChannel, @NotNull Locale locale, @Nullable String password);
     /**
      * Update the associated user of {@code token} to indicate the new state of {@link UserBean#getVerified() verified}.
      * <p>If value of property named {@value #VERIFICATION_MODE_PROPERTY_NAME} is {@link EVerificationProcess#ONE_STEP}, the verification sets the user {@link UserBean#isEnabled() enabled} and {@link UserBean#getRegistered() registered}.</p>
@@ -165,6 +197,29 @@ public interface IRegistrationService {
      * @return true if the user exists and the previous state is "not-verified", false if user exists but the previous state is not "not-verified" and {@link Optional#empty()} if no user exists with the indicated {@link VerificationTokenBean#getIdUser()}
      */
     public Optional<Boolean> verifyUser(@NotBlank String token);
+    /**
+     * Asynchronous version of {@link #verifyUser(String)}.
+     * @param token The token used to {@link #registerUser(String, CommunicationChannelBean, String)}
+     * @return The future result of {@link #verifyUser(String)}
+     * @throws RejectedExecutionException If there are too many pending asynchronous operations
+     */
+    public CompletableFuture<Optional<Boolean>> verifyUserAsync(@NotBlank String token);
+    /**
+     * Update the associated user of an already decoded {@code token} to indicate the new state of {@link UserBean#getVerified() verified}.
+     * <p>Same as {@link #verifyUser(String)} but without decoding the token again.</p>
+     * @param token The decoded token used to {@link #registerUser(String, CommunicationChannelBean, String)}
+     * @return true if the user exists and the previous state is "not-verified", false if user exists but the previous state is not "not-verified" and {@link Optional#empty()} if no user exists with the indicated {@link VerificationTokenBean#getIdUser()}
+     * @see #verifyUser(String)
+     */
+    public Optional<Boolean> verifyUser(@NotNull @Valid DecodedTokenBean<VerificationTokenBean> token);
+    /**
+     * Verify the user of an already decoded {@code token}, as {@link #verifyUser(DecodedTokenBean)}, for the verification end-points.
+     * <p>Concurrent requests of the same token, as the prefetch of mail scanners, share a single verification; and repeated requests just after it are answered with the same result, see {@link SingleFlight}.</p>
+     * @param token The decoded token used to {@link #registerUser(String, CommunicationChannelBean, String)}
+     * @return The result of verification, with {@link ProcessResultBean#isLastStep() last step} on {@link EVerificationProcess#ONE_STEP} process, or {@link Optional#empty()} if no user exists with the indicated {@link VerificationTokenBean#getIdUser()}
+     * @see #verifyUser(DecodedTokenBean)
+     */
+    public Optional<ProcessResultBean> verifyUserCoalesced(@NotNull @Valid DecodedTokenBean<VerificationTokenBean> token);
     /**
      * Update the user to indicate the new state of approved.
      * <p>This is the second step in {@link EVerificationProcess#TWO_STEP} process verification. This step is committed by supervisor user.</p>
@@ -173,13 +228,39 @@ public interface IRegistrationService {
      * @return true if the user exists and the previous state is "verified", false if user exists but the previous state is not "verified" or if token is invalid and {@link Optional#empty()} if no user exists with the indicated {@link ApprobationTokenBean#getIdUser()}
      */
     public Optional<Boolean> approveUser(@NotBlank String token);
+    /**
+     * Update the user of an already decoded {@code token} to indicate the new state of approved.
+     * <p>Same as {@link #approveUser(String)} but without decoding the token again.</p>
+     * @param token The decoded approbation token
+     * @return true if the user exists and the previous state is "verified", false if user exists but the previous state is not "verified" and {@link Optional#empty()} if no user exists with the indicated {@link ApprobationTokenBean#getIdUser()}
+     * @see #approveUser(String)
+     */
+    public Optional<Boolean> approveUser(@NotNull @Valid DecodedTokenBean<ApprobationTokenBean> token);
     /**
      * Assigns the {@code newPassword} to the {@link RecoverPasswordTokenBean#getIdUser() user} on {@code token}.
+     * <p>Once changed, all the tokens issued before for the user are {@link ITokenEpochs#invalidateTokens(String) invalidated}.</p>
      * @param token A valid {@link RecoverPasswordTokenBean recover password token}
      * @param newPassword The new password to assign to the related user, raw password without encoding, this method will encode it
      * @return true if the users exists and state is {@code verified} or {@code registered}, false if state of user is {@code created} or if token is not valid {@link RecoverPasswordTokenBean}; {@link Optional#empty()} if no user exists with the indicated {@link RecoverPasswordTokenBean#getIdUser()}
      */
     public Optional<Boolean> recoverPassword(@NotBlank String token, @NotBlank String newPassword);
+    /**
+     * Asynchronous version of {@link #recoverPassword(String, String)}.
+     * @param token A valid {@link RecoverPasswordTokenBean recover password token}
+     * @param newPassword The new password to assign to the related user, raw password without encoding
+     * @return The future result of {@link #recoverPassword(String, String)}
+     * @throws RejectedExecutionException If there are too many pending asynchronous operations
+     */
+    public CompletableFuture<Optional<Boolean>> recoverPasswordAsync(@NotBlank String token, @NotBlank String newPassword);
+    /**
+     * Assigns the {@code newPassword} to the {@link RecoverPasswordTokenBean#getIdUser() user} on an already decoded {@code token}.
+     * <p>Same as {@link #recoverPassword(String, String)} but without decoding the token again.</p>
+     * @param token The decoded {@link RecoverPasswordTokenBean recover password token}
+     * @param newPassword The new password to assign to the related user, raw password without encoding, this method will encode it
+     * @return true if the users exists and state is {@code verified} or {@code registered}, false if state of user is {@code created}; {@link Optional#empty()} if no user exists with the indicated {@link RecoverPasswordTokenBean#getIdUser()}
+     * @see #recoverPassword(String, String)
+     */
+    public Optional<Boolean> recoverPassword(@NotNull @Valid DecodedTokenBean<RecoverPasswordTokenBean> token, @NotBlank String newPassword);
     /**
      * Find the user by the indicated {@code username}.
      * @param username The username
@@ -206,7 +287,7 @@ public interface IRegistrationService {
      * <li>{@link UserBean#getVerified()} the verified timestamp</li>
      * <li>{@link UserBean#getRegistered()} the registered timestamp</li>
      * </ul>
-     * <p>The indicated {@link UserBean#getPassword() password} on {@code user} should to be NON-ENCRYPTED raw password, so this method encoded them.</p>
+     * <p>The {@link UserBean#getPassword() password} on {@code user} is ignored and the saved one is kept, use {@link #changePassword(String, String, String)} to change it.</p>
      * @param user The user
      * @return true if the user was updated and false if no differences are between indicated {@code user} and persisted user
      * @throws ValidationException If {@link UserBean#getId()} is blank or null
@@ -216,4 +297,15 @@ public interface IRegistrationService {
      * @throws DataIntegrityViolationException If the updated {@link UserBean#getUsername()}, {@link UserBean#getPreferredChannel()} or {@link UserBean#getSecondaryChannel()} exists for other user
      */
     public boolean updateUser(@NotNull @Valid UserBean user);
+    /**
+     * Change the password of the indicated {@code idUser}.
+     * <p>If the password is changed, all the tokens issued before for the user are {@link ITokenEpochs#invalidateTokens(String) invalidated}.</p>
+     * @param idUser The user id
+     * @param currentPassword The current password of user, raw password without encoding
+     * @param newPassword The new password to assign to the user, raw password without encoding, this method will encode it
+     * @return true if the password was changed and false if the {@code currentPassword} doesn't match the saved one
+     * @throws DataRetrievalFailureException If no user was found associated with the indicated {@code idUser}
+     * @throws IllegalStateException If the user has not been registered
+     */
+    public boolean changePassword(@NotBlank String idUser, @NotBlank String currentPassword, @NotBlank String newPassword);
 }
@@ -0,0 +1,58 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.registration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.users.models.users.UserBean;
+
+/**
+ * Contract for the availability of usernames and preferred channels, answering most of the unknown ones without accessing the repository.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface IUserAvailability {
+    /**
+     * Check if the indicated {@code username} is free to register.
+     * @param username The username
+     * @return true if no user exists with {@code username} and false if exists
+     */
+    boolean isUsernameAvailable(@NotBlank String username);
+    /**
+     * Check if the indicated {@code channel} is free to register as preferred channel.
+     * @param channel The channel
+     * @return true if no user exists with {@code channel} as preferred channel and false if exists
+     */
+    boolean isChannelAvailable(@NotNull @Valid CommunicationChannelBean channel);
+    /**
+     * Check if a user with the indicated {@code username} might exist.
+     * <p>A user registered on another instance can be unknown here until the next refresh, so this check is only for registration and never to reject an authentication.</p>
+     * @param username The username
+     * @return false if no user exists with {@code username} for sure, true if it might exist, so the repository should to be checked
+     */
+    boolean mightExistUsername(@NotBlank String username);
+    /**
+     * Record the username and preferred channel of the indicated created or updated {@code user}.
+     * @param user The user
+     */
+    void add(@NotNull UserBean user);
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+
+/**
+ * Repository of {@link ConsumedTokenBean}, the ledger of single-use tokens already used.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@NoRepositoryBean
+@Validated
+public interface IConsumedTokenRepo {
+    /**
+     * Record the indicated {@code token} as consumed, atomically.
+     * @param token The consumed token
+     * @return true if recorded now and false if was recorded before (a replay)
+     */
+    public boolean consume(@NotNull @Valid ConsumedTokenBean token);
+    /**
+     * Check if the token with the indicated {@code tokenId} was consumed.
+     * @param tokenId The token id, required
+     * @return true if consumed and false if not
+     */
+    public boolean existsById(@NotBlank String tokenId);
+    /**
+     * Get the ids of all consumed tokens not yet expired.
+     * @return The ids
+     */
+    public List<String> findAllActiveIds();
+    /**
+     * Remove all consumed tokens already expired.
+     * @return The number of removed tokens
+     */
+    public long deleteExpired();
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.verification.ProcessBean;
+
+/**
+ * Repository of {@link OutboxMessageBean}, the messages pending to deliver.
+ * <p>The {@link #add(OutboxMessageBean)} should join the current transaction, so the message is saved only if the change that originates it is saved.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@NoRepositoryBean
+@Validated
+public interface IOutboxRepo {
+    /**
+     * Add a new message to the outbox.
+     * @param message The message, without {@link OutboxMessageBean#getId() id}
+     * @return The added message, with the assigned id
+     */
+    public OutboxMessageBean add(@NotNull @Valid OutboxMessageBean message);
+    /**
+     * Claim up to {@code max} {@link EOutboxStatus#PENDING pending} messages with {@link OutboxMessageBean#getNextAttempt() next attempt} on or before {@code now}.
+     * The next attempt of the claimed messages is moved to {@code leaseUntil} atomically, so other dispatchers don't claim them again until the lease ends.
+     * @param now The current timestamp
+     * @param leaseUntil The end of lease of claimed messages
+     * @param max The maximum number of messages to claim
+     * @return The claimed messages, with the leased next attempt, oldest first
+     */
+    public List<OutboxMessageBean> claimDue(@NotNull LocalDateTime now, @NotNull LocalDateTime leaseUntil, int max);
+    /**
+     * Mark the message as {@link EOutboxStatus#SENT sent}, discarding the {@link ProcessBean#getToken() token} that is not needed anymore.
+     * @param id The message id
+     * @param messageId The id of message on communications subsystem
+     */
+    public void markSent(@NotBlank String id, String messageId);
+    /**
+     * Register a failed delivery attempt of the message, that stays {@link EOutboxStatus#PENDING pending} until {@code nextAttempt}.
+     * @param id The message id
+     * @param attempts The number of failed attempts, this included
+     * @param nextAttempt The timestamp of next attempt
+     * @param error The error of this attempt
+     */
+    public void markFailed(@NotBlank String id, int attempts, @NotNull LocalDateTime nextAttempt, String error);
+    /**
+     * Mark the message as {@link EOutboxStatus#DEAD dead} after the last failed delivery attempt, discarding the {@link ProcessBean#getToken() token} that is not needed anymore.
+     * @param id The message id
+     * @param attempts The number of failed attempts, this included
+     * @param error The error of this attempt
+     */
+    public void markDead(@NotBlank String id, int attempts, String error);
+    /**
+     * Find the message by the indicated {@code id}.
+     * @param id The message id
+     * @return The message, if found, or {@link Optional#empty()} if not found
+     */
+    public Optional<OutboxMessageBean> findById(@NotBlank String id);
+    /**
+     * Count the messages on the indicated {@code status}.
+     * @param status The status
+     * @return The number of messages
+     */
+    public long countByStatus(@NotNull EOutboxStatus status);
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos;
+
+import java.util.List;
+
+import javax.validation.constraints.NotBlank;
+
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.users.models.tokens.TokenEpochBean;
+
+/**
+ * Repository of {@link TokenEpochBean}, the token epoch of the users that invalidated his tokens.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@NoRepositoryBean
+@Validated
+public interface ITokenEpochRepo {
+    /**
+     * Increment the token epoch of the user with the indicated {@code idUser}, atomically.
+     * If the user has no epoch yet, it's created with epoch one.
+     * @param idUser The user id, required
+     * @return The new epoch
+     */
+    public long increment(@NotBlank String idUser);
+    /**
+     * Get the token epoch of all users with an epoch.
+     * @return The epochs
+     */
+    public List<TokenEpochBean> findAll();
+}
@@ -18,19 +18,23 @@
  */
 package cat.albirar.users.repos;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.validation.annotation.Validated;
 
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 
 /**
  * Repository of {@link UserBean}.
@@ -40,6 +44,14 @@ import cat.albirar.users.models.users.UserBean;
 @NoRepositoryBean
 @Validated
 public interface IUserRepo {
+    /**
+     * Message template of {@link DuplicateKeyException} if username is in use, the argument is the username.
+     */
+    public static final String MSG_USERNAME_IN_USE = "The username '%s' is in use";
+    /**
+     * Message template of {@link DuplicateKeyException} if a channel is in use, the arguments are the lower case channel type and the channel id.
+     */
+    public static final String MSG_CHANNEL_IN_USE = "The %s '%s' is in use";
     /**
      * Returns the number of entities available.
      * @return the number of entities.
@@ -49,6 +61,12 @@ public interface IUserRepo {
      * Get all users from repo.
      */
     public List<UserBean> findAll();
+    /**
+     * Stream all users from repo to the indicated {@code consumer}, without holding all of them in memory.
+     * <p>Only the {@link UserBean#getId()}, {@link UserBean#getUsername()}, {@link UserBean#getPreferredChannel()} and {@link UserBean#getSecondaryChannel()} are informed.</p>
+     * @param consumer The consumer of each user
+     */
+    public void forEachUser(@NotNull Consumer<UserBean> consumer);
     /**
      * Check if user with the indicated id exists.
      * @param id The id, required
@@ -95,4 +113,41 @@ public interface IUserRepo {
      * @throws DataIntegrityViolationException If the indicated {@link UserBean#getUsername()} or {@link UserBean#getPreferredChannel()} exists on registry associated with another account
      */
     public UserBean save(@NotNull @Valid UserBean user);
+    /**
+     * Insert the indicated new {@code user} without any previous existence check.
+     * <p>Duplicates are detected by the unique constraints of the repository on the same round trip of insertion, so no race condition exists between checking and inserting.</p>
+     * <p>The returned user is built from the inserted values and the generated id, <b>no re-read is done</b>.</p>
+     * <p><strong>ATENTION!!</strong> insert will NOT encode password, so, the {@link UserBean#getPassword()} should to be encoded!</p>
+     * @param user The new user, if {@link UserBean#getId()} is informed, it will be used as the id of new user
+     * @return The inserted user, with the {@link UserBean#getId()} informed
+     * @throws DuplicateKeyException If the indicated {@link UserBean#getUsername()}, {@link UserBean#getPreferredChannel()} or {@link UserBean#getSecondaryChannel()} exists on registry, with the {@link #MSG_USERNAME_IN_USE} or {@link #MSG_CHANNEL_IN_USE} message
+     */
+    public UserBean insert(@NotNull @Valid UserBean user);
+    /**
+     * Update only the informed fields of {@code changes} on the user with the indicated {@code id}.
+     * <p>Unlike {@link #save(UserBean)}, the user is not read before nor after the update, so the change is made on a single round trip.</p>
+     * <p><strong>ATENTION!!</strong> patch will NOT encode password, so, the {@link UserPatchBean#getPassword()} should to be encoded!</p>
+     * @param id The user id
+     * @param changes The changes to apply
+     * @return true if the user was found and patched and false if no user exists with the indicated {@code id}
+     * @throws DataIntegrityViolationException If the patched {@link UserPatchBean#getUsername()}, {@link UserPatchBean#getPreferredChannel()} or {@link UserPatchBean#getSecondaryChannel()} exists on registry associated with another user
+     */
+    public boolean patch(@NotBlank String id, @NotNull @Valid UserPatchBean changes);
+    /**
+     * Mark the user with the indicated {@code id} as verified, only if not verified before.
+     * <p>Check and update are made on a single atomic operation, so only one of concurrent verifications of the same user succeeds.</p>
+     * @param id The user id
+     * @param verified The verified timestamp
+     * @param registeredToo If true, the user is also registered and enabled with the same {@code verified} timestamp; if false, the user is left disabled waiting for approbation
+     * @return true if the user was verified now and false if no user exists with the indicated {@code id} or if it was verified before
+     */
+    public boolean markVerified(@NotBlank String id, @NotNull LocalDateTime verified, boolean registeredToo);
+    /**
+     * Mark the user with the indicated {@code id} as registered and enabled, only if it was verified and not registered before.
+     * <p>Check and update are made on a single atomic operation, so only one of concurrent approbations of the same user succeeds.</p>
+     * @param id The user id
+     * @param registered The registered timestamp
+     * @return true if the user was approved now and false if no user exists with the indicated {@code id}, or if it is not verified or if it was registered before
+     */
+    public boolean markApproved(@NotBlank String id, @NotNull LocalDateTime registered);
 }
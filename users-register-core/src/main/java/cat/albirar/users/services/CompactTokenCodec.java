@@ -0,0 +1,388 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import javax.crypto.SecretKey;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.tokens.utils.LocaleUtils;
+import cat.albirar.users.tokens.utils.TokenUtils;
+import cat.albirar.users.verification.IJwsKeyRing;
+
+/**
+ * Compact binary encoding of {@link VerificationTokenBean} and {@link RecoverPasswordTokenBean}, for size constrained channels like {@link ECommunicationChannelType#MOBILE}.
+ * <p>The token is a fixed layout payload followed by a MAC truncated to {@value #MAC_LENGTH} bytes, all base64url encoded without padding:</p>
+ * <ol>
+ * <li>Format version, one byte ({@value #VERSION})</li>
+ * <li>{@link ETokenClass} ordinal, one byte</li>
+ * <li>{@link EVerificationProcess} ordinal for verification tokens or {@link ECommunicationChannelType} ordinal for recover password tokens, one byte</li>
+ * <li>Locale index on {@link #LOCALES}, one byte; {@value #LOCALE_INLINE} if not indexed, followed by the locale as text</li>
+ * <li>Token id as {@link UUID}, 16 bytes</li>
+ * <li>Issued and expire as epoch seconds, four bytes each</li>
+ * <li>{@link AbstractTokenBean#getTokenEpoch() Token epoch}, four bytes</li>
+ * <li>User id: one tag byte followed by eight bytes if numeric, twelve bytes if hexadecimal object id or the text otherwise</li>
+ * <li>Signing {@link IJwsKeyRing#keyIndex(String) key index}, one byte</li>
+ * </ol>
+ * <p>Texts are encoded as one length byte followed by the UTF-8 bytes. The MAC is computed with the {@link IJwsKeyRing} key of the embedded key index, as on JWS; if many keys share the index, each one is tried.</p>
+ * <p>The username is not carried, the decoded tokens have only the {@link AbstractTokenBean#getIdUser() user id}. So a verification token of a user with an object id and an indexed locale is 58 bytes, 78 characters.</p>
+ * <p>A compact token never contains a dot, so it can be told apart from a JWS.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class CompactTokenCodec {
+    /**
+     * The format version, to change the layout without breaking the tokens already sent.
+     */
+    public static final byte VERSION = 1;
+    /**
+     * The length of the truncated MAC, in bytes.
+     */
+    public static final int MAC_LENGTH = 12;
+    /**
+     * Locale index for locales not indexed, followed by the locale as text.
+     */
+    public static final int LOCALE_INLINE = 0xFF;
+    /**
+     * The locales with a fixed index on compact tokens, the same on all instances.
+     * The index of each locale is his position on the list, so new locales should be added at the end.
+     */
+    public static final List<Locale> LOCALES = Collections.unmodifiableList(Arrays.asList(
+            new Locale("ca", "ES"), new Locale("es", "ES"), Locale.UK, Locale.US, Locale.FRANCE, Locale.GERMANY, Locale.ITALY, new Locale("pt", "PT")
+            , new Locale("ca"), new Locale("es"), Locale.ENGLISH, Locale.FRENCH, Locale.GERMAN, Locale.ITALIAN, new Locale("pt")
+            ));
+    
+    private static final byte USER_ID_NUMERIC = 0;
+    private static final byte USER_ID_OBJECT_ID = 1;
+    private static final byte USER_ID_TEXT = 2;
+    
+    private static final Pattern NUMERIC_ID = Pattern.compile("0|[1-9][0-9]{0,17}");
+    private static final Pattern OBJECT_ID = Pattern.compile("[0-9a-f]{24}");
+    
+    private static final int MAX_LENGTH = 2048;
+    /**
+     * The length of {@link #MAX_LENGTH} bytes base64url encoded without padding.
+     */
+    private static final int MAX_ENCODED_LENGTH = (MAX_LENGTH * 4 + 2) / 3;
+    
+    @Autowired
+    private IJwsKeyRing jwsKeyRing;
+    
+    /**
+     * Check if {@code token} has the compact format, without checking his content.
+     * @param token The token
+     * @return true if could be a compact token and false if is a JWS or blank
+     */
+    public boolean isCompact(String token) {
+        return StringUtils.hasText(token) && token.indexOf('.') < 0;
+    }
+    /**
+     * Check if {@code tokenBean} can be encoded as a compact token.
+     * @param tokenBean The token bean
+     * @return true if is a verification or recover password token with an {@link UUID} token id and an unsigned 32 bits token epoch, false otherwise
+     */
+    public boolean isEncodable(AbstractTokenBean tokenBean) {
+        return (tokenBean instanceof VerificationTokenBean || tokenBean instanceof RecoverPasswordTokenBean)
+                && uuid(tokenBean.getTokenId()).isPresent()
+                && tokenBean.getTokenEpoch() >= 0L && tokenBean.getTokenEpoch() <= 0xFFFFFFFFL
+                ;
+    }
+    /**
+     * Encode the {@code tokenBean} as compact token, signed with the current {@link IJwsKeyRing#getSigningKey() signing key}.
+     * @param tokenBean The token bean, should to be {@link #isEncodable(AbstractTokenBean) encodable}
+     * @return The compact token
+     * @throws IllegalArgumentException If the {@code tokenBean} is not {@link #isEncodable(AbstractTokenBean) encodable} or any text is too long
+     */
+    public String encode(AbstractTokenBean tokenBean) {
+        ByteBuffer buffer;
+        JwsKeyBean signingKey;
+        int localeIndex;
+        byte [] payload;
+        byte [] mac;
+        
+        if(!isEncodable(tokenBean)) {
+            throw new IllegalArgumentException(String.format("The token %s cannot be encoded as compact token", tokenBean.getTokenId()));
+        }
+        signingKey = jwsKeyRing.getSigningKey();
+        buffer = ByteBuffer.allocate(MAX_LENGTH);
+        buffer.put(VERSION);
+        buffer.put((byte) tokenBean.getTokenClass().ordinal());
+        if(tokenBean instanceof VerificationTokenBean) {
+            buffer.put((byte) ((VerificationTokenBean)tokenBean).getProcess().ordinal());
+        } else {
+            buffer.put((byte) ((RecoverPasswordTokenBean)tokenBean).getOrigin().ordinal());
+        }
+        localeIndex = LOCALES.indexOf(tokenBean.getLocale());
+        if(localeIndex < 0) {
+            buffer.put((byte) LOCALE_INLINE);
+            putText(buffer, LocaleUtils.localeToString(tokenBean.getLocale()));
+        } else {
+            buffer.put((byte) localeIndex);
+        }
+        putUuid(buffer, uuid(tokenBean.getTokenId()).get());
+        buffer.putInt((int) toEpochSecond(tokenBean.getIssued()));
+        buffer.putInt((int) toEpochSecond(tokenBean.getExpire()));
+        buffer.putInt((int) tokenBean.getTokenEpoch());
+        putUserId(buffer, tokenBean.getIdUser());
+        buffer.put((byte) jwsKeyRing.keyIndex(signingKey.getKid()));
+        payload = Arrays.copyOf(buffer.array(), buffer.position());
+        mac = mac(signingKey.getKey(), payload);
+        buffer.put(mac, 0, MAC_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+    /**
+     * Decode the compact {@code token}, checking the MAC and the dates.
+     * @param token The compact token
+     * @return The decoded token bean or {@link Optional#empty()} if {@code token} is malformed, the MAC doesn't match, the key is unknown or is expired
+     * @see #decodeResult(String)
+     */
+    public Optional<AbstractTokenBean> decode(String token) {
+        return Optional.ofNullable(decodeResult(token).getTokenBean());
+    }
+    /**
+     * Decode the compact {@code token}, checking the MAC and the dates, and classify the failures.
+     * <p>The structure is checked before decoding, so the garbage tokens are rejected without decoding them and without exceptions.</p>
+     * @param token The compact token
+     * @return The result, with the decoded token bean only if {@link ETokenDecodeStatus#VALID valid}
+     */
+    public TokenDecodeResultBean<AbstractTokenBean> decodeResult(String token) {
+        byte [] raw;
+        ByteBuffer buffer;
+        ETokenClass tokenClass;
+        int subtype;
+        int localeIndex;
+        Locale locale;
+        UUID tokenId;
+        LocalDateTime issued;
+        LocalDateTime expire;
+        long tokenEpoch;
+        LocalDateTime now;
+        String idUser;
+        List<JwsKeyBean> keys;
+        byte [] payload;
+        byte [] tokenMac;
+        boolean signed;
+        
+        if(!isCompact(token) || token.length() > MAX_ENCODED_LENGTH || !TokenUtils.isBase64Url(token, 0, token.length())) {
+            return result(ETokenDecodeStatus.MALFORMED, token, null);
+        }
+        raw = Base64.getUrlDecoder().decode(token);
+        if(raw.length <= MAC_LENGTH || raw[0] != VERSION) {
+            return result(ETokenDecodeStatus.MALFORMED, token, null);
+        }
+        try {
+            buffer = ByteBuffer.wrap(raw, 0, raw.length - MAC_LENGTH);
+            buffer.get();
+            tokenClass = ETokenClass.values()[buffer.get()];
+            subtype = buffer.get();
+            localeIndex = buffer.get() & 0xFF;
+            if(localeIndex == LOCALE_INLINE) {
+                locale = LocaleUtils.stringToLocale(getText(buffer));
+            } else {
+                locale = LOCALES.get(localeIndex);
+            }
+            tokenId = getUuid(buffer);
+            issued = fromEpochSecond(buffer.getInt() & 0xFFFFFFFFL);
+            expire = fromEpochSecond(buffer.getInt() & 0xFFFFFFFFL);
+            tokenEpoch = buffer.getInt() & 0xFFFFFFFFL;
+            idUser = getUserId(buffer);
+            keys = jwsKeyRing.findKeys(buffer.get() & 0xFF);
+        } catch(IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            return result(ETokenDecodeStatus.MALFORMED, token, null);
+        }
+        if(buffer.hasRemaining()) {
+            return result(ETokenDecodeStatus.MALFORMED, token, null);
+        }
+        payload = Arrays.copyOf(raw, raw.length - MAC_LENGTH);
+        tokenMac = Arrays.copyOfRange(raw, raw.length - MAC_LENGTH, raw.length);
+        signed = false;
+        for(JwsKeyBean key : keys) {
+            if(MessageDigest.isEqual(Arrays.copyOf(mac(key.getKey(), payload), MAC_LENGTH), tokenMac)) {
+                signed = true;
+                break;
+            }
+        }
+        if(!signed) {
+            return result(ETokenDecodeStatus.BAD_SIGNATURE, token, null);
+        }
+        now = LocalDateTime.now();
+        if(!expire.isAfter(now)) {
+            return result(ETokenDecodeStatus.EXPIRED, token, null);
+        }
+        if(issued.isAfter(now) || !StringUtils.hasText(idUser)) {
+            return result(ETokenDecodeStatus.INVALID_CLAIMS, token, null);
+        }
+        if(tokenClass == ETokenClass.VERIFICATION) {
+            if(subtype != EVerificationProcess.ONE_STEP.ordinal() && subtype != EVerificationProcess.TWO_STEP.ordinal()) {
+                return result(ETokenDecodeStatus.INVALID_CLAIMS, token, null);
+            }
+            return result(ETokenDecodeStatus.VALID, token, VerificationTokenBean.builder()
+                    .tokenId(tokenId.toString())
+                    .issued(issued)
+                    .expire(expire)
+                    .idUser(idUser)
+                    .locale(locale)
+                    .tokenEpoch(tokenEpoch)
+                    .process(EVerificationProcess.values()[subtype])
+                    .build()
+                    );
+        }
+        if(tokenClass == ETokenClass.RECOVER_PASSWORD && subtype >= 0 && subtype < ECommunicationChannelType.values().length) {
+            return result(ETokenDecodeStatus.VALID, token, RecoverPasswordTokenBean.builder()
+                    .tokenId(tokenId.toString())
+                    .issued(issued)
+                    .expire(expire)
+                    .idUser(idUser)
+                    .locale(locale)
+                    .tokenEpoch(tokenEpoch)
+                    .origin(ECommunicationChannelType.values()[subtype])
+                    .build()
+                    );
+        }
+        return result(ETokenDecodeStatus.INVALID_CLAIMS, token, null);
+    }
+    
+    private TokenDecodeResultBean<AbstractTokenBean> result(ETokenDecodeStatus status, String token, AbstractTokenBean tokenBean) {
+        return TokenDecodeResultBean.<AbstractTokenBean>builder()
+                .status(status)
+                .token(token)
+                .tokenBean(tokenBean)
+                .build()
+                ;
+    }
+    
+    private byte [] mac(SecretKey key, byte [] payload) {
+        return TokenUtils.hmac(key.getAlgorithm(), key, payload);
+    }
+    
+    private Optional<UUID> uuid(String tokenId) {
+        UUID u;
+        
+        try {
+            u = UUID.fromString(tokenId);
+            // Only the canonical form, to decode the same token id
+            return u.toString().equals(tokenId) ? Optional.of(u) : Optional.empty();
+        } catch(IllegalArgumentException | NullPointerException e) {
+            return Optional.empty();
+        }
+    }
+    
+    private void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+    
+    private UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    
+    private void putUserId(ByteBuffer buffer, String idUser) {
+        int n;
+        
+        if(NUMERIC_ID.matcher(idUser).matches()) {
+            buffer.put(USER_ID_NUMERIC);
+            buffer.putLong(Long.parseLong(idUser));
+        } else if(OBJECT_ID.matcher(idUser).matches()) {
+            buffer.put(USER_ID_OBJECT_ID);
+            for(n = 0; n < idUser.length(); n += 2) {
+                buffer.put((byte) Integer.parseInt(idUser.substring(n, n + 2), 16));
+            }
+        } else {
+            buffer.put(USER_ID_TEXT);
+            putText(buffer, idUser);
+        }
+    }
+    
+    private String getUserId(ByteBuffer buffer) {
+        StringBuilder sb;
+        int n;
+        byte b;
+        
+        switch(buffer.get()) {
+            case USER_ID_NUMERIC:
+                return Long.toString(buffer.getLong());
+            case USER_ID_OBJECT_ID:
+                sb = new StringBuilder(24);
+                for(n = 0; n < 12; n++) {
+                    b = buffer.get();
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                return sb.toString();
+            case USER_ID_TEXT:
+                return getText(buffer);
+            default:
+                throw new IllegalArgumentException("Unknown user id tag");
+        }
+    }
+    
+    private void putText(ByteBuffer buffer, String text) {
+        byte [] b;
+        
+        b = text.getBytes(StandardCharsets.UTF_8);
+        if(b.length > 0xFF) {
+            throw new IllegalArgumentException("The text is too long for a compact token");
+        }
+        buffer.put((byte) b.length);
+        buffer.put(b);
+    }
+    
+    private String getText(ByteBuffer buffer) {
+        byte [] b;
+        
+        b = new byte[buffer.get() & 0xFF];
+        buffer.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+    
+    private long toEpochSecond(LocalDateTime ldt) {
+        return ldt.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+    
+    private LocalDateTime fromEpochSecond(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_KEYS_FILE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.verification.IJwsKeySource;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * A {@link IJwsKeySource} backed by a properties resource, configured by {@value PropertiesCore#TOKEN_PROP_KEYS_FILE}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ * @see PropertiesCore#TOKEN_PROP_KEYS_FILE
+ */
+@Component
+public class FileJwsKeySource implements IJwsKeySource {
+    
+    @Value("${" + TOKEN_PROP_KEYS_FILE + ":}")
+    private String keysFile;
+    
+    @Autowired
+    private ResourceLoader resourceLoader;
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JwsKeyBean> loadKeys() {
+        Resource resource;
+        Properties props;
+        List<JwsKeyBean> keys;
+        
+        if(!StringUtils.hasText(keysFile)) {
+            return Collections.emptyList();
+        }
+        resource = resourceLoader.getResource(keysFile.trim());
+        props = new Properties();
+        try(InputStream in = resource.getInputStream()) {
+            props.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Cannot read the keys file '%s'", keysFile), e);
+        }
+        keys = new ArrayList<>(props.size());
+        for(String kid : props.stringPropertyNames()) {
+            keys.add(parseKey(kid, props.getProperty(kid)));
+        }
+        return keys;
+    }
+    /**
+     * Parse an entry of keys file as {@code base64Secret[;validFrom[;validUntil]]}.
+     * @param kid The key id
+     * @param value The value of entry
+     * @return The key
+     */
+    private JwsKeyBean parseKey(String kid, String value) {
+        String [] parts;
+        
+        parts = value.split(";");
+        try {
+            return JwsKeyBean.builder()
+                    .kid(kid)
+                    .key(Keys.hmacShaKeyFor(Base64.getDecoder().decode(parts[0].trim())))
+                    .validFrom(parts.length > 1 && StringUtils.hasText(parts[1]) ? LocalDateTime.parse(parts[1].trim()) : LocalDateTime.MIN)
+                    .validUntil(parts.length > 2 && StringUtils.hasText(parts[2]) ? LocalDateTime.parse(parts[2].trim()) : null)
+                    .build()
+                    ;
+        } catch(RuntimeException e) {
+            throw new IllegalStateException(String.format("The key '%s' of keys file '%s' is not valid", kid, keysFile), e);
+        }
+    }
+}
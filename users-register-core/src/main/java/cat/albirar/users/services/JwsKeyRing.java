@@ -0,0 +1,290 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_KEYS_REFRESH;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.verification.IJwsKeyRing;
+import cat.albirar.users.verification.IJwsKeySource;
+import cat.albirar.users.verification.ITokenCache;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * The {@link IJwsKeyRing} fed from all {@link IJwsKeySource} beans.
+ * <p>If no source provides any key, the {@code jwsSecretKey} bean is used as the only key, with kid {@value #LOCAL_KID}.
+ * This is only valid for single instance deployments, as the key is not shared.</p>
+ * <p>The keys are held on an immutable snapshot, replaced on each {@link #refresh()}, so lookups by kid and by {@link #keyIndex(String) index} are lock-free and constant-time.
+ * The refresh is run on a background thread, the lookups never wait for the sources; if a source fails, his keys of the last successful load are kept.</p>
+ * <p>When a refresh removes, replaces or finds expired a key that was usable on the previous refresh, the {@link ITokenCache} is cleared, so the tokens signed with that key are verified again and rejected.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class JwsKeyRing implements IJwsKeyRing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwsKeyRing.class);
+    /**
+     * The kid for the local {@code jwsSecretKey} when no source provides keys.
+     */
+    public static final String LOCAL_KID = "local";
+    
+    @Autowired(required = false)
+    private List<IJwsKeySource> keySources = Collections.emptyList();
+    
+    @Autowired
+    private SecretKey jwsSecretKey;
+    
+    @Autowired
+    private ITokenCache tokenCache;
+    
+    @Value("${" + TOKEN_PROP_KEYS_REFRESH + ":300}")
+    private long refreshSeconds;
+    
+    private volatile Snapshot snapshot;
+    
+    /**
+     * The keys of the last successful load of each source, to keep them when the source fails.
+     * Only accessed on {@link #refresh()}.
+     */
+    private final Map<IJwsKeySource, List<JwsKeyBean>> sourceKeys = new IdentityHashMap<>();
+    
+    /**
+     * The background thread that refreshes the keys, null if disabled.
+     */
+    private ScheduledExecutorService refresher;
+    
+    /**
+     * Load the keys for first time and start the background refresh, if enabled.
+     */
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory;
+        
+        refresh();
+        if(refreshSeconds > 0) {
+            threadFactory = new CustomizableThreadFactory("jws-keyring-refresh-");
+            threadFactory.setDaemon(true);
+            refresher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            refresher.scheduleWithFixedDelay(this::backgroundRefresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+    /**
+     * Stop the background refresh.
+     */
+    @PreDestroy
+    public void destroy() {
+        if(refresher != null) {
+            refresher.shutdown();
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JwsKeyBean getSigningKey() {
+        LocalDateTime now;
+        
+        now = LocalDateTime.now();
+        for(JwsKeyBean key : snapshot.signingOrder) {
+            if(!key.getValidFrom().isAfter(now) && isNotExpired(key, now)) {
+                return key;
+            }
+        }
+        throw new IllegalStateException("No valid key to sign tokens!");
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<JwsKeyBean> findKey(String kid) {
+        JwsKeyBean key;
+        
+        if(kid == null) {
+            return Optional.empty();
+        }
+        key = snapshot.keys.get(kid);
+        if(key != null && isNotExpired(key, LocalDateTime.now())) {
+            return Optional.of(key);
+        }
+        return Optional.empty();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JwsKeyBean> findKeys(int keyIndex) {
+        List<JwsKeyBean> indexed;
+        List<JwsKeyBean> found;
+        LocalDateTime now;
+        
+        indexed = snapshot.indexed.get(keyIndex);
+        if(indexed == null) {
+            return Collections.emptyList();
+        }
+        now = LocalDateTime.now();
+        found = new ArrayList<>(indexed.size());
+        for(JwsKeyBean key : indexed) {
+            if(isNotExpired(key, now)) {
+                found.add(key);
+            }
+        }
+        return found;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void refresh() {
+        List<JwsKeyBean> loaded;
+        Snapshot previous;
+        
+        previous = snapshot;
+        loaded = new ArrayList<>();
+        for(IJwsKeySource source : keySources) {
+            try {
+                sourceKeys.put(source, new ArrayList<>(source.loadKeys()));
+            } catch(RuntimeException e) {
+                LOGGER.error("Cannot load keys from source {}, keeping his previous keys", source.getClass().getName(), e);
+            }
+            loaded.addAll(sourceKeys.getOrDefault(source, Collections.emptyList()));
+        }
+        if(loaded.isEmpty()) {
+            if(snapshot != null && !snapshot.local) {
+                // Sources failing, keep the last good keys
+                LOGGER.warn("No keys loaded from sources, keeping the previous ones");
+                return;
+            }
+            loaded.add(JwsKeyBean.builder()
+                    .kid(LOCAL_KID)
+                    .key(jwsSecretKey)
+                    .validFrom(LocalDateTime.MIN)
+                    .build()
+                    );
+            snapshot = new Snapshot(prepare(loaded), true, this);
+        } else {
+            snapshot = new Snapshot(prepare(loaded), false, this);
+        }
+        if(previous != null && isAnyKeyLost(previous, snapshot)) {
+            // The cached tokens can be signed with the lost keys
+            LOGGER.info("Some keys are not usable anymore, the token cache is cleared");
+            tokenCache.clear();
+        }
+        LOGGER.debug("Key ring refreshed with {} keys", snapshot.signingOrder.size());
+    }
+    /**
+     * Check if any key usable at {@code previous} snapshot is not usable at {@code current}: removed, with other key material or expired.
+     * @param previous The previous snapshot
+     * @param current The current snapshot
+     * @return true if any key was lost and false otherwise
+     */
+    private boolean isAnyKeyLost(Snapshot previous, Snapshot current) {
+        JwsKeyBean key;
+        
+        for(JwsKeyBean prevKey : previous.keys.values()) {
+            if(isNotExpired(prevKey, previous.loaded)) {
+                key = current.keys.get(prevKey.getKid());
+                if(key == null || !key.getKey().equals(prevKey.getKey()) || !isNotExpired(key, current.loaded)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    /**
+     * The {@link #refresh()} of the background thread, a failure is logged and the previous keys are kept until the next refresh.
+     */
+    private void backgroundRefresh() {
+        try {
+            refresh();
+        } catch(RuntimeException e) {
+            LOGGER.error("Cannot refresh the key ring, keeping the previous keys", e);
+        }
+    }
+    /**
+     * Resolve the {@link JwsKeyBean#getAlgorithm() algorithm} of each key and sort them for signing, most recent {@link JwsKeyBean#getValidFrom() validFrom} first.
+     * @param keys The keys
+     * @return The keys sorted for signing
+     */
+    private List<JwsKeyBean> prepare(List<JwsKeyBean> keys) {
+        List<JwsKeyBean> prepared;
+        
+        prepared = new ArrayList<>(keys.size());
+        for(JwsKeyBean key : keys) {
+            if(key.getAlgorithm() == null) {
+                key = key.toBuilder()
+                        .algorithm(SignatureAlgorithm.forSigningKey(key.getKey()))
+                        .build();
+            }
+            prepared.add(key);
+        }
+        prepared.sort(Comparator.comparing(JwsKeyBean::getValidFrom).reversed());
+        return Collections.unmodifiableList(prepared);
+    }
+    
+    private boolean isNotExpired(JwsKeyBean key, LocalDateTime now) {
+        return (key.getValidUntil() == null || key.getValidUntil().isAfter(now));
+    }
+    /**
+     * Immutable view of keys at a moment.
+     */
+    private static final class Snapshot {
+        private final List<JwsKeyBean> signingOrder;
+        private final Map<String, JwsKeyBean> keys;
+        private final Map<Integer, List<JwsKeyBean>> indexed;
+        private final boolean local;
+        private final LocalDateTime loaded;
+        
+        private Snapshot(List<JwsKeyBean> signingOrder, boolean local, IJwsKeyRing ring) {
+            this.signingOrder = signingOrder;
+            this.keys = new HashMap<>();
+            this.indexed = new HashMap<>();
+            for(JwsKeyBean key : signingOrder) {
+                if(this.keys.putIfAbsent(key.getKid(), key) == null) {
+                    this.indexed.computeIfAbsent(ring.keyIndex(key.getKid()), i -> new ArrayList<>(1)).add(key);
+                }
+            }
+            this.local = local;
+            this.loaded = LocalDateTime.now();
+        }
+    }
+}
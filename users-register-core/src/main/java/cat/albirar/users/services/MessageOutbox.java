@@ -0,0 +1,335 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_ATTEMPTS;
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_BACKOFF_INITIAL;
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_BACKOFF_MAX;
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_BATCH;
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_LEASE;
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_POLL;
+import static cat.albirar.users.config.PropertiesCore.OUTBOX_PROP_THREADS;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.models.outbox.EOutboxProcess;
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.repos.IOutboxRepo;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.utils.BoundedExecutorService;
+import cat.albirar.users.verification.IMessageOutbox;
+import cat.albirar.users.verification.ITokenManager;
+import cat.albirar.users.verification.IVerificationProcessService;
+
+/**
+ * The {@link IMessageOutbox} backed by {@link IOutboxRepo}, that delivers the messages with {@link IVerificationProcessService}.
+ * <p>A single background thread polls the outbox each {@value PropertiesCore#OUTBOX_PROP_POLL} milliseconds, and also after each committed {@link #enqueue(EOutboxProcess, ProcessBean) enqueue},
+ * claiming the due messages in batches that are delivered in parallel.
+ * The claim is a lease on the repository, so many instances can share the same outbox.</p>
+ * <p>A message is marked {@link EOutboxStatus#SENT sent} after delivery; if the instance dies between both the lease ends and the message is delivered again, so the delivery is at-least-once.</p>
+ * <p>The token of each message is decoded before delivery; a message that cannot be delivered anymore, as when his token is expired or revoked, is marked {@link EOutboxStatus#DEAD dead} at first attempt, without retries.
+ * Any other failure, from the communications subsystem too, is retried.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Service
+@Validated
+public class MessageOutbox implements IMessageOutbox {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageOutbox.class);
+    
+    @Value("${" + OUTBOX_PROP_POLL + ":1000}")
+    private long pollMillis;
+    
+    @Value("${" + OUTBOX_PROP_BATCH + ":100}")
+    private int batchSize;
+    
+    @Value("${" + OUTBOX_PROP_THREADS + ":4}")
+    private int deliveryThreads;
+    
+    @Value("${" + OUTBOX_PROP_ATTEMPTS + ":10}")
+    private int maxAttempts;
+    
+    @Value("${" + OUTBOX_PROP_BACKOFF_INITIAL + ":5}")
+    private long backoffInitialSeconds;
+    
+    @Value("${" + OUTBOX_PROP_BACKOFF_MAX + ":3600}")
+    private long backoffMaxSeconds;
+    
+    @Value("${" + OUTBOX_PROP_LEASE + ":300}")
+    private long leaseSeconds;
+    
+    @Autowired
+    private IOutboxRepo outboxRepo;
+    
+    @Autowired
+    private IVerificationProcessService verificationProcessService;
+    
+    @Autowired
+    private ITokenManager tokenManager;
+    
+    /**
+     * The background thread that polls the outbox, null if disabled.
+     */
+    private ScheduledExecutorService dispatcher;
+    
+    /**
+     * The bounded pool to deliver the messages of each batch.
+     */
+    private ExecutorService deliveryExecutor;
+    
+    /**
+     * True if a dispatch was requested to {@link #dispatcher} and not yet started, to coalesce the requests of many enqueues.
+     */
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    
+    /**
+     * Prepare the delivery pool and start the background dispatcher, if enabled.
+     */
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory;
+        
+        if(batchSize <= 0) {
+            throw new IllegalStateException(String.format("The outbox batch size should be greater than zero, but is %d", batchSize));
+        }
+        if(deliveryThreads <= 0) {
+            deliveryThreads = Runtime.getRuntime().availableProcessors();
+        }
+        deliveryExecutor = BoundedExecutorService.newBoundedExecutor("outbox-delivery-", deliveryThreads, batchSize, false);
+        if(pollMillis > 0) {
+            threadFactory = new CustomizableThreadFactory("outbox-dispatcher-");
+            threadFactory.setDaemon(true);
+            dispatcher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            dispatcher.scheduleWithFixedDelay(this::drain, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    /**
+     * Stop the dispatcher and delivery threads.
+     */
+    @PreDestroy
+    public void destroy() {
+        if(dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        deliveryExecutor.shutdown();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String enqueue(EOutboxProcess process, ProcessBean message) {
+        OutboxMessageBean added;
+        LocalDateTime now;
+        
+        now = LocalDateTime.now();
+        added = outboxRepo.add(OutboxMessageBean.builder()
+                .process(process)
+                .message(message)
+                .status(EOutboxStatus.PENDING)
+                .attempts(0)
+                .created(now)
+                .nextAttempt(now)
+                .build()
+                );
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Not visible to dispatcher until committed
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+        LOGGER.debug("Message {} enqueued with id {}", process, added.getId());
+        return added.getId();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int dispatch() {
+        List<OutboxMessageBean> messages;
+        CompletableFuture<?> [] deliveries;
+        LocalDateTime now;
+        
+        now = LocalDateTime.now();
+        messages = outboxRepo.claimDue(now, now.plusSeconds(leaseSeconds), batchSize);
+        if(messages.isEmpty()) {
+            return 0;
+        }
+        deliveries = new CompletableFuture<?>[messages.size()];
+        for(int n = 0; n < deliveries.length; n++) {
+            deliveries[n] = deliverAsync(messages.get(n));
+        }
+        CompletableFuture.allOf(deliveries).join();
+        LOGGER.debug("Outbox batch of {} messages dispatched", messages.size());
+        return messages.size();
+    }
+    /**
+     * Request a dispatch to {@link #dispatcher}, if there is no other request waiting.
+     */
+    private void wakeUp() {
+        if(dispatcher != null && wakeUpPending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> {
+                    wakeUpPending.set(false);
+                    drain();
+                });
+            } catch(RejectedExecutionException e) {
+                // Shutting down, the message stays on the outbox
+                wakeUpPending.set(false);
+            }
+        }
+    }
+    /**
+     * Dispatch batches until the outbox has no more due messages.
+     * Run on {@link #dispatcher}, so the errors are logged and not thrown.
+     */
+    private void drain() {
+        try {
+            while(dispatch() == batchSize) {
+                LOGGER.trace("Outbox batch full, dispatching the next one");
+            }
+        } catch(RuntimeException e) {
+            LOGGER.error("Cannot dispatch the outbox", e);
+        }
+    }
+    /**
+     * Deliver the {@code message} on {@link #deliveryExecutor} or, if the pool is full, on the calling thread.
+     * @param message The message
+     * @return The future delivery
+     */
+    private CompletableFuture<Void> deliverAsync(OutboxMessageBean message) {
+        try {
+            return CompletableFuture.runAsync(() -> deliver(message), deliveryExecutor);
+        } catch(RejectedExecutionException e) {
+            deliver(message);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+    /**
+     * Deliver the {@code message} and update his status.
+     * @param message The message
+     */
+    private void deliver(OutboxMessageBean message) {
+        TokenDecodeResultBean<? extends AbstractTokenBean> token;
+        String messageId;
+        String error;
+        int attempts;
+        
+        try {
+            token = tokenManager.decodeTokenResult(tokenClass(message.getProcess()), message.getMessage().getToken());
+            if(!token.isValid()) {
+                // The message cannot be delivered anymore (the token is expired, revoked...), not retried
+                attempts = message.getAttempts() + 1;
+                outboxRepo.markDead(message.getId(), attempts, String.format("The token cannot be decoded: %s", token.getStatus()));
+                LOGGER.error("Message {} is dead, his token cannot be decoded: {}", message.getId(), token.getStatus());
+                return;
+            }
+            messageId = push(message, token.toDecodedTokenBean().get());
+            outboxRepo.markSent(message.getId(), messageId);
+            LOGGER.debug("Message {} sent with id {}", message.getId(), messageId);
+        } catch(RuntimeException e) {
+            attempts = message.getAttempts() + 1;
+            error = e.getClass().getName() + ": " + e.getMessage();
+            if(attempts >= maxAttempts) {
+                outboxRepo.markDead(message.getId(), attempts, error);
+                LOGGER.error("Message {} is dead after {} attempts", message.getId(), attempts, e);
+            } else {
+                outboxRepo.markFailed(message.getId(), attempts, LocalDateTime.now().plusSeconds(backoffSeconds(attempts)), error);
+                LOGGER.warn("Attempt {} to deliver message {} failed: {}", attempts, message.getId(), error);
+            }
+        }
+    }
+    /**
+     * The token class of the {@code process} messages.
+     * @param process The process
+     * @return The token class
+     */
+    private Class<? extends AbstractTokenBean> tokenClass(EOutboxProcess process) {
+        switch(process) {
+            case VERIFICATION:
+                return VerificationTokenBean.class;
+            case APPROBATION:
+                return ApprobationTokenBean.class;
+            case RECOVER_PASSWORD:
+                return RecoverPasswordTokenBean.class;
+            default:
+                throw new IllegalStateException(String.format("Unknown outbox process %s", process));
+        }
+    }
+    /**
+     * Push the {@code message} to communications subsystem with the {@link OutboxMessageBean#getProcess() process} operation.
+     * @param message The message
+     * @param token The decoded token of message, of the {@link #tokenClass(EOutboxProcess) token class} of process
+     * @return The id of message on communications subsystem
+     */
+    @SuppressWarnings("unchecked")
+    private String push(OutboxMessageBean message, DecodedTokenBean<? extends AbstractTokenBean> token) {
+        switch(message.getProcess()) {
+            case VERIFICATION:
+                return verificationProcessService.startVerifyProcess(message.getMessage(), (DecodedTokenBean<VerificationTokenBean>) token);
+            case APPROBATION:
+                return verificationProcessService.startApproveProcess(message.getMessage(), (DecodedTokenBean<ApprobationTokenBean>) token);
+            case RECOVER_PASSWORD:
+                return verificationProcessService.startRecoverPasswordProcess(message.getMessage(), (DecodedTokenBean<RecoverPasswordTokenBean>) token);
+            default:
+                throw new IllegalStateException(String.format("Unknown outbox process %s", message.getProcess()));
+        }
+    }
+    /**
+     * The seconds to wait before the next attempt, doubled on each failed attempt until {@link #backoffMaxSeconds}.
+     * @param attempts The number of failed attempts
+     * @return The seconds to wait
+     */
+    private long backoffSeconds(int attempts) {
+        return Math.min(backoffMaxSeconds, backoffInitialSeconds << Math.min(attempts - 1, 30));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.HASHING_PROP_QUEUE;
+import static cat.albirar.users.config.PropertiesCore.HASHING_PROP_THREADS;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import cat.albirar.users.registration.IPasswordHasher;
+import cat.albirar.users.utils.BoundedExecutorService;
+
+/**
+ * The {@link IPasswordHasher} that runs the {@link PasswordEncoder} on a pool of platform threads, as hashing is CPU bound.
+ * <p>The caller thread only waits for the result, so the number of hashes running at once is bounded by the pool and not by the number of request threads.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class PasswordHasher implements IPasswordHasher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordHasher.class);
+    
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    
+    @Value("${" + HASHING_PROP_THREADS + ":0}")
+    private int threads;
+    
+    @Value("${" + HASHING_PROP_QUEUE + ":100}")
+    private int queueSize;
+    
+    private ExecutorService executor;
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    private final AtomicInteger running = new AtomicInteger();
+    
+    private final AtomicLong rejected = new AtomicLong();
+    
+    /**
+     * Prepare the hashing pool.
+     */
+    @PostConstruct
+    public void init() {
+        if(threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if(queueSize < 0) {
+            throw new IllegalStateException(String.format("The hashing queue size should be zero or greater, but is %d", queueSize));
+        }
+        executor = BoundedExecutorService.newBoundedExecutor("password-hashing-", threads, queueSize, false);
+    }
+    /**
+     * Stop the hashing pool.
+     */
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return await(encodeAsync(rawPassword));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return await(matchesAsync(rawPassword, encodedPassword)).booleanValue();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<String> encodeAsync(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> matchesAsync(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueued() {
+        return queued.get();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRunning() {
+        return running.get();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+    /**
+     * Submit the indicated {@code hash} to the pool, keeping the counters.
+     * @param hash The hash to run
+     * @return The future result
+     * @throws RejectedExecutionException If the pool and his queue are full
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> hash) {
+        queued.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queued.decrementAndGet();
+                running.incrementAndGet();
+                try {
+                    return hash.get();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }, executor);
+        } catch(RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            LOGGER.warn("Password hashing rejected, {} waiting and {} running", queued.get(), running.get());
+            throw e;
+        }
+    }
+    /**
+     * Wait for the result of a hash.
+     * @param future The future result
+     * @return The result
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalStateException("Cannot hash the password", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.verification.ITokenManager.CLAIM_ORIGIN_CHANNEL;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean.RecoverPasswordTokenBeanBuilder;
+import cat.albirar.users.tokens.ITokenClassCodec;
+import cat.albirar.users.tokens.models.AbstractTokenBean.AbstractTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ETokenClass;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+
+/**
+ * The codec for {@link RecoverPasswordTokenBean}, with the origin channel type as claim.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class RecoverPasswordTokenCodec implements ITokenClassCodec<RecoverPasswordTokenBean> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ETokenClass getTokenClass() {
+        return ETokenClass.RECOVER_PASSWORD;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<RecoverPasswordTokenBean> getTokenBeanClass() {
+        return RecoverPasswordTokenBean.class;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JwtBuilder encodeClaims(JwtBuilder jwts, RecoverPasswordTokenBean tokenBean) {
+        return jwts.claim(CLAIM_ORIGIN_CHANNEL, tokenBean.getOrigin().name());
+    }
+    /**
+     * {@inheritDoc}
+     * The {@value cat.albirar.users.verification.ITokenManager#CLAIM_ORIGIN_CHANNEL} claim should to be {@link ECommunicationChannelType#EMAIL} or {@link ECommunicationChannelType#MOBILE}.
+     */
+    @Override
+    public Optional<RecoverPasswordTokenBean> decodeClaims(Claims body, Consumer<AbstractTokenBeanBuilder<?, ?>> common) {
+        String origin;
+        ECommunicationChannelType channelType;
+        RecoverPasswordTokenBeanBuilder<?, ?> builder;
+        
+        origin = body.get(CLAIM_ORIGIN_CHANNEL, String.class);
+        if(ECommunicationChannelType.EMAIL.name().equals(origin)) {
+            channelType = ECommunicationChannelType.EMAIL;
+        } else if(ECommunicationChannelType.MOBILE.name().equals(origin)) {
+            channelType = ECommunicationChannelType.MOBILE;
+        } else {
+            return Optional.empty();
+        }
+        builder = RecoverPasswordTokenBean.builder();
+        common.accept(builder);
+        return Optional.of(builder
+                .origin(channelType)
+                .build()
+                );
+    }
+}
@@ -18,12 +18,22 @@
  */
 package cat.albirar.users.services;
 
+import static cat.albirar.users.config.PropertiesCore.REGISTRATION_PROP_ASYNC_QUEUE;
+import static cat.albirar.users.config.PropertiesCore.REGISTRATION_PROP_ASYNC_THREADS;
+import static cat.albirar.users.config.PropertiesCore.REGISTRATION_PROP_ASYNC_VIRTUAL;
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_COALESCING_SIZE;
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_COALESCING_WINDOW;
+
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Locale;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.ValidationException;
 
 import org.slf4j.Logger;
@@ -32,30 +42,43 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.dao.DuplicateKeyException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
-import cat.albirar.communications.channels.models.LocalizableAttributesCommunicationChannelBean;
 import cat.albirar.communications.channels.models.ContactBean;
+import cat.albirar.communications.channels.models.LocalizableAttributesCommunicationChannelBean;
 import cat.albirar.users.models.auth.AuthorizationBean;
 import cat.albirar.users.models.auth.ERole;
+import cat.albirar.users.models.outbox.EOutboxProcess;
 import cat.albirar.users.models.registration.RegistrationProcessResultBean;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.models.web.ProcessResultBean;
+import cat.albirar.users.registration.IPasswordHasher;
 import cat.albirar.users.registration.IRegistrationService;
+import cat.albirar.users.registration.IUserAvailability;
 import cat.albirar.users.repos.IUserRepo;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.utils.BoundedExecutorService;
+import cat.albirar.users.utils.SingleFlight;
+import cat.albirar.users.verification.IMessageOutbox;
+import cat.albirar.users.verification.ITokenEpochs;
+import cat.albirar.users.verification.ITokenLedger;
 import cat.albirar.users.verification.ITokenManager;
-import cat.albirar.users.verification.IVerificationProcessService;
 
 /**
  * The registration service implementation.
  * Allow to register users and to update or delete users.
+ * <p>The new user and his verification message, on {@link IMessageOutbox outbox}, are saved on the same transaction if a {@link PlatformTransactionManager} is configured.</p>
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
@@ -67,20 +90,85 @@ public class RegistrationService implements IRegistrationService {
     @Value("${" + VERIFICATION_MODE_PROPERTY_NAME + ":NONE}")
     private EVerificationProcess verification;
     
+    @Value("${" + REGISTRATION_PROP_ASYNC_THREADS + ":0}")
+    private int asyncThreads;
+    
+    @Value("${" + REGISTRATION_PROP_ASYNC_QUEUE + ":1000}")
+    private int asyncQueue;
+    
+    @Value("${" + REGISTRATION_PROP_ASYNC_VIRTUAL + ":true}")
+    private boolean asyncVirtual;
+    
+    @Value("${" + TOKEN_PROP_COALESCING_WINDOW + ":5000}")
+    private long coalescingWindow;
+    
+    @Value("${" + TOKEN_PROP_COALESCING_SIZE + ":1000}")
+    private int coalescingSize;
+    
     @Autowired
     private IUserRepo userRepo;
     
     @Autowired
-    private IVerificationProcessService verificationProcessService;
+    private IUserAvailability userAvailability;
+    
+    @Autowired
+    private IMessageOutbox messageOutbox;
+    
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
     
     @Autowired
     private ITokenManager tokenManager;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private ITokenLedger tokenLedger;
+    
+    @Autowired
+    private ITokenEpochs tokenEpochs;
+    
+    @Autowired
+    private IPasswordHasher passwordHasher;
     
     @Autowired
     private ContactBean defaultSender;
+    
+    /**
+     * The bounded executor for the asynchronous operations.
+     * When full, the new operations are rejected instead of queued without limit.
+     */
+    private ExecutorService asyncExecutor;
+    
+    /**
+     * The template for the registration transaction, null if no {@link #transactionManager} is configured.
+     */
+    private TransactionTemplate transactionTemplate;
+    
+    /**
+     * The coalescing of verifications, shared by all the end-points.
+     */
+    private SingleFlight<String, Optional<ProcessResultBean>> verifications;
+    
+    /**
+     * Prepare the registration transaction, the executor for the asynchronous operations and the coalescing of verifications.
+     */
+    @PostConstruct
+    public void init() {
+        if(transactionManager != null) {
+            transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+        if(asyncThreads <= 0) {
+            asyncThreads = Runtime.getRuntime().availableProcessors();
+        }
+        asyncExecutor = BoundedExecutorService.newBoundedExecutor("registration-async-", asyncThreads, Math.max(0, asyncQueue), asyncVirtual);
+        verifications = new SingleFlight<>(coalescingWindow, coalescingSize);
+    }
+    /**
+     * Stop the asynchronous operations threads.
+     */
+    @PreDestroy
+    public void destroy() {
+        asyncExecutor.shutdown();
+    }
     /**
      * {@inheritDoc}
      */
@@ -107,22 +195,39 @@ public class RegistrationService implements IRegistrationService {
      */
     @Override
     public RegistrationProcessResultBean registerUser(ContactBean sender, String username, CommunicationChannelBean preferredChannel, Locale locale, String password) {
+        if(transactionTemplate == null) {
+            return enqueueVerification(sender, saveNewUser(username, preferredChannel, locale, password));
+        }
+        return transactionTemplate.execute(status -> enqueueVerification(sender, saveNewUser(username, preferredChannel, locale, password)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<RegistrationProcessResultBean> registerUserAsync(String username, CommunicationChannelBean preferredChannel, Locale locale, String password) {
+        return registerUserAsync(defaultSender, username, preferredChannel, locale, password);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<RegistrationProcessResultBean> registerUserAsync(ContactBean sender, String username, CommunicationChannelBean preferredChannel, Locale locale, String password) {
+        return CompletableFuture.supplyAsync(() -> registerUser(sender, username, preferredChannel, locale, password), asyncExecutor);
+    }
+    /**
+     * Insert the new user.
+     * <p>No previous existence checks are done, duplicates are detected by the repository unique constraints on the same round trip of insertion.</p>
+     * @param username The user name of new user
+     * @param preferredChannel The preferred channel of new user
+     * @param locale The preferred locale of new user
+     * @param password The password, can be null
+     * @return The saved user
+     * @throws DuplicateKeyException If {@code username} or {@code preferredChannel} exists in register
+     */
+    private UserBean saveNewUser(String username, CommunicationChannelBean preferredChannel, Locale locale, String password) {
         UserBean ub;
-        UserBean nUser;
-        RegistrationProcessResultBean result;
-        ProcessBean vBean;
-        String idVerification;
-        String token;
         LocalDateTime ldt;
         
-        // First, check duplicates
-        if(userRepo.existsByUsername(username)) {
-            throw new DuplicateKeyException(String.format("The username '%s' is in use", username));
-        }
-        if(userRepo.existsByPreferredChannel(preferredChannel)) {
-            throw new DuplicateKeyException(String.format("The %s '%s' is in use", preferredChannel.getChannelType().name().toLowerCase(), preferredChannel.getChannelId()));
-        }
-        
         ldt = LocalDateTime.now();
         ub = UserBean.builder()
                 .username(username)
@@ -136,147 +241,210 @@ public class RegistrationService implements IRegistrationService {
                 .password(password)
                 .build()
                 ;
-        nUser = userRepo.save(ub);
+        ub = userRepo.insert(ub);
+        userAvailability.add(ub);
+        return ub;
+    }
+    /**
+     * Enqueue the verification message, if any, of an already saved user.
+     * @param sender The sender of verification message
+     * @param nUser The saved user
+     * @return The registration result, with the id of the message on outbox
+     */
+    private RegistrationProcessResultBean enqueueVerification(ContactBean sender, UserBean nUser) {
+        ProcessBean vBean;
+        String idVerification;
+        DecodedTokenBean<VerificationTokenBean> token;
+        
         idVerification = null;
         token = null;
         if(verification != EVerificationProcess.NONE) {
-            // Start the verification process
-            token = tokenManager.encodeToken(tokenManager.generateVerificationTokenBean(nUser, verification).get());
+            // The verification message is delivered once committed
+            token = tokenManager.encodeTokenBean(tokenManager.generateVerificationTokenBean(nUser, verification).get(), nUser.getPreferredChannel().getChannelType());
             vBean = ProcessBean.builder()
                     .destination(ContactBean.builder()
-                            .channelBean(LocalizableAttributesCommunicationChannelBean.builderCopy(preferredChannel)
+                            .channelBean(LocalizableAttributesCommunicationChannelBean.builderCopy(nUser.getPreferredChannel())
                                     .build())
-                            .displayName(username)
-                            .preferredLocale(locale)
+                            .displayName(nUser.getUsername())
+                            .preferredLocale(nUser.getPreferredLocale())
                             .build())
                     .sender(sender.toBuilder().build())
-                    .token(token)
+                    .token(token.getToken())
                     .build()
                     ;
-            idVerification = verificationProcessService.startVerifyProcess(vBean);
+            idVerification = messageOutbox.enqueue(EOutboxProcess.VERIFICATION, vBean);
         }
         
-        result = RegistrationProcessResultBean.builder()
+        return RegistrationProcessResultBean.builder()
                 .id(idVerification)
                 .verificationProcess(verification)
                 .user(nUser)
-                .token(Optional.ofNullable(token))
+                .token(Optional.ofNullable(token).map(DecodedTokenBean::getToken))
                 .build()
                 ;
-        return result;
     }
     /**
      * {@inheritDoc}
      */
     @Override
     public Optional<Boolean> verifyUser(String token) {
-        UserBean usr;
-        Optional<UserBean> oUsr;
-        Optional<VerificationTokenBean> oTkBean;
-        VerificationTokenBean tkBean;
+        Optional<DecodedTokenBean<VerificationTokenBean>> oTkBean;
         
         LOGGER.debug("Verifying string token {}", token);
-        oTkBean = tokenManager.decodeToken(VerificationTokenBean.class, token);
+        oTkBean = tokenManager.decodeTokenBean(VerificationTokenBean.class, token);
         
         if(oTkBean.isPresent()) {
-            tkBean = oTkBean.get();
-            LOGGER.debug("Verifying token {}", tkBean);
-            oUsr = userRepo.findById(tkBean.getIdUser());
-            if(!oUsr.isPresent()) {
-                LOGGER.warn("The user at token {} is not found, cannot be verified!", token);
-                return Optional.empty();
-            }
-            usr = oUsr.get();
-            LOGGER.debug("Token {} contains user {}", tkBean, usr);
-            if(usr.getVerified() == null) {
-                usr.setVerified(LocalDateTime.now());
-                if(tkBean.getProcess() != EVerificationProcess.TWO_STEP) {
-                    usr.setRegistered(usr.getVerified());
-                }
-                usr.setEnabled(usr.getRegistered() != null);
-                userRepo.save(usr);
-                LOGGER.debug("User {} IS verified!", usr);
-                return Optional.of(true);
-            }
-        } else {
-            LOGGER.warn("The string token {} cannot be decoded, no verification can be made!", token);
+            return verifyUser(oTkBean.get());
         }
+        LOGGER.warn("The string token {} cannot be decoded, no verification can be made!", token);
         return Optional.of(false);
     }
     /**
      * {@inheritDoc}
      */
     @Override
+    public CompletableFuture<Optional<Boolean>> verifyUserAsync(String token) {
+        return CompletableFuture.supplyAsync(() -> verifyUser(token), asyncExecutor);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Boolean> verifyUser(DecodedTokenBean<VerificationTokenBean> token) {
+        VerificationTokenBean tkBean;
+        
+        tkBean = token.getTokenBean();
+        LOGGER.debug("Verifying token {}", tkBean);
+        // Check and update on a single round trip, concurrent verifications cannot both succeed
+        if(userRepo.markVerified(tkBean.getIdUser(), LocalDateTime.now(), tkBean.getProcess() != EVerificationProcess.TWO_STEP)) {
+            consumeTransitionToken(tkBean);
+            LOGGER.debug("User {} IS verified!", tkBean.getIdUser());
+            return Optional.of(true);
+        }
+        // Only on failure, to distinguish the unknown users
+        if(!userRepo.existsById(tkBean.getIdUser())) {
+            LOGGER.warn("The user at token {} is not found, cannot be verified!", token.getToken());
+            return Optional.empty();
+        }
+        LOGGER.debug("The user {} was verified before, cannot process!", tkBean.getIdUser());
+        return Optional.of(false);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<ProcessResultBean> verifyUserCoalesced(DecodedTokenBean<VerificationTokenBean> token) {
+        VerificationTokenBean tkBean;
+        
+        tkBean = token.getTokenBean();
+        return verifications.execute(tkBean.getTokenId(), () -> verifyUser(token)
+                .map(result -> ProcessResultBean.builder()
+                        .tokenId(tkBean.getTokenId())
+                        .date(LocalDateTime.now())
+                        .result(result.booleanValue())
+                        .lastStep(tkBean.getProcess() == EVerificationProcess.ONE_STEP)
+                        .build()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public Optional<Boolean> approveUser(String token) {
-        UserBean usr;
-        Optional<UserBean> oUsr;
-        Optional<ApprobationTokenBean> oTkBean;
-        ApprobationTokenBean tkBean;
+        Optional<DecodedTokenBean<ApprobationTokenBean>> oTkBean;
         
         LOGGER.debug("Approving string token {}", token);
-        oTkBean = tokenManager.decodeToken(ApprobationTokenBean.class, token);
+        oTkBean = tokenManager.decodeTokenBean(ApprobationTokenBean.class, token);
         
         if(oTkBean.isPresent()) {
-            tkBean = oTkBean.get();
-            LOGGER.debug("Approving token {}", tkBean);
-            oUsr = userRepo.findById(tkBean.getIdUser());
-            if(!oUsr.isPresent()) {
-                LOGGER.warn("The user at token {} is not found, cannot be approved!", token);
-                return Optional.empty();
-            }
-            usr = oUsr.get();
-            LOGGER.debug("Token {} contains user {}", tkBean, usr);
-            if(usr.getVerified() != null) {
-                if(usr.getRegistered() == null) {
-                    usr.setRegistered(LocalDateTime.now());
-                    usr.setEnabled(true);
-                    userRepo.save(usr);
-                    LOGGER.debug("User {} IS approved!", usr);
-                    return Optional.of(true);
-                } else {
-                    LOGGER.warn("The user was approbed before, cannot process!", tkBean);
-                }
-            } else {
-                LOGGER.warn("The user was not verifyied before, cannot process!", tkBean);
-            }
-        } else {
-            LOGGER.warn("The string token {} cannot be decoded, no approbation can be made!", token);
+            return approveUser(oTkBean.get());
         }
+        LOGGER.warn("The string token {} cannot be decoded, no approbation can be made!", token);
         return Optional.of(false);
     }
     /**
      * {@inheritDoc}
      */
     @Override
+    public Optional<Boolean> approveUser(DecodedTokenBean<ApprobationTokenBean> token) {
+        ApprobationTokenBean tkBean;
+        
+        tkBean = token.getTokenBean();
+        LOGGER.debug("Approving token {}", tkBean);
+        // Check and update on a single round trip, concurrent approbations cannot both succeed
+        if(userRepo.markApproved(tkBean.getIdUser(), LocalDateTime.now())) {
+            consumeTransitionToken(tkBean);
+            LOGGER.debug("User {} IS approved!", tkBean.getIdUser());
+            return Optional.of(true);
+        }
+        // Only on failure, to distinguish the unknown users
+        if(!userRepo.existsById(tkBean.getIdUser())) {
+            LOGGER.warn("The user at token {} is not found, cannot be approved!", token.getToken());
+            return Optional.empty();
+        }
+        LOGGER.warn("The user {} was not verified or was approved before, cannot process!", tkBean.getIdUser());
+        return Optional.of(false);
+    }
+    /**
+     * Record on ledger the token of an already made verification or approbation.
+     * <p>The transition itself is guarded by the state of user, so the token is recorded after it, and a refused transition doesn't waste the token.</p>
+     * @param tkBean The token
+     */
+    private void consumeTransitionToken(AbstractTokenBean tkBean) {
+        if(!tokenLedger.consume(tkBean)) {
+            LOGGER.warn("The token {} was consumed before the transition of user {}", tkBean, tkBean.getIdUser());
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public Optional<Boolean> recoverPassword(String token, String newPassword) {
-        Optional<RecoverPasswordTokenBean> oTk;
-        RecoverPasswordTokenBean tk;
-        Optional<UserBean> oUsr;
+        Optional<DecodedTokenBean<RecoverPasswordTokenBean>> oTk;
         
         LOGGER.debug("Recover password string token {}", token);
         
-        oTk = tokenManager.decodeToken(RecoverPasswordTokenBean.class, token);
+        oTk = tokenManager.decodeTokenBean(RecoverPasswordTokenBean.class, token);
         
         if(oTk.isPresent()) {
-            tk = oTk.get();
-            LOGGER.debug("Recover password token {}", tk);
-            oUsr = userRepo.findById(tk.getIdUser());
-            
-            if(oUsr.isPresent()) {
-                if(oUsr.get().getRegistered() != null) {
-                    oUsr.get().setPassword(passwordEncoder.encode(newPassword));
-                    userRepo.save(oUsr.get());
-                    LOGGER.info("Password changed successfully for user {} with id {}", oUsr.get().getUsername(), tk.getIdUser());
-                    return Optional.of(true);
-                } else {
-                    LOGGER.debug("Cannot change password for unregistered user {} with id {}", oUsr.get().getUsername(), oUsr.get().getId());
+            return recoverPassword(oTk.get(), newPassword);
+        }
+        return Optional.of(false);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Optional<Boolean>> recoverPasswordAsync(String token, String newPassword) {
+        return CompletableFuture.supplyAsync(() -> recoverPassword(token, newPassword), asyncExecutor);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Boolean> recoverPassword(DecodedTokenBean<RecoverPasswordTokenBean> token, String newPassword) {
+        RecoverPasswordTokenBean tk;
+        Optional<UserBean> oUsr;
+        
+        tk = token.getTokenBean();
+        LOGGER.debug("Recover password token {}", tk);
+        oUsr = userRepo.findById(tk.getIdUser());
+        
+        if(oUsr.isPresent()) {
+            if(oUsr.get().getRegistered() != null) {
+                if(!tokenLedger.consume(tk)) {
                     return Optional.of(false);
                 }
+                userRepo.patch(tk.getIdUser(), UserPatchBean.builder().password(passwordHasher.encode(newPassword)).build());
+                tokenEpochs.invalidateTokens(tk.getIdUser());
+                LOGGER.info("Password changed successfully for user {} with id {}", oUsr.get().getUsername(), tk.getIdUser());
+                return Optional.of(true);
+            } else {
+                LOGGER.debug("Cannot change password for unregistered user {} with id {}", oUsr.get().getUsername(), oUsr.get().getId());
+                return Optional.of(false);
             }
-            LOGGER.warn("The user with id {} at token {} is not found, cannot recover password!", tk.getIdUser(), token);
-            return Optional.empty();
         }
-        return Optional.of(false);
+        LOGGER.warn("The user with id {} at token {} is not found, cannot recover password!", tk.getIdUser(), token.getToken());
+        return Optional.empty();
     }
     /**
      * {@inheritDoc}
@@ -319,20 +487,24 @@ public class RegistrationService implements IRegistrationService {
     public boolean updateUser(UserBean user) {
         Optional<UserBean> oUsr;
         UserBean aUser;
+        Set<String> changes;
         
         oUsr = userRepo.findById(user.getId());
         if(oUsr.isPresent()) {
-            // Check for equals, test password with passwordEncoder and sort authorities
-            if(!equalsUsers(oUsr.get(), user)) {
-                aUser = oUsr.get();
+            aUser = oUsr.get();
+            // The password is changed only by changePassword, so profile updates never hash anything
+            changes = user.changedFields(aUser);
+            changes.remove(UserBean.FIELD_PASSWORD);
+            if(!changes.isEmpty()) {
                 // Only updates on registered users...
                 if(aUser.getRegistered() != null) {
                     // No changes can be made on created, verified and registered timestamps
-                    if(aUser.getRegistered().equals(user.getRegistered())
-                            && aUser.getVerified().equals(user.getVerified())
-                            && aUser.getCreated().equals(user.getCreated())) {
-                        // Update
-                        aUser = userRepo.save(user.toBuilder().password(passwordEncoder.encode(user.getPassword())).build());
+                    if(!changes.contains(UserBean.FIELD_REGISTERED)
+                            && !changes.contains(UserBean.FIELD_VERIFIED)
+                            && !changes.contains(UserBean.FIELD_CREATED)) {
+                        // Update, keeping the saved hash
+                        aUser = userRepo.save(user.toBuilder().password(aUser.getPassword()).build());
+                        userAvailability.add(aUser);
                         return true;
                     }
                     throw new IllegalArgumentException(String.format("No changes can be made to registered date or verified date or created date for user id %s!", user.getId()));
@@ -344,23 +516,28 @@ public class RegistrationService implements IRegistrationService {
         throw new DataRetrievalFailureException(String.format("No user with %s id was found", user.getId()));
     }
     /**
-     * Check equality for two users in the context of update.
-     * @param saved The saved (original) user
-     * @param update The update (new data) user
-     * @return true if equals and false if not
+     * {@inheritDoc}
      */
-    private boolean equalsUsers(UserBean saved, UserBean update) {
-        if(!passwordEncoder.matches(update.getPassword(), saved.getPassword())) {
-            return false;
+    @Override
+    public boolean changePassword(String idUser, String currentPassword, String newPassword) {
+        Optional<UserBean> oUsr;
+        UserBean aUser;
+        
+        oUsr = userRepo.findById(idUser);
+        if(oUsr.isPresent()) {
+            aUser = oUsr.get();
+            if(aUser.getRegistered() != null) {
+                if(!passwordHasher.matches(currentPassword, aUser.getPassword())) {
+                    LOGGER.debug("The current password doesn't match for user {} with id {}, password not changed", aUser.getUsername(), idUser);
+                    return false;
+                }
+                userRepo.patch(idUser, UserPatchBean.builder().password(passwordHasher.encode(newPassword)).build());
+                tokenEpochs.invalidateTokens(idUser);
+                LOGGER.info("Password changed successfully for user {} with id {}", aUser.getUsername(), idUser);
+                return true;
+            }
+            throw new IllegalStateException(String.format("The user with id %s is not yet validated, cannot change the password!", idUser));
         }
-        return saved.toBuilder()
-                    .password("XXX")
-                    .authorities(saved.getAuthorities().stream().sorted().collect(Collectors.toList()))
-                    .build()
-                .equals(update.toBuilder()
-                        .password("XXX")
-                        .authorities(update.getAuthorities().stream().sorted().collect(Collectors.toList()))
-                        .build()
-                );
+        throw new DataRetrievalFailureException(String.format("No user with %s id was found", idUser));
     }
 }
@@ -24,26 +24,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 import cat.albirar.users.repos.IUserRepo;
 
 /**
  * The user service to provide search for users.
+ * <p>Also re-hashes the password of users on successful login, if hashed with a weaker strength than the current one (see {@link PasswordEncoder#upgradeEncoding(String)}).</p>
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
 @Component
-public class SpringSecurityUserService implements UserDetailsService {
+public class SpringSecurityUserService implements UserDetailsService, UserDetailsPasswordService {
     private static final Logger LOGGER = LoggerFactory.getLogger(SpringSecurityUserService.class);
     
     @Autowired
     private IUserRepo userRepo;
+    
     /**
      * {@inheritDoc}
      */
@@ -52,6 +57,7 @@ public class SpringSecurityUserService implements UserDetailsService {
         Optional<UserBean> oUsr;
         
         if(StringUtils.hasText(username)) {
+            // Always from repository, the user can be registered on another instance and not yet on the users filter
             oUsr = userRepo.findByUsername(username);
             if(!oUsr.isPresent()) {
                 // User not found
@@ -67,4 +73,25 @@ public class SpringSecurityUserService implements UserDetailsService {
         }
         throw new UsernameNotFoundException("Username cannot be null or blank string");
     }
+    /**
+     * {@inheritDoc}
+     * <p>The password is the same, so the issued tokens are kept valid. Any failure is logged but doesn't fail the login, the re-hash is tried again on next login.</p>
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Optional<UserBean> oUsr;
+        
+        try {
+            oUsr = (user instanceof UserBean ? Optional.of((UserBean)user) : userRepo.findByUsername(user.getUsername()));
+            if(oUsr.isPresent()) {
+                LOGGER.info("Password of user '{}' re-hashed with the current strength", user.getUsername());
+                userRepo.patch(oUsr.get().getId(), UserPatchBean.builder().password(newPassword).build());
+                return oUsr.get().toBuilder().password(newPassword).build();
+            }
+            LOGGER.warn("User with username '{}' not found, password not re-hashed", user.getUsername());
+        } catch(RuntimeException e) {
+            LOGGER.error("Cannot re-hash the password of user '{}'", user.getUsername(), e);
+        }
+        return user;
+    }
 }
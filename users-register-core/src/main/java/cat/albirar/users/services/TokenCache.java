@@ -0,0 +1,179 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_CACHE_SIZE;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.verification.ITokenCache;
+
+/**
+ * The in-process {@link ITokenCache}, a LRU map bounded by {@value PropertiesCore#TOKEN_PROP_CACHE_SIZE} entries.
+ * <p>Keys are the SHA-256 digest of the encoded token, so the size of each entry is fixed and the tokens themselves are not retained.
+ * Expired entries are removed when found on lookup and, anyway, the least recently used are evicted when the cache is full.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class TokenCache implements ITokenCache {
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    
+    private final int maxSize;
+    private final Map<ByteBuffer, AbstractTokenBean> entries;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    
+    /**
+     * Constructor for the indicated {@code maxSize}.
+     * @param maxSize The maximum number of entries, zero or negative to disable the cache
+     */
+    public TokenCache(@Value("${" + TOKEN_PROP_CACHE_SIZE + ":0}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<ByteBuffer, AbstractTokenBean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, AbstractTokenBean> eldest) {
+                return size() > TokenCache.this.maxSize;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<AbstractTokenBean> get(String token) {
+        ByteBuffer key;
+        AbstractTokenBean tokenBean;
+        
+        if(!isEnabled()) {
+            return Optional.empty();
+        }
+        key = digest(token);
+        synchronized (entries) {
+            tokenBean = entries.get(key);
+            if(tokenBean != null && !tokenBean.getExpire().isAfter(LocalDateTime.now())) {
+                entries.remove(key);
+                tokenBean = null;
+            }
+        }
+        if(tokenBean == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        // A copy, beans are mutable
+        return Optional.of(tokenBean.toBuilder().build());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String token, AbstractTokenBean tokenBean) {
+        ByteBuffer key;
+        AbstractTokenBean copy;
+        
+        if(isEnabled()) {
+            key = digest(token);
+            copy = tokenBean.toBuilder().build();
+            synchronized (entries) {
+                entries.put(key, copy);
+            }
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidate(String token) {
+        ByteBuffer key;
+        
+        if(isEnabled()) {
+            key = digest(token);
+            synchronized (entries) {
+                entries.remove(key);
+            }
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    private ByteBuffer digest(String token) {
+        return ByteBuffer.wrap(DIGESTS.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+}
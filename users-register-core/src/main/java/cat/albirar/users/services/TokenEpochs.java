@@ -0,0 +1,161 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_EPOCHS_REFRESH;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.models.tokens.TokenEpochBean;
+import cat.albirar.users.repos.ITokenEpochRepo;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.verification.ITokenEpochs;
+
+/**
+ * The {@link ITokenEpochs} backed by {@link ITokenEpochRepo} with an in-memory table in front.
+ * <p>The table hold only the users with an epoch, so is small, and is:</p>
+ * <ul>
+ * <li>Loaded at start and reloaded on background each {@value PropertiesCore#TOKEN_PROP_EPOCHS_REFRESH} seconds, to get the changes made on other instances</li>
+ * <li>Updated on each {@link #invalidateTokens(String) invalidation} made on this instance, immediately</li>
+ * </ul>
+ * <p>So a token is checked without accessing the repository.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+@Validated
+public class TokenEpochs implements ITokenEpochs {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenEpochs.class);
+    
+    @Autowired
+    private ITokenEpochRepo tokenEpochRepo;
+    
+    @Value("${" + TOKEN_PROP_EPOCHS_REFRESH + ":60}")
+    private long refreshSeconds;
+    
+    private volatile Map<String, Long> epochs;
+    
+    private ScheduledExecutorService refresher;
+    
+    /**
+     * Load the epochs for first time and start the background refresh, if enabled.
+     */
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory;
+        
+        refresh();
+        if(refreshSeconds > 0) {
+            threadFactory = new CustomizableThreadFactory("token-epochs-refresh-");
+            threadFactory.setDaemon(true);
+            refresher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+    /**
+     * Stop the background refresh.
+     */
+    @PreDestroy
+    public void destroy() {
+        if(refresher != null) {
+            refresher.shutdown();
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long currentEpoch(String idUser) {
+        Long epoch;
+        
+        if(idUser == null) {
+            return 0L;
+        }
+        epoch = epochs.get(idUser);
+        return (epoch == null ? 0L : epoch.longValue());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCurrent(AbstractTokenBean token) {
+        return token.getTokenEpoch() >= currentEpoch(token.getIdUser());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long invalidateTokens(String idUser) {
+        long epoch;
+        
+        epoch = tokenEpochRepo.increment(idUser);
+        synchronized (this) {
+            // Not lost by a concurrent refresh
+            epochs.merge(idUser, epoch, Math::max);
+        }
+        LOGGER.info("Tokens of user {} invalidated, epoch is now {}", idUser, epoch);
+        return epoch;
+    }
+    /**
+     * Reload the epochs from repository.
+     * The epochs of this instance not yet on repository are kept, an epoch never goes back.
+     */
+    public synchronized void refresh() {
+        Map<String, Long> current;
+        Map<String, Long> m;
+        List<TokenEpochBean> all;
+        
+        try {
+            all = tokenEpochRepo.findAll();
+        } catch(RuntimeException e) {
+            LOGGER.error("Cannot load the token epochs, keeping the previous ones", e);
+            if(epochs == null) {
+                epochs = new ConcurrentHashMap<>();
+            }
+            return;
+        }
+        m = new ConcurrentHashMap<>();
+        for(TokenEpochBean te : all) {
+            m.put(te.getIdUser(), te.getEpoch());
+        }
+        current = epochs;
+        if(current != null) {
+            current.forEach((k, v) -> m.merge(k, v, Math::max));
+        }
+        epochs = m;
+        LOGGER.debug("Token epochs refreshed with {} users", m.size());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_LEDGER_EXPECTED;
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_LEDGER_FPP;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.utils.BloomFilter;
+import cat.albirar.users.verification.ITokenLedger;
+
+/**
+ * The {@link ITokenLedger} backed by {@link IConsumedTokenRepo} with an in-memory {@link BloomFilter} in front.
+ * <p>The filter hold the ids of the tokens consumed, loaded at start and updated on each consumption, so:</p>
+ * <ul>
+ * <li>A {@link #consume(AbstractTokenBean) consumption} is always recorded on repository atomically, that is the only check of replays; a false positive of filter never rejects a never used token</li>
+ * <li>A {@link #isConsumed(AbstractTokenBean) check} of a token that is not on the filter is answered without accessing the repository, the positives are confirmed on repository</li>
+ * </ul>
+ * <p>The false positive probability is configured by {@value PropertiesCore#TOKEN_PROP_LEDGER_FPP}.
+ * When the filter is saturated, it is rebuilt on a background thread with the tokens not yet expired.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+@Validated
+public class TokenLedger implements ITokenLedger {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenLedger.class);
+    
+    @Autowired
+    private IConsumedTokenRepo consumedTokenRepo;
+    
+    @Value("${" + TOKEN_PROP_LEDGER_EXPECTED + ":100000}")
+    private long expectedInsertions;
+    
+    @Value("${" + TOKEN_PROP_LEDGER_FPP + ":0.000001}")
+    private double fpp;
+    
+    private volatile BloomFilter filter;
+    
+    /**
+     * The filter that is being rebuilt, null if no rebuild is running.
+     * The consumptions are also recorded on it, so the tokens consumed while the rebuild is loading are not lost.
+     */
+    private volatile BloomFilter rebuilding;
+    
+    /**
+     * True if a rebuild was requested to {@link #rebuilder} and not yet finished, to coalesce the requests.
+     */
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    
+    /**
+     * The background thread that rebuilds the filter.
+     */
+    private ExecutorService rebuilder;
+    
+    /**
+     * Load the filter for first time and prepare the background rebuild.
+     */
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory;
+        
+        threadFactory = new CustomizableThreadFactory("token-ledger-rebuild-");
+        threadFactory.setDaemon(true);
+        rebuilder = Executors.newSingleThreadExecutor(threadFactory);
+        rebuild();
+    }
+    /**
+     * Stop the background rebuild.
+     */
+    @PreDestroy
+    public void destroy() {
+        rebuilder.shutdown();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean consume(AbstractTokenBean token) {
+        BloomFilter f;
+        BloomFilter next;
+        boolean r;
+        
+        // The filter can give false positives, the unique insert on repository is the real check
+        r = consumedTokenRepo.consume(ConsumedTokenBean.builder()
+                .tokenId(token.getTokenId())
+                .expire(token.getExpire())
+                .build()
+                );
+        // The rebuilding filter is read first, so a rebuild that ends meanwhile was loaded after this consumption
+        next = rebuilding;
+        if(next != null) {
+            next.put(token.getTokenId());
+        }
+        f = filter;
+        f.put(token.getTokenId());
+        if(!r) {
+            LOGGER.warn("The token {} was consumed before, replay rejected", token.getTokenId());
+        }
+        if(f.isSaturated() && rebuildPending.compareAndSet(false, true)) {
+            try {
+                rebuilder.execute(() -> {
+                    try {
+                        rebuild();
+                    } finally {
+                        rebuildPending.set(false);
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                rebuildPending.set(false);
+                LOGGER.warn("Cannot rebuild the consumed tokens filter, shutting down");
+            }
+        }
+        return r;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isConsumed(AbstractTokenBean token) {
+        return filter.mightContain(token.getTokenId()) && consumedTokenRepo.existsById(token.getTokenId());
+    }
+    /**
+     * Discard the expired tokens and build a new filter with the remaining ones.
+     * <p>Run on start and on the background thread; the consumptions go on meanwhile with the current filter.</p>
+     */
+    public synchronized void rebuild() {
+        BloomFilter current;
+        BloomFilter f;
+        List<String> ids;
+        
+        current = filter;
+        // The tokens not yet expired are at most the consumed ones on the current filter
+        f = new BloomFilter(Math.max(expectedInsertions, (current == null ? 0L : current.getInsertions() * 2L)), fpp);
+        rebuilding = f;
+        try {
+            consumedTokenRepo.deleteExpired();
+            ids = consumedTokenRepo.findAllActiveIds();
+        } catch(RuntimeException e) {
+            if(current != null) {
+                LOGGER.error("Cannot load the consumed tokens, keeping the current filter", e);
+                rebuilding = null;
+                return;
+            }
+            LOGGER.error("Cannot load the consumed tokens, the filter starts empty", e);
+            ids = Collections.emptyList();
+        }
+        for(String id : ids) {
+            f.put(id);
+        }
+        filter = f;
+        rebuilding = null;
+        LOGGER.debug("Consumed tokens filter rebuilt with {} tokens", ids.size());
+    }
+}
@@ -19,43 +19,62 @@
 package cat.albirar.users.services;
 
 import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_EXPIRE;
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_INTROSPECTION_THREADS;
 import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_ISSUER;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import javax.crypto.SecretKey;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.constraints.NotBlank;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 
 import cat.albirar.communications.channels.models.ECommunicationChannelType;
-import cat.albirar.users.models.tokens.AbstractTokenBean;
-import cat.albirar.users.models.tokens.AbstractTokenBean.AbstractTokenBeanBuilder;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
-import cat.albirar.users.models.tokens.ETokenClass;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
+import cat.albirar.users.models.tokens.TokenIntrospectionBean;
 import cat.albirar.users.models.users.UserBean;
-import cat.albirar.users.utils.LocaleUtils;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.ITokenClassCodec;
+import cat.albirar.users.tokens.JwsTokenVerifier;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.AbstractTokenBean.AbstractTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.verification.IJwsKeyRing;
+import cat.albirar.users.verification.ITokenCache;
+import cat.albirar.users.verification.ITokenEpochs;
+import cat.albirar.users.verification.ITokenLedger;
 import cat.albirar.users.verification.ITokenManager;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtBuilder;
-import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.UnsupportedJwtException;
-import io.jsonwebtoken.security.SignatureException;
 
 /**
  * A class to manage tokens.
@@ -65,7 +84,10 @@ import io.jsonwebtoken.security.SignatureException;
 @Component
 @Validated
 public class TokenManager implements ITokenManager {
-
+    /**
+     * The minimum number of tokens for each introspection task, smaller batches are introspected on the calling thread.
+     */
+    private static final int INTROSPECTION_CHUNK_MIN = 32;
     
     @Value("${" + TOKEN_PROP_ISSUER + "}")
     private String issuer;
@@ -73,44 +95,235 @@ public class TokenManager implements ITokenManager {
     @Value("${" + TOKEN_PROP_EXPIRE + "}")
     private int daysToExpire;
     
+    @Value("${" + TOKEN_PROP_INTROSPECTION_THREADS + ":0}")
+    private int introspectionThreads;
+    
+    @Autowired
+    private IJwsKeyRing jwsKeyRing;
+    
+    @Autowired
+    private ITokenCache tokenCache;
+    
+    @Autowired
+    private ITokenEpochs tokenEpochs;
+    
+    @Autowired
+    private CompactTokenCodec compactTokenCodec;
+    
     @Autowired
-    private SecretKey jwsSecretKey;
+    private ITokenLedger tokenLedger;
+    
+    @Autowired
+    private List<ITokenClassCodec<?>> tokenClassCodecs;
+    
+    /**
+     * The codec of each token class, looked up on each encode and decode.
+     */
+    private Map<ETokenClass, ITokenClassCodec<?>> codecs;
+    
+    /**
+     * The verifier of JWS tokens, with the keys of {@link #jwsKeyRing} and the {@link #codecs}.
+     */
+    private JwsTokenVerifier jwsTokenVerifier;
+    
+    /**
+     * The bounded pool for {@link #introspectTokens(List)}.
+     * When the queue is full the calling thread introspects the tokens itself, so the pending work is never unbounded.
+     */
+    private ThreadPoolExecutor introspectionExecutor;
+    
+    /**
+     * Prepare the decoding state once, instead of on every decode, and the introspection pool.
+     */
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory;
+        
+        codecs = new EnumMap<>(ETokenClass.class);
+        for(ITokenClassCodec<?> codec : tokenClassCodecs) {
+            if(codecs.putIfAbsent(codec.getTokenClass(), codec) != null) {
+                throw new IllegalStateException(String.format("More than one codec for token class %s", codec.getTokenClass()));
+            }
+        }
+        jwsTokenVerifier = new JwsTokenVerifier(issuer, jwsKeyRing::findKey, codecs.values());
+        if(introspectionThreads <= 0) {
+            introspectionThreads = Runtime.getRuntime().availableProcessors();
+        }
+        threadFactory = new CustomizableThreadFactory("token-introspection-");
+        threadFactory.setDaemon(true);
+        introspectionExecutor = new ThreadPoolExecutor(introspectionThreads, introspectionThreads
+                , 60L, TimeUnit.SECONDS
+                , new ArrayBlockingQueue<>(introspectionThreads * 4)
+                , threadFactory
+                , new ThreadPoolExecutor.CallerRunsPolicy());
+        introspectionExecutor.allowCoreThreadTimeOut(true);
+    }
     
     /**
      * {@inheritDoc}
      */
     @Override
     public <T extends AbstractTokenBean> Optional<T> decodeToken(Class<T> tokenClass, String token) {
-        T tkBean;
-        Claims body;
-
-        try {
-            body = decodeClaims(token);
-            if(isValidClaims(body)) {
-                tkBean = claimsToBean(tokenClass, body);
-                return Optional.of(tkBean);
+        return decodeTokenBean(tokenClass, token).map(DecodedTokenBean::getTokenBean);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends AbstractTokenBean> Optional<DecodedTokenBean<T>> decodeTokenBean(Class<T> tokenClass, String token) {
+        return decodeTokenResult(tokenClass, token).toDecodedTokenBean();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends AbstractTokenBean> TokenDecodeResultBean<T> decodeTokenResult(Class<T> tokenClass, String token) {
+        return decodeAny(token).narrow(tokenClass);
+    }
+    /**
+     * Decode the {@code token} of any format and token class, from {@link #tokenCache} if decoded before.
+     * The well signed tokens are added to {@link #tokenCache} and then checked against the {@link #tokenEpochs epoch} of his user, that can change at any time.
+     * @param token The token
+     * @return The result
+     */
+    private TokenDecodeResultBean<AbstractTokenBean> decodeAny(String token) {
+        Optional<AbstractTokenBean> cached;
+        TokenDecodeResultBean<AbstractTokenBean> result;
+        
+        cached = tokenCache.get(token);
+        if(cached.isPresent()) {
+            result = TokenDecodeResultBean.<AbstractTokenBean>builder()
+                    .status(ETokenDecodeStatus.VALID)
+                    .token(token)
+                    .tokenBean(cached.get())
+                    .build()
+                    ;
+        } else {
+            result = decodeNotCached(token);
+            if(result.isValid()) {
+                tokenCache.put(token, result.getTokenBean());
             }
         }
-        catch(ClassCastException | ExpiredJwtException | UnsupportedJwtException | MalformedJwtException | SignatureException | IllegalArgumentException e) {
-            // Nothing to do, an empty is returned
+        if(result.isValid() && !tokenEpochs.isCurrent(result.getTokenBean())) {
+            return TokenDecodeResultBean.<AbstractTokenBean>builder()
+                    .status(ETokenDecodeStatus.REVOKED)
+                    .token(token)
+                    .build()
+                    ;
+        }
+        return result;
+    }
+    /**
+     * Decode the {@code token} of any format and token class.
+     * The compact tokens are decoded by {@link #compactTokenCodec} and the JWS by {@link #jwsTokenVerifier}.
+     * @param token The token
+     * @return The result
+     */
+    private TokenDecodeResultBean<AbstractTokenBean> decodeNotCached(String token) {
+        if(compactTokenCodec.isCompact(token)) {
+            return compactTokenCodec.decodeResult(token);
         }
-        return Optional.empty();
+        return jwsTokenVerifier.decode(token);
+    }
+    /**
+     * Stop the introspection threads.
+     */
+    @PreDestroy
+    public void destroy() {
+        introspectionExecutor.shutdown();
     }
     /**
      * {@inheritDoc}
      */
     @Override
-    public Optional<String> decodeUserId(@NotBlank String token) {
-        Claims body;
-
-        try {
-            body = decodeClaims(token);
-            return Optional.ofNullable(body.get(CLAIM_USERID, String.class));
+    public List<TokenIntrospectionBean> introspectTokens(List<String> tokens) {
+        List<String> lTokens;
+        int chunk;
+        int n;
+        List<CompletableFuture<List<TokenIntrospectionBean>>> futures;
+        List<TokenIntrospectionBean> result;
+        
+        lTokens = new ArrayList<>(tokens);
+        if(lTokens.size() <= INTROSPECTION_CHUNK_MIN) {
+            return introspect(lTokens);
         }
-        catch(ClassCastException | ExpiredJwtException | UnsupportedJwtException | MalformedJwtException | SignatureException | IllegalArgumentException e) {
-            // Nothing to do, an empty is returned
+        chunk = Math.max(INTROSPECTION_CHUNK_MIN, (lTokens.size() + introspectionThreads - 1) / introspectionThreads);
+        futures = new ArrayList<>();
+        for(n = 0; n < lTokens.size(); n += chunk) {
+            futures.add(introspectAsync(lTokens.subList(n, Math.min(n + chunk, lTokens.size()))));
         }
-        return Optional.empty();
+        result = new ArrayList<>(lTokens.size());
+        for(CompletableFuture<List<TokenIntrospectionBean>> f : futures) {
+            result.addAll(f.join());
+        }
+        return result;
+    }
+    /**
+     * Introspect the {@code tokens} on {@link #introspectionExecutor}.
+     * @param tokens The tokens
+     * @return The future introspection of each token
+     */
+    private CompletableFuture<List<TokenIntrospectionBean>> introspectAsync(List<String> tokens) {
+        return CompletableFuture.supplyAsync(() -> introspect(tokens), introspectionExecutor);
+    }
+    /**
+     * Introspect the {@code tokens} on the calling thread.
+     * @param tokens The tokens
+     * @return The introspection of each token
+     */
+    private List<TokenIntrospectionBean> introspect(List<String> tokens) {
+        List<TokenIntrospectionBean> result;
+        TokenDecodeResultBean<AbstractTokenBean> decoded;
+        
+        result = new ArrayList<>(tokens.size());
+        for(String token : tokens) {
+            if(StringUtils.hasText(token)) {
+                decoded = decodeAny(token);
+            } else {
+                decoded = TokenDecodeResultBean.<AbstractTokenBean>builder()
+                        .status(ETokenDecodeStatus.MALFORMED)
+                        .token(token)
+                        .build()
+                        ;
+            }
+            if(decoded.isValid() && tokenLedger.isConsumed(decoded.getTokenBean())) {
+                // Single-use token already used
+                decoded = TokenDecodeResultBean.<AbstractTokenBean>builder()
+                        .status(ETokenDecodeStatus.CONSUMED)
+                        .token(token)
+                        .build()
+                        ;
+            }
+            if(decoded.isValid()) {
+                result.add(TokenIntrospectionBean.builder()
+                        .token(token)
+                        .status(decoded.getStatus())
+                        .valid(true)
+                        .tokenClass(decoded.getTokenBean().getTokenClass())
+                        .idUser(decoded.getTokenBean().getIdUser())
+                        .expire(decoded.getTokenBean().getExpire())
+                        .build()
+                        );
+            } else {
+                result.add(TokenIntrospectionBean.builder()
+                        .token(token)
+                        .status(decoded.getStatus())
+                        .valid(false)
+                        .build()
+                        );
+            }
+        }
+        return result;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<String> decodeUserId(@NotBlank String token) {
+        if(compactTokenCodec.isCompact(token)) {
+            return compactTokenCodec.decode(token).map(AbstractTokenBean::getIdUser);
+        }
+        return jwsTokenVerifier.decodeUserId(token);
     }
     /**
      * {@inheritDoc}
@@ -118,9 +331,16 @@ public class TokenManager implements ITokenManager {
     @Override
     public String encodeToken(AbstractTokenBean tokenBean) {
         JwtBuilder jBuilder;
+        JwsKeyBean signingKey;
+        ITokenClassCodec<?> codec;
         String jws;
         
-        if(tokenBean.getTokenClass() != null) {
+        if(!StringUtils.hasText(tokenBean.getUsername())) {
+            // Tokens decoded from the compact format, the JWS subject is required
+            throw new IllegalArgumentException(String.format("The token %s has no username, cannot be encoded as JWS", tokenBean.getTokenId()));
+        }
+        codec = (tokenBean.getTokenClass() == null ? null : codecs.get(tokenBean.getTokenClass()));
+        if(codec != null) {
             jBuilder = Jwts.builder()
                     .setId(tokenBean.getTokenId())
                     .setIssuer(issuer)
@@ -131,41 +351,68 @@ public class TokenManager implements ITokenManager {
                     .claim(CLAIM_LOCALE, tokenBean.getLocale().toString())
                     .claim(CLAIM_TOKEN_CLASS, tokenBean.getTokenClass().name())
                     ;
-                if(tokenBean.getTokenClass() == ETokenClass.VERIFICATION) {
-                    jBuilder = encodeVerificationInformation(jBuilder, (VerificationTokenBean)tokenBean);
-                }
-                if(tokenBean.getTokenClass() == ETokenClass.APPROBATION) {
-                    jBuilder = encodeApprobationInformation(jBuilder, (ApprobationTokenBean)tokenBean);
-                }
-                if(tokenBean.getTokenClass() == ETokenClass.RECOVER_PASSWORD) {
-                    jBuilder = encodeRecoverPasswordInformation(jBuilder, (RecoverPasswordTokenBean)tokenBean);
-                }
+            if(tokenBean.getTokenEpoch() != 0L) {
+                jBuilder.claim(CLAIM_TOKEN_EPOCH, tokenBean.getTokenEpoch());
+            }
+            jBuilder = encodeClaims(codec, jBuilder, tokenBean);
         } else {
             throw new IllegalArgumentException(String.format("The %s class is not recognized as acceptable token bean", tokenBean.getClass().getCanonicalName()));
         }
         
+        signingKey = jwsKeyRing.getSigningKey();
         jws = jBuilder
-                .signWith(jwsSecretKey)
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
+                .signWith(signingKey.getKey(), signingKey.getAlgorithm())
                 .compact();
         return jws;
     }
     
-    private JwtBuilder encodeVerificationInformation(JwtBuilder jwts, VerificationTokenBean tokenBean) {
-        jwts.setAudience(tokenBean.getProcess().name());
-        return jwts;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String encodeToken(AbstractTokenBean tokenBean, ECommunicationChannelType channelType) {
+        if(channelType == ECommunicationChannelType.MOBILE && compactTokenCodec.isEncodable(tokenBean)) {
+            return compactTokenCodec.encode(tokenBean);
+        }
+        return encodeToken(tokenBean);
     }
-
-    private JwtBuilder encodeApprobationInformation(JwtBuilder jwts, ApprobationTokenBean tokenBean) {
-        jwts.claim(CLAIM_APPROVER_ID, tokenBean.getApproverId())
-            .claim(CLAIM_APPROVER_USERNAME, tokenBean.getApproverUsername())
-            ;
-        return jwts;
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends AbstractTokenBean> DecodedTokenBean<T> encodeTokenBean(T tokenBean) {
+        return DecodedTokenBean.<T>builder()
+                .token(encodeToken(tokenBean))
+                .tokenBean(tokenBean)
+                .build()
+                ;
     }
     
-    private JwtBuilder encodeRecoverPasswordInformation(JwtBuilder jwts, RecoverPasswordTokenBean tokenBean) {
-        jwts.claim(CLAIM_ORIGIN_CHANNEL, tokenBean.getOrigin().name())
-            ;
-        return jwts;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends AbstractTokenBean> DecodedTokenBean<T> encodeTokenBean(T tokenBean, ECommunicationChannelType channelType) {
+        return DecodedTokenBean.<T>builder()
+                .token(encodeToken(tokenBean, channelType))
+                .tokenBean(tokenBean)
+                .build()
+                ;
+    }
+    
+    /**
+     * Add the claims specific to the token class of {@code tokenBean} with his {@code codec}.
+     * @param <T> The token bean class of {@code codec}
+     * @param codec The codec
+     * @param jwts The builder
+     * @param tokenBean The token bean
+     * @return The same {@code jwts}
+     * @throws ClassCastException If {@code tokenBean} is not of the {@code codec} token bean class
+     */
+    private <T extends AbstractTokenBean> JwtBuilder encodeClaims(ITokenClassCodec<T> codec, JwtBuilder jwts, AbstractTokenBean tokenBean) {
+        return codec.encodeClaims(jwts, codec.getTokenBeanClass().cast(tokenBean));
     }
     /**
      * {@inheritDoc}
@@ -201,15 +448,9 @@ public class TokenManager implements ITokenManager {
      */
     @Override
     public Optional<RecoverPasswordTokenBean> generateRecoverPasswordTokenBean(UserBean user, boolean preferredChannel) {
-        ECommunicationChannelType t;
         if(StringUtils.hasText(user.getId())) {
-            if(preferredChannel || user.getSecondaryChannel() == null) {
-                t = user.getPreferredChannel().getChannelType();
-            } else {
-                t = user.getSecondaryChannel().getChannelType();
-            }
             return Optional.of(buildAbstractToken(RecoverPasswordTokenBean.builder(), user)
-                    .origin(t)
+                    .origin(recoverPasswordOrigin(user, preferredChannel))
                     .build()
                     )
                     ;
@@ -217,96 +458,86 @@ public class TokenManager implements ITokenManager {
         return Optional.empty();
     }
     /**
-     * Build the abstract part of any token.
-     * @param <T> The token builder type
-     * @param tokenBeanBuilder The token builder instance to populate 
-     * @param user The user associated with token
-     * @return The populated same {@code tokenBeanBuilder}
+     * {@inheritDoc}
      */
-    private <T extends AbstractTokenBeanBuilder<?,?>> T buildAbstractToken(T tokenBeanBuilder, UserBean user) {
+    @Override
+    public List<DecodedTokenBean<VerificationTokenBean>> generateVerificationTokens(Collection<UserBean> users, EVerificationProcess process) {
+        List<UserBean> lUsers;
+        UUID baseId;
         LocalDateTime ldt;
         
-        ldt = LocalDateTime.now();
-        tokenBeanBuilder
-            .tokenId(UUID.randomUUID().toString())
-            .issued(ldt)
-            .expire(ldt.plusDays(daysToExpire))
-            .idUser(user.getId())
-            .locale(user.getPreferredLocale())
-            .username(user.getUsername())
-            ;
-        return tokenBeanBuilder;
-    }
-    /**
-     * Return the {@link ETokenClass} value of the {@link ITokenManager#CLAIM_TOKEN_CLASS} claim of {@code body}.
-     * @param body The body
-     * @return The value of claim or {@link Optional#empty()} if the content of the claim is not one of {@link ETokenClass} elements 
-     */
-    private Optional<ETokenClass> decodeTokenClass(Claims body) {
-        try {
-            return Optional.of(ETokenClass.valueOf(body.get(CLAIM_TOKEN_CLASS, String.class)));
-        } catch (NullPointerException | IllegalArgumentException e) {
-            return Optional.empty();
+        if(process == EVerificationProcess.NONE || users.isEmpty()) {
+            return Collections.emptyList();
         }
+        lUsers = new ArrayList<>(users);
+        baseId = UUID.randomUUID();
+        ldt = LocalDateTime.now();
+        return IntStream.range(0, lUsers.size())
+                .parallel()
+                .mapToObj(n -> encodeTokenBean(buildAbstractToken(VerificationTokenBean.builder(), lUsers.get(n), bulkTokenId(baseId, n), ldt)
+                            .process(process)
+                            .build()
+                        , lUsers.get(n).getPreferredChannel().getChannelType()))
+                .collect(Collectors.toList())
+                ;
     }
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean isTokenClass(String token, ETokenClass tokenClass) {
-        Optional<ETokenClass> otk;
+    public List<DecodedTokenBean<RecoverPasswordTokenBean>> generateRecoverPasswordTokens(Collection<UserBean> users, boolean preferredChannel) {
+        List<UserBean> lUsers;
+        UUID baseId;
+        LocalDateTime ldt;
         
-        try {
-            otk = decodeTokenClass(decodeClaims(token));
-            return (otk.isPresent() && otk.get() == tokenClass);
-        } catch (Exception e) {
-            // Error, return false
-            return false;
+        lUsers = users.stream()
+                .filter(u -> StringUtils.hasText(u.getId()))
+                .collect(Collectors.toList())
+                ;
+        if(lUsers.isEmpty()) {
+            return Collections.emptyList();
         }
+        baseId = UUID.randomUUID();
+        ldt = LocalDateTime.now();
+        return IntStream.range(0, lUsers.size())
+                .parallel()
+                .mapToObj(n -> {
+                    RecoverPasswordTokenBean tkBean;
+                    
+                    tkBean = buildAbstractToken(RecoverPasswordTokenBean.builder(), lUsers.get(n), bulkTokenId(baseId, n), ldt)
+                            .origin(recoverPasswordOrigin(lUsers.get(n), preferredChannel))
+                            .build()
+                            ;
+                    return encodeTokenBean(tkBean, tkBean.getOrigin());
+                })
+                .collect(Collectors.toList())
+                ;
     }
     /**
-     * {@inheritDoc}
+     * The channel type to send a recover password token for {@code user}.
+     * @param user The user
+     * @param preferredChannel true if the {@link UserBean#getPreferredChannel()} should to be used, false for use the {@link UserBean#getSecondaryChannel()} (if no secondary channel exists, the preferred will be used)
+     * @return The channel type
      */
-    @Override
-    public boolean isTokenValid(String token) {
-        Claims body;
-        
-        try {
-            body = decodeClaims(token);
-            return isValidClaims(body);
-        } catch(UnsupportedJwtException | MalformedJwtException | SignatureException | ExpiredJwtException | IllegalArgumentException e) {
-            // Nothing to do
+    private ECommunicationChannelType recoverPasswordOrigin(UserBean user, boolean preferredChannel) {
+        if(preferredChannel || user.getSecondaryChannel() == null) {
+            return user.getPreferredChannel().getChannelType();
         }
-        return false;
+        return user.getSecondaryChannel().getChannelType();
     }
-    @SuppressWarnings("unchecked")
-    private <T extends AbstractTokenBean> T claimsToBean(Class<T> tokenClass, Claims body) {
-        ETokenClass tks;
-        
-        tks = decodeTokenClass(body).get();
-        if(tks == ETokenClass.VERIFICATION && tokenClass.equals(VerificationTokenBean.class)) {
-            return (T) buildAbstractBean(VerificationTokenBean.builder(), body)
-                    .process(EVerificationProcess.valueOf(body.getAudience()))
-                    .build()
-                    ;
-        }
-        if(tks == ETokenClass.APPROBATION && tokenClass.equals(ApprobationTokenBean.class)) {
-            return (T) buildAbstractBean(ApprobationTokenBean.builder(), body)
-                    .approverId(body.get(CLAIM_APPROVER_ID, String.class))
-                    .approverUsername(body.get(CLAIM_APPROVER_USERNAME, String.class))
-                    .build()
-                    ;
-        }
-        if(tks == ETokenClass.RECOVER_PASSWORD && tokenClass.equals(RecoverPasswordTokenBean.class)) {
-            return (T) buildAbstractBean(RecoverPasswordTokenBean.builder(), body)
-                    .origin(ECommunicationChannelType.valueOf(body.get(CLAIM_ORIGIN_CHANNEL, String.class)))
-                    .build()
-                    ;
-        }
-        // Others elements not recognized here...
-        throw new IllegalArgumentException("Not a recognized token class!");
+    /**
+     * The {@code n}th token id of a batch, derived from the random {@code baseId} of the batch.
+     * <p>Only one {@link UUID#randomUUID()} is made for the whole batch, avoiding the contention on his shared {@link java.security.SecureRandom}.
+     * The ids are unique on the batch and random among batches; the predictability inside the batch is harmless because the token id is signed.</p>
+     * @param baseId The random id of the batch
+     * @param n The position on the batch
+     * @return The token id, as a type 4 {@link UUID}
+     */
+    private String bulkTokenId(UUID baseId, int n) {
+        return new UUID(baseId.getMostSignificantBits()
+                , ((baseId.getLeastSignificantBits() + n) & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L
+                ).toString();
     }
-
     /**
      * Build the abstract part of any token.
      * @param <T> The token builder type
@@ -314,109 +545,47 @@ public class TokenManager implements ITokenManager {
      * @param user The user associated with token
      * @return The populated same {@code tokenBeanBuilder}
      */
-    private <T extends AbstractTokenBeanBuilder<?,?>> T buildAbstractBean(T tokenBeanBuilder, Claims body) {
+    private <T extends AbstractTokenBeanBuilder<?,?>> T buildAbstractToken(T tokenBeanBuilder, UserBean user) {
+        return buildAbstractToken(tokenBeanBuilder, user, UUID.randomUUID().toString(), LocalDateTime.now());
+    }
+    /**
+     * Build the abstract part of any token, with the indicated {@code tokenId} and {@code issued}.
+     * @param <T> The token builder type
+     * @param tokenBeanBuilder The token builder instance to populate 
+     * @param user The user associated with token
+     * @param tokenId The token id
+     * @param ldt The issued date
+     * @return The populated same {@code tokenBeanBuilder}
+     */
+    private <T extends AbstractTokenBeanBuilder<?,?>> T buildAbstractToken(T tokenBeanBuilder, UserBean user, String tokenId, LocalDateTime ldt) {
         tokenBeanBuilder
-            .tokenId(body.getId())
-            .issued(LocalDateTime.from(body.getIssuedAt().toInstant().atZone(ZoneId.systemDefault())))
-            .expire(LocalDateTime.from(body.getExpiration().toInstant().atZone(ZoneId.systemDefault())))
-            .idUser(body.get(CLAIM_USERID, String.class))
-            .locale(LocaleUtils.stringToLocale(body.get(CLAIM_LOCALE, String.class)))
-            .username(body.getSubject())
+            .tokenId(tokenId)
+            .issued(ldt)
+            .expire(ldt.plusDays(daysToExpire))
+            .idUser(user.getId())
+            .locale(user.getPreferredLocale())
+            .tokenEpoch(tokenEpochs.currentEpoch(user.getId()))
+            .username(user.getUsername())
             ;
         return tokenBeanBuilder;
     }
     /**
-     * Verify if {@code body} is valid for decode into {@link VerificationTokenBean}, included checking dates.
-     * Check that:
-     * <ul>
-     * <li>{@link Claims#getId()} is not-blank</li>
-     * <li>{@link Claims#getIssuer()} is not-blank and is equal to value of property named {@value #PROP_ISSUER}</li>
-     * <li>{@link Claims#getIssuedAt()} is not-null and is before now</li>
-     * <li>{@link Claims#getExpiration()} is not-null</li>
-     * <li>{@link Claims#getSubject()} is not-blank</li>
-     * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenManager#CLAIM_USERID} and his content is not-blank</li>
-     * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenManager#CLAIM_LOCALE} and his content is not-blank</li>
-     * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenManager#CLAIM_TOKEN_CLASS} and his content is not-blank and is equal to one of {@link ETokenClass} element {@link Enum#name() name}</li>
-     * </ul>
-     * Depending on value of {@link Claims#get(String, Class) claim} named {@value ITokenManager#CLAIM_TOKEN_CLASS}, make further checks:
-     * <ul>
-     * <li>If value is {@link ETokenClass#VERIFICATION}:
-     *    <ul>
-     *       <li>{@code body} {@link Claims#getAudience()} is not-blank and is one of {@link EVerificationProcess#ONE_STEP} or {@link EVerificationProcess#TWO_STEP}</li>
-     *    </ul>
-     * <li>
-     * <li>If value is {@link ETokenClass#APPROBATION}:
-     *    <ul>
-     *       <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenManager#CLAIM_APPROVER_ID} and his content is not-blank</li>
-     *       <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenManager#CLAIM_APPROVER_USERNAME} and his content is not-blank</li>
-     *    </ul>
-     * <li>
-     * <li>If value is {@link ETokenClass#RECOVER_PASSWORD}:
-     *    <ul>
-     *       <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenManager#CLAIM_ORIGIN_CHANNEL} and his content is not-blank and is one of {@link ECommunicationChannelType} element {@link Enum#name() name}</li>
-     *    </ul>
-     * <li>
-     * </ul>
-     * @param body The claims
-     * @return true if valid and false if not
+     * {@inheritDoc}
      */
-    private boolean isValidClaims(Claims body) {
-        Optional<ETokenClass> tkcls;
-        
-        if (StringUtils.hasText(body.getId())
-                && StringUtils.hasText(body.getIssuer())
-                && body.getIssuer().equals(issuer)
-                && body.getIssuedAt() != null
-                && body.getIssuedAt().before(new Date())
-                && body.getExpiration() != null
-                && StringUtils.hasText(body.getSubject())
-                && StringUtils.hasText(body.get(CLAIM_USERID, String.class))
-                && StringUtils.hasText(body.get(CLAIM_LOCALE, String.class))
-                && StringUtils.hasText(body.get(CLAIM_TOKEN_CLASS, String.class)) ) {
-            
-            tkcls = decodeTokenClass(body);
-            
-            if(tkcls.isPresent()) {
-                if(tkcls.get() == ETokenClass.VERIFICATION) {
-                    return (StringUtils.hasText(body.getAudience())
-                            && (body.getAudience().equals(EVerificationProcess.ONE_STEP.name())
-                                    || body.getAudience().equals(EVerificationProcess.TWO_STEP.name()))
-                            );
-                }
-                
-                if(tkcls.get() == ETokenClass.APPROBATION) {
-                    return (body.containsKey(CLAIM_APPROVER_ID)
-                            && StringUtils.hasText(body.get(CLAIM_APPROVER_ID, String.class))
-                            && body.containsKey(CLAIM_APPROVER_USERNAME)
-                            && StringUtils.hasText(body.get(CLAIM_APPROVER_USERNAME, String.class))
-                            );
-                }
-                return (body.containsKey(CLAIM_ORIGIN_CHANNEL)
-                    && StringUtils.hasText(body.get(CLAIM_ORIGIN_CHANNEL, String.class))
-                    && (body.get(CLAIM_ORIGIN_CHANNEL, String.class).equals(ECommunicationChannelType.EMAIL.name())
-                            || body.get(CLAIM_ORIGIN_CHANNEL, String.class).equals(ECommunicationChannelType.MOBILE.name())) );
-            }
+    @Override
+    public boolean isTokenClass(String token, ETokenClass tokenClass) {
+        if(compactTokenCodec.isCompact(token)) {
+            return compactTokenCodec.decode(token)
+                    .map(b -> b.getTokenClass() == tokenClass)
+                    .orElse(false);
         }
-        return false;
+        return jwsTokenVerifier.isTokenClass(token, tokenClass);
     }
     /**
-     * Decode the indicated {@code token} into {@link Claims} to operate.
-     * @param token The token
-     * @return The claims
-     * @throws UnsupportedJwtException if the {@code token} argument does not represent an Claims JWS
-     * @throws MalformedJwtException if the {@code token} string is not a valid JWS
-     * @throws SignatureException if the {@code token} JWS signature validation fails
-     * @throws ExpiredJwtException if the specified JWT is a Claims JWT and the Claims has an expiration time before the time this method is invoked.
-     * @throws IllegalArgumentException if the {@code token} string is {@code null} or empty or only whitespace
+     * {@inheritDoc}
      */
-    private Claims decodeClaims(String token) {
-        JwtParser jwsParser;
-        Jws<Claims> jws;
-        
-        jwsParser = Jwts.parserBuilder()
-                .setSigningKey(jwsSecretKey)
-                .build();
-        jws = jwsParser.parseClaimsJws(token);
-        return jws.getBody();
+    @Override
+    public boolean isTokenValid(String token) {
+        return decodeAny(token).isValid();
     }
 }
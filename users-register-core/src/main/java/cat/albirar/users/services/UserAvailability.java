@@ -0,0 +1,249 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.services;
+
+import static cat.albirar.users.config.PropertiesCore.USERS_FILTER_PROP_ENABLED;
+import static cat.albirar.users.config.PropertiesCore.USERS_FILTER_PROP_EXPECTED;
+import static cat.albirar.users.config.PropertiesCore.USERS_FILTER_PROP_FPP;
+import static cat.albirar.users.config.PropertiesCore.USERS_FILTER_PROP_REFRESH;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.registration.IUserAvailability;
+import cat.albirar.users.repos.IUserRepo;
+import cat.albirar.users.utils.BloomFilter;
+
+/**
+ * The {@link IUserAvailability} backed by {@link IUserRepo} with an in-memory {@link BloomFilter} in front.
+ * <p>The filter hold the usernames and preferred channels of all users, so an unknown one is answered without accessing the repository.
+ * The filter is:</p>
+ * <ul>
+ * <li>Built at start, streaming the users of repository, and rebuilt on background each {@value PropertiesCore#USERS_FILTER_PROP_REFRESH} seconds or when saturated</li>
+ * <li>Updated on each {@link #add(UserBean) creation or update} made on this instance, immediately</li>
+ * </ul>
+ * <p>A user created on another instance without filter is not seen until next rebuild, so the filter is only enabled with {@value PropertiesCore#USERS_FILTER_PROP_ENABLED}.
+ * If disabled, or not yet built, all the checks go to repository.
+ * The filter is only used for registration checks, never to reject an authentication.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+@Validated
+public class UserAvailability implements IUserAvailability {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserAvailability.class);
+    
+    private static final String PREFIX_USERNAME = "u:";
+    private static final String PREFIX_CHANNEL = "c:";
+    
+    @Autowired
+    private IUserRepo userRepo;
+    
+    @Value("${" + USERS_FILTER_PROP_ENABLED + ":false}")
+    private boolean enabled;
+    
+    @Value("${" + USERS_FILTER_PROP_EXPECTED + ":1000000}")
+    private long expectedInsertions;
+    
+    @Value("${" + USERS_FILTER_PROP_FPP + ":0.01}")
+    private double fpp;
+    
+    @Value("${" + USERS_FILTER_PROP_REFRESH + ":300}")
+    private long refreshSeconds;
+    
+    private volatile BloomFilter filter;
+    
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    /**
+     * True if a rebuild of the saturated filter was requested to {@link #rebuilder} and not yet finished.
+     */
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    
+    /**
+     * The background thread for the periodic and saturation rebuilds, null if disabled.
+     */
+    private ScheduledExecutorService rebuilder;
+    
+    /**
+     * The keys added while a rebuild is streaming the repository, null if no rebuild is running.
+     */
+    private List<String> pending;
+    
+    /**
+     * Build the filter for first time and start the background rebuilds, if enabled.
+     */
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory;
+        
+        if(enabled) {
+            rebuild();
+            threadFactory = new CustomizableThreadFactory("users-filter-rebuild-");
+            threadFactory.setDaemon(true);
+            rebuilder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            if(refreshSeconds > 0) {
+                rebuilder.scheduleWithFixedDelay(this::backgroundRebuild, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+            }
+        }
+    }
+    /**
+     * Stop the background rebuilds.
+     */
+    @PreDestroy
+    public void destroy() {
+        if(rebuilder != null) {
+            rebuilder.shutdown();
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isUsernameAvailable(String username) {
+        return !mightExistUsername(username) || !userRepo.existsByUsername(username);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isChannelAvailable(CommunicationChannelBean channel) {
+        BloomFilter f;
+        
+        f = filter;
+        return (f != null && !f.mightContain(channelKey(channel))) || !userRepo.existsByPreferredChannel(channel);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean mightExistUsername(String username) {
+        BloomFilter f;
+        
+        f = filter;
+        return f == null || f.mightContain(PREFIX_USERNAME + username);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void add(UserBean user) {
+        if(filter != null) {
+            filter.put(PREFIX_USERNAME + user.getUsername());
+            filter.put(channelKey(user.getPreferredChannel()));
+            if(filter.isSaturated() && rebuilder != null && rebuildPending.compareAndSet(false, true)) {
+                try {
+                    rebuilder.execute(() -> {
+                        try {
+                            backgroundRebuild();
+                        } finally {
+                            rebuildPending.set(false);
+                        }
+                    });
+                } catch(RejectedExecutionException e) {
+                    rebuildPending.set(false);
+                    LOGGER.warn("Cannot rebuild the users filter, shutting down");
+                }
+            }
+        }
+        if(pending != null) {
+            // Not lost by the running rebuild
+            pending.add(PREFIX_USERNAME + user.getUsername());
+            pending.add(channelKey(user.getPreferredChannel()));
+        }
+    }
+    /**
+     * Build a new filter streaming the users of repository.
+     * Only one rebuild runs at once, the filter in use is kept until the new one is ready.
+     */
+    public void rebuild() {
+        BloomFilter f;
+        long count;
+        
+        if(!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            try {
+                count = userRepo.count();
+                f = new BloomFilter(Math.max(expectedInsertions, count * 4L), fpp);
+                userRepo.forEachUser(u -> {
+                    f.put(PREFIX_USERNAME + u.getUsername());
+                    f.put(channelKey(u.getPreferredChannel()));
+                });
+            } catch(RuntimeException e) {
+                LOGGER.error("Cannot load the users, keeping the previous filter", e);
+                synchronized (this) {
+                    pending = null;
+                }
+                return;
+            }
+            synchronized (this) {
+                for(String k : pending) {
+                    f.put(k);
+                }
+                pending = null;
+                filter = f;
+            }
+            LOGGER.debug("Users filter rebuilt with {} users", count);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+    /**
+     * Run {@link #rebuild()} on {@link #rebuilder}, so the errors are logged and not thrown.
+     */
+    private void backgroundRebuild() {
+        try {
+            rebuild();
+        } catch(RuntimeException e) {
+            LOGGER.error("Cannot rebuild the users filter", e);
+        }
+    }
+    /**
+     * The key of a channel on filter.
+     * @param channel The channel
+     * @return The key
+     */
+    private static String channelKey(CommunicationChannelBean channel) {
+        return PREFIX_CHANNEL + channel.getChannelType().name() + ":" + channel.getChannelId();
+    }
+}
@@ -41,10 +41,13 @@ import cat.albirar.template.engine.models.TemplateDefinitionBean;
 import cat.albirar.template.engine.models.TemplateInstanceBean;
 import cat.albirar.template.engine.service.ITemplateEngine;
 import cat.albirar.users.config.PropertiesCore;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
 import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
 import cat.albirar.users.verification.ITokenManager;
 import cat.albirar.users.verification.IVerificationProcessService;
 
@@ -146,9 +149,16 @@ public class VerificationProcessService implements IVerificationProcessService {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public String startVerifyProcess(ProcessBean verificationProcess) {
+        return startVerifyProcess(verificationProcess, decodeProcessToken(VerificationTokenBean.class, verificationProcess));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public String startVerifyProcess(ProcessBean verificationProcess, DecodedTokenBean<VerificationTokenBean> token) {
         TemplateDefinitionBean td;
         VerificationTokenBean vtk;
         String rendered;
@@ -161,7 +171,7 @@ public class VerificationProcessService implements IVerificationProcessService {
             td = templateTextVerification;
             ct = EContentType.TEXT_PLAIN;
         }
-        vtk = tokenManager.decodeToken(VerificationTokenBean.class, verificationProcess.getToken()).get();
+        vtk = token.getTokenBean();
         
         rendered = templateEngine.renderTemplate(TemplateInstanceBean.buildInstance(td)
                 .locale(vtk.getLocale())
@@ -182,9 +192,16 @@ public class VerificationProcessService implements IVerificationProcessService {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public String startApproveProcess(ProcessBean approbationProcess) {
+        return startApproveProcess(approbationProcess, decodeProcessToken(ApprobationTokenBean.class, approbationProcess));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public String startApproveProcess(ProcessBean approbationProcess, DecodedTokenBean<ApprobationTokenBean> token) {
         TemplateDefinitionBean td;
         ApprobationTokenBean atk;
         String rendered;
@@ -197,7 +214,7 @@ public class VerificationProcessService implements IVerificationProcessService {
             td = templateTextApprobation;
             ct = EContentType.TEXT_PLAIN;
         }
-        atk = tokenManager.decodeToken(ApprobationTokenBean.class, approbationProcess.getToken()).get();
+        atk = token.getTokenBean();
         
         rendered = templateEngine.renderTemplate(TemplateInstanceBean.buildInstance(td)
                 .locale(atk.getLocale())
@@ -217,9 +234,16 @@ public class VerificationProcessService implements IVerificationProcessService {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public String startRecoverPasswordProcess(ProcessBean recoverPasswordProcess) {
+        return startRecoverPasswordProcess(recoverPasswordProcess, decodeProcessToken(RecoverPasswordTokenBean.class, recoverPasswordProcess));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public String startRecoverPasswordProcess(ProcessBean recoverPasswordProcess, DecodedTokenBean<RecoverPasswordTokenBean> token) {
         TemplateDefinitionBean td;
         RecoverPasswordTokenBean rptk;
         String rendered;
@@ -232,7 +256,7 @@ public class VerificationProcessService implements IVerificationProcessService {
             td = templateTextRecover;
             ct = EContentType.TEXT_PLAIN;
         }
-        rptk = tokenManager.decodeToken(RecoverPasswordTokenBean.class, recoverPasswordProcess.getToken()).get();
+        rptk = token.getTokenBean();
         
         rendered = templateEngine.renderTemplate(TemplateInstanceBean.buildInstance(td)
                 .locale(rptk.getLocale())
@@ -249,4 +273,19 @@ public class VerificationProcessService implements IVerificationProcessService {
                 .build()
                 );
     }
+    /**
+     * Decode the token of {@code process}, that can be expired, revoked or signed with a retired key since the process was enqueued.
+     * @param <T> The token class
+     * @param tokenClass The token class
+     * @param process The process
+     * @return The decoded token
+     * @throws IllegalArgumentException If the token cannot be decoded, so the process cannot be delivered anymore
+     */
+    private <T extends AbstractTokenBean> DecodedTokenBean<T> decodeProcessToken(Class<T> tokenClass, ProcessBean process) {
+        TokenDecodeResultBean<T> result;
+        
+        result = tokenManager.decodeTokenResult(tokenClass, process.getToken());
+        return result.toDecodedTokenBean()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("The %s token of process cannot be decoded: %s", tokenClass.getSimpleName(), result.getStatus())));
+    }
 }
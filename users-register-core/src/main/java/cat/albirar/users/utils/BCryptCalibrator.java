@@ -0,0 +1,68 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.utils;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder.BCryptVersion;
+
+/**
+ * Calibration of the BCrypt strength to a latency budget on the running hardware.
+ * <p>Each strength doubles the cost of the previous one, so only the minimum strength is measured and the rest is computed from it.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public abstract class BCryptCalibrator {
+    private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+    private static final int MEASURES = 3;
+    
+    /**
+     * Get the highest strength, between {@code minStrength} and {@code maxStrength}, that hashes in {@code targetMillis} or less.
+     * @param version The BCrypt version
+     * @param targetMillis The target latency of one hash, in milliseconds, greater than zero
+     * @param minStrength The minimum strength, the result is never lower even if slower than target
+     * @param maxStrength The maximum strength
+     * @return The calibrated strength
+     */
+    public static int calibrate(BCryptVersion version, long targetMillis, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder encoder;
+        long best, t;
+        int strength;
+        
+        if(targetMillis <= 0) {
+            throw new IllegalArgumentException(String.format("The target latency should be greater than zero, but is %d", targetMillis));
+        }
+        if(minStrength < 4 || maxStrength > 31 || minStrength > maxStrength) {
+            throw new IllegalArgumentException(String.format("Invalid strength bounds, %d to %d", minStrength, maxStrength));
+        }
+        encoder = new BCryptPasswordEncoder(version, minStrength);
+        // First one is a warm-up, the best of the rest is the less disturbed by other startup work
+        encoder.encode(SAMPLE_PASSWORD);
+        best = Long.MAX_VALUE;
+        for(int n = 0; n < MEASURES; n++) {
+            t = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            best = Math.min(best, System.nanoTime() - t);
+        }
+        strength = minStrength;
+        while(strength < maxStrength && (best << (strength + 1 - minStrength)) <= targetMillis * 1_000_000L) {
+            strength++;
+        }
+        return strength;
+    }
+}
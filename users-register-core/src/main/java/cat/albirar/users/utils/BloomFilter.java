@@ -0,0 +1,148 @@
+/*
+ * This file is part of "spring-users-register-core".
+ * 
+ * "spring-users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "spring-users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "spring-users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter of strings, to answer approximate membership in constant time.
+ * <p>A negative answer from {@link #mightContain(String)} is always true; a positive answer can be false with, approximately, the probability indicated on construction,
+ * while the number of {@link #put(String) put} elements is under the expected insertions.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public final class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int numHashes;
+    private final long expectedInsertions;
+    private final AtomicLong insertions;
+    
+    /**
+     * Constructor for the indicated {@code expectedInsertions} and false positive probability.
+     * @param expectedInsertions The number of expected elements, greater than zero
+     * @param fpp The desired false positive probability, between 0 and 1 (exclusive)
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long m;
+        
+        if(expectedInsertions <= 0) {
+            throw new IllegalArgumentException("The expected insertions should be greater than zero");
+        }
+        if(fpp <= 0D || fpp >= 1D) {
+            throw new IllegalArgumentException("The false positive probability should be between 0 and 1");
+        }
+        m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+        this.bitSize = this.bits.length() * 64L;
+        this.numHashes = Math.max(1, (int) Math.round((double) m / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+        this.insertions = new AtomicLong();
+    }
+    /**
+     * Add the indicated {@code value}.
+     * @param value The value
+     */
+    public void put(String value) {
+        long hash;
+        int h1, h2;
+        
+        hash = hash(value);
+        h1 = (int) hash;
+        h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= numHashes; i++) {
+            setBit(index(h1 + i * h2));
+        }
+        insertions.incrementAndGet();
+    }
+    /**
+     * Check if the indicated {@code value} might have been {@link #put(String) put}.
+     * @param value The value
+     * @return false if {@code value} is definitely not present, true if it might be present
+     */
+    public boolean mightContain(String value) {
+        long hash;
+        int h1, h2;
+        
+        hash = hash(value);
+        h1 = (int) hash;
+        h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= numHashes; i++) {
+            if(!getBit(index(h1 + i * h2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Check if more elements than expected were {@link #put(String) put}, so the false positive probability is degraded.
+     * @return true if saturated
+     */
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+    /**
+     * The number of {@link #put(String)} calls.
+     * @return The number of insertions
+     */
+    public long getInsertions() {
+        return insertions.get();
+    }
+    
+    private long index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitSize;
+    }
+    
+    private void setBit(long index) {
+        int i;
+        long mask, old;
+        
+        i = (int) (index >>> 6);
+        mask = 1L << index;
+        do {
+            old = bits.get(i);
+            if((old & mask) != 0) {
+                return;
+            }
+        } while(!bits.compareAndSet(i, old, old | mask));
+    }
+    
+    private boolean getBit(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+    /**
+     * 64 bits FNV-1a hash with a final avalanche mix.
+     */
+    private static long hash(String value) {
+        long h;
+        
+        h = 0xcbf29ce484222325L;
+        for(int n = 0; n < value.length(); n++) {
+            h ^= value.charAt(n);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.utils;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * An executor with a bounded number of running and waiting tasks, that runs each task on a new virtual thread.
+ * <p>A virtual thread waiting for a running slot is cheap, so it plays the role of the queue of a thread pool: at most {@code threads} tasks run at once,
+ * at most {@code queueSize} wait and any other task is rejected with {@link RejectedExecutionException}.</p>
+ * <p>Use {@link #newBoundedExecutor(String, int, int, boolean)} to get it when the JDK supports virtual threads or an equivalent bounded thread pool otherwise.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public final class BoundedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore running;
+    private final Semaphore accepted;
+    
+    /**
+     * Constructor with the executor that runs each task on a new thread.
+     * @param delegate The thread-per-task executor
+     * @param threads The maximum number of running tasks, greater than zero
+     * @param queueSize The maximum number of waiting tasks, zero or greater
+     */
+    public BoundedExecutorService(ExecutorService delegate, int threads, int queueSize) {
+        if(delegate == null) {
+            throw new IllegalArgumentException("The delegate executor is required");
+        }
+        if(threads <= 0 || queueSize < 0) {
+            throw new IllegalArgumentException(String.format("Invalid bounds, %d threads and %d queue size", threads, queueSize));
+        }
+        this.delegate = delegate;
+        this.running = new Semaphore(threads);
+        this.accepted = new Semaphore(threads + queueSize);
+    }
+    /**
+     * Create a bounded executor with virtual threads if {@code virtualThreads} is true and the JDK supports them, or a {@link ThreadPoolExecutor} with the same bounds if not.
+     * In both cases the tasks over bounds are rejected with {@link RejectedExecutionException}.
+     * @param threadNamePrefix The prefix for the name of the platform threads
+     * @param threads The maximum number of running tasks, greater than zero
+     * @param queueSize The maximum number of waiting tasks, zero or greater
+     * @param virtualThreads True to use virtual threads when available
+     * @return The executor
+     */
+    public static ExecutorService newBoundedExecutor(String threadNamePrefix, int threads, int queueSize, boolean virtualThreads) {
+        CustomizableThreadFactory threadFactory;
+        ThreadPoolExecutor executor;
+        ExecutorService virtual;
+        BlockingQueue<Runnable> queue;
+        
+        if(virtualThreads) {
+            virtual = newVirtualThreadPerTaskExecutor();
+            if(virtual != null) {
+                return new BoundedExecutorService(virtual, threads, queueSize);
+            }
+        }
+        threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        if(queueSize > 0) {
+            queue = new ArrayBlockingQueue<>(queueSize);
+        } else {
+            queue = new SynchronousQueue<>();
+        }
+        executor = new ThreadPoolExecutor(threads, threads
+                , 60L, TimeUnit.SECONDS
+                , queue
+                , threadFactory
+                , new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    /**
+     * Get a new virtual thread per task executor, only available since Java 21.
+     * @return The executor or null if the running JDK has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory;
+        
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Runnable command) {
+        if(!accepted.tryAcquire()) {
+            throw new RejectedExecutionException("Too many pending tasks");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    running.acquireUninterruptibly();
+                    try {
+                        command.run();
+                    } finally {
+                        running.release();
+                    }
+                } finally {
+                    accepted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            accepted.release();
+            throw e;
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing of concurrent executions for the same key, only the first caller executes and the concurrent ones share its result.
+ * <p>The results are also kept for a short window on a LRU map, so repeated calls just after the execution are served without executing again.
+ * Failed executions are shared with the concurrent callers but are not kept.</p>
+ * <p>The results are shared as are, so they should not be modified by callers.</p>
+ * @param <K> The key type
+ * @param <V> The result type
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight;
+    private final Map<K, Recent<V>> recent;
+    private final long windowNanos;
+    private final int maxSize;
+    private final AtomicLong executions;
+    private final AtomicLong shared;
+    
+    /**
+     * Constructor for the indicated window and size of kept results.
+     * @param windowMillis The milliseconds to keep each result, zero to only coalesce the concurrent executions
+     * @param maxSize The maximum number of kept results
+     */
+    public SingleFlight(long windowMillis, int maxSize) {
+        if(windowMillis < 0L) {
+            throw new IllegalArgumentException("The window cannot be negative");
+        }
+        if(maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size should be greater than zero");
+        }
+        this.inFlight = new ConcurrentHashMap<>();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxSize = maxSize;
+        this.recent = new LinkedHashMap<K, Recent<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Recent<V>> eldest) {
+                return size() > SingleFlight.this.maxSize;
+            }
+        };
+        this.executions = new AtomicLong();
+        this.shared = new AtomicLong();
+    }
+    /**
+     * Execute the {@code supplier} for the indicated {@code key}, or share the result of a concurrent or recent execution for the same key.
+     * @param key The key
+     * @param supplier The execution
+     * @return The result
+     * @throws RuntimeException The same exception thrown by the (own or shared) execution
+     */
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> mine, other;
+        Recent<V> r;
+        V value;
+        
+        if((r = getRecent(key)) != null) {
+            shared.incrementAndGet();
+            return r.value;
+        }
+        mine = new CompletableFuture<>();
+        other = inFlight.putIfAbsent(key, mine);
+        if(other != null) {
+            shared.incrementAndGet();
+            return await(other);
+        }
+        try {
+            // Another execution could be finished between the first check and putIfAbsent
+            if((r = getRecent(key)) != null) {
+                shared.incrementAndGet();
+                mine.complete(r.value);
+                return r.value;
+            }
+            executions.incrementAndGet();
+            value = supplier.get();
+            // Kept before leaving the flight, so no gap exists for new callers
+            putRecent(key, value);
+            mine.complete(value);
+            return value;
+        } catch(RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+    /**
+     * The number of executions made.
+     * @return The number of executions
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+    /**
+     * The number of calls served with the result of another execution.
+     * @return The number of shared results
+     */
+    public long getShared() {
+        return shared.get();
+    }
+    
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    private Recent<V> getRecent(K key) {
+        Recent<V> r;
+        
+        if(windowNanos == 0L) {
+            return null;
+        }
+        synchronized (recent) {
+            r = recent.get(key);
+            if(r != null && System.nanoTime() - r.created > windowNanos) {
+                recent.remove(key);
+                r = null;
+            }
+        }
+        return r;
+    }
+    
+    private void putRecent(K key, V value) {
+        if(windowNanos > 0L) {
+            synchronized (recent) {
+                recent.put(key, new Recent<>(value, System.nanoTime()));
+            }
+        }
+    }
+    
+    private static final class Recent<V> {
+        private final V value;
+        private final long created;
+        
+        private Recent(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.verification;
+
+import java.util.List;
+import java.util.Optional;
+
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import io.jsonwebtoken.JwsHeader;
+
+/**
+ * Contract for the ring of keys to sign and verify tokens.
+ * <p>The ring is fed from all the {@link IJwsKeySource} and is refreshed periodically, so keys can be rotated without restart.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface IJwsKeyRing {
+    /**
+     * The key to sign new tokens: the one with most recent {@link JwsKeyBean#getValidFrom() validFrom} already reached and not {@link JwsKeyBean#getValidUntil() expired}.
+     * @return The signing key
+     * @throws IllegalStateException If no key is valid now
+     */
+    JwsKeyBean getSigningKey();
+    /**
+     * Look up the key with the indicated {@link JwsHeader#getKeyId() kid}, if exists and is not {@link JwsKeyBean#getValidUntil() expired}.
+     * @param kid The key id, can be null
+     * @return The key or {@link Optional#empty()} if not found or expired
+     */
+    Optional<JwsKeyBean> findKey(String kid);
+    /**
+     * The one byte index of the key with the indicated {@code kid}, for size constrained token formats.
+     * <p>The index is derived from the kid only, so it is the same on all instances without coordination; different kids can share the same index.</p>
+     * @param kid The key id
+     * @return The index, between 0 and 255
+     */
+    default int keyIndex(String kid) {
+        int h;
+        
+        h = kid.hashCode();
+        return (h ^ (h >>> 8) ^ (h >>> 16) ^ (h >>> 24)) & 0xFF;
+    }
+    /**
+     * Look up the keys with the indicated {@link #keyIndex(String) index}, that are not {@link JwsKeyBean#getValidUntil() expired}.
+     * @param keyIndex The key index
+     * @return The keys, usually one, or an empty list if not found or expired
+     */
+    List<JwsKeyBean> findKeys(int keyIndex);
+    /**
+     * Reload the keys from all {@link IJwsKeySource}.
+     */
+    void refresh();
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.verification;
+
+import java.util.List;
+
+import cat.albirar.users.tokens.models.JwsKeyBean;
+
+/**
+ * Contract for a source of {@link JwsKeyBean keys} for the {@link IJwsKeyRing}.
+ * <p>All nodes of a deployment should share the same sources (a file, a database table...), so that any node can verify the tokens issued by any other.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface IJwsKeySource {
+    /**
+     * Load the current keys of this source.
+     * @return The keys, empty list if this source have no keys or is not configured
+     */
+    List<JwsKeyBean> loadKeys();
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.verification;
+
+import javax.validation.constraints.NotNull;
+
+import cat.albirar.users.models.outbox.EOutboxProcess;
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.verification.ProcessBean;
+
+/**
+ * Contract for the outbox of verification, approbation and recover password messages.
+ * <p>The messages are {@link #enqueue(EOutboxProcess, ProcessBean) enqueued} with the same transaction of the change that originates them
+ * and delivered later, with retries, by a background dispatcher; so a message is delivered at least once if and only if the change is saved,
+ * and the caller never waits for the communications subsystem.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface IMessageOutbox {
+    /**
+     * Save the message on the outbox, joining the current transaction if any.
+     * Once the transaction is committed, the dispatcher is notified to deliver it without waiting for the next poll.
+     * @param process The process to deliver the message
+     * @param message The message information
+     * @return The id of the message on the outbox
+     */
+    String enqueue(@NotNull EOutboxProcess process, @NotNull ProcessBean message);
+    /**
+     * Deliver now, in parallel, a batch of the {@link EOutboxStatus#PENDING pending} messages that are due.
+     * The failed deliveries are retried later with an exponential backoff, until the maximum number of attempts when they are {@link EOutboxStatus#DEAD dead}.
+     * @return The number of messages of the batch, delivered or not
+     */
+    int dispatch();
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.verification;
+
+import java.util.Optional;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+
+/**
+ * Contract for a bounded cache of tokens already verified by {@link ITokenManager}, to avoid repeating the signature check and claims parsing of the same token.
+ * <p>Entries are keyed by a digest of the encoded token and are never served after the token {@link AbstractTokenBean#getExpire() expiration}.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface ITokenCache {
+    /**
+     * Get the decoded bean for the indicated encoded {@code token}, if cached and not expired.
+     * @param token The encoded token
+     * @return The decoded bean or {@link Optional#empty()} if not cached
+     */
+    Optional<AbstractTokenBean> get(String token);
+    /**
+     * Cache the decoded {@code tokenBean} of the indicated encoded {@code token}.
+     * @param token The encoded token, already verified
+     * @param tokenBean The decoded token bean
+     */
+    void put(String token, AbstractTokenBean tokenBean);
+    /**
+     * Remove the indicated encoded {@code token} from cache, if present.
+     * @param token The encoded token
+     */
+    void invalidate(String token);
+    /**
+     * Remove all entries.
+     */
+    void clear();
+    /**
+     * Check if this cache is enabled.
+     * @return true if enabled, false if disabled (size zero)
+     */
+    boolean isEnabled();
+    /**
+     * The current number of entries.
+     * @return The number of entries
+     */
+    int size();
+    /**
+     * The number of {@link #get(String)} served from cache.
+     * @return The hit count
+     */
+    long getHits();
+    /**
+     * The number of {@link #get(String)} not served from cache.
+     * @return The miss count
+     */
+    long getMisses();
+}
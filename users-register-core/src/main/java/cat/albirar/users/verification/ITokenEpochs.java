@@ -0,0 +1,50 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.verification;
+
+import javax.validation.constraints.NotBlank;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+
+/**
+ * Contract for the per-user token epochs, to invalidate all the tokens of a user at once.
+ * <p>Each token is stamped with the {@link #currentEpoch(String) current epoch} of his user at issue time, and is only valid while the epoch doesn't change.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface ITokenEpochs {
+    /**
+     * The current token epoch of the user, without accessing the repository.
+     * @param idUser The user id
+     * @return The current epoch, zero if the user never invalidated his tokens or {@code idUser} is null
+     */
+    long currentEpoch(String idUser);
+    /**
+     * Check if the indicated {@code token} was issued on the current epoch of his user.
+     * @param token The token
+     * @return true if is current and false if was invalidated
+     */
+    boolean isCurrent(AbstractTokenBean token);
+    /**
+     * Invalidate all tokens issued for the user until now, incrementing his epoch.
+     * @param idUser The user id
+     * @return The new epoch
+     */
+    long invalidateTokens(@NotBlank String idUser);
+}
@@ -0,0 +1,44 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.verification;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+
+/**
+ * Contract for the ledger of single-use tokens, to reject replays of verification, approbation and recover password tokens.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface ITokenLedger {
+    /**
+     * Consume the indicated {@code token}, only if not consumed before.
+     * @param token The token
+     * @return true if consumed now and false if it was consumed before (a replay)
+     */
+    boolean consume(@NotNull @Valid AbstractTokenBean token);
+    /**
+     * Check if the indicated {@code token} was consumed.
+     * @param token The token
+     * @return true if consumed and false if not
+     */
+    boolean isConsumed(@NotNull @Valid AbstractTokenBean token);
+}
@@ -17,6 +17,8 @@
 package cat.albirar.users.verification;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import javax.validation.Valid;
@@ -24,40 +26,28 @@ import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
 import cat.albirar.communications.channels.models.ECommunicationChannelType;
-import cat.albirar.users.models.tokens.AbstractTokenBean;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
-import cat.albirar.users.models.tokens.ETokenClass;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
+import cat.albirar.users.models.tokens.TokenIntrospectionBean;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.ITokenClaims;
+import cat.albirar.users.tokens.JwsTokenVerifier;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
 import io.jsonwebtoken.Claims;
 
 /**
  * Contract for token management.
+ * <p>The JWS tokens are verified by a {@link JwsTokenVerifier}, that services only checking tokens can use standalone, without Spring.</p>
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
-public interface ITokenManager {
-    /**
-     * Claim name for {@link AbstractTokenBean#getTokenClass()}.
-     */
-    public final static String CLAIM_TOKEN_CLASS = "tokenClass";
-    /**
-     * Claim name for {@link UserBean#getId()}.
-     */
-    public final static String CLAIM_USERID = "userId";
-    /**
-     * Claim name for {@link UserBean#getPreferredLocale()}.
-     */
-    public final static String CLAIM_LOCALE = "locale";
-    /**
-     * Claim name for {@link ApprobationTokenBean#getIdApprover()}.
-     */
-    public final static String CLAIM_APPROVER_ID = "approverId";
-    /**
-     * Claim name for {@link ApprobationTokenBean#getUsernameApprover()}.
-     */
-    public final static String CLAIM_APPROVER_USERNAME = "approverUsername";
+public interface ITokenManager extends ITokenClaims {
     /**
      * Claim name for {@link RecoverPasswordTokenBean#getOrigin()}.
      */
@@ -79,6 +69,34 @@ public interface ITokenManager {
      * @see #isTokenValid(String)
      */
     <T extends AbstractTokenBean> Optional<T> decodeToken(Class<T> tokenClass, @NotBlank String token);
+    /**
+     * Decode the indicated {@code token} as {@link #decodeToken(Class, String)} but keeping the encoded {@code token} along with the decoded bean.
+     * <p>The resulting {@link DecodedTokenBean} can be passed to the other layers (registration, verification process, etc.) so the signature check and claims parsing are made only once.</p>
+     * @param <T> Any class derived from {@link AbstractTokenBean} if {@code token} is not that type, an {@link Optional#empty()} is returned
+     * @param tokenClass The token class intended to be the resulting bean from the indicated {@code token}
+     * @param token The token to decode
+     * @return The {@link DecodedTokenBean} with the {@code token} and the decoded information or {@link Optional#empty()} if token cannot be decoded or isn't a {@code T} token class
+     * @see #decodeToken(Class, String)
+     */
+    <T extends AbstractTokenBean> Optional<DecodedTokenBean<T>> decodeTokenBean(Class<T> tokenClass, @NotBlank String token);
+    /**
+     * Decode the indicated {@code token} as {@link #decodeTokenBean(Class, String)} but classifying the failures as {@link ETokenDecodeStatus}, without throwing or catching exceptions.
+     * <p>The structure of the {@code token} is checked before any decoding, so the invalid tokens are rejected at the cost of a string scan.</p>
+     * @param <T> Any class derived from {@link AbstractTokenBean}, if {@code token} is not that type the status is {@link ETokenDecodeStatus#WRONG_CLASS}
+     * @param tokenClass The token class intended to be the resulting bean from the indicated {@code token}
+     * @param token The token to decode
+     * @return The result, with the decoded information only if {@link TokenDecodeResultBean#isValid() valid}
+     * @see #decodeTokenBean(Class, String)
+     */
+    <T extends AbstractTokenBean> TokenDecodeResultBean<T> decodeTokenResult(Class<T> tokenClass, @NotBlank String token);
+    /**
+     * Introspect the {@code tokens} of any token class, in parallel on a bounded pool of threads.
+     * <p>Each token is decoded as {@link #decodeTokenResult(Class, String)}, so the invalid tokens are reported without exceptions.
+     * The blank or null tokens are reported as {@link ETokenDecodeStatus#MALFORMED} and the single-use tokens already used as {@link ETokenDecodeStatus#CONSUMED}.</p>
+     * @param tokens The tokens to introspect
+     * @return The introspection of each token, in the same order of {@code tokens}
+     */
+    List<TokenIntrospectionBean> introspectTokens(@NotNull List<String> tokens);
     /**
      * Extract the {@link UserBean#getId() user id} of the {@code token}.
      * @param token The token
@@ -91,9 +109,37 @@ public interface ITokenManager {
      * @param <T> The specific token class
      * @param tokenBean The token bean class, required
      * @return The encoded token
-     * @throws IllegalArgumentException If {@code tokenBean} is not any of {@link VerificationTokenBean}, {@link ApprobationTokenBean} or {@link RecoverPasswordTokenBean}
+     * @throws IllegalArgumentException If {@code tokenBean} is not any of {@link VerificationTokenBean}, {@link ApprobationTokenBean} or {@link RecoverPasswordTokenBean}, or has no {@link AbstractTokenBean#getUsername() username}
      */
     String encodeToken(@NotNull @Valid AbstractTokenBean tokenBean);
+    /**
+     * Encode the indicated {@code tokenBean} as {@link #encodeToken(AbstractTokenBean)} and return the encoded token along with the {@code tokenBean}.
+     * <p>Useful to pass the token to other layers without decoding them again.</p>
+     * @param <T> The specific token class
+     * @param tokenBean The token bean class, required
+     * @return The {@link DecodedTokenBean} with the encoded token and the {@code tokenBean}
+     * @throws IllegalArgumentException If {@code tokenBean} is not any of {@link VerificationTokenBean}, {@link ApprobationTokenBean} or {@link RecoverPasswordTokenBean}
+     */
+    <T extends AbstractTokenBean> DecodedTokenBean<T> encodeTokenBean(@NotNull @Valid T tokenBean);
+    /**
+     * Encode the indicated {@code tokenBean} for sending it through a channel of {@code channelType}.
+     * <p>For {@link ECommunicationChannelType#MOBILE} the {@link VerificationTokenBean} and {@link RecoverPasswordTokenBean} are encoded on a compact binary format, far shorter than a JWS, and any other token as {@link #encodeToken(AbstractTokenBean)}.</p>
+     * <p>Both formats are decoded transparently by {@link #decodeToken(Class, String)} and the other decoding methods.</p>
+     * @param tokenBean The token bean class, required
+     * @param channelType The type of channel the token will be sent through, required
+     * @return The encoded token
+     * @throws IllegalArgumentException If {@code tokenBean} is not any of {@link VerificationTokenBean}, {@link ApprobationTokenBean} or {@link RecoverPasswordTokenBean}
+     */
+    String encodeToken(@NotNull @Valid AbstractTokenBean tokenBean, @NotNull ECommunicationChannelType channelType);
+    /**
+     * Encode the indicated {@code tokenBean} as {@link #encodeToken(AbstractTokenBean, ECommunicationChannelType)} and return the encoded token along with the {@code tokenBean}.
+     * @param <T> The specific token class
+     * @param tokenBean The token bean class, required
+     * @param channelType The type of channel the token will be sent through, required
+     * @return The {@link DecodedTokenBean} with the encoded token and the {@code tokenBean}
+     * @throws IllegalArgumentException If {@code tokenBean} is not any of {@link VerificationTokenBean}, {@link ApprobationTokenBean} or {@link RecoverPasswordTokenBean}
+     */
+    <T extends AbstractTokenBean> DecodedTokenBean<T> encodeTokenBean(@NotNull @Valid T tokenBean, @NotNull ECommunicationChannelType channelType);
 
     /**
      * Generate a token bean from the {@code user} and for the indicated verification {@code process}.
@@ -126,6 +172,24 @@ public interface ITokenManager {
      * @return The {@link RecoverPasswordTokenBean} or {@link Optional#empty()} if user have a not assigned or blank {@link UserBean#getId() id}
      */
     Optional<RecoverPasswordTokenBean> generateRecoverPasswordTokenBean(@NotNull @Valid UserBean user, boolean preferredChannel);
+    /**
+     * Generate and encode the verification tokens of all {@code users} at once, for mass re-verification campaigns.
+     * <p>Each token is as {@link #generateVerificationTokenBean(UserBean, EVerificationProcess)} and is encoded as {@link #encodeToken(AbstractTokenBean, ECommunicationChannelType)} for the {@link UserBean#getPreferredChannel() preferred channel} of his user.
+     * The tokens are signed in parallel and the token ids are generated in bulk.</p>
+     * @param users The users, should to be valid
+     * @param process The verification process for the token beans
+     * @return The encoded tokens along with his token beans, on the {@code users} iteration order, or an empty list if {@code process} is {@link EVerificationProcess#NONE}
+     */
+    List<DecodedTokenBean<VerificationTokenBean>> generateVerificationTokens(@NotNull @Valid Collection<UserBean> users, @NotNull EVerificationProcess process);
+    /**
+     * Generate and encode the recover password tokens of all {@code users} at once, for mass password rotation notices.
+     * <p>Each token is as {@link #generateRecoverPasswordTokenBean(UserBean, boolean)} and is encoded as {@link #encodeToken(AbstractTokenBean, ECommunicationChannelType)} for his {@link RecoverPasswordTokenBean#getOrigin() origin}.
+     * The tokens are signed in parallel and the token ids are generated in bulk.</p>
+     * @param users The users, should to be valid
+     * @param preferredChannel true if the {@link UserBean#getPreferredChannel()} should to be used, false for use the {@link UserBean#getSecondaryChannel()} (if no secondary channel exists, the preferred will be used)
+     * @return The encoded tokens along with his token beans, on the {@code users} iteration order; the users with a not assigned or blank {@link UserBean#getId() id} are skipped
+     */
+    List<DecodedTokenBean<RecoverPasswordTokenBean>> generateRecoverPasswordTokens(@NotNull @Valid Collection<UserBean> users, boolean preferredChannel);
 
     /**
      * Verify if indicated {@code token} is valid and not expired.
@@ -137,6 +201,7 @@ public interface ITokenManager {
      * <li>{@link Claims#getExpiration()} is not-null and is after now</li>
      * <li>{@link Claims#getSubject()} is not-blank</li>
      * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value #CLAIM_USERID} and his content is not-blank</li>
+     * <li>The {@value #CLAIM_TOKEN_EPOCH} claim, zero if absent, is the {@link ITokenEpochs#currentEpoch(String) current epoch} of user</li>
      * </ul>
      * Further check is made depending on {@link AbstractTokenBean#getTokenClass() token class} value:
      * <ul>
@@ -21,7 +21,11 @@ package cat.albirar.users.verification;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
 import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
 
 /**
  * The service contract to start a verifying process for registration, a approbation process or a recover password process.
@@ -33,19 +37,43 @@ public interface IVerificationProcessService {
      * Start a verification process.
      * @param verificationProcess The verification process information
      * @return The unique id of started process (id of message pushed to communications subsystem)
+     * @throws IllegalArgumentException If the {@link ProcessBean#getToken() token} cannot be decoded (expired, revoked, signed with a retired key...), a permanent failure
      */
     public String startVerifyProcess(@NotNull @Valid ProcessBean verificationProcess);
+    /**
+     * Start a verification process with an already decoded token.
+     * @param verificationProcess The verification process information
+     * @param token The decoded {@link ProcessBean#getToken() token} of {@code verificationProcess}
+     * @return The unique id of started process (id of message pushed to communications subsystem)
+     */
+    public String startVerifyProcess(@NotNull @Valid ProcessBean verificationProcess, @NotNull @Valid DecodedTokenBean<VerificationTokenBean> token);
     /**
      * Start a approve process.
      * @param approbationProcess The approbation process information
      * @return The unique id of started process (id of message pushed to communications subsystem)
+     * @throws IllegalArgumentException If the {@link ProcessBean#getToken() token} cannot be decoded (expired, revoked, signed with a retired key...), a permanent failure
      */
     public String startApproveProcess(@NotNull @Valid ProcessBean approbationProcess);
+    /**
+     * Start a approve process with an already decoded token.
+     * @param approbationProcess The approbation process information
+     * @param token The decoded {@link ProcessBean#getToken() token} of {@code approbationProcess}
+     * @return The unique id of started process (id of message pushed to communications subsystem)
+     */
+    public String startApproveProcess(@NotNull @Valid ProcessBean approbationProcess, @NotNull @Valid DecodedTokenBean<ApprobationTokenBean> token);
     /**
      * Start the process to recover the password of an user.
      * @param recoverPasswordProcess The recover password process information
      * @return The unique id of started process (id of message pushed to communications subsystem)
+     * @throws IllegalArgumentException If the {@link ProcessBean#getToken() token} cannot be decoded (expired, revoked, signed with a retired key...), a permanent failure
      */
     public String startRecoverPasswordProcess(@NotNull @Valid ProcessBean recoverPasswordProcess);
+    /**
+     * Start the process to recover the password of an user with an already decoded token.
+     * @param recoverPasswordProcess The recover password process information
+     * @param token The decoded {@link ProcessBean#getToken() token} of {@code recoverPasswordProcess}
+     * @return The unique id of started process (id of message pushed to communications subsystem)
+     */
+    public String startRecoverPasswordProcess(@NotNull @Valid ProcessBean recoverPasswordProcess, @NotNull @Valid DecodedTokenBean<RecoverPasswordTokenBean> token);
     
 }
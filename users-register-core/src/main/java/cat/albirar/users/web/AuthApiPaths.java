@@ -0,0 +1,69 @@
+/*
+ * This file is part of "albirar users-register-sql".
+ * 
+ * "albirar users-register-sql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-sql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-sql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.web;
+
+/**
+ * The URLs, path variables and parameters of the end-points for verification, approbation, recover password, etc.
+ * Shared by the front ends, the Spring MVC controller and the WebFlux handler, so both publish the same API.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public final class AuthApiPaths {
+    public static final String URL_ROOT = "/api/auth/1.0";
+    public static final String PATH_VAR_TOKEN = "token";
+    /**
+     * URL for verification.
+     */
+    public static final String URL_VERIFICATION = URL_ROOT + "/verification";
+    /**
+     * URL template for verification.
+     */
+    public static final String URL_TEMPLATE_VERIFICATION = URL_VERIFICATION + "/{" + PATH_VAR_TOKEN + "}";
+    /**
+     * URL for approbation.
+     */
+    public static final String URL_APPROBATION = URL_ROOT + "/approbation";
+    /**
+     * URL template for approbation.
+     */
+    public static final String URL_TEMPLATE_APPROBATION = URL_APPROBATION + "/{" + PATH_VAR_TOKEN + "}";
+    /**
+     * URL for change password.
+     */
+    public static final String URL_CHANGE_PASSWORD = URL_ROOT + "/password";
+    /**
+     * URL for bulk token introspection.
+     */
+    public static final String URL_INTROSPECTION = URL_ROOT + "/introspection";
+    /**
+     * URL for username availability, with the username on {@value #PARAM_USERNAME} parameter.
+     */
+    public static final String URL_AVAILABILITY_USERNAME = URL_ROOT + "/availability/username";
+    /**
+     * URL for preferred channel availability, with the channel on {@value #PARAM_CHANNEL_TYPE} and {@value #PARAM_CHANNEL_ID} parameters.
+     */
+    public static final String URL_AVAILABILITY_CHANNEL = URL_ROOT + "/availability/channel";
+    public static final String PARAM_USERNAME = "username";
+    public static final String PARAM_CHANNEL_TYPE = "type";
+    public static final String PARAM_CHANNEL_ID = "id";
+    
+    private AuthApiPaths() {
+        // Constants only
+    }
+}
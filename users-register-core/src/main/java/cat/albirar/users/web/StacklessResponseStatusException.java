@@ -0,0 +1,49 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A {@link ResponseStatusException} without stack trace, for the expected rejections (invalid tokens, unknown users, etc.).
+ * The stack trace is never logged nor returned to the client, so filling it is only a cost on each rejected request.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class StacklessResponseStatusException extends ResponseStatusException {
+    private static final long serialVersionUID = -3263958441217290158L;
+
+    /**
+     * Constructor with a response status and a reason to add to the exception message as explanation.
+     * @param status The HTTP status
+     * @param reason The associated reason
+     */
+    public StacklessResponseStatusException(HttpStatus status, String reason) {
+        super(status, reason);
+    }
+    /**
+     * Doesn't fill the stack trace.
+     * @return This exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.models.outbox;
+
+import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.verification.IVerificationProcessService;
+
+/**
+ * The process of a message on the outbox, that selects the {@link IVerificationProcessService} operation to deliver it.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public enum EOutboxProcess {
+    /**
+     * Verification message, delivered by {@link IVerificationProcessService#startVerifyProcess(ProcessBean)}.
+     */
+    VERIFICATION,
+    /**
+     * Approbation message, delivered by {@link IVerificationProcessService#startApproveProcess(ProcessBean)}.
+     */
+    APPROBATION,
+    /**
+     * Recover password message, delivered by {@link IVerificationProcessService#startRecoverPasswordProcess(ProcessBean)}.
+     */
+    RECOVER_PASSWORD
+    ;
+}
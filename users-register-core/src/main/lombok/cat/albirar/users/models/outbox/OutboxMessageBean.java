@@ -0,0 +1,114 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.models.outbox;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Persistent;
+
+import cat.albirar.users.models.verification.ProcessBean;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * A message to deliver, saved on the outbox with the same transaction of the change that originates it.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Persistent
+public class OutboxMessageBean implements Serializable {
+    private static final long serialVersionUID = -1437630941250187655L;
+
+    /**
+     * The unique id, assigned when added to outbox.
+     * @param id The id
+     * @return The id
+     */
+    @Id
+    private String id;
+    /**
+     * The process to deliver the message.
+     * @param process The process
+     * @return The process
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private EOutboxProcess process;
+    /**
+     * The message information.
+     * @param message The message information
+     * @return The message information
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private ProcessBean message;
+    /**
+     * The delivery status.
+     * @param status The delivery status
+     * @return The delivery status
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private EOutboxStatus status;
+    /**
+     * The number of failed delivery attempts.
+     * @param attempts The number of failed attempts
+     * @return The number of failed attempts
+     */
+    private int attempts;
+    /**
+     * The timestamp of creation.
+     * @param created The timestamp of creation
+     * @return The timestamp of creation
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private LocalDateTime created;
+    /**
+     * The timestamp from which the message can be delivered, moved forward on each attempt.
+     * @param nextAttempt The timestamp of next attempt
+     * @return The timestamp of next attempt
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private LocalDateTime nextAttempt;
+    /**
+     * The id of the message on communications subsystem, once {@link EOutboxStatus#SENT sent}.
+     * @param messageId The id of the delivered message
+     * @return The id of the delivered message
+     */
+    private String messageId;
+    /**
+     * The error of the last failed attempt.
+     * @param lastError The error of last attempt
+     * @return The error of last attempt
+     */
+    private String lastError;
+}
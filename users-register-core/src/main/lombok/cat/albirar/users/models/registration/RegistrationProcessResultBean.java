@@ -27,7 +27,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
 import cat.albirar.users.models.users.UserBean;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -0,0 +1,74 @@
+/*
+ * This file is part of "albirar users-register-core".
+ * 
+ * "albirar users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.models.tokens;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Persistent;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * The token epoch of a user, the tokens issued with a lower {@link AbstractTokenBean#getTokenEpoch() epoch} are not valid.
+ * Only the users that invalidated his tokens have an epoch, the others are on epoch zero.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Persistent
+public class TokenEpochBean implements Serializable {
+    private static final long serialVersionUID = 6811437296050741129L;
+
+    /**
+     * The {@link AbstractTokenBean#getIdUser() user id}.
+     * @param idUser The user id
+     * @return The user id
+     */
+    @Id
+    @NotBlank
+    @Setter(onParam_ = {@NotBlank})
+    private String idUser;
+    /**
+     * The current epoch.
+     * @param epoch The current epoch
+     * @return The current epoch
+     */
+    private long epoch;
+    /**
+     * The timestamp of the last change of {@link #getEpoch() epoch}.
+     * @param updated The timestamp of last change
+     * @return The timestamp of last change
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private LocalDateTime updated;
+}
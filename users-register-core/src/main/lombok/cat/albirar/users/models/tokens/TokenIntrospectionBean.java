@@ -0,0 +1,86 @@
+/*
+ * This file is part of "albirar users-register-core".
+ * 
+ * "albirar users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.models.tokens;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.validation.constraints.NotNull;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.verification.ITokenManager;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * The introspection of a token by {@link ITokenManager#introspectTokens(java.util.List)}, for gateways that validate tokens on behalf of other applications.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionBean implements Serializable {
+    private static final long serialVersionUID = -2937208165620173851L;
+
+    /**
+     * The introspected token.
+     * @param token The token
+     * @return The token
+     */
+    private String token;
+    /**
+     * The outcome of decoding, {@link ETokenDecodeStatus#WRONG_CLASS} is never used.
+     * @param status The outcome
+     * @return The outcome
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private ETokenDecodeStatus status;
+    /**
+     * Indicate if the token is valid.
+     * @param valid true if the token is valid and false otherwise
+     * @return true if the token is valid and false otherwise
+     */
+    private boolean valid;
+    /**
+     * The token class, only if {@link #isValid() valid}.
+     * @param tokenClass The token class
+     * @return The token class
+     */
+    private ETokenClass tokenClass;
+    /**
+     * The {@link AbstractTokenBean#getIdUser() user id}, only if {@link #isValid() valid}.
+     * @param idUser The user id
+     * @return The user id
+     */
+    private String idUser;
+    /**
+     * The {@link AbstractTokenBean#getExpire() expiry}, only if {@link #isValid() valid}.
+     * @param expire The expiry
+     * @return The expiry
+     */
+    private LocalDateTime expire;
+}
@@ -21,8 +21,12 @@ package cat.albirar.users.models.users;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
@@ -66,6 +70,20 @@ import lombok.experimental.SuperBuilder;
 public class UserBean implements UserDetails {
     private static final long serialVersionUID = 8965242082090484736L;
     
+    public static final String FIELD_USERNAME = "username";
+    public static final String FIELD_PREFERREDCHANNEL = "preferredChannel";
+    public static final String FIELD_SECONDARYCHANNEL = "secondaryChannel";
+    public static final String FIELD_PASSWORD = "password";
+    public static final String FIELD_PREFERREDLOCALE = "preferredLocale";
+    public static final String FIELD_CREATED = "created";
+    public static final String FIELD_VERIFIED = "verified";
+    public static final String FIELD_REGISTERED = "registered";
+    public static final String FIELD_EXPIRE = "expire";
+    public static final String FIELD_LOCKED = "locked";
+    public static final String FIELD_EXPIRECREDENTIALS = "expireCredentials";
+    public static final String FIELD_ENABLED = "enabled";
+    public static final String FIELD_AUTHORITIES = "authorities";
+    
     /**
 	 * Unique identifier of user, for internal and extensions use.
 	 * @return L'id, or null (or empty or blank) if user are not persisted nor read yet 
@@ -180,4 +198,41 @@ public class UserBean implements UserDetails {
 	public boolean isCredentialsNonExpired() {
 		return (expireCredentials == null || expireCredentials.isAfter(LocalDate.now()));
 	}
+
+    /**
+     * The fields of this user that differ from the {@code original} one, as the {@code FIELD_*} names.
+     * <p>The {@link #getId() id} is not compared and the {@link #getAuthorities() authorities} are compared without order.</p>
+     * <p>The {@link #getPassword() password} is compared as a plain string, without any hashing.</p>
+     * @param original The original (saved) user
+     * @return The names of the changed fields, empty if no changes were made
+     */
+    public Set<String> changedFields(UserBean original) {
+        Set<String> r;
+        
+        r = new LinkedHashSet<>();
+        addIfChanged(r, FIELD_USERNAME, original.username, username);
+        addIfChanged(r, FIELD_PREFERREDCHANNEL, original.preferredChannel, preferredChannel);
+        addIfChanged(r, FIELD_SECONDARYCHANNEL, original.secondaryChannel, secondaryChannel);
+        addIfChanged(r, FIELD_PASSWORD, original.password, password);
+        addIfChanged(r, FIELD_PREFERREDLOCALE, original.preferredLocale, preferredLocale);
+        addIfChanged(r, FIELD_CREATED, original.created, created);
+        addIfChanged(r, FIELD_VERIFIED, original.verified, verified);
+        addIfChanged(r, FIELD_REGISTERED, original.registered, registered);
+        addIfChanged(r, FIELD_EXPIRE, original.expire, expire);
+        addIfChanged(r, FIELD_LOCKED, original.locked, locked);
+        addIfChanged(r, FIELD_EXPIRECREDENTIALS, original.expireCredentials, expireCredentials);
+        addIfChanged(r, FIELD_ENABLED, original.enabled, enabled);
+        addIfChanged(r, FIELD_AUTHORITIES, sortedAuthorities(original.authorities), sortedAuthorities(authorities));
+        return r;
+    }
+    
+    private static void addIfChanged(Set<String> changes, String field, Object original, Object updated) {
+        if(!Objects.equals(original, updated)) {
+            changes.add(field);
+        }
+    }
+    
+    private static List<AuthorizationBean> sortedAuthorities(List<AuthorizationBean> authorities) {
+        return (authorities == null ? null : authorities.stream().sorted().collect(Collectors.toList()));
+    }
 }
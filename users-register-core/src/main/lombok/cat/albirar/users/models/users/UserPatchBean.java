@@ -0,0 +1,160 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.models.users;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import javax.validation.Valid;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Singular;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * A partial update of a {@link UserBean}, see {@link cat.albirar.users.repos.IUserRepo#patch(String, UserPatchBean)}.
+ * <p>Only the informed (non null) fields are changed, the rest are kept as they are.
+ * The optional fields can be set to null by adding the {@link UserBean} {@code FIELD_*} name to {@link #getCleared() cleared}.</p>
+ * <p>The {@link UserBean#getId() id}, {@link UserBean#getCreated() created} timestamp and {@link UserBean#getAuthorities() authorities} cannot be patched.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPatchBean implements Serializable {
+    private static final long serialVersionUID = -2309480186517264721L;
+    
+    /**
+     * The new user name.
+     */
+    private String username;
+    /**
+     * The new preferred channel.
+     */
+    @Valid
+    private CommunicationChannelBean preferredChannel;
+    /**
+     * The new secondary channel, can be cleared with {@link UserBean#FIELD_SECONDARYCHANNEL}.
+     */
+    @Valid
+    private CommunicationChannelBean secondaryChannel;
+    /**
+     * The new password, <b>encoded</b>.
+     */
+    private String password;
+    /**
+     * The new verified timestamp, can be cleared with {@link UserBean#FIELD_VERIFIED}.
+     */
+    private LocalDateTime verified;
+    /**
+     * The new registered timestamp, can be cleared with {@link UserBean#FIELD_REGISTERED}.
+     */
+    private LocalDateTime registered;
+    /**
+     * The new expiration date, can be cleared with {@link UserBean#FIELD_EXPIRE}.
+     */
+    private LocalDate expire;
+    /**
+     * The new locked date, can be cleared with {@link UserBean#FIELD_LOCKED}.
+     */
+    private LocalDate locked;
+    /**
+     * The new credentials expiration date, can be cleared with {@link UserBean#FIELD_EXPIRECREDENTIALS}.
+     */
+    private LocalDate expireCredentials;
+    /**
+     * The new enabled indicator.
+     */
+    private Boolean enabled;
+    /**
+     * The {@link UserBean} {@code FIELD_*} names of optional fields to set to null.
+     */
+    @Singular("clear")
+    private Set<String> cleared;
+    
+    /**
+     * Check if this patch doesn't change anything.
+     * @return true if no field is informed nor cleared
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return username == null && preferredChannel == null && secondaryChannel == null && password == null
+                && verified == null && registered == null && expire == null && locked == null
+                && expireCredentials == null && enabled == null
+                && (cleared == null || cleared.isEmpty());
+    }
+    /**
+     * Apply this patch to a copy of the indicated {@code user}.
+     * @param user The user to patch
+     * @return A patched copy of {@code user}
+     */
+    public UserBean applyTo(UserBean user) {
+        UserBean r;
+        
+        r = user.toBuilder().build();
+        if(username != null) {
+            r.setUsername(username);
+        }
+        if(preferredChannel != null) {
+            r.setPreferredChannel(preferredChannel);
+        }
+        if(secondaryChannel != null || isCleared(UserBean.FIELD_SECONDARYCHANNEL)) {
+            r.setSecondaryChannel(secondaryChannel);
+        }
+        if(password != null) {
+            r.setPassword(password);
+        }
+        if(verified != null || isCleared(UserBean.FIELD_VERIFIED)) {
+            r.setVerified(verified);
+        }
+        if(registered != null || isCleared(UserBean.FIELD_REGISTERED)) {
+            r.setRegistered(registered);
+        }
+        if(expire != null || isCleared(UserBean.FIELD_EXPIRE)) {
+            r.setExpire(expire);
+        }
+        if(locked != null || isCleared(UserBean.FIELD_LOCKED)) {
+            r.setLocked(locked);
+        }
+        if(expireCredentials != null || isCleared(UserBean.FIELD_EXPIRECREDENTIALS)) {
+            r.setExpireCredentials(expireCredentials);
+        }
+        if(enabled != null) {
+            r.setEnabled(enabled.booleanValue());
+        }
+        return r;
+    }
+    /**
+     * Check if the indicated {@code field} should to be set to null.
+     * @param field The {@link UserBean} {@code FIELD_*} name
+     * @return true if cleared
+     */
+    public boolean isCleared(String field) {
+        return cleared != null && cleared.contains(field);
+    }
+}
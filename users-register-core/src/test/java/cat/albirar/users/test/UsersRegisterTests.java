@@ -6,26 +6,26 @@ import java.util.Date;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
-import javax.crypto.SecretKey;
-
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
-import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import cat.albirar.users.config.UsersRegisterConfiguration;
-import cat.albirar.users.models.tokens.AbstractTokenBean.AbstractTokenBeanBuilder;
-import cat.albirar.users.models.tokens.ETokenClass;
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.registration.IRegistrationService;
 import cat.albirar.users.repos.IAccountRepo;
 import cat.albirar.users.repos.IUserRepo;
 import cat.albirar.users.test.context.DefaultContextTestConfiguration;
+import cat.albirar.users.tokens.models.AbstractTokenBean.AbstractTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.verification.IJwsKeyRing;
 import cat.albirar.users.verification.ITokenManager;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 
@@ -35,8 +35,7 @@ import io.jsonwebtoken.Jwts;
  * @since 1.0.0
  */
 @ExtendWith(SpringExtension.class)
-@ContextConfiguration(classes = {UsersRegisterConfiguration.class, DefaultContextTestConfiguration.class})
-@WebAppConfiguration
+@ContextConfiguration(classes = {UsersRegisterServicesConfiguration.class, DefaultContextTestConfiguration.class})
 @DirtiesContext
 public abstract class UsersRegisterTests extends UsersRegisterAbstractDataTest {
 
@@ -50,6 +49,8 @@ public abstract class UsersRegisterTests extends UsersRegisterAbstractDataTest {
     protected ITokenManager tokenManager;
     @Autowired
     protected PasswordEncoder passwordEncoder;
+    @Autowired
+    protected IJwsKeyRing jwsKeyRing;
     
     protected <T extends AbstractTokenBeanBuilder<?,?>> T buildAbstractToken(T tokenBeanBuilder) {
         tokenBeanBuilder
@@ -73,13 +74,14 @@ public abstract class UsersRegisterTests extends UsersRegisterAbstractDataTest {
     }
 
     protected JwtBuilder createJwtBuilder() {
-        SecretKey jwsSecretKey;
+        JwsKeyBean signingKey;
         
-        jwsSecretKey = (SecretKey) ReflectionTestUtils.getField(tokenManager, "jwsSecretKey");
+        signingKey = jwsKeyRing.getSigningKey();
         // Builder
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                 .claim("XXX", "XXX")
-                .signWith(jwsSecretKey)
+                .signWith(signingKey.getKey())
                 ;
     }
 
@@ -18,13 +18,30 @@
  */
 package cat.albirar.users.test.context;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+import cat.albirar.users.models.tokens.TokenEpochBean;
 import cat.albirar.users.repos.IAccountRepo;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+import cat.albirar.users.repos.IOutboxRepo;
+import cat.albirar.users.repos.ITokenEpochRepo;
 import cat.albirar.users.repos.IUserRepo;
 
 /**
@@ -47,4 +64,75 @@ public class DefaultContextTestConfiguration {
         LOGGER.debug("Mocking account repo...");
         return Mockito.mock(IAccountRepo.class);
     }
+    
+    @Bean
+    public IConsumedTokenRepo consumedTokenRepo() {
+        IConsumedTokenRepo repo;
+        Map<String, ConsumedTokenBean> consumed;
+        
+        LOGGER.debug("Mocking consumed token repo...");
+        repo = Mockito.mock(IConsumedTokenRepo.class);
+        consumed = new ConcurrentHashMap<>();
+        Mockito.when(repo.consume(Mockito.any())).thenAnswer(i -> consumed.putIfAbsent(i.<ConsumedTokenBean>getArgument(0).getTokenId(), i.getArgument(0)) == null);
+        Mockito.when(repo.existsById(Mockito.anyString())).thenAnswer(i -> consumed.containsKey(i.<String>getArgument(0)));
+        Mockito.when(repo.findAllActiveIds()).thenAnswer(i -> new ArrayList<>(consumed.keySet()));
+        return repo;
+    }
+    
+    @Bean
+    public ITokenEpochRepo tokenEpochRepo() {
+        ITokenEpochRepo repo;
+        Map<String, Long> epochs;
+        
+        LOGGER.debug("Mocking token epoch repo...");
+        repo = Mockito.mock(ITokenEpochRepo.class);
+        epochs = new ConcurrentHashMap<>();
+        Mockito.when(repo.increment(Mockito.anyString())).thenAnswer(i -> epochs.merge(i.getArgument(0), 1L, Long::sum));
+        Mockito.when(repo.findAll()).thenAnswer(i -> epochs.entrySet().stream()
+                .map(e -> TokenEpochBean.builder().idUser(e.getKey()).epoch(e.getValue()).updated(LocalDateTime.now()).build())
+                .collect(Collectors.toList()));
+        return repo;
+    }
+    
+    @Bean
+    public IOutboxRepo outboxRepo() {
+        IOutboxRepo repo;
+        Map<String, OutboxMessageBean> messages;
+        AtomicLong ids;
+        
+        LOGGER.debug("Mocking outbox repo...");
+        repo = Mockito.mock(IOutboxRepo.class);
+        messages = new ConcurrentHashMap<>();
+        ids = new AtomicLong();
+        Mockito.when(repo.add(Mockito.any())).thenAnswer(i -> {
+            OutboxMessageBean m;
+            
+            m = i.<OutboxMessageBean>getArgument(0).toBuilder().id(String.format("%024d", ids.incrementAndGet())).build();
+            messages.put(m.getId(), m);
+            return m.toBuilder().build();
+        });
+        Mockito.when(repo.claimDue(Mockito.any(), Mockito.any(), Mockito.anyInt())).thenAnswer(i -> {
+            List<OutboxMessageBean> claimed;
+            
+            synchronized (messages) {
+                claimed = messages.values().stream()
+                        .filter(m -> m.getStatus() == EOutboxStatus.PENDING && !m.getNextAttempt().isAfter(i.getArgument(0)))
+                        .sorted(Comparator.comparing(OutboxMessageBean::getNextAttempt))
+                        .limit(i.<Integer>getArgument(2))
+                        .map(m -> m.toBuilder().nextAttempt(i.getArgument(1)).build())
+                        .collect(Collectors.toList());
+                claimed.forEach(m -> messages.put(m.getId(), m));
+            }
+            return claimed.stream().map(m -> m.toBuilder().build()).collect(Collectors.toList());
+        });
+        Mockito.doAnswer(i -> messages.computeIfPresent(i.getArgument(0), (k, m) -> m.toBuilder().status(EOutboxStatus.SENT).messageId(i.getArgument(1)).message(m.getMessage().toBuilder().token(null).build()).build()))
+            .when(repo).markSent(Mockito.anyString(), Mockito.any());
+        Mockito.doAnswer(i -> messages.computeIfPresent(i.getArgument(0), (k, m) -> m.toBuilder().attempts(i.<Integer>getArgument(1)).nextAttempt(i.getArgument(2)).lastError(i.getArgument(3)).build()))
+            .when(repo).markFailed(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+        Mockito.doAnswer(i -> messages.computeIfPresent(i.getArgument(0), (k, m) -> m.toBuilder().status(EOutboxStatus.DEAD).attempts(i.<Integer>getArgument(1)).lastError(i.getArgument(2)).message(m.getMessage().toBuilder().token(null).build()).build()))
+            .when(repo).markDead(Mockito.anyString(), Mockito.anyInt(), Mockito.any());
+        Mockito.when(repo.findById(Mockito.anyString())).thenAnswer(i -> Optional.ofNullable(messages.get(i.<String>getArgument(0))).map(m -> m.toBuilder().build()));
+        Mockito.when(repo.countByStatus(Mockito.any())).thenAnswer(i -> messages.values().stream().filter(m -> m.getStatus() == i.getArgument(0)).count());
+        return repo;
+    }
 }
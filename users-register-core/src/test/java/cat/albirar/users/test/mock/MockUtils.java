@@ -20,22 +20,30 @@ package cat.albirar.users.test.mock;
 
 import static cat.albirar.users.test.mock.ValidMatchers.anyObject;
 import static cat.albirar.users.test.mock.ValidMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.AopTestUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
 import cat.albirar.users.models.account.AccountBean;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 import cat.albirar.users.repos.IAccountRepo;
 import cat.albirar.users.repos.IUserRepo;
 import cat.albirar.users.test.UsersRegisterAbstractDataTest;
@@ -127,6 +135,15 @@ public class MockUtils extends UsersRegisterAbstractDataTest {
             }
         });
         when(userRepo.count()).thenReturn((long)REAL_USERS.length);
+        // Void method, stubbed on the mock behind the validation proxy
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Consumer<UserBean> consumer = invocation.getArgument(0);
+                Stream.of(REAL_USERS).forEach(consumer);
+                return null;
+            }
+        }).when(AopTestUtils.<IUserRepo>getUltimateTargetObject(userRepo)).forEachUser(any());
         
         when(userRepo.save(anyObject(UserBean.class, USERS[0]))).thenAnswer(new Answer<UserBean>() {
             @Override
@@ -168,6 +185,87 @@ public class MockUtils extends UsersRegisterAbstractDataTest {
                 return savedUser;
             }
         });
+        when(userRepo.insert(anyObject(UserBean.class, USERS[0]))).thenAnswer(new Answer<UserBean>() {
+            @Override
+            public UserBean answer(InvocationOnMock invocation) throws Throwable {
+                UserBean newUser = invocation.getArgument(0);
+                UserBean savedUser;
+                
+                // Constraints
+                if(Stream.of(REAL_USERS).anyMatch(u -> u.getUsername().equals(newUser.getUsername()))) {
+                    throw new DuplicateKeyException(String.format(IUserRepo.MSG_USERNAME_IN_USE, newUser.getUsername()));
+                }
+                if(Stream.of(REAL_USERS).anyMatch(u -> u.getPreferredChannel().equals(newUser.getPreferredChannel()))) {
+                    throw new DuplicateKeyException(String.format(IUserRepo.MSG_CHANNEL_IN_USE, newUser.getPreferredChannel().getChannelType().name().toLowerCase(), newUser.getPreferredChannel().getChannelId()));
+                }
+                if(!StringUtils.hasText(newUser.getId())) {
+                    savedUser = newUser.toBuilder().id(UUID.randomUUID().toString()).build();
+                } else {
+                    savedUser = newUser.toBuilder().build();
+                }
+                REAL_USERS = Arrays.copyOf(REAL_USERS, REAL_USERS.length + 1);
+                REAL_USERS[REAL_USERS.length - 1] = savedUser;
+                return savedUser;
+            }
+        });
+        when(userRepo.patch(anyString(DUMMY_ID), anyObject(UserPatchBean.class, UserPatchBean.builder().build()))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                String id = invocation.getArgument(0);
+                UserPatchBean changes = invocation.getArgument(1);
+                
+                // Constraints
+                if(Stream.of(REAL_USERS).anyMatch(u -> !u.getId().equals(id) 
+                        && (u.getUsername().equals(changes.getUsername())
+                                || u.getPreferredChannel().equals(changes.getPreferredChannel())))) {
+                    throw new DuplicateKeyException(String.format("Another user with the username %s or preferred channel %s is found, cannot be patched!", changes.getUsername(), changes.getPreferredChannel()));
+                }
+                for(int n = 0; n < REAL_USERS.length; n++) {
+                    if(REAL_USERS[n].getId().equals(id)) {
+                        REAL_USERS[n] = changes.applyTo(REAL_USERS[n]);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        when(userRepo.markVerified(anyString(DUMMY_ID), anyObject(LocalDateTime.class, LocalDateTime.now()), anyBoolean())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                String id = invocation.getArgument(0);
+                LocalDateTime verified = invocation.getArgument(1);
+                boolean registeredToo = invocation.getArgument(2);
+                
+                for(int n = 0; n < REAL_USERS.length; n++) {
+                    if(REAL_USERS[n].getId().equals(id)) {
+                        if(REAL_USERS[n].getVerified() != null) {
+                            return false;
+                        }
+                        REAL_USERS[n] = REAL_USERS[n].toBuilder().verified(verified).registered(registeredToo ? verified : null).enabled(registeredToo).build();
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        when(userRepo.markApproved(anyString(DUMMY_ID), anyObject(LocalDateTime.class, LocalDateTime.now()))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                String id = invocation.getArgument(0);
+                LocalDateTime registered = invocation.getArgument(1);
+                
+                for(int n = 0; n < REAL_USERS.length; n++) {
+                    if(REAL_USERS[n].getId().equals(id)) {
+                        if(REAL_USERS[n].getVerified() == null || REAL_USERS[n].getRegistered() != null) {
+                            return false;
+                        }
+                        REAL_USERS[n] = REAL_USERS[n].toBuilder().registered(registered).enabled(true).build();
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
         
         return this;
     }
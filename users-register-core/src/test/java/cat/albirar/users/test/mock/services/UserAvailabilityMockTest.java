@@ -0,0 +1,105 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.mock.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.registration.IUserAvailability;
+import cat.albirar.users.repos.IUserRepo;
+import cat.albirar.users.services.SpringSecurityUserService;
+import cat.albirar.users.services.UserAvailability;
+import cat.albirar.users.test.UsersRegisterTests;
+import cat.albirar.users.test.mock.MockUtils;
+
+/**
+ * Test for {@link IUserAvailability} with the filter enabled.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class UserAvailabilityMockTest extends UsersRegisterTests {
+    
+    @Autowired
+    private IUserAvailability userAvailability;
+    
+    @Autowired
+    private SpringSecurityUserService springSecurityUserService;
+    
+    private IUserRepo mockedRepo;
+    
+    @DynamicPropertySource
+    public static void filterProperties(DynamicPropertyRegistry registry) {
+        registry.add(PropertiesCore.USERS_FILTER_PROP_ENABLED, () -> "true");
+        registry.add(PropertiesCore.USERS_FILTER_PROP_FPP, () -> "0.000001");
+        registry.add(PropertiesCore.USERS_FILTER_PROP_REFRESH, () -> "0");
+    }
+    
+    @BeforeEach
+    public void setupTest() {
+        MockUtils.instance().setupRegisteredUsers(userRepo);
+        // The filter was built on start, before the users were mocked
+        AopTestUtils.<UserAvailability>getUltimateTargetObject(userAvailability).rebuild();
+        mockedRepo = AopTestUtils.getUltimateTargetObject(userRepo);
+        Mockito.clearInvocations(mockedRepo);
+    }
+    
+    @Test
+    public void testUsername() {
+        for(int n = 0; n < USERS.length; n++) {
+            Assertions.assertTrue(userAvailability.mightExistUsername(USERS[n].getUsername()));
+            Assertions.assertFalse(userAvailability.isUsernameAvailable(USERS[n].getUsername()));
+        }
+        Assertions.assertFalse(userAvailability.mightExistUsername(DUMMY_USERNAME));
+        Assertions.assertTrue(userAvailability.isUsernameAvailable(DUMMY_USERNAME));
+        Mockito.verify(mockedRepo, Mockito.never()).existsByUsername(DUMMY_USERNAME);
+    }
+    
+    @Test
+    public void testChannel() {
+        Assertions.assertFalse(userAvailability.isChannelAvailable(USERS[0].getPreferredChannel()));
+        Assertions.assertTrue(userAvailability.isChannelAvailable(SAMPLE_NEW_CHANNEL));
+        Mockito.verify(mockedRepo, Mockito.never()).existsByPreferredChannel(SAMPLE_NEW_CHANNEL);
+    }
+    
+    @Test
+    public void testAdd() {
+        Assertions.assertFalse(userAvailability.mightExistUsername(DUMMY_USERNAME));
+        userAvailability.add(USERS[0].toBuilder().username(DUMMY_USERNAME).preferredChannel(SAMPLE_NEW_CHANNEL).build());
+        Assertions.assertTrue(userAvailability.mightExistUsername(DUMMY_USERNAME));
+        // Now goes to repository, that have not the user
+        Assertions.assertTrue(userAvailability.isChannelAvailable(SAMPLE_NEW_CHANNEL));
+        Mockito.verify(mockedRepo).existsByPreferredChannel(SAMPLE_NEW_CHANNEL);
+    }
+    
+    @Test
+    public void testAuthenticationNotFiltered() {
+        // The user can be registered on another instance and not yet on filter
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> springSecurityUserService.loadUserByUsername(DUMMY_USERNAME));
+        Mockito.verify(mockedRepo).findByUsername(DUMMY_USERNAME);
+        Assertions.assertNotNull(springSecurityUserService.loadUserByUsername(SAMPLE_REGISTERED_USER.getUsername()));
+    }
+}
@@ -18,6 +18,8 @@
  */
 package cat.albirar.users.test.repos;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -29,12 +31,14 @@ import javax.validation.ConstraintViolationException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.util.StringUtils;
 
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
 import cat.albirar.users.models.auth.AuthorizationBean;
 import cat.albirar.users.models.auth.ERole;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 import cat.albirar.users.repos.IUserRepo;
 import cat.albirar.users.test.UsersRegisterTests;
 
@@ -64,6 +68,23 @@ public abstract class UserRepoTest extends UsersRegisterTests {
         }
     }
     
+    @Test
+    public void testForEachUser() {
+        List<UserBean> r;
+        
+        r = new ArrayList<>();
+        userRepo.forEachUser(r::add);
+        Assertions.assertEquals(USERS.length, r.size());
+        r = r.stream().sorted((c1,c2)->c1.getId().compareTo(c2.getId())).collect(Collectors.toList());
+        for(UserBean expected : Stream.of(USERS).sorted((c1,c2)->c1.getId().compareTo(c2.getId())).collect(Collectors.toList())) {
+            Assertions.assertEquals(expected.getId(), r.get(0).getId());
+            Assertions.assertEquals(expected.getUsername(), r.get(0).getUsername());
+            Assertions.assertEquals(expected.getPreferredChannel(), r.get(0).getPreferredChannel());
+            Assertions.assertEquals(expected.getSecondaryChannel(), r.get(0).getSecondaryChannel());
+            r.remove(0);
+        }
+    }
+    
     @Test
     public void testExistById() {
         Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.existsById(null));
@@ -196,6 +217,105 @@ public abstract class UserRepoTest extends UsersRegisterTests {
         }
     }
     
+    @Test
+    public void testInsert() {
+        UserBean usr, usr1;
+        DuplicateKeyException e;
+        
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.insert(null));
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.insert(UserBean.builder().username("   ").build()));
+        
+        // Duplications, with the same messages of registration
+        e = Assertions.assertThrows(DuplicateKeyException.class, () -> userRepo.insert(USERS[0].toBuilder().id(null).preferredChannel(SAMPLE_NEW_CHANNEL).build()));
+        Assertions.assertEquals(String.format(IUserRepo.MSG_USERNAME_IN_USE, USERS[0].getUsername()), e.getMessage());
+        e = Assertions.assertThrows(DuplicateKeyException.class, () -> userRepo.insert(USERS[0].toBuilder().id(null).username(DUMMY_USERNAME).build()));
+        Assertions.assertEquals(String.format(IUserRepo.MSG_CHANNEL_IN_USE, USERS[0].getPreferredChannel().getChannelType().name().toLowerCase(), USERS[0].getPreferredChannel().getChannelId()), e.getMessage());
+        
+        // Inserting OK
+        usr = USERS[0].toBuilder().id(null).username(DUMMY_USERNAME).preferredChannel(SAMPLE_NEW_CHANNEL).build();
+        usr1 = userRepo.insert(usr);
+        Assertions.assertNotNull(usr1);
+        Assertions.assertTrue(StringUtils.hasText(usr1.getId()));
+        usr.setId(usr1.getId());
+        equalsUsers(usr, usr1);
+        equalsUsers(usr1, userRepo.findById(usr1.getId()).get());
+    }
+    
+    @Test
+    public void testPatch() {
+        UserBean usr;
+        LocalDate locked;
+        
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.patch(null, UserPatchBean.builder().build()));
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.patch("  ", UserPatchBean.builder().build()));
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.patch(SAMPLE_REGISTERED_USER.getId(), null));
+        
+        // Not found
+        Assertions.assertFalse(userRepo.patch(DUMMY_ID, UserPatchBean.builder().enabled(false).build()));
+        // Duplications
+        Assertions.assertThrows(DataIntegrityViolationException.class, () -> userRepo.patch(SAMPLE_REGISTERED_USER.getId(), UserPatchBean.builder().username(USERS[0].getUsername()).build()));
+        
+        // Only the informed fields are changed
+        locked = LocalDate.now().plusDays(10);
+        Assertions.assertTrue(userRepo.patch(SAMPLE_REGISTERED_USER.getId(), UserPatchBean.builder()
+                .secondaryChannel(CHANNELS[6])
+                .locked(locked)
+                .enabled(false)
+                .build()));
+        usr = userRepo.findById(SAMPLE_REGISTERED_USER.getId()).get();
+        Assertions.assertEquals(CHANNELS[6], usr.getSecondaryChannel());
+        Assertions.assertEquals(locked, usr.getLocked());
+        Assertions.assertFalse(usr.isEnabled());
+        equalsUsers(SAMPLE_REGISTERED_USER.toBuilder().secondaryChannel(CHANNELS[6]).locked(locked).enabled(false).build(), usr);
+        
+        // Cleared fields
+        Assertions.assertTrue(userRepo.patch(SAMPLE_REGISTERED_USER.getId(), UserPatchBean.builder()
+                .clear(UserBean.FIELD_SECONDARYCHANNEL)
+                .clear(UserBean.FIELD_LOCKED)
+                .enabled(true)
+                .build()));
+        usr = userRepo.findById(SAMPLE_REGISTERED_USER.getId()).get();
+        Assertions.assertNull(usr.getSecondaryChannel());
+        Assertions.assertNull(usr.getLocked());
+        Assertions.assertTrue(usr.isEnabled());
+    }
+    
+    @Test
+    public void testMarkVerifiedApproved() {
+        UserBean usr;
+        LocalDateTime now;
+        
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.markVerified("  ", LocalDateTime.now(), true));
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.markVerified(SAMPLE_CREATED_USER.getId(), null, true));
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.markApproved("  ", LocalDateTime.now()));
+        Assertions.assertThrows(ConstraintViolationException.class, () -> userRepo.markApproved(SAMPLE_CREATED_USER.getId(), null));
+        
+        // Not found
+        Assertions.assertFalse(userRepo.markVerified(DUMMY_ID, LocalDateTime.now(), true));
+        Assertions.assertFalse(userRepo.markApproved(DUMMY_ID, LocalDateTime.now()));
+        // Already verified or registered
+        Assertions.assertFalse(userRepo.markVerified(SAMPLE_VERIFIED_USER.getId(), LocalDateTime.now(), true));
+        Assertions.assertFalse(userRepo.markApproved(SAMPLE_REGISTERED_USER.getId(), LocalDateTime.now()));
+        // Not verified, cannot be approved
+        Assertions.assertFalse(userRepo.markApproved(SAMPLE_CREATED_USER.getId(), LocalDateTime.now()));
+        
+        // Verified, only once
+        now = LocalDateTime.now();
+        Assertions.assertTrue(userRepo.markVerified(SAMPLE_CREATED_USER.getId(), now, false));
+        Assertions.assertFalse(userRepo.markVerified(SAMPLE_CREATED_USER.getId(), now, false));
+        usr = userRepo.findById(SAMPLE_CREATED_USER.getId()).get();
+        Assertions.assertNotNull(usr.getVerified());
+        Assertions.assertNull(usr.getRegistered());
+        Assertions.assertFalse(usr.isEnabled());
+        
+        // Approved, only once
+        Assertions.assertTrue(userRepo.markApproved(SAMPLE_CREATED_USER.getId(), now));
+        Assertions.assertFalse(userRepo.markApproved(SAMPLE_CREATED_USER.getId(), now));
+        usr = userRepo.findById(SAMPLE_CREATED_USER.getId()).get();
+        Assertions.assertNotNull(usr.getRegistered());
+        Assertions.assertTrue(usr.isEnabled());
+    }
+    
     @Test
     public void testSaveAuthorities() {
         UserBean usr, usr1;
@@ -223,6 +343,19 @@ public abstract class UserRepoTest extends UsersRegisterTests {
         auths = auths.stream().sorted((a1, a2) -> a1.getAuthority().compareTo(a2.getAuthority())).collect(Collectors.toList());
         usrauth = usr1.getAuthorities().stream().sorted((a1, a2) -> a1.getAuthority().compareTo(a2.getAuthority())).collect(Collectors.toList());
         Assertions.assertEquals(auths, usrauth);
+        
+        // Removed and added at once, check the persisted ones
+        auths = new ArrayList<>();
+        auths.add(AuthorizationBean.builder().authority(DUMMY_ROLE).build());
+        auths.add(AuthorizationBean.builder().authority(ERole.User.name()).build());
+        usr = USERS[0].toBuilder().authorities(new ArrayList<>(auths)).build();
+        usr1 = userRepo.save(usr);
+        Assertions.assertEquals(auths, usr1.getAuthorities());
+        usr1 = userRepo.findById(usr.getId()).get();
+        equalsUsers(usr, usr1);
+        auths = auths.stream().sorted((a1, a2) -> a1.getAuthority().compareTo(a2.getAuthority())).collect(Collectors.toList());
+        usrauth = usr1.getAuthorities().stream().sorted((a1, a2) -> a1.getAuthority().compareTo(a2.getAuthority())).collect(Collectors.toList());
+        Assertions.assertEquals(auths, usrauth);
     }
     /**
      * Verify if {@code actual} is equal to {@code expected} without password and compare until seconds for timestamps. 
@@ -0,0 +1,84 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.registration.IPasswordHasher;
+import cat.albirar.users.test.UsersRegisterTests;
+
+/**
+ * Test for {@link IPasswordHasher}, with a pool of one thread and one waiting hash.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class PasswordHasherTest extends UsersRegisterTests {
+    
+    @Autowired
+    private IPasswordHasher passwordHasher;
+    
+    @DynamicPropertySource
+    public static void hashingProperties(DynamicPropertyRegistry registry) {
+        registry.add(PropertiesCore.HASHING_PROP_THREADS, () -> "1");
+        registry.add(PropertiesCore.HASHING_PROP_QUEUE, () -> "1");
+    }
+    
+    @Test
+    public void testEncodeMatches() {
+        String encoded;
+        
+        encoded = passwordHasher.encode(PASSWORDS[0]);
+        Assertions.assertNotEquals(PASSWORDS[0], encoded);
+        Assertions.assertTrue(passwordHasher.matches(PASSWORDS[0], encoded));
+        Assertions.assertFalse(passwordHasher.matches(PASSWORDS[1], encoded));
+        Assertions.assertTrue(passwordEncoder.matches(PASSWORDS[0], encoded));
+        Assertions.assertEquals(0, passwordHasher.getQueued());
+        Assertions.assertEquals(0, passwordHasher.getRunning());
+    }
+    
+    @Test
+    public void testRejected() {
+        List<CompletableFuture<String>> futures;
+        long rejected;
+        
+        futures = new ArrayList<>();
+        rejected = passwordHasher.getRejected();
+        // Each hash takes some hundred of milliseconds, so the third one finds the pool and the queue full
+        Assertions.assertThrows(RejectedExecutionException.class, () -> {
+            for(int n = 0; n < 3; n++) {
+                futures.add(passwordHasher.encodeAsync(PASSWORDS[0]));
+            }
+        });
+        Assertions.assertEquals(rejected + 1, passwordHasher.getRejected());
+        Assertions.assertEquals(2, futures.size());
+        for(CompletableFuture<String> f : futures) {
+            Assertions.assertTrue(passwordEncoder.matches(PASSWORDS[0], f.join()));
+        }
+    }
+}
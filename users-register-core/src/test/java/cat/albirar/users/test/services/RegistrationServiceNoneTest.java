@@ -30,7 +30,7 @@ import cat.albirar.users.models.registration.RegistrationProcessResultBean;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.registration.IRegistrationService;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
 
 /**
  * Test for registration without any verification ({@link EVerificationProcess#NONE}).
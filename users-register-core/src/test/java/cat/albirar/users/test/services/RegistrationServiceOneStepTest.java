@@ -19,10 +19,13 @@
 package cat.albirar.users.test.services;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.util.StringUtils;
@@ -31,7 +34,7 @@ import cat.albirar.users.models.registration.RegistrationProcessResultBean;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.registration.IRegistrationService;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
 
 /**
  * Test for registration process with own confirmation ({@link EVerificationProcess#ONE_STEP}).
@@ -53,6 +56,8 @@ public abstract class RegistrationServiceOneStepTest extends UsersRegisterTests
         r = registrationService.registerUser(SAMPLE_NEW_USER.getUsername(), SAMPLE_NEW_USER.getPreferredChannel(), SAMPLE_NEW_USER.getPassword());
         // Conditions after registration with one step verification...
         Assertions.assertNotNull(r);
+        // The id of verification message on outbox
+        Assertions.assertTrue(StringUtils.hasText(r.getId()));
         Assertions.assertNotNull(r.getUser());
         Assertions.assertNotNull(r.getVerificationProcess());
         Assertions.assertTrue(r.getToken().isPresent() && StringUtils.hasText(r.getToken().get()));
@@ -113,4 +118,38 @@ public abstract class RegistrationServiceOneStepTest extends UsersRegisterTests
         Assertions.assertTrue(ldt1.isBefore(oUsr.get().getVerified()) && ldt2.isAfter(oUsr.get().getVerified()));
         Assertions.assertTrue(rUsr.isEnabled());
     }
+
+    @Test
+    public void testAsyncRegistration() throws InterruptedException, ExecutionException {
+        RegistrationProcessResultBean r;
+        Optional<UserBean> oUsr;
+        Optional<Boolean> b;
+        ExecutionException e;
+        
+        r = registrationService.registerUserAsync(SAMPLE_NEW_USER.getUsername(), SAMPLE_NEW_USER.getPreferredChannel(), Locale.getDefault(), SAMPLE_NEW_USER.getPassword()).get();
+        Assertions.assertNotNull(r);
+        Assertions.assertNotNull(r.getUser());
+        Assertions.assertNotNull(r.getUser().getId());
+        Assertions.assertEquals(EVerificationProcess.ONE_STEP, r.getVerificationProcess());
+        Assertions.assertTrue(r.getToken().isPresent() && StringUtils.hasText(r.getToken().get()));
+        Assertions.assertFalse(r.getUser().isEnabled());
+        
+        // Duplicates are reported through the future
+        e = Assertions.assertThrows(ExecutionException.class, () -> registrationService.registerUserAsync(SAMPLE_NEW_USER.getUsername(), SAMPLE_NEW_USER.getPreferredChannel(), Locale.getDefault(), SAMPLE_NEW_USER.getPassword()).get());
+        Assertions.assertTrue(e.getCause() instanceof DuplicateKeyException);
+        
+        b = registrationService.verifyUserAsync(r.getToken().get()).get();
+        Assertions.assertTrue(b.isPresent());
+        Assertions.assertTrue(b.get());
+        
+        // Second verification is refused
+        b = registrationService.verifyUserAsync(r.getToken().get()).get();
+        Assertions.assertTrue(b.isPresent());
+        Assertions.assertFalse(b.get());
+        
+        oUsr = registrationService.getUserByUsername(r.getUser().getUsername());
+        Assertions.assertTrue(oUsr.isPresent());
+        Assertions.assertTrue(oUsr.get().isEnabled());
+        Assertions.assertNotNull(oUsr.get().getVerified());
+    }
 }
@@ -28,11 +28,11 @@ import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.util.StringUtils;
 
 import cat.albirar.users.models.registration.RegistrationProcessResultBean;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.registration.IRegistrationService;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
 
 /**
  * Test for registration process with own confirmation and supervisor confirmation ({@link EVerificationProcess#TWO_STEP}).
@@ -23,6 +23,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder.BCryptVersion;
 
 import cat.albirar.users.services.SpringSecurityUserService;
 import cat.albirar.users.test.UsersRegisterTests;
@@ -58,4 +60,19 @@ public abstract class SpringSecurityUserServiceTest extends UsersRegisterTests {
         ud = springSecurityUserService.loadUserByUsername(SAMPLE_REGISTERED_USER.getUsername());
         Assertions.assertNotNull(ud);
     }
+    @Test
+    public void testUpdatePassword() {
+        UserDetails ud;
+        String encoded;
+        
+        // A weaker hash should to be upgraded
+        Assertions.assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(BCryptVersion.$2Y, 4).encode(PASSWORDS[0])));
+        
+        ud = springSecurityUserService.loadUserByUsername(SAMPLE_REGISTERED_USER.getUsername());
+        encoded = passwordEncoder.encode(PASSWORDS[0]);
+        ud = springSecurityUserService.updatePassword(ud, encoded);
+        Assertions.assertNotNull(ud);
+        Assertions.assertEquals(encoded, ud.getPassword());
+        Assertions.assertEquals(encoded, userRepo.findByUsername(SAMPLE_REGISTERED_USER.getUsername()).get().getPassword());
+    }
 }
@@ -29,13 +29,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.dao.DuplicateKeyException;
 
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.services.RegistrationService;
 import cat.albirar.users.test.UsersRegisterAbstractDataTest;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
 
 /**
  * Test for invalid constraints on {@link RegistrationService}.
@@ -30,11 +30,11 @@ import org.springframework.dao.DataRetrievalFailureException;
 
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
 import cat.albirar.communications.channels.models.ECommunicationChannelType;
-import cat.albirar.users.models.tokens.ETokenClass;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.registration.IRegistrationService;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.ETokenClass;
 import cat.albirar.users.verification.ITokenManager;
 import io.jsonwebtoken.JwtBuilder;
 
@@ -215,6 +215,38 @@ public abstract class RegistrationServiceTest extends UsersRegisterTests {
         usr1 = userRepo.findById(usr.getId()).get();
         // Ensure password and authorities are for 'equal' compare
         Assertions.assertTrue(equalsEnsurePasswordAuthorities(usr, usr1));
+        
+        // Password is ignored, only changed with changePassword
+        Assertions.assertFalse(registrationService.updateUser(usr.toBuilder().password(PASSWORDS[2]).build()));
+        usr1 = userRepo.findById(usr.getId()).get();
+        Assertions.assertTrue(passwordEncoder.matches(PASSWORDS[0], usr1.getPassword()));
+    }
+    
+    @Test
+    public void testChangePassword() {
+        UserBean usr;
+        
+        // Invalids
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.changePassword(null, PASSWORDS[0], PASSWORDS[2]));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.changePassword("  ", PASSWORDS[0], PASSWORDS[2]));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.changePassword(SAMPLE_REGISTERED_USER.getId(), null, PASSWORDS[2]));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.changePassword(SAMPLE_REGISTERED_USER.getId(), PASSWORDS[0], ""));
+        // Not found user
+        Assertions.assertThrows(DataRetrievalFailureException.class, () -> registrationService.changePassword(SAMPLE_ID, PASSWORDS[0], PASSWORDS[2]));
+        // Illegal state
+        Assertions.assertThrows(IllegalStateException.class, () -> registrationService.changePassword(SAMPLE_VERIFIED_USER.getId(), PASSWORDS[0], PASSWORDS[2]));
+        
+        // Current password doesn't match
+        Assertions.assertFalse(registrationService.changePassword(SAMPLE_REGISTERED_USER.getId(), PASSWORDS[1], PASSWORDS[2]));
+        usr = userRepo.findById(SAMPLE_REGISTERED_USER.getId()).get();
+        Assertions.assertTrue(passwordEncoder.matches(PASSWORDS[0], usr.getPassword()));
+        
+        // Changed
+        Assertions.assertTrue(registrationService.changePassword(SAMPLE_REGISTERED_USER.getId(), PASSWORDS[0], PASSWORDS[2]));
+        usr = userRepo.findById(SAMPLE_REGISTERED_USER.getId()).get();
+        Assertions.assertTrue(passwordEncoder.matches(PASSWORDS[2], usr.getPassword()));
+        // The rest of user is untouched
+        Assertions.assertTrue(equalsEnsurePasswordAuthorities(SAMPLE_REGISTERED_USER.toBuilder().password(PASSWORDS[2]).build(), usr));
     }
     
     @Test
@@ -222,12 +254,13 @@ public abstract class RegistrationServiceTest extends UsersRegisterTests {
         JwtBuilder builder;
         Optional<Boolean> r;
         UserBean usr;
+        String token;
         
         // Invalids
-        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword(null, null));
-        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword(null, ""));
-        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword(null, "   "));
-        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword(null, PASSWORDS[2]));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword((String)null, null));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword((String)null, ""));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword((String)null, "   "));
+        Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword((String)null, PASSWORDS[2]));
         Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword("", PASSWORDS[2]));
         Assertions.assertThrows(ValidationException.class, () -> registrationService.recoverPassword("  ", PASSWORDS[2]));
         
@@ -273,12 +306,18 @@ public abstract class RegistrationServiceTest extends UsersRegisterTests {
         builder = addTokenInformation(createJwtBuilder(), ETokenClass.RECOVER_PASSWORD, SAMPLE_REGISTERED_USER);
         builder.claim(ITokenManager.CLAIM_ORIGIN_CHANNEL, ECommunicationChannelType.EMAIL.name());
         
-        r = registrationService.recoverPassword(builder.compact(), PASSWORDS[2]);
+        token = builder.compact();
+        r = registrationService.recoverPassword(token, PASSWORDS[2]);
         Assertions.assertTrue(r.isPresent());
         Assertions.assertTrue(r.get());
         
         // Check password
         usr = userRepo.findById(SAMPLE_REGISTERED_USER.getId()).get();
         Assertions.assertTrue(passwordEncoder.matches(PASSWORDS[2], usr.getPassword()));
+        
+        // Same token again (replay)
+        r = registrationService.recoverPassword(token, PASSWORDS[1]);
+        Assertions.assertTrue(r.isPresent());
+        Assertions.assertFalse(r.get());
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder.BCryptVersion;
+
+import cat.albirar.users.utils.BCryptCalibrator;
+
+/**
+ * Test for {@link BCryptCalibrator}, with low strengths to be fast.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class BCryptCalibratorTest {
+    @Test
+    public void testInvalid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BCryptCalibrator.calibrate(BCryptVersion.$2Y, 0L, 4, 6));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BCryptCalibrator.calibrate(BCryptVersion.$2Y, 100L, 3, 6));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BCryptCalibrator.calibrate(BCryptVersion.$2Y, 100L, 4, 32));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BCryptCalibrator.calibrate(BCryptVersion.$2Y, 100L, 6, 4));
+    }
+    
+    @Test
+    public void testBounds() {
+        // Never under the minimum, even if too slow
+        Assertions.assertEquals(5, BCryptCalibrator.calibrate(BCryptVersion.$2Y, 1L, 5, 5));
+        // Never over the maximum, even if too fast
+        Assertions.assertEquals(6, BCryptCalibrator.calibrate(BCryptVersion.$2Y, 60_000L, 4, 6));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import cat.albirar.users.utils.SingleFlight;
+
+/**
+ * Test for {@link SingleFlight}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class SingleFlightTest {
+    @Test
+    public void testInvalid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SingleFlight<String, String>(-1L, 10));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SingleFlight<String, String>(1000L, 0));
+    }
+    
+    @Test
+    public void testConcurrent() throws Exception {
+        SingleFlight<String, Integer> sf;
+        CountDownLatch started, release;
+        AtomicInteger counter;
+        ExecutorService executor;
+        List<Future<Integer>> results;
+        
+        sf = new SingleFlight<>(0L, 10);
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(5);
+        try {
+            results = new ArrayList<>();
+            results.add(executor.submit(() -> sf.execute("A", () -> {
+                started.countDown();
+                await(release);
+                return counter.incrementAndGet();
+            })));
+            started.await(5, TimeUnit.SECONDS);
+            for(int n = 0; n < 4; n++) {
+                results.add(executor.submit(() -> sf.execute("A", counter::incrementAndGet)));
+            }
+            // Wait for all of them sharing the first execution
+            while(sf.getShared() < 4L) {
+                Thread.sleep(5L);
+            }
+            release.countDown();
+            for(Future<Integer> f : results) {
+                Assertions.assertEquals(1, f.get(5, TimeUnit.SECONDS).intValue());
+            }
+            Assertions.assertEquals(1L, sf.getExecutions());
+            // Without window, a new call is executed again
+            Assertions.assertEquals(2, sf.execute("A", counter::incrementAndGet).intValue());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testWindow() throws Exception {
+        SingleFlight<String, Integer> sf;
+        AtomicInteger counter;
+        
+        sf = new SingleFlight<>(100L, 1);
+        counter = new AtomicInteger();
+        Assertions.assertEquals(1, sf.execute("A", counter::incrementAndGet).intValue());
+        Assertions.assertEquals(1, sf.execute("A", counter::incrementAndGet).intValue());
+        // Other key, evicts the first
+        Assertions.assertEquals(2, sf.execute("B", counter::incrementAndGet).intValue());
+        Assertions.assertEquals(3, sf.execute("A", counter::incrementAndGet).intValue());
+        // Expired
+        Thread.sleep(150L);
+        Assertions.assertEquals(4, sf.execute("A", counter::incrementAndGet).intValue());
+    }
+    
+    @Test
+    public void testFailures() {
+        SingleFlight<String, Integer> sf;
+        
+        sf = new SingleFlight<>(1000L, 10);
+        Assertions.assertThrows(IllegalStateException.class, () -> sf.execute("A", () -> {
+            throw new IllegalStateException("Failed");
+        }));
+        // Failures are not kept
+        Assertions.assertEquals(1, sf.execute("A", () -> 1).intValue());
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
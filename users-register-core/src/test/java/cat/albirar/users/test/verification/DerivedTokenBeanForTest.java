@@ -18,8 +18,8 @@
  */
 package cat.albirar.users.test.verification;
 
-import cat.albirar.users.models.tokens.AbstractTokenBean;
-import cat.albirar.users.models.tokens.ETokenClass;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
 
 /**
  * A derived {@link AbstractTokenBean} for test purposes.
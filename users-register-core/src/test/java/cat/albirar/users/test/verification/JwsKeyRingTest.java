@@ -0,0 +1,209 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.verification;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.services.JwsKeyRing;
+import cat.albirar.users.services.TokenCache;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.verification.IJwsKeySource;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Test for {@link JwsKeyRing}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class JwsKeyRingTest {
+    private static final SecretKey LOCAL_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    
+    private JwsKeyRing keyRing;
+    private TokenCache tokenCache;
+    private List<JwsKeyBean> sourceKeys;
+    
+    @BeforeEach
+    public void setup() {
+        IJwsKeySource source;
+        
+        sourceKeys = Collections.emptyList();
+        source = () -> sourceKeys;
+        tokenCache = new TokenCache(10);
+        keyRing = new JwsKeyRing();
+        ReflectionTestUtils.setField(keyRing, "tokenCache", tokenCache);
+        ReflectionTestUtils.setField(keyRing, "keySources", Arrays.asList(source));
+        ReflectionTestUtils.setField(keyRing, "jwsSecretKey", LOCAL_KEY);
+        ReflectionTestUtils.setField(keyRing, "refreshSeconds", 0L);
+    }
+    
+    @Test
+    public void testLocalKey() {
+        JwsKeyBean key;
+        
+        keyRing.init();
+        key = keyRing.getSigningKey();
+        Assertions.assertEquals(JwsKeyRing.LOCAL_KID, key.getKid());
+        Assertions.assertEquals(LOCAL_KEY, key.getKey());
+        Assertions.assertEquals(SignatureAlgorithm.HS256, key.getAlgorithm());
+        Assertions.assertTrue(keyRing.findKey(JwsKeyRing.LOCAL_KID).isPresent());
+        Assertions.assertFalse(keyRing.findKey(null).isPresent());
+        Assertions.assertFalse(keyRing.findKey("XXX").isPresent());
+    }
+    
+    @Test
+    public void testRotation() {
+        LocalDateTime now;
+        
+        now = LocalDateTime.now();
+        sourceKeys = Arrays.asList(buildKey("expired", now.minusDays(30), now.minusDays(1))
+                , buildKey("previous", now.minusDays(10), now.plusDays(5))
+                , buildKey("current", now.minusDays(1), null)
+                , buildKey("next", now.plusDays(10), null)
+                );
+        keyRing.init();
+        
+        Assertions.assertEquals("current", keyRing.getSigningKey().getKid());
+        Assertions.assertTrue(keyRing.findKey("previous").isPresent());
+        Assertions.assertTrue(keyRing.findKey("current").isPresent());
+        Assertions.assertTrue(keyRing.findKey("next").isPresent());
+        Assertions.assertFalse(keyRing.findKey("expired").isPresent());
+        Assertions.assertFalse(keyRing.findKey(JwsKeyRing.LOCAL_KID).isPresent());
+        
+        // Rotate
+        sourceKeys = Arrays.asList(buildKey("current", now.minusDays(1), now.plusDays(10))
+                , buildKey("next", now.minusSeconds(1), null)
+                );
+        keyRing.refresh();
+        Assertions.assertEquals("next", keyRing.getSigningKey().getKid());
+        Assertions.assertTrue(keyRing.findKey("current").isPresent());
+        Assertions.assertFalse(keyRing.findKey("previous").isPresent());
+        
+        // Failing source keep the last keys
+        sourceKeys = null;
+        keyRing.refresh();
+        Assertions.assertEquals("next", keyRing.getSigningKey().getKid());
+    }
+    
+    @Test
+    public void testFailingSourceKeepsHisKeys() {
+        LocalDateTime now;
+        List<JwsKeyBean> otherKeys;
+        IJwsKeySource failing;
+        
+        now = LocalDateTime.now();
+        sourceKeys = Arrays.asList(buildKey("current", now.minusDays(1), null));
+        otherKeys = Arrays.asList(buildKey("other", now.minusDays(1), null));
+        failing = () -> {
+            if(sourceKeys == null) {
+                throw new IllegalStateException("Source down");
+            }
+            return sourceKeys;
+        };
+        ReflectionTestUtils.setField(keyRing, "keySources", Arrays.asList(failing, () -> otherKeys));
+        keyRing.init();
+        Assertions.assertTrue(keyRing.findKey("current").isPresent());
+        Assertions.assertTrue(keyRing.findKey("other").isPresent());
+        
+        // One source fails, the other one still answers
+        sourceKeys = null;
+        keyRing.refresh();
+        Assertions.assertTrue(keyRing.findKey("current").isPresent());
+        Assertions.assertTrue(keyRing.findKey("other").isPresent());
+    }
+    
+    @Test
+    public void testCacheClearedOnLostKey() {
+        LocalDateTime now;
+        JwsKeyBean previous;
+        JwsKeyBean current;
+        JwsKeyBean next;
+        
+        now = LocalDateTime.now();
+        previous = buildKey("previous", now.minusDays(10), now.plusDays(5));
+        current = buildKey("current", now.minusDays(1), null);
+        next = buildKey("next", now.plusDays(1), null);
+        sourceKeys = Arrays.asList(previous, current);
+        keyRing.init();
+        
+        // New key, nothing lost
+        cacheToken();
+        sourceKeys = Arrays.asList(previous, current, next);
+        keyRing.refresh();
+        Assertions.assertEquals(1, tokenCache.size());
+        
+        // Retired key
+        sourceKeys = Arrays.asList(current, next);
+        keyRing.refresh();
+        Assertions.assertEquals(0, tokenCache.size());
+        
+        // Expired key
+        cacheToken();
+        sourceKeys = Arrays.asList(current.toBuilder().validUntil(now.minusSeconds(1)).build(), next);
+        keyRing.refresh();
+        Assertions.assertEquals(0, tokenCache.size());
+        
+        // Other key material with the same kid
+        cacheToken();
+        sourceKeys = Arrays.asList(buildKey("next", now.plusDays(1), null));
+        keyRing.refresh();
+        Assertions.assertEquals(0, tokenCache.size());
+    }
+    
+    @Test
+    public void testNoValidKey() {
+        LocalDateTime now;
+        
+        now = LocalDateTime.now();
+        sourceKeys = Arrays.asList(buildKey("next", now.plusDays(10), null));
+        keyRing.init();
+        Assertions.assertThrows(IllegalStateException.class, () -> keyRing.getSigningKey());
+    }
+    
+    private void cacheToken() {
+        tokenCache.put("token", RecoverPasswordTokenBean.builder()
+                .tokenId("1")
+                .idUser("1")
+                .expire(LocalDateTime.now().plusDays(1))
+                .build()
+                );
+        Assertions.assertEquals(1, tokenCache.size());
+    }
+    
+    private JwsKeyBean buildKey(String kid, LocalDateTime validFrom, LocalDateTime validUntil) {
+        return JwsKeyBean.builder()
+                .kid(kid)
+                .key(Keys.secretKeyFor(SignatureAlgorithm.HS256))
+                .validFrom(validFrom)
+                .validUntil(validUntil)
+                .build()
+                ;
+    }
+}
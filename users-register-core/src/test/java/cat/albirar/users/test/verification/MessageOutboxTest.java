@@ -0,0 +1,139 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.verification;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import cat.albirar.communications.channels.models.ContactBean;
+import cat.albirar.communications.channels.models.LocalizableAttributesCommunicationChannelBean;
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.models.outbox.EOutboxProcess;
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.repos.IOutboxRepo;
+import cat.albirar.users.test.UsersRegisterTests;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.verification.IMessageOutbox;
+
+/**
+ * Test for {@link IMessageOutbox}.
+ * The background dispatcher is disabled, so each dispatch is explicit.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class MessageOutboxTest extends UsersRegisterTests {
+    
+    @Autowired
+    private IMessageOutbox messageOutbox;
+    
+    @Autowired
+    private IOutboxRepo outboxRepo;
+    
+    @DynamicPropertySource
+    public static void assignProperties(DynamicPropertyRegistry registry) {
+        registry.add(PropertiesCore.OUTBOX_PROP_POLL, () -> "0");
+        registry.add(PropertiesCore.OUTBOX_PROP_ATTEMPTS, () -> "2");
+        registry.add(PropertiesCore.OUTBOX_PROP_BACKOFF_INITIAL, () -> "0");
+    }
+    
+    @Test
+    public void testDelivered() {
+        String id;
+        OutboxMessageBean message;
+        
+        id = messageOutbox.enqueue(EOutboxProcess.VERIFICATION, buildProcess(SAMPLE_CREATED_USER, tokenManager.encodeToken(tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get())));
+        Assertions.assertNotNull(id);
+        message = outboxRepo.findById(id).get();
+        Assertions.assertEquals(EOutboxStatus.PENDING, message.getStatus());
+        Assertions.assertEquals(EOutboxProcess.VERIFICATION, message.getProcess());
+        
+        Assertions.assertEquals(1, messageOutbox.dispatch());
+        message = outboxRepo.findById(id).get();
+        Assertions.assertEquals(EOutboxStatus.SENT, message.getStatus());
+        Assertions.assertEquals(0, message.getAttempts());
+        // The token is not kept once sent
+        Assertions.assertNull(message.getMessage().getToken());
+        // Not delivered twice
+        Assertions.assertEquals(0, messageOutbox.dispatch());
+    }
+    
+    @Test
+    public void testRetriesUntilDead() {
+        String id;
+        OutboxMessageBean message;
+        
+        // The title is blank, so the delivery always fails
+        id = messageOutbox.enqueue(EOutboxProcess.VERIFICATION, buildProcess(SAMPLE_CREATED_USER, tokenManager.encodeToken(tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get())).toBuilder().title("").build());
+        
+        Assertions.assertEquals(1, messageOutbox.dispatch());
+        message = outboxRepo.findById(id).get();
+        Assertions.assertEquals(EOutboxStatus.PENDING, message.getStatus());
+        Assertions.assertEquals(1, message.getAttempts());
+        Assertions.assertNotNull(message.getLastError());
+        
+        Assertions.assertEquals(1, messageOutbox.dispatch());
+        message = outboxRepo.findById(id).get();
+        Assertions.assertEquals(EOutboxStatus.DEAD, message.getStatus());
+        Assertions.assertEquals(2, message.getAttempts());
+        
+        // Dead messages are not dispatched anymore
+        Assertions.assertEquals(0, messageOutbox.dispatch());
+    }
+    
+    @Test
+    public void testUndecodableTokenDeadWithoutRetries() {
+        String id;
+        OutboxMessageBean message;
+        
+        // The token cannot be decoded, as when expired or revoked after the enqueue
+        id = messageOutbox.enqueue(EOutboxProcess.VERIFICATION, buildProcess(SAMPLE_CREATED_USER, "XXX"));
+        
+        Assertions.assertEquals(1, messageOutbox.dispatch());
+        message = outboxRepo.findById(id).get();
+        Assertions.assertEquals(EOutboxStatus.DEAD, message.getStatus());
+        Assertions.assertEquals(1, message.getAttempts());
+        Assertions.assertTrue(message.getLastError().contains(ETokenDecodeStatus.MALFORMED.name()));
+        
+        Assertions.assertEquals(0, messageOutbox.dispatch());
+    }
+    
+    private ProcessBean buildProcess(UserBean user, String token) {
+        return ProcessBean.builder()
+                .destination(ContactBean.builder()
+                        .channelBean(LocalizableAttributesCommunicationChannelBean.builderCopy(user.getPreferredChannel()).build())
+                        .displayName(user.getUsername())
+                        .preferredLocale(user.getPreferredLocale())
+                        .build())
+                .sender(ContactBean.builder()
+                        .channelBean(LocalizableAttributesCommunicationChannelBean.builderCopy(user.getPreferredChannel()).build())
+                        .displayName("Sender")
+                        .build())
+                .token(token)
+                .title("Test")
+                .build()
+                ;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.verification;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import cat.albirar.users.services.TokenCache;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+
+/**
+ * Test for {@link TokenCache}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class TokenCacheTest {
+    
+    @Test
+    public void testDisabled() {
+        TokenCache cache;
+        
+        cache = new TokenCache(0);
+        Assertions.assertFalse(cache.isEnabled());
+        cache.put("T1", buildToken("1", LocalDateTime.now().plusDays(1)));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertFalse(cache.get("T1").isPresent());
+        Assertions.assertEquals(0L, cache.getHits());
+        Assertions.assertEquals(0L, cache.getMisses());
+    }
+    
+    @Test
+    public void testHitsAndMisses() {
+        TokenCache cache;
+        VerificationTokenBean token;
+        Optional<AbstractTokenBean> cached;
+        
+        cache = new TokenCache(10);
+        token = buildToken("1", LocalDateTime.now().plusDays(1));
+        Assertions.assertFalse(cache.get("T1").isPresent());
+        cache.put("T1", token);
+        cached = cache.get("T1");
+        Assertions.assertTrue(cached.isPresent());
+        Assertions.assertEquals(token, cached.get());
+        Assertions.assertNotSame(token, cached.get());
+        Assertions.assertFalse(cache.get("T2").isPresent());
+        Assertions.assertEquals(1L, cache.getHits());
+        Assertions.assertEquals(2L, cache.getMisses());
+        
+        cache.invalidate("T1");
+        Assertions.assertFalse(cache.get("T1").isPresent());
+        Assertions.assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testExpired() {
+        TokenCache cache;
+        
+        cache = new TokenCache(10);
+        cache.put("T1", buildToken("1", LocalDateTime.now().minusSeconds(1)));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertFalse(cache.get("T1").isPresent());
+        Assertions.assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testMaxSize() {
+        TokenCache cache;
+        
+        cache = new TokenCache(2);
+        cache.put("T1", buildToken("1", LocalDateTime.now().plusDays(1)));
+        cache.put("T2", buildToken("2", LocalDateTime.now().plusDays(1)));
+        // T1 is the most recently used
+        Assertions.assertTrue(cache.get("T1").isPresent());
+        cache.put("T3", buildToken("3", LocalDateTime.now().plusDays(1)));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertTrue(cache.get("T1").isPresent());
+        Assertions.assertFalse(cache.get("T2").isPresent());
+        Assertions.assertTrue(cache.get("T3").isPresent());
+    }
+    
+    private VerificationTokenBean buildToken(String id, LocalDateTime expire) {
+        return VerificationTokenBean.builder()
+                .tokenId(id)
+                .issued(LocalDateTime.now().minusDays(1))
+                .expire(expire)
+                .idUser("000000000000000000000001")
+                .username("user")
+                .locale(Locale.getDefault())
+                .process(EVerificationProcess.ONE_STEP)
+                .build()
+                ;
+    }
+}
@@ -20,32 +20,49 @@ package cat.albirar.users.test.verification;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.validation.ValidationException;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.StringUtils;
 
 import cat.albirar.communications.channels.models.ECommunicationChannelType;
-import cat.albirar.users.models.tokens.AbstractTokenBean;
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
-import cat.albirar.users.models.tokens.ApprobationTokenBean.ApprobationTokenBeanBuilder;
-import cat.albirar.users.models.tokens.ETokenClass;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean.RecoverPasswordTokenBeanBuilder;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean.VerificationTokenBeanBuilder;
+import cat.albirar.users.models.tokens.TokenIntrospectionBean;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.services.TokenManager;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean.ApprobationTokenBeanBuilder;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean.VerificationTokenBeanBuilder;
+import cat.albirar.users.verification.ITokenEpochs;
+import cat.albirar.users.verification.ITokenLedger;
 import cat.albirar.users.verification.ITokenManager;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
 
 /**
  * Test for {@link TokenManager}.
@@ -53,6 +70,12 @@ import io.jsonwebtoken.JwtBuilder;
  * @since 1.0.0
  */
 public class TokenManagerTest extends UsersRegisterTests {
+    @Autowired
+    private ITokenEpochs tokenEpochs;
+    
+    @Autowired
+    private ITokenLedger tokenLedger;
+    
     @Test
     public void testDecodeToken() {
         VerificationTokenBean vtk, eVtk;
@@ -628,6 +651,179 @@ public class TokenManagerTest extends UsersRegisterTests {
 
     }
 
+    @Test
+    public void testDecodeTokenBean() {
+        DecodedTokenBean<VerificationTokenBean> eDtk;
+        Optional<DecodedTokenBean<VerificationTokenBean>> oDtk;
+
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.decodeTokenBean(VerificationTokenBean.class, null));
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.decodeTokenBean(VerificationTokenBean.class, "   "));
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.encodeTokenBean(null));
+
+        Assertions.assertFalse(tokenManager.decodeTokenBean(VerificationTokenBean.class, DUMMY_TOKEN).isPresent());
+
+        eDtk = tokenManager.encodeTokenBean(tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get());
+        Assertions.assertTrue(StringUtils.hasText(eDtk.getToken()));
+        Assertions.assertTrue(tokenManager.isTokenValid(eDtk.getToken()));
+
+        oDtk = tokenManager.decodeTokenBean(VerificationTokenBean.class, eDtk.getToken());
+        Assertions.assertTrue(oDtk.isPresent());
+        Assertions.assertEquals(eDtk.getToken(), oDtk.get().getToken());
+        Assertions.assertEquals(eDtk.getTokenBean().getTokenId(), oDtk.get().getTokenBean().getTokenId());
+        Assertions.assertEquals(eDtk.getTokenBean().getIdUser(), oDtk.get().getTokenBean().getIdUser());
+        Assertions.assertEquals(eDtk.getTokenBean().getProcess(), oDtk.get().getTokenBean().getProcess());
+
+        Assertions.assertFalse(tokenManager.decodeTokenBean(ApprobationTokenBean.class, eDtk.getToken()).isPresent());
+        Assertions.assertFalse(tokenManager.decodeTokenBean(RecoverPasswordTokenBean.class, eDtk.getToken()).isPresent());
+    }
+
+    @Test
+    public void testKeyId() {
+        String token;
+        JwsKeyBean signingKey;
+
+        signingKey = jwsKeyRing.getSigningKey();
+        token = tokenManager.encodeToken(tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get());
+        Assertions.assertEquals(signingKey.getKid(), Jwts.parserBuilder()
+                .setSigningKey(signingKey.getKey())
+                .build()
+                .parseClaimsJws(token)
+                .getHeader()
+                .getKeyId());
+        Assertions.assertTrue(tokenManager.isTokenValid(token));
+
+        // No kid
+        token = addTokenInformation(Jwts.builder(), ETokenClass.VERIFICATION, SAMPLE_CREATED_USER)
+                .setIssuedAt(Date.from(LocalDateTime.now().minusMinutes(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .claim(ITokenManager.CLAIM_LOCALE, "ca_ES")
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .signWith(signingKey.getKey())
+                .compact();
+        Assertions.assertFalse(tokenManager.isTokenValid(token));
+        Assertions.assertFalse(tokenManager.decodeToken(VerificationTokenBean.class, token).isPresent());
+        // Unknown kid
+        token = addTokenInformation(Jwts.builder(), ETokenClass.VERIFICATION, SAMPLE_CREATED_USER)
+                .setHeaderParam(JwsHeader.KEY_ID, "XXX")
+                .setIssuedAt(Date.from(LocalDateTime.now().minusMinutes(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .claim(ITokenManager.CLAIM_LOCALE, "ca_ES")
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .signWith(signingKey.getKey())
+                .compact();
+        Assertions.assertFalse(tokenManager.isTokenValid(token));
+        Assertions.assertFalse(tokenManager.decodeToken(VerificationTokenBean.class, token).isPresent());
+    }
+
+    @Test
+    public void testCompactToken() {
+        RecoverPasswordTokenBean rptk;
+        RecoverPasswordTokenBean rptkDecoded;
+        VerificationTokenBean vtk;
+        VerificationTokenBean vtkDecoded;
+        ApprobationTokenBean atk;
+        String token;
+        String jws;
+        char [] tampered;
+        
+        // Recover password, indexed locale
+        rptk = tokenManager.generateRecoverPasswordTokenBean(SAMPLE_REGISTERED_USER, true).get().toBuilder()
+                .locale(new Locale("ca", "ES"))
+                .origin(ECommunicationChannelType.MOBILE)
+                .build();
+        token = tokenManager.encodeToken(rptk, ECommunicationChannelType.MOBILE);
+        jws = tokenManager.encodeToken(rptk, ECommunicationChannelType.EMAIL);
+        Assertions.assertEquals(-1, token.indexOf('.'));
+        Assertions.assertNotEquals(-1, jws.indexOf('.'));
+        Assertions.assertTrue(token.length() * 2 < jws.length());
+        // 46 bytes of payload and 12 of MAC, base64url encoded
+        Assertions.assertEquals(78, token.length());
+        
+        rptkDecoded = tokenManager.decodeToken(RecoverPasswordTokenBean.class, token).get();
+        Assertions.assertEquals(rptk.getTokenId(), rptkDecoded.getTokenId());
+        Assertions.assertEquals(rptk.getIssued().withNano(0), rptkDecoded.getIssued());
+        Assertions.assertEquals(rptk.getExpire().withNano(0), rptkDecoded.getExpire());
+        Assertions.assertEquals(rptk.getIdUser(), rptkDecoded.getIdUser());
+        // The username is not carried on compact tokens
+        Assertions.assertNull(rptkDecoded.getUsername());
+        Assertions.assertEquals(rptk.getLocale(), rptkDecoded.getLocale());
+        Assertions.assertEquals(rptk.getOrigin(), rptkDecoded.getOrigin());
+        Assertions.assertTrue(tokenManager.decodeToken(RecoverPasswordTokenBean.class, jws).isPresent());
+        
+        Assertions.assertTrue(tokenManager.isTokenValid(token));
+        Assertions.assertTrue(tokenManager.isTokenClass(token, ETokenClass.RECOVER_PASSWORD));
+        Assertions.assertFalse(tokenManager.isTokenClass(token, ETokenClass.VERIFICATION));
+        Assertions.assertEquals(rptk.getIdUser(), tokenManager.decodeUserId(token).get());
+        assertDecodeTokenIsEquals(token, false, false, true);
+        
+        // Verification, not indexed locale
+        vtk = tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.TWO_STEP).get().toBuilder()
+                .locale(new Locale("eu", "ES"))
+                .build();
+        token = tokenManager.encodeTokenBean(vtk, ECommunicationChannelType.MOBILE).getToken();
+        Assertions.assertEquals(-1, token.indexOf('.'));
+        vtkDecoded = tokenManager.decodeToken(VerificationTokenBean.class, token).get();
+        Assertions.assertEquals(vtk.getTokenId(), vtkDecoded.getTokenId());
+        Assertions.assertEquals(vtk.getIdUser(), vtkDecoded.getIdUser());
+        Assertions.assertEquals(vtk.getLocale(), vtkDecoded.getLocale());
+        Assertions.assertEquals(vtk.getProcess(), vtkDecoded.getProcess());
+        assertDecodeTokenIsEquals(token, true, false, false);
+        
+        // Tampered
+        tampered = token.toCharArray();
+        tampered[10] = (tampered[10] == 'A' ? 'B' : 'A');
+        assertDecodeTokenIsFalse(new String(tampered));
+        Assertions.assertFalse(tokenManager.isTokenValid(new String(tampered)));
+        
+        // Expired
+        token = tokenManager.encodeToken(vtk.toBuilder().expire(LocalDateTime.now().minusDays(1)).build(), ECommunicationChannelType.MOBILE);
+        Assertions.assertEquals(-1, token.indexOf('.'));
+        assertDecodeTokenIsFalse(token);
+        
+        // Approbation is always a JWS
+        atk = tokenManager.generateApprobationTokenBean(SAMPLE_VERIFIED_USER, SAMPLE_REGISTERED_USER).get();
+        token = tokenManager.encodeToken(atk, ECommunicationChannelType.MOBILE);
+        Assertions.assertNotEquals(-1, token.indexOf('.'));
+        assertDecodeTokenIsEquals(token, false, true, false);
+    }
+
+    @Test
+    public void testGenerateTokensBatch() {
+        List<UserBean> users;
+        List<DecodedTokenBean<VerificationTokenBean>> vtks;
+        List<DecodedTokenBean<RecoverPasswordTokenBean>> rptks;
+        Set<String> ids;
+        int n;
+        
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.generateVerificationTokens(null, EVerificationProcess.ONE_STEP));
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.generateVerificationTokens(Collections.emptyList(), null));
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.generateRecoverPasswordTokens(null, true));
+        
+        users = Arrays.asList(SAMPLE_CREATED_USER, SAMPLE_VERIFIED_USER, SAMPLE_REGISTERED_USER);
+        Assertions.assertTrue(tokenManager.generateVerificationTokens(users, EVerificationProcess.NONE).isEmpty());
+        Assertions.assertTrue(tokenManager.generateVerificationTokens(Collections.emptyList(), EVerificationProcess.ONE_STEP).isEmpty());
+        
+        vtks = tokenManager.generateVerificationTokens(users, EVerificationProcess.TWO_STEP);
+        Assertions.assertEquals(users.size(), vtks.size());
+        ids = new HashSet<>();
+        for(n = 0; n < users.size(); n++) {
+            assertBasicInfoTokenBean(vtks.get(n).getTokenBean(), users.get(n).getId(), users.get(n).getUsername());
+            Assertions.assertEquals(EVerificationProcess.TWO_STEP, vtks.get(n).getTokenBean().getProcess());
+            Assertions.assertEquals(vtks.get(n).getTokenBean().getTokenId(), tokenManager.decodeToken(VerificationTokenBean.class, vtks.get(n).getToken()).get().getTokenId());
+            Assertions.assertTrue(ids.add(vtks.get(n).getTokenBean().getTokenId()));
+        }
+        
+        // Users without id are skipped
+        rptks = tokenManager.generateRecoverPasswordTokens(Arrays.asList(SAMPLE_REGISTERED_USER, SAMPLE_VERIFIED_USER.toBuilder().id(null).build(), SAMPLE_VERIFIED_USER), false);
+        Assertions.assertEquals(2, rptks.size());
+        Assertions.assertEquals(SAMPLE_REGISTERED_USER.getId(), rptks.get(0).getTokenBean().getIdUser());
+        Assertions.assertEquals(SAMPLE_REGISTERED_USER.getSecondaryChannel().getChannelType(), rptks.get(0).getTokenBean().getOrigin());
+        Assertions.assertEquals(SAMPLE_VERIFIED_USER.getId(), rptks.get(1).getTokenBean().getIdUser());
+        Assertions.assertEquals(SAMPLE_VERIFIED_USER.getPreferredChannel().getChannelType(), rptks.get(1).getTokenBean().getOrigin());
+        for(DecodedTokenBean<RecoverPasswordTokenBean> tk : rptks) {
+            Assertions.assertTrue(tokenManager.decodeToken(RecoverPasswordTokenBean.class, tk.getToken()).isPresent());
+            Assertions.assertTrue(ids.add(tk.getTokenBean().getTokenId()));
+        }
+    }
+
     private void assertBasicInfoTokenBean(AbstractTokenBean token, String idUser, String username) {
         LocalDateTime ldt;
         
@@ -671,4 +867,179 @@ public class TokenManagerTest extends UsersRegisterTests {
         rr = tokenManager.decodeToken(RecoverPasswordTokenBean.class, token);
         Assertions.assertEquals(r, rr.isPresent());
     }
+
+    @Test
+    public void testDecodeTokenResult() {
+        VerificationTokenBean vtk;
+        TokenDecodeResultBean<VerificationTokenBean> result;
+        String token;
+        char [] tampered;
+        
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.decodeTokenResult(VerificationTokenBean.class, null));
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.decodeTokenResult(VerificationTokenBean.class, "      "));
+        
+        // Malformed
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, tokenManager.decodeTokenResult(VerificationTokenBean.class, "XXX").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, tokenManager.decodeTokenResult(VerificationTokenBean.class, "XXX.YYY").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, tokenManager.decodeTokenResult(VerificationTokenBean.class, "XXX..ZZZ").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, tokenManager.decodeTokenResult(VerificationTokenBean.class, "XXX.YYY.ZZZ.AAA").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, tokenManager.decodeTokenResult(VerificationTokenBean.class, "X*X.YYY.ZZZ").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, tokenManager.decodeTokenResult(VerificationTokenBean.class, "XXXX.YYYY.ZZZZ").getStatus());
+        
+        // Valid
+        vtk = tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get();
+        token = tokenManager.encodeToken(vtk);
+        result = tokenManager.decodeTokenResult(VerificationTokenBean.class, token);
+        Assertions.assertEquals(ETokenDecodeStatus.VALID, result.getStatus());
+        Assertions.assertTrue(result.isValid());
+        Assertions.assertEquals(token, result.getToken());
+        Assertions.assertEquals(vtk.getTokenId(), result.getTokenBean().getTokenId());
+        Assertions.assertEquals(vtk.getTokenId(), result.toDecodedTokenBean().get().getTokenBean().getTokenId());
+        
+        // Wrong class
+        Assertions.assertEquals(ETokenDecodeStatus.WRONG_CLASS, tokenManager.decodeTokenResult(ApprobationTokenBean.class, token).getStatus());
+        Assertions.assertFalse(tokenManager.decodeTokenResult(ApprobationTokenBean.class, token).toDecodedTokenBean().isPresent());
+        
+        // Bad signature
+        tampered = token.toCharArray();
+        tampered[tampered.length - 5] = (tampered[tampered.length - 5] == 'A' ? 'B' : 'A');
+        result = tokenManager.decodeTokenResult(VerificationTokenBean.class, new String(tampered));
+        Assertions.assertEquals(ETokenDecodeStatus.BAD_SIGNATURE, result.getStatus());
+        Assertions.assertNull(result.getTokenBean());
+        Assertions.assertFalse(result.toDecodedTokenBean().isPresent());
+        
+        // Expired
+        token = addTokenInformation(createJwtBuilder(), ETokenClass.VERIFICATION, SAMPLE_CREATED_USER)
+                .setIssuedAt(Date.from(LocalDateTime.now().minusDays(2).atZone(ZoneId.systemDefault()).toInstant()))
+                .setExpiration(Date.from(LocalDateTime.now().minusDays(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .claim(ITokenManager.CLAIM_LOCALE, "ca_ES")
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.EXPIRED, tokenManager.decodeTokenResult(VerificationTokenBean.class, token).getStatus());
+        
+        // Invalid claims, no locale
+        token = addTokenInformation(createJwtBuilder(), ETokenClass.VERIFICATION, SAMPLE_CREATED_USER)
+                .setIssuedAt(Date.from(LocalDateTime.now().minusMinutes(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.INVALID_CLAIMS, tokenManager.decodeTokenResult(VerificationTokenBean.class, token).getStatus());
+        
+        // Compact
+        token = tokenManager.encodeToken(vtk, ECommunicationChannelType.MOBILE);
+        Assertions.assertEquals(ETokenDecodeStatus.VALID, tokenManager.decodeTokenResult(VerificationTokenBean.class, token).getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.WRONG_CLASS, tokenManager.decodeTokenResult(RecoverPasswordTokenBean.class, token).getStatus());
+        tampered = token.toCharArray();
+        tampered[10] = (tampered[10] == 'A' ? 'B' : 'A');
+        Assertions.assertEquals(ETokenDecodeStatus.BAD_SIGNATURE, tokenManager.decodeTokenResult(VerificationTokenBean.class, new String(tampered)).getStatus());
+        token = tokenManager.encodeToken(vtk.toBuilder().expire(LocalDateTime.now().minusDays(1)).build(), ECommunicationChannelType.MOBILE);
+        Assertions.assertEquals(ETokenDecodeStatus.EXPIRED, tokenManager.decodeTokenResult(VerificationTokenBean.class, token).getStatus());
+    }
+
+    @Test
+    public void testIntrospectTokens() {
+        List<String> tokens;
+        List<TokenIntrospectionBean> result;
+        VerificationTokenBean vtk;
+        RecoverPasswordTokenBean rptk;
+        int n;
+        
+        Assertions.assertThrows(ValidationException.class, () -> tokenManager.introspectTokens(null));
+        Assertions.assertTrue(tokenManager.introspectTokens(Collections.emptyList()).isEmpty());
+        
+        vtk = tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get();
+        rptk = tokenManager.generateRecoverPasswordTokenBean(SAMPLE_REGISTERED_USER, true).get();
+        // Enough tokens to be introspected in parallel
+        tokens = new ArrayList<>();
+        for(n = 0; n < 100; n++) {
+            switch(n % 4) {
+                case 0:
+                    tokens.add(tokenManager.encodeToken(vtk));
+                    break;
+                case 1:
+                    tokens.add(tokenManager.encodeToken(rptk, ECommunicationChannelType.MOBILE));
+                    break;
+                case 2:
+                    tokens.add(DUMMY_TOKEN);
+                    break;
+                default:
+                    tokens.add(null);
+            }
+        }
+        result = tokenManager.introspectTokens(tokens);
+        Assertions.assertEquals(tokens.size(), result.size());
+        for(n = 0; n < tokens.size(); n++) {
+            Assertions.assertEquals(tokens.get(n), result.get(n).getToken());
+            switch(n % 4) {
+                case 0:
+                    Assertions.assertTrue(result.get(n).isValid());
+                    Assertions.assertEquals(ETokenDecodeStatus.VALID, result.get(n).getStatus());
+                    Assertions.assertEquals(ETokenClass.VERIFICATION, result.get(n).getTokenClass());
+                    Assertions.assertEquals(vtk.getIdUser(), result.get(n).getIdUser());
+                    Assertions.assertEquals(vtk.getExpire().withNano(0), result.get(n).getExpire().withNano(0));
+                    break;
+                case 1:
+                    Assertions.assertTrue(result.get(n).isValid());
+                    Assertions.assertEquals(ETokenClass.RECOVER_PASSWORD, result.get(n).getTokenClass());
+                    Assertions.assertEquals(rptk.getIdUser(), result.get(n).getIdUser());
+                    break;
+                default:
+                    Assertions.assertFalse(result.get(n).isValid());
+                    Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, result.get(n).getStatus());
+                    Assertions.assertNull(result.get(n).getTokenClass());
+                    Assertions.assertNull(result.get(n).getIdUser());
+                    Assertions.assertNull(result.get(n).getExpire());
+            }
+        }
+        
+        // Single-use tokens already used
+        Assertions.assertTrue(tokenLedger.consume(rptk));
+        result = tokenManager.introspectTokens(Arrays.asList(tokenManager.encodeToken(vtk), tokenManager.encodeToken(rptk)));
+        Assertions.assertTrue(result.get(0).isValid());
+        Assertions.assertFalse(result.get(1).isValid());
+        Assertions.assertEquals(ETokenDecodeStatus.CONSUMED, result.get(1).getStatus());
+        Assertions.assertNull(result.get(1).getIdUser());
+    }
+    @Test
+    public void testTokenEpoch() {
+        UserBean user;
+        RecoverPasswordTokenBean rptk;
+        String jws;
+        String compact;
+        String newJws;
+        String newCompact;
+        
+        // Own user, the invalidation is kept on context
+        user = SAMPLE_REGISTERED_USER.toBuilder().id("000000000000000000000077").build();
+        Assertions.assertEquals(0L, tokenEpochs.currentEpoch(user.getId()));
+        Assertions.assertEquals(0L, tokenEpochs.currentEpoch(null));
+        
+        rptk = tokenManager.generateRecoverPasswordTokenBean(user, true).get();
+        Assertions.assertEquals(0L, rptk.getTokenEpoch());
+        jws = tokenManager.encodeToken(rptk);
+        compact = tokenManager.encodeToken(rptk, ECommunicationChannelType.MOBILE);
+        Assertions.assertTrue(tokenManager.isTokenValid(jws));
+        Assertions.assertTrue(tokenManager.isTokenValid(compact));
+        
+        // Invalidate, even the already decoded (cached) tokens
+        Assertions.assertEquals(1L, tokenEpochs.invalidateTokens(user.getId()));
+        Assertions.assertEquals(1L, tokenEpochs.currentEpoch(user.getId()));
+        Assertions.assertFalse(tokenManager.isTokenValid(jws));
+        Assertions.assertFalse(tokenManager.isTokenValid(compact));
+        Assertions.assertEquals(ETokenDecodeStatus.REVOKED, tokenManager.decodeTokenResult(RecoverPasswordTokenBean.class, jws).getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.REVOKED, tokenManager.decodeTokenResult(RecoverPasswordTokenBean.class, compact).getStatus());
+        Assertions.assertNull(tokenManager.decodeTokenResult(RecoverPasswordTokenBean.class, jws).getTokenBean());
+        Assertions.assertFalse(tokenManager.decodeToken(RecoverPasswordTokenBean.class, compact).isPresent());
+        
+        // New tokens carry the new epoch
+        rptk = tokenManager.generateRecoverPasswordTokenBean(user, true).get();
+        Assertions.assertEquals(1L, rptk.getTokenEpoch());
+        newJws = tokenManager.encodeToken(rptk);
+        newCompact = tokenManager.encodeToken(rptk, ECommunicationChannelType.MOBILE);
+        Assertions.assertEquals(1L, tokenManager.decodeToken(RecoverPasswordTokenBean.class, newJws).get().getTokenEpoch());
+        Assertions.assertEquals(1L, tokenManager.decodeToken(RecoverPasswordTokenBean.class, newCompact).get().getTokenEpoch());
+        Assertions.assertFalse(tokenManager.isTokenValid(jws));
+        
+        // Other users not affected
+        Assertions.assertTrue(tokenManager.isTokenValid(tokenManager.encodeToken(tokenManager.generateRecoverPasswordTokenBean(SAMPLE_REGISTERED_USER, true).get())));
+    }
 }
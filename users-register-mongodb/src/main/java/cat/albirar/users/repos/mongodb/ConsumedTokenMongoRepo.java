@@ -0,0 +1,98 @@
+/*
+ * This file is part of "albirar users-register-mongodb".
+ * 
+ * "albirar users-register-mongodb" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mongodb" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mongodb" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.mongodb;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+
+/**
+ * The repository for {@link ConsumedTokenBean consumed tokens} backed by mongodb.
+ * The token id is the document id, so {@link #consume(ConsumedTokenBean)} is atomic among instances.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class ConsumedTokenMongoRepo implements IConsumedTokenRepo {
+    private static final String FIELD_ID = "tokenId";
+    private static final String FIELD_EXPIRE = "expire";
+    
+    private MongoOperations mongoOps;
+    
+    /**
+     * Constructor with the operations to use.
+     * @param mongoOps The mongodb operations
+     */
+    public ConsumedTokenMongoRepo(MongoOperations mongoOps) {
+        this.mongoOps = mongoOps;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean consume(ConsumedTokenBean token) {
+        try {
+            mongoOps.insert(token);
+            return true;
+        } catch(DuplicateKeyException e) {
+            return false;
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean existsById(String tokenId) {
+        return mongoOps.exists(Query.query(Criteria.where(FIELD_ID).is(tokenId)), ConsumedTokenBean.class);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> findAllActiveIds() {
+        Query q;
+        
+        q = Query.query(Criteria.where(FIELD_EXPIRE).gte(LocalDateTime.now()));
+        q.fields().include(FIELD_ID);
+        return mongoOps.find(q, ConsumedTokenBean.class).stream()
+                .map(ConsumedTokenBean::getTokenId)
+                .collect(Collectors.toList())
+                ;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long deleteExpired() {
+        return mongoOps.remove(Query.query(Criteria.where(FIELD_EXPIRE).lt(LocalDateTime.now())), ConsumedTokenBean.class).getDeletedCount();
+    }
+    /**
+     * Remove all consumed tokens.
+     */
+    public void deleteAll() {
+        mongoOps.remove(new Query(), ConsumedTokenBean.class);
+    }
+}
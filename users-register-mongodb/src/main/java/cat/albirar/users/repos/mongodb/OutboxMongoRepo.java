@@ -0,0 +1,136 @@
+/*
+ * This file is part of "albirar users-register-mongodb".
+ * 
+ * "albirar users-register-mongodb" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mongodb" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mongodb" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.mongodb;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.repos.IOutboxRepo;
+
+/**
+ * The repository for {@link OutboxMessageBean outbox messages} backed by mongodb.
+ * The {@link #add(OutboxMessageBean)} joins the current transaction, if any, and each claim is a {@code findAndModify}, so is atomic among instances.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class OutboxMongoRepo implements IOutboxRepo {
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_STATUS = "status";
+    public static final String FIELD_ATTEMPTS = "attempts";
+    public static final String FIELD_NEXT_ATTEMPT = "nextAttempt";
+    public static final String FIELD_MESSAGE_ID = "messageId";
+    public static final String FIELD_LAST_ERROR = "lastError";
+    public static final String FIELD_TOKEN = "message.token";
+    
+    private MongoOperations mongoOps;
+    
+    /**
+     * Constructor with the operations to use.
+     * @param mongoOps The mongodb operations
+     */
+    public OutboxMongoRepo(MongoOperations mongoOps) {
+        this.mongoOps = mongoOps;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutboxMessageBean add(OutboxMessageBean message) {
+        return mongoOps.insert(message.toBuilder().id(null).build());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<OutboxMessageBean> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int max) {
+        List<OutboxMessageBean> claimed;
+        OutboxMessageBean message;
+        Query query;
+        Update lease;
+        
+        query = Query.query(Criteria.where(FIELD_STATUS).is(EOutboxStatus.PENDING).and(FIELD_NEXT_ATTEMPT).lte(now))
+                .with(Sort.by(Direction.ASC, FIELD_NEXT_ATTEMPT));
+        lease = new Update().set(FIELD_NEXT_ATTEMPT, leaseUntil);
+        claimed = new ArrayList<>();
+        while(claimed.size() < max
+                && (message = mongoOps.findAndModify(query, lease, FindAndModifyOptions.options().returnNew(true), OutboxMessageBean.class)) != null) {
+            claimed.add(message);
+        }
+        return claimed;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void markSent(String id, String messageId) {
+        mongoOps.updateFirst(Query.query(Criteria.where(FIELD_ID).is(id))
+                , new Update().set(FIELD_STATUS, EOutboxStatus.SENT).set(FIELD_MESSAGE_ID, messageId).unset(FIELD_TOKEN)
+                , OutboxMessageBean.class);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void markFailed(String id, int attempts, LocalDateTime nextAttempt, String error) {
+        mongoOps.updateFirst(Query.query(Criteria.where(FIELD_ID).is(id))
+                , new Update().set(FIELD_ATTEMPTS, attempts).set(FIELD_NEXT_ATTEMPT, nextAttempt).set(FIELD_LAST_ERROR, error)
+                , OutboxMessageBean.class);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void markDead(String id, int attempts, String error) {
+        mongoOps.updateFirst(Query.query(Criteria.where(FIELD_ID).is(id))
+                , new Update().set(FIELD_STATUS, EOutboxStatus.DEAD).set(FIELD_ATTEMPTS, attempts).set(FIELD_LAST_ERROR, error).unset(FIELD_TOKEN)
+                , OutboxMessageBean.class);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<OutboxMessageBean> findById(String id) {
+        return Optional.ofNullable(mongoOps.findById(id, OutboxMessageBean.class));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countByStatus(EOutboxStatus status) {
+        return mongoOps.count(Query.query(Criteria.where(FIELD_STATUS).is(status)), OutboxMessageBean.class);
+    }
+    /**
+     * Remove all messages.
+     */
+    public void deleteAll() {
+        mongoOps.remove(new Query(), OutboxMessageBean.class);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of "albirar users-register-mongodb".
+ * 
+ * "albirar users-register-mongodb" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mongodb" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mongodb" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.mongodb;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import cat.albirar.users.models.tokens.TokenEpochBean;
+import cat.albirar.users.repos.ITokenEpochRepo;
+
+/**
+ * The repository for {@link TokenEpochBean token epochs} backed by mongodb.
+ * The user id is the document id and the increment is an upsert, so {@link #increment(String)} is atomic among instances.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class TokenEpochMongoRepo implements ITokenEpochRepo {
+    private static final String FIELD_ID = "idUser";
+    private static final String FIELD_EPOCH = "epoch";
+    private static final String FIELD_UPDATED = "updated";
+    
+    private MongoOperations mongoOps;
+    
+    /**
+     * Constructor with the operations to use.
+     * @param mongoOps The mongodb operations
+     */
+    public TokenEpochMongoRepo(MongoOperations mongoOps) {
+        this.mongoOps = mongoOps;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long increment(String idUser) {
+        return mongoOps.findAndModify(Query.query(Criteria.where(FIELD_ID).is(idUser))
+                , new Update().inc(FIELD_EPOCH, 1L).set(FIELD_UPDATED, LocalDateTime.now())
+                , FindAndModifyOptions.options().upsert(true).returnNew(true)
+                , TokenEpochBean.class).getEpoch();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TokenEpochBean> findAll() {
+        return mongoOps.findAll(TokenEpochBean.class);
+    }
+    /**
+     * Remove all token epochs.
+     */
+    public void deleteAll() {
+        mongoOps.remove(new Query(), TokenEpochBean.class);
+    }
+}
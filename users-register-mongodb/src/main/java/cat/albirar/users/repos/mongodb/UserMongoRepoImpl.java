@@ -0,0 +1,154 @@
+/*
+ * This file is part of "albirar users-register-mongodb".
+ * 
+ * "albirar users-register-mongodb" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mongodb" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mongodb" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.mongodb;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
+import cat.albirar.users.repos.IUserRepo;
+
+/**
+ * Custom implementation fragment of {@link IUserMongoRepo} for the operations that cannot be derived by spring data.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class UserMongoRepoImpl {
+    /**
+     * Name of the unique index of preferred channel, see {@code UsersRegisterMongoDbConfiguration#userRepo}.
+     */
+    private static final String INDEX_PREFERRED_CHANNEL = "preferredChannel_1";
+    private static final String FIELD_USERNAME = "username";
+    private static final String FIELD_PREFERRED_CHANNEL = "preferredChannel";
+    private static final String FIELD_SECONDARY_CHANNEL = "secondaryChannel";
+    private static final String FIELD_ID = "id";
+    
+    private MongoOperations mongoOps;
+    
+    /**
+     * Constructor with the operations to use.
+     * @param mongoOps The mongodb operations
+     */
+    public UserMongoRepoImpl(MongoOperations mongoOps) {
+        this.mongoOps = mongoOps;
+    }
+    /**
+     * Plain insert, relying on unique indexes to detect duplicates.
+     * @see IUserRepo#insert(UserBean)
+     */
+    public UserBean insert(UserBean user) {
+        UserBean nUser;
+        
+        nUser = user.toBuilder().build();
+        try {
+            return mongoOps.insert(nUser);
+        } catch(DuplicateKeyException e) {
+            if(String.valueOf(e.getMostSpecificCause().getMessage()).contains(INDEX_PREFERRED_CHANNEL)) {
+                throw new DuplicateKeyException(String.format(IUserRepo.MSG_CHANNEL_IN_USE, user.getPreferredChannel().getChannelType().name().toLowerCase(), user.getPreferredChannel().getChannelId()), e);
+            }
+            throw new DuplicateKeyException(String.format(IUserRepo.MSG_USERNAME_IN_USE, user.getUsername()), e);
+        }
+    }
+    /**
+     * Single {@code $set} (and {@code $unset} for the cleared fields) of the informed fields.
+     * @see IUserRepo#patch(String, UserPatchBean)
+     */
+    public boolean patch(String id, UserPatchBean changes) {
+        Query query;
+        Update update;
+        
+        query = Query.query(Criteria.where(FIELD_ID).is(id));
+        if(changes.isEmpty()) {
+            return mongoOps.exists(query, UserBean.class);
+        }
+        update = new Update();
+        set(update, UserBean.FIELD_USERNAME, changes.getUsername(), changes);
+        set(update, UserBean.FIELD_PREFERREDCHANNEL, changes.getPreferredChannel(), changes);
+        set(update, UserBean.FIELD_SECONDARYCHANNEL, changes.getSecondaryChannel(), changes);
+        set(update, UserBean.FIELD_PASSWORD, changes.getPassword(), changes);
+        set(update, UserBean.FIELD_VERIFIED, changes.getVerified(), changes);
+        set(update, UserBean.FIELD_REGISTERED, changes.getRegistered(), changes);
+        set(update, UserBean.FIELD_EXPIRE, changes.getExpire(), changes);
+        set(update, UserBean.FIELD_LOCKED, changes.getLocked(), changes);
+        set(update, UserBean.FIELD_EXPIRECREDENTIALS, changes.getExpireCredentials(), changes);
+        set(update, UserBean.FIELD_ENABLED, changes.getEnabled(), changes);
+        try {
+            return mongoOps.updateFirst(query, update, UserBean.class).getMatchedCount() == 1L;
+        } catch(DuplicateKeyException e) {
+            if(String.valueOf(e.getMostSpecificCause().getMessage()).contains(INDEX_PREFERRED_CHANNEL)) {
+                throw new DuplicateKeyException(String.format(IUserRepo.MSG_CHANNEL_IN_USE, changes.getPreferredChannel().getChannelType().name().toLowerCase(), changes.getPreferredChannel().getChannelId()), e);
+            }
+            throw new DuplicateKeyException(String.format(IUserRepo.MSG_USERNAME_IN_USE, changes.getUsername()), e);
+        }
+    }
+    /**
+     * Single {@code updateOne} with the {@code verified: null} predicate.
+     * @see IUserRepo#markVerified(String, LocalDateTime, boolean)
+     */
+    public boolean markVerified(String id, LocalDateTime verified, boolean registeredToo) {
+        Update update;
+        
+        update = new Update().set(UserBean.FIELD_VERIFIED, verified).set(UserBean.FIELD_ENABLED, registeredToo);
+        if(registeredToo) {
+            update.set(UserBean.FIELD_REGISTERED, verified);
+        }
+        return mongoOps.updateFirst(Query.query(Criteria.where(FIELD_ID).is(id)
+                    .and(UserBean.FIELD_VERIFIED).is(null))
+                , update, UserBean.class).getModifiedCount() == 1L;
+    }
+    /**
+     * Single {@code updateOne} with the {@code verified: {$ne: null}, registered: null} predicate.
+     * @see IUserRepo#markApproved(String, LocalDateTime)
+     */
+    public boolean markApproved(String id, LocalDateTime registered) {
+        return mongoOps.updateFirst(Query.query(Criteria.where(FIELD_ID).is(id)
+                    .and(UserBean.FIELD_VERIFIED).ne(null)
+                    .and(UserBean.FIELD_REGISTERED).is(null))
+                , new Update().set(UserBean.FIELD_REGISTERED, registered).set(UserBean.FIELD_ENABLED, true)
+                , UserBean.class).getModifiedCount() == 1L;
+    }
+    private void set(Update update, String field, Object value, UserPatchBean changes) {
+        if(value != null) {
+            update.set(field, value);
+        } else if(changes.isCleared(field)) {
+            update.unset(field);
+        }
+    }
+    /**
+     * Stream with a cursor only the identity fields of all users.
+     * @see IUserRepo#forEachUser(Consumer)
+     */
+    public void forEachUser(Consumer<UserBean> consumer) {
+        Query query;
+        
+        query = new Query();
+        query.fields().include(FIELD_USERNAME).include(FIELD_PREFERRED_CHANNEL).include(FIELD_SECONDARY_CHANNEL);
+        try(CloseableIterator<UserBean> it = mongoOps.stream(query, UserBean.class)) {
+            it.forEachRemaining(consumer);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of "albirar users-register-mongodb".
+ * 
+ * "albirar users-register-mongodb" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mongodb" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mongodb" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.mongodb.config;
+
+import static cat.albirar.users.repos.mongodb.config.PropertiesMongodb.MONGODB_TRANSACTIONS;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Condition to use mongodb transactions, only if {@value PropertiesMongodb#MONGODB_TRANSACTIONS} is true.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class MongoDbTransactionsCondition implements Condition {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return context.getEnvironment().getProperty(MONGODB_TRANSACTIONS, Boolean.class, Boolean.FALSE);
+    }
+}
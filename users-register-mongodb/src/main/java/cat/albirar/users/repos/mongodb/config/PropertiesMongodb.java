@@ -42,5 +42,10 @@ public interface PropertiesMongodb extends PropertiesCore {
      * Database for persist data on mongodb server.
      */
     public static final String MONGODB_DATABASE = ROOT_MONGODB_PROPERTIES + ".database";
+    /**
+     * True to save the changes on transactions, as the new user and his verification message.
+     * Mongodb transactions requires a replica set or a sharded cluster, so are disabled by default; without them each change is saved alone.
+     */
+    public static final String MONGODB_TRANSACTIONS = ROOT_MONGODB_PROPERTIES + ".transactions";
 
 }
@@ -24,6 +24,7 @@ import static cat.albirar.users.repos.mongodb.config.PropertiesMongodb.MONGODB_P
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
@@ -36,26 +37,38 @@ import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
 
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 
-import cat.albirar.users.config.UsersRegisterConfiguration;
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
 import cat.albirar.users.models.account.AccountBean;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
 import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.repos.IAccountRepo;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+import cat.albirar.users.repos.IOutboxRepo;
+import cat.albirar.users.repos.ITokenEpochRepo;
 import cat.albirar.users.repos.IUserRepo;
+import cat.albirar.users.repos.mongodb.ConsumedTokenMongoRepo;
 import cat.albirar.users.repos.mongodb.IAccountMongoRepo;
 import cat.albirar.users.repos.mongodb.IUserMongoRepo;
+import cat.albirar.users.repos.mongodb.OutboxMongoRepo;
+import cat.albirar.users.repos.mongodb.TokenEpochMongoRepo;
+import cat.albirar.users.repos.mongodb.UserMongoRepoImpl;
 
 /**
  * Autoconfiguration for users register repositories and entities with mongodb.
+ * <p>The {@link MongoTransactionManager} is only configured if {@value PropertiesMongodb#MONGODB_TRANSACTIONS} is true, because mongodb transactions requires a replica set or a sharded cluster;
+ * without it, each change is saved alone, as on a standalone server.</p>
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
 @Configuration
 @PropertySource(value = "classpath:/cat/albirar/users/mongodb/users-mongodb.properties")
-@Import(UsersRegisterConfiguration.class)
+@Import(UsersRegisterServicesConfiguration.class)
 @EnableMongoRepositories(basePackageClasses = IUserMongoRepo.class)
 public class UsersRegisterMongoDbConfiguration extends AbstractMongoClientConfiguration {
     
@@ -69,6 +82,7 @@ public class UsersRegisterMongoDbConfiguration extends AbstractMongoClientConfig
     private String MONGO_DB_NAME;
     
     @Bean
+    @Conditional(MongoDbTransactionsCondition.class)
     public MongoTransactionManager transactionManager(MongoDbFactory dbFactory) {
         return new MongoTransactionManager(dbFactory);
     }
@@ -97,7 +111,8 @@ public class UsersRegisterMongoDbConfiguration extends AbstractMongoClientConfig
         mongoOps.indexOps(UserBean.class).ensureIndex(new Index().on("username", Direction.ASC).unique());
         mongoOps.indexOps(UserBean.class).ensureIndex(new Index().on("preferredChannel", Direction.ASC).unique());
         factory = new MongoRepositoryFactory(mongoOps);
-        return factory.getRepository(IUserMongoRepo.class);
+        // Insert and streaming are a custom fragment, to translate the unique indexes violations and to use a cursor
+        return factory.getRepository(IUserMongoRepo.class, RepositoryFragments.just(new UserMongoRepoImpl(mongoOps)));
     }
     @Bean
     @Primary
@@ -108,5 +123,24 @@ public class UsersRegisterMongoDbConfiguration extends AbstractMongoClientConfig
         factory = new MongoRepositoryFactory(mongoOps);
         return factory.getRepository(IAccountMongoRepo.class);
     }
+    @Bean
+    @Primary
+    public IConsumedTokenRepo consumedTokenRepo(MongoOperations mongoOps) {
+        // TTL index, mongodb discards the consumed tokens once expired
+        mongoOps.indexOps(ConsumedTokenBean.class).ensureIndex(new Index().on("expire", Direction.ASC).expire(0L));
+        return new ConsumedTokenMongoRepo(mongoOps);
+    }
+    @Bean
+    @Primary
+    public ITokenEpochRepo tokenEpochRepo(MongoOperations mongoOps) {
+        return new TokenEpochMongoRepo(mongoOps);
+    }
+    @Bean
+    @Primary
+    public IOutboxRepo outboxRepo(MongoOperations mongoOps) {
+        // Also creates the collection, that cannot be created inside a transaction on older servers
+        mongoOps.indexOps(OutboxMessageBean.class).ensureIndex(new Index().on(OutboxMongoRepo.FIELD_STATUS, Direction.ASC).on(OutboxMongoRepo.FIELD_NEXT_ATTEMPT, Direction.ASC));
+        return new OutboxMongoRepo(mongoOps);
+    }
     
 }
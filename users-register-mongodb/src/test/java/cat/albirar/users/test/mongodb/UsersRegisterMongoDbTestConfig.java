@@ -21,6 +21,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.TestPropertySource;
 
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
 import cat.albirar.users.repos.IAccountRepo;
 import cat.albirar.users.repos.IUserRepo;
 import cat.albirar.users.repos.mongodb.config.PropertiesMongodb;
@@ -33,7 +34,7 @@ import cat.albirar.users.repos.mongodb.config.UsersRegisterMongoDbConfiguration;
  * @since 1.0.0
  */
 @Configuration
-@Import(UsersRegisterMongoDbConfiguration.class)
+@Import({UsersRegisterMongoDbConfiguration.class, UsersRegisterServicesConfiguration.class})
 @TestPropertySource(properties = {PropertiesMongodb.MONGODB_DATABASE + "=testauth"})
 public class UsersRegisterMongoDbTestConfig {
 
@@ -20,16 +20,19 @@ package cat.albirar.users.test.mongodb.testcontainer;
 
 import static cat.albirar.users.repos.mongodb.config.PropertiesMongodb.MONGODB_HOST;
 import static cat.albirar.users.repos.mongodb.config.PropertiesMongodb.MONGODB_PORT;
+import static cat.albirar.users.repos.mongodb.config.PropertiesMongodb.MONGODB_TRANSACTIONS;
 
 import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container.ExecResult;
 import org.testcontainers.containers.GenericContainer;
 
 /**
  * The jupiter extension to start and stop the mongodb test container.
+ * The server is started as a single member replica set, so the transactions are enabled and tested.
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
@@ -38,6 +41,8 @@ public class MongodbTestContainerExtension implements BeforeAllCallback, AfterAl
     
     private static final Integer MONGO_PORT = 27017;
     
+    private static final String REPLICA_SET = "rs0";
+    
     @SuppressWarnings("rawtypes")
     private static GenericContainer container = null;
 
@@ -51,7 +56,8 @@ public class MongodbTestContainerExtension implements BeforeAllCallback, AfterAl
     
         if(container == null) {
             container = new GenericContainer("mongo:latest")
-                    .withExposedPorts(MONGO_PORT);
+                    .withExposedPorts(MONGO_PORT)
+                    .withCommand("--replSet", REPLICA_SET);
         } else {
             if(container.isRunning()) {
                 container.stop();
@@ -59,9 +65,11 @@ public class MongodbTestContainerExtension implements BeforeAllCallback, AfterAl
         }
     
         container.start();
+        initiateReplicaSet();
     
         System.setProperty(MONGODB_HOST, container.getContainerIpAddress());
         System.setProperty( MONGODB_PORT, container.getMappedPort(MONGO_PORT).toString());
+        System.setProperty(MONGODB_TRANSACTIONS, "true");
         LOGGER.debug("MongoDb testcontainers albirar extension started with host: {} and port: {}", container.getContainerIpAddress(), container.getMappedPort(MONGO_PORT));
     }
 
@@ -78,4 +86,23 @@ public class MongodbTestContainerExtension implements BeforeAllCallback, AfterAl
             container = null;
         }
     }
+    /**
+     * Initiate the replica set with the container as the only member and wait until is the primary.
+     * @throws Exception If cannot execute the commands on container
+     */
+    private void initiateReplicaSet() throws Exception {
+        ExecResult result;
+        
+        container.execInContainer("mongosh", "--quiet", "--eval"
+                , String.format("rs.initiate({_id: '%s', members: [{_id: 0, host: 'localhost:%d'}]})", REPLICA_SET, MONGO_PORT));
+        for(int n = 0; n < 60; n++) {
+            result = container.execInContainer("mongosh", "--quiet", "--eval", "db.hello().isWritablePrimary");
+            if("true".equals(result.getStdout().trim())) {
+                LOGGER.debug("MongoDb replica set {} initiated", REPLICA_SET);
+                return;
+            }
+            Thread.sleep(500L);
+        }
+        throw new IllegalStateException(String.format("The replica set %s has no primary", REPLICA_SET));
+    }
 }
@@ -0,0 +1,219 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.web;
+
+import static cat.albirar.users.config.PropertiesCore.TOKEN_PROP_INTROSPECTION_MAX;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.tokens.TokenIntrospectionBean;
+import cat.albirar.users.models.web.ChangePasswordBean;
+import cat.albirar.users.models.web.ProcessResultBean;
+import cat.albirar.users.models.web.ResultBean;
+import cat.albirar.users.registration.IRegistrationService;
+import cat.albirar.users.registration.IUserAvailability;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.verification.ITokenManager;
+
+/**
+ * The controller to dispatch requests for verification, approbation, recover password, etc.
+ * The end-points are published on the {@link AuthApiPaths} URLs.
+ * 
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@RestController
+@Validated
+public class AuthApiController {
+    @Autowired
+    private ITokenManager tokenManager;
+    
+    @Autowired
+    private IRegistrationService registrationService;
+    
+    @Autowired
+    private IUserAvailability userAvailability;
+    
+    @Value("${" + TOKEN_PROP_INTROSPECTION_MAX + ":1000}")
+    private int introspectionMax;
+    
+    /**
+     * The verification end-point.
+     * <p>Concurrent and repeated requests of the same token are coalesced, see {@link IRegistrationService#verifyUserCoalesced(DecodedTokenBean)}.</p>
+     * @param strToken The token to verify
+     * @return The result of verification
+     * @throws ResponseStatusException with {@link HttpStatus#BAD_REQUEST} if token is invalid or expired
+     * @throws ResponseStatusException with {@link HttpStatus#NOT_FOUND} if user in token is not found
+     */
+    @GetMapping(path = AuthApiPaths.URL_TEMPLATE_VERIFICATION, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody ProcessResultBean verifyToken(@PathVariable(AuthApiPaths.PATH_VAR_TOKEN) @NotBlank String strToken) {
+        Optional<DecodedTokenBean<VerificationTokenBean>> oVtk;
+
+        oVtk = tokenManager.decodeTokenBean(VerificationTokenBean.class, strToken);
+        if(oVtk.isPresent()) {
+            return registrationService.verifyUserCoalesced(oVtk.get())
+                    .orElseThrow(() -> new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User from token not found!"));
+        }
+        throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token!");
+    }
+    /**
+     * The approbation end-point.
+     * @param strToken The token to verify
+     * @return The result of approbation
+     * @throws ResponseStatusException with {@link HttpStatus#BAD_REQUEST} if token is invalid or expired
+     * @throws ResponseStatusException with {@link HttpStatus#NOT_FOUND} if user in token is not found
+     */
+    @GetMapping(path = AuthApiPaths.URL_TEMPLATE_APPROBATION, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody ProcessResultBean approveToken(@PathVariable(AuthApiPaths.PATH_VAR_TOKEN) @NotBlank String strToken) {
+        Optional<Boolean> result;
+        ApprobationTokenBean atk;
+        Optional<DecodedTokenBean<ApprobationTokenBean>> oAtk;
+        
+        oAtk = tokenManager.decodeTokenBean(ApprobationTokenBean.class, strToken);
+        if(oAtk.isPresent()) {
+            atk = oAtk.get().getTokenBean();
+            result = registrationService.approveUser(oAtk.get());
+            if(result.isPresent()) {
+                return ProcessResultBean.builder()
+                        .tokenId(atk.getTokenId())
+                        .date(LocalDateTime.now())
+                        .result(result.get().booleanValue())
+                        .lastStep(true) // in 2 steps process this is the last step 
+                        .build();
+            }
+            throw new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User from token not found!");
+        }
+        throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token!");
+    }
+    /**
+     * The change password end-point.
+     * @param bean The bean with the information to change password.
+     * @return The result, with {@link ResultBean#isResult()} true if the users exists and state is verified or registered and password was changed, false if state of user is created and password was not changed 
+     * @throws ResponseStatusException with {@link HttpStatus#BAD_REQUEST} if token is invalid or expired
+     * @throws ResponseStatusException with {@link HttpStatus#NOT_FOUND} if user in token is not found
+     */
+    @PutMapping(path = AuthApiPaths.URL_CHANGE_PASSWORD, produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody ResultBean changePasswordToken(@RequestBody @NotNull @Valid ChangePasswordBean bean) {
+        Optional<DecodedTokenBean<RecoverPasswordTokenBean>> otk;
+        Optional<Boolean> resp;
+        
+        otk = tokenManager.decodeTokenBean(RecoverPasswordTokenBean.class, bean.getToken());
+        if(otk.isPresent()) {
+            resp = registrationService.recoverPassword(otk.get(), bean.getPassword());
+            if(resp.isPresent()) {
+                return ResultBean.builder()
+                        .tokenId(otk.get().getTokenBean().getTokenId())
+                        .date(LocalDateTime.now())
+                        .result(resp.get())
+                        .build()
+                        ;
+            }
+            throw new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User from token not found!");
+        }
+        throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token!");
+    }
+    /**
+     * The bulk token introspection end-point, for gateways that validate tokens on behalf of other applications.
+     * <p>The tokens are verified in parallel and the invalid ones are reported, not rejected.</p>
+     * @param tokens The tokens to introspect, up to {@value cat.albirar.users.config.PropertiesCore#TOKEN_PROP_INTROSPECTION_MAX} tokens
+     * @return The introspection of each token, in the same order of {@code tokens}
+     * @throws ResponseStatusException with {@link HttpStatus#BAD_REQUEST} if too many tokens are requested
+     */
+    @PostMapping(path = AuthApiPaths.URL_INTROSPECTION, produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody List<TokenIntrospectionBean> introspectTokens(@RequestBody @NotNull List<String> tokens) {
+        if(tokens.size() > introspectionMax) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Too many tokens!");
+        }
+        return tokenManager.introspectTokens(tokens);
+    }
+    /**
+     * The username availability end-point, for registration forms.
+     * <p>Most of the free usernames are answered without accessing the repository.</p>
+     * @param username The username to check
+     * @return The result, with {@link ResultBean#isResult()} true if the username is free and false if in use
+     */
+    @GetMapping(path = AuthApiPaths.URL_AVAILABILITY_USERNAME, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody ResultBean usernameAvailability(@RequestParam(AuthApiPaths.PARAM_USERNAME) @NotBlank String username) {
+        return ResultBean.builder()
+                .date(LocalDateTime.now())
+                .result(userAvailability.isUsernameAvailable(username))
+                .build()
+                ;
+    }
+    /**
+     * The preferred channel availability end-point, for registration forms.
+     * <p>Most of the free channels are answered without accessing the repository.</p>
+     * @param channelType The type of channel to check
+     * @param channelId The id of channel to check
+     * @return The result, with {@link ResultBean#isResult()} true if the channel is free and false if in use
+     */
+    @GetMapping(path = AuthApiPaths.URL_AVAILABILITY_CHANNEL, produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody ResultBean channelAvailability(@RequestParam(AuthApiPaths.PARAM_CHANNEL_TYPE) @NotNull ECommunicationChannelType channelType, @RequestParam(AuthApiPaths.PARAM_CHANNEL_ID) @NotBlank String channelId) {
+        return ResultBean.builder()
+                .date(LocalDateTime.now())
+                .result(userAvailability.isChannelAvailable(CommunicationChannelBean.builder()
+                        .channelType(channelType)
+                        .channelId(channelId)
+                        .build()))
+                .build()
+                ;
+    }
+    /**
+     * Fast rejection when the bounded pools (password hashing, asynchronous registration) are full.
+     * @param e The rejection
+     * @return A {@link HttpStatus#SERVICE_UNAVAILABLE} response, with a hint to retry after one second
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> rejected(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build()
+                ;
+    }
+}
@@ -19,17 +19,22 @@
 package cat.albirar.users.test.web;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
@@ -37,20 +42,27 @@ import org.springframework.web.context.WebApplicationContext;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import cat.albirar.users.models.tokens.ApprobationTokenBean;
+import cat.albirar.users.config.UsersRegisterConfiguration;
 import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
-import cat.albirar.users.models.tokens.VerificationTokenBean;
 import cat.albirar.users.models.web.ChangePasswordBean;
 import cat.albirar.users.test.UsersRegisterAbstractDataTest;
 import cat.albirar.users.test.UsersRegisterTests;
-import cat.albirar.users.verification.EVerificationProcess;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
 import cat.albirar.users.web.AuthApiController;
+import cat.albirar.users.web.AuthApiPaths;
 
 /**
  * Test for {@link AuthApiController}.
+ * The Spring MVC configuration is added to the back-end configuration of each test.
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
  * @since 1.0.0
  */
+@ContextConfiguration(classes = UsersRegisterConfiguration.class)
+@WebAppConfiguration
 public abstract class AuthApiControllerTest extends UsersRegisterTests {
 
     @Autowired
@@ -94,28 +106,28 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
     @Test
     public void testVerifyInvalidToken() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, DUMMY_TOKEN)
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, DUMMY_TOKEN)
                 .accept(MediaType.APPLICATION_JSON)
                 ).andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
     }
     
     @Test
     public void testVerifyExpiredToken() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
                     .expire(LocalDateTime.now().minusDays(1)).build()))
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
     }
     
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_VERIFICATION} for
+     * Test {@link AuthApiPaths#URL_TEMPLATE_VERIFICATION} for
      * <ul>
      * <li>User not found {@link UsersRegisterAbstractDataTest#DUMMY_ID}</li>
      * </ul>
      */
     @Test
     public void testVerifyUserNotFound() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
                 .idUser(DUMMY_ID)
                 .username(DUMMY_USERNAME)
                 .build()))
@@ -124,14 +136,14 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
     
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_VERIFICATION} for one step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_VERIFICATION} for one step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#SAMPLE_VERIFIED_USER}</li>
      * </ul>
      */
     @Test
     public void testVerifyUserRegisteredOneStep() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
                 .idUser(SAMPLE_REGISTERED_USER.getId())
                 .username(SAMPLE_REGISTERED_USER.getUsername())
                 .build()))
@@ -142,14 +154,14 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_VERIFICATION} for two step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_VERIFICATION} for two step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#SAMPLE_VERIFIED_USER}</li>
      * </ul>
      */
     @Test
     public void testVerifyUserRegisteredTwoStep() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBeanTwoStep().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBeanTwoStep().toBuilder()
                 .idUser(SAMPLE_REGISTERED_USER.getId())
                 .username(SAMPLE_REGISTERED_USER.getUsername())
                 .build()))
@@ -160,14 +172,14 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_VERIFICATION} for one step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_VERIFICATION} for one step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#SAMPLE_CREATED_USER}</li>
      * </ul>
      */
     @Test
     public void testVerifyUserOneStepOk() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean()))
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean()))
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().is(HttpStatus.OK.value()))
                 .andExpect(jsonPath("$.result").value(true))
@@ -175,14 +187,31 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_VERIFICATION} for one step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_VERIFICATION} for repeated requests of the same token, as mail scanners do, all of them get the result of the first.
+     */
+    @Test
+    public void testVerifyUserRepeated() throws Exception {
+        String token;
+        
+        token = tokenManager.encodeToken(buildVerificationTokenBean());
+        for(int n = 0; n < 3; n++) {
+            mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, token)
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andExpect(jsonPath("$.result").value(true))
+                    .andExpect(jsonPath("$.lastStep").value(true));
+        }
+    }
+
+    /**
+     * Test {@link AuthApiPaths#URL_TEMPLATE_VERIFICATION} for one step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#SAMPLE_CREATED_USER}</li>
      * </ul>
      */
     @Test
     public void testVerifyUserTwoStepOk() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBeanTwoStep()))
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBeanTwoStep()))
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().is(HttpStatus.OK.value()))
             .andExpect(jsonPath("$.result").value(true))
@@ -190,52 +219,52 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for invalid token.
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for invalid token.
      */
     @Test
     public void testApproveInvalidToken() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, DUMMY_TOKEN)
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, DUMMY_TOKEN)
                 .accept(MediaType.APPLICATION_JSON)
                 ).andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
     }
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for verification token.
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for verification token.
      */
     @Test
     public void testApproveInvalidClassToken1() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildVerificationTokenBean()))
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildVerificationTokenBean()))
                 .accept(MediaType.APPLICATION_JSON)
                 ).andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
     }
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for verification token.
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for verification token.
      */
     @Test
     public void testApproveInvalidClassToken2() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildVerificationTokenBean()))
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildVerificationTokenBean()))
                 .accept(MediaType.APPLICATION_JSON)
                 ).andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
     }
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for expired token.
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for expired token.
      */
     @Test
     public void testApproveExpiredToken() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
                     .expire(LocalDateTime.now().minusDays(5)).build()))
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for two step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for two step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#DUMMY_ID}</li>
      * </ul>
      */
     @Test
     public void testApproveUserNotFound() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
                 .idUser(DUMMY_ID)
                 .username(DUMMY_USERNAME)
                 .build()))
@@ -244,14 +273,14 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for two step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for two step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#SAMPLE_CREATED_USER}</li>
      * </ul>
      */
     @Test
     public void testApproveUserNotVerified() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
                 .idUser(SAMPLE_CREATED_USER.getId())
                 .username(SAMPLE_CREATED_USER.getUsername())
                 .build()))
@@ -262,14 +291,14 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     }
 
     /**
-     * Test {@link AuthApiController#URL_TEMPLATE_APPROBATION} for two step and:
+     * Test {@link AuthApiPaths#URL_TEMPLATE_APPROBATION} for two step and:
      * <ul>
      * <li>User verified {@link UsersRegisterAbstractDataTest#SAMPLE_VERIFIED_USER}</li>
      * </ul>
      */
     @Test
     public void testApproveUserVerified() throws Exception {
-        mockMvc.perform(get(AuthApiController.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean()))
+        mockMvc.perform(get(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean()))
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().is(HttpStatus.OK.value()))
             .andExpect(jsonPath("$.result").value(true))
@@ -278,7 +307,7 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
 
     @Test
     public void testChangePasswordEmptyContent () throws Exception {
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content("{}")
                 .accept(MediaType.APPLICATION_JSON))
@@ -287,19 +316,19 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
     
     @Test
     public void testChangePasswordValidationExceptionValues () throws Exception {
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(buildAsJsonString(ChangePasswordBean.builder().token(null).password(null).build()))
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
 
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(buildAsJsonString(ChangePasswordBean.builder().token("").password("").build()))
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
 
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(buildAsJsonString(ChangePasswordBean.builder().token(" ").password("  ").build()))
                 .accept(MediaType.APPLICATION_JSON))
@@ -308,14 +337,14 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
 
     @Test
     public void testChangePasswordInvalidToken () throws Exception {
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(buildAsJsonString(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildApprobationTokenBean()))
                         .password(PASSWORDS[2]).build()))
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
 
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(buildAsJsonString(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildVerificationTokenBean()))
                         .password(PASSWORDS[2]).build()))
@@ -325,7 +354,7 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
 
     @Test
     public void testChangePasswordUserNotFound () throws Exception {
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(buildAsJsonString(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildRecoverPasswordTokenBean()
                         .toBuilder().idUser(DUMMY_ID).username(DUMMY_USERNAME).build()))
@@ -336,7 +365,7 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
 
     @Test
     public void testChangePasswordUserNotRegisteredYet () throws Exception {
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(buildAsJsonString(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildRecoverPasswordTokenBean()
                             .toBuilder().idUser(SAMPLE_VERIFIED_USER.getId()).username(SAMPLE_VERIFIED_USER.getUsername()).build()))
@@ -348,7 +377,7 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
 
     @Test
     public void testChangePasswordChangedOK () throws Exception {
-        mockMvc.perform(put(AuthApiController.URL_CHANGE_PASSWORD)
+        mockMvc.perform(put(AuthApiPaths.URL_CHANGE_PASSWORD)
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(buildAsJsonString(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildRecoverPasswordTokenBean()))
                             .password(PASSWORDS[2]).build()))
@@ -356,4 +385,59 @@ public abstract class AuthApiControllerTest extends UsersRegisterTests {
                 .andExpect(status().is(HttpStatus.OK.value()))
                 .andExpect(jsonPath("$.result").value(true));
     }
+
+    @Test
+    public void testIntrospectTokens() throws Exception {
+        mockMvc.perform(post(AuthApiPaths.URL_INTROSPECTION)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(buildAsJsonString(Arrays.asList(tokenManager.encodeToken(buildVerificationTokenBean())
+                            , DUMMY_TOKEN
+                            , tokenManager.encodeToken(buildRecoverPasswordTokenBean()))))
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].valid").value(true))
+                .andExpect(jsonPath("$[0].tokenClass").value(ETokenClass.VERIFICATION.name()))
+                .andExpect(jsonPath("$[0].idUser").value(SAMPLE_CREATED_USER.getId()))
+                .andExpect(jsonPath("$[1].valid").value(false))
+                .andExpect(jsonPath("$[1].status").value(ETokenDecodeStatus.MALFORMED.name()))
+                .andExpect(jsonPath("$[2].valid").value(true))
+                .andExpect(jsonPath("$[2].tokenClass").value(ETokenClass.RECOVER_PASSWORD.name()))
+                .andExpect(jsonPath("$[2].idUser").value(SAMPLE_REGISTERED_USER.getId()));
+    }
+
+    @Test
+    public void testIntrospectTooManyTokens() throws Exception {
+        mockMvc.perform(post(AuthApiPaths.URL_INTROSPECTION)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(buildAsJsonString(Collections.nCopies(1001, DUMMY_TOKEN)))
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+    }
+    
+    @Test
+    public void testAvailability() throws Exception {
+        mockMvc.perform(get(AuthApiPaths.URL_AVAILABILITY_USERNAME)
+                    .param(AuthApiPaths.PARAM_USERNAME, USERS[0].getUsername())
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$.result").value(false));
+        mockMvc.perform(get(AuthApiPaths.URL_AVAILABILITY_USERNAME)
+                    .param(AuthApiPaths.PARAM_USERNAME, DUMMY_USERNAME)
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$.result").value(true));
+        mockMvc.perform(get(AuthApiPaths.URL_AVAILABILITY_CHANNEL)
+                    .param(AuthApiPaths.PARAM_CHANNEL_TYPE, USERS[0].getPreferredChannel().getChannelType().name())
+                    .param(AuthApiPaths.PARAM_CHANNEL_ID, USERS[0].getPreferredChannel().getChannelId())
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$.result").value(false));
+        mockMvc.perform(get(AuthApiPaths.URL_AVAILABILITY_CHANNEL)
+                    .param(AuthApiPaths.PARAM_CHANNEL_TYPE, SAMPLE_NEW_CHANNEL.getChannelType().name())
+                    .param(AuthApiPaths.PARAM_CHANNEL_ID, SAMPLE_NEW_CHANNEL.getChannelId())
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$.result").value(true));
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql;
+
+import static cat.albirar.users.repos.sql.mappings.ConsumedTokenRowMapper.COL_EXPIRE;
+import static cat.albirar.users.repos.sql.mappings.ConsumedTokenRowMapper.COL_TOKEN_ID;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+import cat.albirar.users.repos.sql.mappings.ConsumedTokenRowMapper;
+
+/**
+ * The {@link IConsumedTokenRepo} implementation for SQL databases.
+ * The primary key on {@value ConsumedTokenRowMapper#COL_TOKEN_ID} makes {@link #consume(ConsumedTokenBean)} atomic among instances.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Repository
+@Transactional(readOnly = true)
+public class ConsumedTokenSqlRepo extends AbstractSqlRepo implements IConsumedTokenRepo {
+    
+    private static String SQL_INSERT;
+    private static String SQL_EXISTS;
+    private static String SQL_SELECT_ACTIVE;
+    private static String SQL_DELETE_EXPIRED;
+    
+    @PostConstruct
+    public void setupSentences() {
+        SQL_INSERT = "INSERT INTO " + ConsumedTokenRowMapper.TABLENAME()
+                + " (" + COL_TOKEN_ID + ", " + COL_EXPIRE + ")"
+                + " VALUES (:" + COL_TOKEN_ID + ", :" + COL_EXPIRE + ")"
+                ;
+        SQL_EXISTS = "SELECT COUNT(*) FROM " + ConsumedTokenRowMapper.TABLENAME()
+                + " WHERE " + COL_TOKEN_ID + "=?"
+                ;
+        SQL_SELECT_ACTIVE = "SELECT " + COL_TOKEN_ID + " FROM " + ConsumedTokenRowMapper.TABLENAME()
+                + " WHERE " + COL_EXPIRE + ">=?"
+                ;
+        SQL_DELETE_EXPIRED = "DELETE FROM " + ConsumedTokenRowMapper.TABLENAME()
+                + " WHERE " + COL_EXPIRE + "<?"
+                ;
+    }
+    /**
+     * {@inheritDoc}
+     * The insert is done on his own transaction, so the token is consumed even if the caller transaction is rollbacked.
+     */
+    @Override
+    @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+    public boolean consume(ConsumedTokenBean token) {
+        MapSqlParameterSource params;
+        
+        params = new MapSqlParameterSource()
+                .addValue(COL_TOKEN_ID, token.getTokenId())
+                .addValue(COL_EXPIRE, Timestamp.valueOf(token.getExpire()))
+                ;
+        try {
+            return namedParameterJdbcTemplate.update(SQL_INSERT, params) == 1;
+        } catch(DuplicateKeyException e) {
+            return false;
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean existsById(String tokenId) {
+        return jdbcTemplate.queryForObject(SQL_EXISTS, Long.class, tokenId) > 0;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> findAllActiveIds() {
+        return jdbcTemplate.queryForList(SQL_SELECT_ACTIVE, String.class, Timestamp.valueOf(LocalDateTime.now()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = false)
+    public long deleteExpired() {
+        return jdbcTemplate.update(SQL_DELETE_EXPIRED, Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
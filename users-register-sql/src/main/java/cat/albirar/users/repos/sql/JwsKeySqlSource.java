@@ -0,0 +1,60 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import cat.albirar.users.repos.sql.mappings.JwsKeyRowMapper;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.verification.IJwsKeySource;
+
+/**
+ * The sql backed {@link IJwsKeySource}, shared by all nodes using the same database.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Repository
+@Transactional(readOnly = true)
+public class JwsKeySqlSource extends AbstractSqlRepo implements IJwsKeySource {
+    
+    @Autowired
+    private JwsKeyRowMapper rowMapper;
+    
+    private static String SQL_SELECT_ALL;
+    
+    @PostConstruct
+    public void setupSentences() {
+        SQL_SELECT_ALL = "SELECT * FROM "
+                + JwsKeyRowMapper.TABLENAME()
+                ;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JwsKeyBean> loadKeys() {
+        return jdbcTemplate.query(SQL_SELECT_ALL, rowMapper);
+    }
+}
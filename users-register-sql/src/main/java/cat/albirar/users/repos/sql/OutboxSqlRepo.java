@@ -0,0 +1,204 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql;
+
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_ATTEMPTS;
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_ID;
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_LAST_ERROR;
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_MESSAGE_ID;
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_NEXT_ATTEMPT;
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_STATUS;
+import static cat.albirar.users.repos.sql.mappings.OutboxRowMapper.COL_TOKEN;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.repos.IOutboxRepo;
+import cat.albirar.users.repos.sql.mappings.OutboxRowMapper;
+
+/**
+ * The {@link IOutboxRepo} implementation for SQL databases.
+ * The {@link #add(OutboxMessageBean)} joins the current transaction and each claim locks the due rows with {@code SELECT ... FOR UPDATE SKIP LOCKED} and leases them with a single {@code UPDATE},
+ * so is atomic among instances, that skip the rows claimed by others instead of waiting for them.
+ * <p>The {@value OutboxRowMapper#COL_TOKEN} is discarded once the message is sent or dead, so the tokens are not kept on the outbox after delivery.</p>
+ * <p>Requires {@code SKIP LOCKED} support: postgresql 9.5 or mysql 8 and later.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Repository
+@Transactional(readOnly = true)
+public class OutboxSqlRepo extends AbstractSqlRepo implements IOutboxRepo {
+    private static final String PARAM_NOW = "now";
+    private static final String PARAM_MAX = "max";
+    private static final String PARAM_LEASE = "lease";
+    
+    private static String PART_SELECT;
+    private static String SQL_INSERT;
+    private static String SQL_SELECT_DUE;
+    private static String SQL_CLAIM;
+    private static String SQL_MARK_SENT;
+    private static String SQL_MARK_FAILED;
+    private static String SQL_MARK_DEAD;
+    private static String SQL_FIND_BY_ID;
+    private static String SQL_COUNT_BY_STATUS;
+    
+    @Autowired
+    private OutboxRowMapper outboxRowMapper;
+    
+    @PostConstruct
+    public void setupSentences() {
+        PART_SELECT = "SELECT " + COL_ID + ", " + String.join(", ", OutboxRowMapper.NON_KEY_COLUMNS)
+                + " FROM " + OutboxRowMapper.TABLENAME()
+                ;
+        SQL_INSERT = "INSERT INTO " + OutboxRowMapper.TABLENAME()
+                + " (" + String.join(",", OutboxRowMapper.NON_KEY_COLUMNS) + ")"
+                + " VALUES (:" + String.join(",:", OutboxRowMapper.NON_KEY_COLUMNS) + ")"
+                ;
+        SQL_SELECT_DUE = PART_SELECT
+                + " WHERE " + COL_STATUS + "=:" + COL_STATUS
+                + " AND " + COL_NEXT_ATTEMPT + "<=:" + PARAM_NOW
+                + " ORDER BY " + COL_NEXT_ATTEMPT
+                + " LIMIT :" + PARAM_MAX
+                + " FOR UPDATE SKIP LOCKED"
+                ;
+        SQL_CLAIM = "UPDATE " + OutboxRowMapper.TABLENAME()
+                + " SET " + COL_NEXT_ATTEMPT + "=:" + PARAM_LEASE
+                + " WHERE " + COL_ID + " IN (:" + COL_ID + ")"
+                ;
+        SQL_MARK_SENT = "UPDATE " + OutboxRowMapper.TABLENAME()
+                + " SET " + COL_STATUS + "=:" + COL_STATUS + ", " + COL_MESSAGE_ID + "=:" + COL_MESSAGE_ID + ", " + COL_TOKEN + "=NULL"
+                + " WHERE " + COL_ID + "=:" + COL_ID
+                ;
+        SQL_MARK_FAILED = "UPDATE " + OutboxRowMapper.TABLENAME()
+                + " SET " + COL_ATTEMPTS + "=:" + COL_ATTEMPTS + ", " + COL_NEXT_ATTEMPT + "=:" + COL_NEXT_ATTEMPT + ", " + COL_LAST_ERROR + "=:" + COL_LAST_ERROR
+                + " WHERE " + COL_ID + "=:" + COL_ID
+                ;
+        SQL_MARK_DEAD = "UPDATE " + OutboxRowMapper.TABLENAME()
+                + " SET " + COL_STATUS + "=:" + COL_STATUS + ", " + COL_ATTEMPTS + "=:" + COL_ATTEMPTS + ", " + COL_LAST_ERROR + "=:" + COL_LAST_ERROR + ", " + COL_TOKEN + "=NULL"
+                + " WHERE " + COL_ID + "=:" + COL_ID
+                ;
+        SQL_FIND_BY_ID = PART_SELECT
+                + " WHERE " + COL_ID + "=:" + COL_ID
+                ;
+        SQL_COUNT_BY_STATUS = "SELECT COUNT(*) FROM " + OutboxRowMapper.TABLENAME()
+                + " WHERE " + COL_STATUS + "=:" + COL_STATUS
+                ;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = false)
+    public OutboxMessageBean add(OutboxMessageBean message) {
+        KeyHolder keyHolder;
+        Number id;
+        
+        keyHolder = new GeneratedKeyHolder();
+        namedParameterJdbcTemplate.update(SQL_INSERT, outboxRowMapper.mapValuesForCreation(message), keyHolder, new String [] {COL_ID});
+        id = keyHolder.getKey();
+        return message.toBuilder().id(OutboxRowMapper.formatId(id.longValue())).build();
+    }
+    /**
+     * {@inheritDoc}
+     * <p>Made with two sentences whatever the number of messages: the select locks the due rows, skipping the ones locked by other instances, and the update leases all of them.</p>
+     */
+    @Override
+    @Transactional(readOnly = false)
+    public List<OutboxMessageBean> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int max) {
+        List<OutboxMessageBean> claimed;
+        
+        claimed = namedParameterJdbcTemplate.query(SQL_SELECT_DUE
+                , new MapSqlParameterSource(COL_STATUS, EOutboxStatus.PENDING.name())
+                    .addValue(PARAM_NOW, Timestamp.valueOf(now))
+                    .addValue(PARAM_MAX, max)
+                , outboxRowMapper);
+        if(!claimed.isEmpty()) {
+            namedParameterJdbcTemplate.update(SQL_CLAIM, new MapSqlParameterSource(COL_ID, claimed.stream().map(m -> Long.parseLong(m.getId())).collect(Collectors.toList()))
+                    .addValue(PARAM_LEASE, Timestamp.valueOf(leaseUntil)));
+            claimed.forEach(m -> m.setNextAttempt(leaseUntil));
+        }
+        return claimed;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = false)
+    public void markSent(String id, String messageId) {
+        namedParameterJdbcTemplate.update(SQL_MARK_SENT, new MapSqlParameterSource(COL_ID, Long.parseLong(id))
+                .addValue(COL_STATUS, EOutboxStatus.SENT.name())
+                .addValue(COL_MESSAGE_ID, messageId));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = false)
+    public void markFailed(String id, int attempts, LocalDateTime nextAttempt, String error) {
+        namedParameterJdbcTemplate.update(SQL_MARK_FAILED, new MapSqlParameterSource(COL_ID, Long.parseLong(id))
+                .addValue(COL_ATTEMPTS, attempts)
+                .addValue(COL_NEXT_ATTEMPT, Timestamp.valueOf(nextAttempt))
+                .addValue(COL_LAST_ERROR, error));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = false)
+    public void markDead(String id, int attempts, String error) {
+        namedParameterJdbcTemplate.update(SQL_MARK_DEAD, new MapSqlParameterSource(COL_ID, Long.parseLong(id))
+                .addValue(COL_STATUS, EOutboxStatus.DEAD.name())
+                .addValue(COL_ATTEMPTS, attempts)
+                .addValue(COL_LAST_ERROR, error));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<OutboxMessageBean> findById(String id) {
+        List<OutboxMessageBean> l;
+        
+        l = namedParameterJdbcTemplate.query(SQL_FIND_BY_ID, new MapSqlParameterSource(COL_ID, Long.parseLong(id)), outboxRowMapper);
+        if(l.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(l.get(0));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long countByStatus(EOutboxStatus status) {
+        return namedParameterJdbcTemplate.queryForObject(SQL_COUNT_BY_STATUS, new MapSqlParameterSource(COL_STATUS, status.name()), Number.class).longValue();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql;
+
+import static cat.albirar.users.repos.sql.mappings.TokenEpochRowMapper.COL_EPOCH;
+import static cat.albirar.users.repos.sql.mappings.TokenEpochRowMapper.COL_UPDATED;
+import static cat.albirar.users.repos.sql.mappings.TokenEpochRowMapper.COL_USER_ID;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import cat.albirar.users.models.tokens.TokenEpochBean;
+import cat.albirar.users.repos.ITokenEpochRepo;
+import cat.albirar.users.repos.sql.mappings.TokenEpochRowMapper;
+
+/**
+ * The {@link ITokenEpochRepo} implementation for SQL databases.
+ * The increment is made on database ({@code epoch = epoch + 1}), so is atomic among instances.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Repository
+@Transactional(readOnly = true)
+public class TokenEpochSqlRepo extends AbstractSqlRepo implements ITokenEpochRepo {
+    
+    private static String SQL_INCREMENT;
+    private static String SQL_INSERT;
+    private static String SQL_SELECT_EPOCH;
+    private static String SQL_SELECT_ALL;
+    
+    @Autowired
+    private TokenEpochRowMapper tokenEpochRowMapper;
+    
+    private TransactionTemplate newTransaction;
+    
+    /**
+     * Setup the template for the own transactions of {@link #increment(String)}.
+     * @param transactionManager The transaction manager
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    @PostConstruct
+    public void setupSentences() {
+        SQL_INCREMENT = "UPDATE " + TokenEpochRowMapper.TABLENAME()
+                + " SET " + COL_EPOCH + "=" + COL_EPOCH + "+1, " + COL_UPDATED + "=:" + COL_UPDATED
+                + " WHERE " + COL_USER_ID + "=:" + COL_USER_ID
+                ;
+        SQL_INSERT = "INSERT INTO " + TokenEpochRowMapper.TABLENAME()
+                + " (" + COL_USER_ID + ", " + COL_EPOCH + ", " + COL_UPDATED + ")"
+                + " VALUES (:" + COL_USER_ID + ", 1, :" + COL_UPDATED + ")"
+                ;
+        SQL_SELECT_EPOCH = "SELECT " + COL_EPOCH + " FROM " + TokenEpochRowMapper.TABLENAME()
+                + " WHERE " + COL_USER_ID + "=:" + COL_USER_ID
+                ;
+        SQL_SELECT_ALL = "SELECT " + COL_USER_ID + ", " + COL_EPOCH + ", " + COL_UPDATED + " FROM " + TokenEpochRowMapper.TABLENAME();
+    }
+    /**
+     * {@inheritDoc}
+     * The increment is done on his own transaction, so the tokens are invalidated even if the caller transaction is rollbacked.
+     * <p>If the row is inserted concurrently by another instance, the failed transaction is rollbacked and the increment is retried on a new one; some databases (postgresql) doesn't accept more sentences on a transaction after a failed one.</p>
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long increment(String idUser) {
+        MapSqlParameterSource params;
+        
+        params = new MapSqlParameterSource()
+                .addValue(COL_USER_ID, Long.parseLong(idUser))
+                .addValue(COL_UPDATED, Timestamp.valueOf(LocalDateTime.now()))
+                ;
+        try {
+            return newTransaction.execute(status -> incrementOrInsert(params));
+        } catch(DuplicateKeyException e) {
+            // Inserted concurrently by another instance, now the row exists
+            return newTransaction.execute(status -> incrementOrInsert(params));
+        }
+    }
+    /**
+     * Increment the epoch, inserting the row if not exists.
+     * @param params The parameters with the user id and the update time
+     * @return The new epoch
+     */
+    private long incrementOrInsert(MapSqlParameterSource params) {
+        if(namedParameterJdbcTemplate.update(SQL_INCREMENT, params) == 0) {
+            namedParameterJdbcTemplate.update(SQL_INSERT, params);
+        }
+        return namedParameterJdbcTemplate.queryForObject(SQL_SELECT_EPOCH, params, Long.class);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TokenEpochBean> findAll() {
+        return jdbcTemplate.query(SQL_SELECT_ALL, tokenEpochRowMapper);
+    }
+}
@@ -18,25 +18,38 @@
  */
 package cat.albirar.users.repos.sql;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.validation.constraints.NotBlank;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.ObjectUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
 import cat.albirar.users.models.auth.AuthorizationBean;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 import cat.albirar.users.repos.IUserRepo;
 import cat.albirar.users.repos.sql.mappings.AuthorizationRowMapper;
 import cat.albirar.users.repos.sql.mappings.UserResultsetExtractor;
@@ -51,6 +64,10 @@ import cat.albirar.users.repos.sql.mappings.UserRowMapper.UpdateSets;
 @Repository
 @Transactional
 public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
+    /**
+     * Rows fetched on each round trip when streaming all users.
+     */
+    private static final int FETCH_SIZE = 1000;
     private static String PART_SELECT;
     private static String SQL_FIND_ALL;
     private static String SQL_FIND_BY_ID;
@@ -60,10 +77,13 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
     private static String SQL_EXIST_SEC_CHANNEL;
     private static String SQL_FIND_BY_USERNAME;
     private static String SQL_COUNT;
+    private static String SQL_FIND_ALL_IDENTITIES;
     private static String TEMPLATE_SQL_UPDATE_USER;
+    private static String SQL_MARK_VERIFIED;
+    private static String SQL_MARK_APPROVED;
     private static String SQL_CREATE_USER;
     private static String SQL_CREATE_USER_W_ID;
-    private static String SQL_REMOVE_USER_AUTHORITIES;
+    private static String SQL_REMOVE_USER_AUTHORITIES_IN;
     private static String SQL_CREATE_USER_AUTHORITIES;
     
     @Autowired
@@ -72,6 +92,19 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
     @Autowired
     private UserRowMapper userRowMapper;
     
+    private TransactionTemplate newTransaction;
+    
+    /**
+     * Setup the template for the own transactions of {@link #translateDuplicate(UserBean, DuplicateKeyException)}.
+     * @param transactionManager The transaction manager
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        newTransaction.setReadOnly(true);
+    }
+    
     /**
      * Setup sentences to use configured prefix.
      */
@@ -136,6 +169,16 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
         SQL_COUNT = "SELECT COUNT(*) FROM "
                 + UserRowMapper.TABLENAME()
                 ;
+        SQL_FIND_ALL_IDENTITIES = "SELECT "
+                + UserRowMapper.COL_ID
+                + ", " + UserRowMapper.COL_USERNAME
+                + ", " + UserRowMapper.COL_PREFERREDCHANNEL_TYPE
+                + ", " + UserRowMapper.COL_PREFERREDCHANNEL_VALUE
+                + ", " + UserRowMapper.COL_SECONDARYCHANNEL_TYPE
+                + ", " + UserRowMapper.COL_SECONDARYCHANNEL_VALUE
+                + " FROM "
+                + UserRowMapper.TABLENAME()
+                ;
         TEMPLATE_SQL_UPDATE_USER = "UPDATE "
                 + UserRowMapper.TABLENAME()
                 + " SET "
@@ -143,6 +186,26 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
                 + " WHERE "
                 + UserRowMapper.COL_ID + "=:" + UserRowMapper.COL_ID
                 ;
+        SQL_MARK_VERIFIED = "UPDATE "
+                + UserRowMapper.TABLENAME()
+                + " SET "
+                + UserRowMapper.COL_VERIFIED + "=:" + UserRowMapper.COL_VERIFIED
+                + ", " + UserRowMapper.COL_REGISTERED + "=:" + UserRowMapper.COL_REGISTERED
+                + ", " + UserRowMapper.COL_ENABLED + "=:" + UserRowMapper.COL_ENABLED
+                + " WHERE "
+                + UserRowMapper.COL_ID + "=:" + UserRowMapper.COL_ID
+                + " AND " + UserRowMapper.COL_VERIFIED + " IS NULL"
+                ;
+        SQL_MARK_APPROVED = "UPDATE "
+                + UserRowMapper.TABLENAME()
+                + " SET "
+                + UserRowMapper.COL_REGISTERED + "=:" + UserRowMapper.COL_REGISTERED
+                + ", " + UserRowMapper.COL_ENABLED + "=:" + UserRowMapper.COL_ENABLED
+                + " WHERE "
+                + UserRowMapper.COL_ID + "=:" + UserRowMapper.COL_ID
+                + " AND " + UserRowMapper.COL_VERIFIED + " IS NOT NULL"
+                + " AND " + UserRowMapper.COL_REGISTERED + " IS NULL"
+                ;
         SQL_CREATE_USER = "INSERT INTO "
                 + UserRowMapper.TABLENAME()
                 + " ("
@@ -162,10 +225,12 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
                 + ")"
                 ;
                 
-        SQL_REMOVE_USER_AUTHORITIES = "DELETE FROM "
+        SQL_REMOVE_USER_AUTHORITIES_IN = "DELETE FROM "
                 + AuthorizationRowMapper.TABLENAME_AUTHORITIES()
                 + " WHERE "
                 + AuthorizationRowMapper.COL_ID_USER_AUTH + "=:" + AuthorizationRowMapper.COL_ID_USER_AUTH
+                + " AND "
+                + AuthorizationRowMapper.COL_AUTHORITY + " IN (:" + AuthorizationRowMapper.COL_AUTHORITY + ")"
                 ;
         SQL_CREATE_USER_AUTHORITIES = "INSERT INTO "
                 + AuthorizationRowMapper.TABLENAME_AUTHORITIES()
@@ -249,20 +314,19 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
 
     /**
      * {@inheritDoc}
+     * <p>The authorities are written with a diff (only added are inserted and only removed are deleted) on batches, and the saved user is built from the written values, <b>no re-read is done</b>.</p>
      */
     @Override
     public UserBean save(UserBean user) {
-        MapSqlParameterSource parms;
-        UserBean saved;
-        List<AuthorizationBean> a1, a2;
+        Optional<UserBean> oU;
         
-        if(StringUtils.hasText(user.getId())
-                    && existsById(user.getId())) {
-            
+        oU = (StringUtils.hasText(user.getId()) ? findById(user.getId()) : Optional.empty());
+        if(oU.isPresent()) {
             UpdateSets sets;
             UserBean u;
+            Set<String> a1, a2;
             
-            u = findById(user.getId()).get();
+            u = oU.get();
             sets = userRowMapper.composeSets(u, user);
             if(StringUtils.hasText(sets.getSetsString())) {
                 // UPDATE
@@ -270,45 +334,190 @@ public class UserSqlRepo extends AbstractSqlRepo implements IUserRepo {
                 sets.addValue(UserRowMapper.COL_ID, Long.parseLong(user.getId()));
                 namedParameterJdbcTemplate.update(String.format(TEMPLATE_SQL_UPDATE_USER, sets.getSetsString()), sets.getParms());
             }
-            a1 = u.getAuthorities().stream().sorted((au1, au2) -> au1.getAuthority().compareTo(au2.getAuthority())).collect(Collectors.toList());
-            a2 = user.getAuthorities().stream().sorted((au1, au2) -> au1.getAuthority().compareTo(au2.getAuthority())).collect(Collectors.toList());
-            if(!ObjectUtils.nullSafeEquals(a1, a2)) {
-                // The authorities
-                parms = new MapSqlParameterSource(AuthorizationRowMapper.COL_ID_USER_AUTH, Long.parseLong(user.getId()));
-                namedParameterJdbcTemplate.update(SQL_REMOVE_USER_AUTHORITIES, parms);
-                for(AuthorizationBean a : user.getAuthorities()) {
-                    parms.addValue(AuthorizationRowMapper.COL_AUTHORITY, a.getAuthority());
-                    namedParameterJdbcTemplate.update(SQL_CREATE_USER_AUTHORITIES, parms);
-                }
+            // The authorities, only the differences
+            a1 = authorityNames(u.getAuthorities());
+            a2 = authorityNames(user.getAuthorities());
+            if(!a1.equals(a2)) {
+                deleteAuthorities(Long.parseLong(user.getId()), a1.stream().filter(a -> !a2.contains(a)).collect(Collectors.toList()));
+                insertAuthorities(Long.parseLong(user.getId()), a2.stream().filter(a -> !a1.contains(a)).collect(Collectors.toList()));
             }
-            saved = findById(user.getId()).get();
-        } else {
-            KeyHolder keyHolder;
-            Number id;
-
-            // CREATE
-            parms = userRowMapper.mapValuesForCreation(user);
+            // Unchanged created and empty password are kept, see UserRowMapper#composeSets
+            return user.toBuilder()
+                    .created(u.getCreated())
+                    .password(StringUtils.hasText(user.getPassword()) ? user.getPassword() : u.getPassword())
+                    .build();
+        }
+        // CREATE
+        return insert(user);
+    }
+    /**
+     * {@inheritDoc}
+     * <p>Only the generated id is requested to the driver, that is resolved with {@code INSERT ... RETURNING} where supported (postgresql) or with the generated keys of statement elsewhere (mysql).
+     * The dates are stored and returned {@link UserRowMapper#toColumnPrecision(LocalDateTime) truncated to seconds}, so the returned user is the same read after.</p>
+     */
+    @Override
+    public UserBean insert(UserBean user) {
+        MapSqlParameterSource parms;
+        KeyHolder keyHolder;
+        Number id;
+        Timestamp created;
+        
+        parms = userRowMapper.mapValuesForCreation(user);
+        created = (Timestamp)parms.getValue(UserRowMapper.COL_CREATED);
+        try {
             if(StringUtils.hasText(user.getId())) {
                 id = Long.parseLong(user.getId());
                 parms.addValue(UserRowMapper.COL_ID, id);
                 namedParameterJdbcTemplate.update(SQL_CREATE_USER_W_ID, parms);
             } else {
                 keyHolder = new GeneratedKeyHolder();
-                namedParameterJdbcTemplate.update(SQL_CREATE_USER, parms, keyHolder);
-                id = (Number)keyHolder.getKeys().get(UserRowMapper.COL_ID);
-                if(id == null) {
-                    id = keyHolder.getKey();
-                }
+                namedParameterJdbcTemplate.update(SQL_CREATE_USER, parms, keyHolder, new String [] {UserRowMapper.COL_ID});
+                id = keyHolder.getKey();
             }
-            // The authorities
-            parms = new MapSqlParameterSource(AuthorizationRowMapper.COL_ID_USER_AUTH, id);
-            for(AuthorizationBean a : user.getAuthorities()) {
-                parms.addValue(AuthorizationRowMapper.COL_AUTHORITY, a.getAuthority());
-                namedParameterJdbcTemplate.update(SQL_CREATE_USER_AUTHORITIES, parms);
+        } catch(DuplicateKeyException e) {
+            throw translateDuplicate(user, e);
+        }
+        // The authorities
+        insertAuthorities(id, authorityNames(user.getAuthorities()));
+        return user.toBuilder()
+                .id(UserRowMapper.formatId(id.longValue()))
+                .created(created.toLocalDateTime())
+                .verified(UserRowMapper.toColumnPrecision(user.getVerified()))
+                .registered(UserRowMapper.toColumnPrecision(user.getRegistered()))
+                .build();
+    }
+    /**
+     * {@inheritDoc}
+     * <p>Made with a single {@code UPDATE} of the informed columns.</p>
+     */
+    @Override
+    public boolean patch(String id, UserPatchBean changes) {
+        UpdateSets sets;
+        
+        sets = userRowMapper.composeSets(changes);
+        if(!StringUtils.hasText(sets.getSetsString())) {
+            return existsById(id);
+        }
+        sets.addValue(UserRowMapper.COL_ID, Long.parseLong(id));
+        return namedParameterJdbcTemplate.update(String.format(TEMPLATE_SQL_UPDATE_USER, sets.getSetsString()), sets.getParms()) == 1;
+    }
+    /**
+     * {@inheritDoc}
+     * <p>Made with a single {@code UPDATE ... WHERE verified IS NULL}, the affected rows tell if the user was verified now.</p>
+     */
+    @Override
+    public boolean markVerified(String id, LocalDateTime verified, boolean registeredToo) {
+        return namedParameterJdbcTemplate.update(SQL_MARK_VERIFIED
+                , new MapSqlParameterSource(UserRowMapper.COL_ID, Long.parseLong(id))
+                    .addValue(UserRowMapper.COL_VERIFIED, Timestamp.valueOf(verified))
+                    .addValue(UserRowMapper.COL_REGISTERED, registeredToo ? Timestamp.valueOf(verified) : null)
+                    .addValue(UserRowMapper.COL_ENABLED, Boolean.valueOf(registeredToo))
+                ) == 1;
+    }
+    /**
+     * {@inheritDoc}
+     * <p>Made with a single {@code UPDATE ... WHERE verified IS NOT NULL AND registered IS NULL}, the affected rows tell if the user was approved now.</p>
+     */
+    @Override
+    public boolean markApproved(String id, LocalDateTime registered) {
+        return namedParameterJdbcTemplate.update(SQL_MARK_APPROVED
+                , new MapSqlParameterSource(UserRowMapper.COL_ID, Long.parseLong(id))
+                    .addValue(UserRowMapper.COL_REGISTERED, Timestamp.valueOf(registered))
+                    .addValue(UserRowMapper.COL_ENABLED, Boolean.TRUE)
+                ) == 1;
+    }
+    /**
+     * Get the distinct names of the indicated {@code authorities}.
+     * @param authorities The authorities
+     * @return The names of authorities
+     */
+    private Set<String> authorityNames(List<AuthorizationBean> authorities) {
+        return authorities.stream().map(AuthorizationBean::getAuthority).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+    /**
+     * Insert the indicated {@code authorities} of user on a single batch.
+     * @param id The user id
+     * @param authorities The names of authorities to insert
+     */
+    private void insertAuthorities(Number id, Collection<String> authorities) {
+        MapSqlParameterSource [] parms;
+        int n;
+        
+        if(!authorities.isEmpty()) {
+            parms = new MapSqlParameterSource[authorities.size()];
+            n = 0;
+            for(String a : authorities) {
+                parms[n++] = new MapSqlParameterSource(AuthorizationRowMapper.COL_ID_USER_AUTH, id)
+                        .addValue(AuthorizationRowMapper.COL_AUTHORITY, a);
             }
-            saved = findById(id.toString()).get();
+            namedParameterJdbcTemplate.batchUpdate(SQL_CREATE_USER_AUTHORITIES, parms);
+        }
+    }
+    /**
+     * Delete the indicated {@code authorities} of user on a single sentence.
+     * @param id The user id
+     * @param authorities The names of authorities to delete
+     */
+    private void deleteAuthorities(Number id, Collection<String> authorities) {
+        if(!authorities.isEmpty()) {
+            namedParameterJdbcTemplate.update(SQL_REMOVE_USER_AUTHORITIES_IN
+                    , new MapSqlParameterSource(AuthorizationRowMapper.COL_ID_USER_AUTH, id)
+                        .addValue(AuthorizationRowMapper.COL_AUTHORITY, authorities));
         }
-        return saved;
+    }
+    /**
+     * Translate the unique constraint violation on insertion to the {@link DuplicateKeyException} with the {@link IUserRepo#MSG_USERNAME_IN_USE} or {@link IUserRepo#MSG_CHANNEL_IN_USE} message.
+     * <p>The drivers don't tell the violated constraint on a portable way, so the conflict is confirmed with the existence queries, on a new transaction; some databases (postgresql) doesn't accept more sentences on a transaction after a failed one.</p>
+     * @param user The user that was inserted
+     * @param e The unique constraint violation
+     * @return The translated exception or {@code e} if the conflict is not on username nor channels
+     */
+    private DuplicateKeyException translateDuplicate(UserBean user, DuplicateKeyException e) {
+        String msg;
+        
+        msg = newTransaction.execute(status -> {
+            if(existsByUsername(user.getUsername())) {
+                return String.format(MSG_USERNAME_IN_USE, user.getUsername());
+            }
+            if(existsByPreferredChannel(user.getPreferredChannel())) {
+                return String.format(MSG_CHANNEL_IN_USE, user.getPreferredChannel().getChannelType().name().toLowerCase(), user.getPreferredChannel().getChannelId());
+            }
+            if(user.getSecondaryChannel() != null && existsBySecondaryChannel(user.getSecondaryChannel())) {
+                return String.format(MSG_CHANNEL_IN_USE, user.getSecondaryChannel().getChannelType().name().toLowerCase(), user.getSecondaryChannel().getChannelId());
+            }
+            return null;
+        });
+        return (msg == null ? e : new DuplicateKeyException(msg, e));
+    }
+    /**
+     * {@inheritDoc}
+     * <p>Only the user table is read, without the authorities join, and the rows are fetched in blocks of {@value #FETCH_SIZE}.</p>
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachUser(Consumer<UserBean> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps;
+            
+            ps = con.prepareStatement(SQL_FIND_ALL_IDENTITIES);
+            // Postgresql only uses a cursor with a fetch size inside a transaction
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            String t;
+            
+            t = rs.getString(UserRowMapper.COL_SECONDARYCHANNEL_TYPE);
+            consumer.accept(UserBean.builder()
+                    .id(UserRowMapper.formatId(rs.getLong(UserRowMapper.COL_ID)))
+                    .username(rs.getString(UserRowMapper.COL_USERNAME))
+                    .preferredChannel(CommunicationChannelBean.builder()
+                            .channelType(ECommunicationChannelType.valueOf(rs.getString(UserRowMapper.COL_PREFERREDCHANNEL_TYPE)))
+                            .channelId(rs.getString(UserRowMapper.COL_PREFERREDCHANNEL_VALUE)).build())
+                    .secondaryChannel(t == null ? null : CommunicationChannelBean.builder()
+                            .channelType(ECommunicationChannelType.valueOf(t))
+                            .channelId(rs.getString(UserRowMapper.COL_SECONDARYCHANNEL_VALUE)).build())
+                    .build());
+        });
     }
     /**
      * {@inheritDoc}
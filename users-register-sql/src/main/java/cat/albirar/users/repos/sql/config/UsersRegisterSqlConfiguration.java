@@ -36,7 +36,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
-import cat.albirar.users.config.UsersRegisterConfiguration;
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
 import cat.albirar.users.repos.sql.AbstractSqlRepo;
 import cat.albirar.users.repos.sql.mappings.AbstractRowMapper;
 
@@ -46,7 +46,7 @@ import cat.albirar.users.repos.sql.mappings.AbstractRowMapper;
  * @since 1.0.0
  */
 @Configuration
-@Import(UsersRegisterConfiguration.class)
+@Import(UsersRegisterServicesConfiguration.class)
 @ComponentScan(basePackageClasses = {AbstractSqlRepo.class, AbstractRowMapper.class, UsersRegisterSqlDataSourceConfiguration.class})
 @EnableTransactionManagement
 @PropertySource("classpath:/cat/albirar/users/sql/users-sql.properties")
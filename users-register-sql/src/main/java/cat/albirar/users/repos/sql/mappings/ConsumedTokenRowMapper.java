@@ -0,0 +1,85 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql.mappings;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+
+/**
+ * Row mapper for {@link ConsumedTokenBean}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class ConsumedTokenRowMapper extends AbstractRowMapper implements IPrefixedColsRowMapper<ConsumedTokenBean> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumedTokenRowMapper.class);
+
+    private static final String TABLE_NAME = "consumed_token";
+    private static String CONSUMED_TOKEN_TABLE = TABLE_NAME;
+    public static final String COL_TOKEN_ID = "token_id";
+    public static final String COL_EXPIRE = "expire";
+    
+    @PostConstruct
+    public final void init() {
+        if(StringUtils.hasText(mappingConf.getPrefix()) && mappingConf.getPrefix().endsWith("_")) {
+            CONSUMED_TOKEN_TABLE = mappingConf.getPrefix() + TABLE_NAME;
+            LOGGER.debug("Prefix for tables is {}, consumed token table name is {}", mappingConf.getPrefix(), CONSUMED_TOKEN_TABLE);
+        } else {
+            LOGGER.debug("NO prefix is indicated for consumed token, consumed token table name is {}", CONSUMED_TOKEN_TABLE);
+        }
+    }
+    
+    public static final String TABLENAME () {
+        return CONSUMED_TOKEN_TABLE;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConsumedTokenBean mapRow(String colPrefix, ResultSet rs, int rowNum) throws SQLException {
+        return ConsumedTokenBean.builder()
+                .tokenId(rs.getString(prefixCol(colPrefix, COL_TOKEN_ID)))
+                .expire(LocalDateTime.ofInstant(rs.getTimestamp(prefixCol(colPrefix, COL_EXPIRE)).toInstant(), ZoneId.systemDefault()))
+                .build()
+                ;
+    }
+    /**
+     * Map a {@link ConsumedTokenBean} with values from {@link #CONSUMED_TOKEN_TABLE}.
+     * The mapping is:
+     * <ul>
+     * <li>{@link ConsumedTokenBean#getTokenId()} with {@value #COL_TOKEN_ID}</li>
+     * <li>{@link ConsumedTokenBean#getExpire()} with {@value #COL_EXPIRE}</li>
+     * </ul>
+     */
+    @Override
+    public ConsumedTokenBean mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(null, rs, rowNum);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql.mappings;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * The {@link RowMapper} for {@link JwsKeyBean}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class JwsKeyRowMapper extends AbstractRowMapper implements IPrefixedColsRowMapper<JwsKeyBean> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwsKeyRowMapper.class);
+
+    private static final String TABLE_NAME = "jws_key";
+    private static String JWS_KEY_TABLE = TABLE_NAME;
+    public static final String COL_KID = "kid";
+    public static final String COL_SECRET = "secret";
+    public static final String COL_VALID_FROM = "valid_from";
+    public static final String COL_VALID_UNTIL = "valid_until";
+    
+    @PostConstruct
+    public final void init() {
+        if(StringUtils.hasText(mappingConf.getPrefix()) && mappingConf.getPrefix().endsWith("_")) {
+            JWS_KEY_TABLE = mappingConf.getPrefix() + TABLE_NAME;
+            LOGGER.debug("Prefix for tables is {}, JWS key table name is {}", mappingConf.getPrefix(), JWS_KEY_TABLE);
+        } else {
+            LOGGER.debug("NO prefix is indicated for JWS key, JWS key table name is {}", JWS_KEY_TABLE);
+        }
+    }
+    
+    public static final String TABLENAME () {
+        return JWS_KEY_TABLE;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JwsKeyBean mapRow(String colPrefix, ResultSet rs, int rowNum) throws SQLException {
+        Timestamp tu;
+        
+        tu = rs.getTimestamp(prefixCol(colPrefix, COL_VALID_UNTIL));
+        return JwsKeyBean.builder()
+                .kid(rs.getString(prefixCol(colPrefix, COL_KID)))
+                .key(Keys.hmacShaKeyFor(Base64.getDecoder().decode(rs.getString(prefixCol(colPrefix, COL_SECRET)))))
+                .validFrom(LocalDateTime.ofInstant(rs.getTimestamp(prefixCol(colPrefix, COL_VALID_FROM)).toInstant(), ZoneId.systemDefault()))
+                .validUntil(tu == null ? null : LocalDateTime.ofInstant(tu.toInstant(), ZoneId.systemDefault()))
+                .build()
+                ;
+    }
+    /**
+     * Map a {@link JwsKeyBean} with values from {@link #JWS_KEY_TABLE}.
+     * The mapping is:
+     * <ul>
+     * <li>{@link JwsKeyBean#getKid()} with {@value #COL_KID}</li>
+     * <li>{@link JwsKeyBean#getKey()} with {@value #COL_SECRET}, encoded in base64</li>
+     * <li>{@link JwsKeyBean#getValidFrom()} with {@value #COL_VALID_FROM}</li>
+     * <li>{@link JwsKeyBean#getValidUntil()} with {@value #COL_VALID_UNTIL}</li>
+     * </ul>
+     */
+    @Override
+    public JwsKeyBean mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(null, rs, rowNum);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql.mappings;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Locale;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import cat.albirar.communications.channels.models.ContactBean;
+import cat.albirar.communications.channels.models.ECommunicationChannelType;
+import cat.albirar.communications.channels.models.LocalizableAttributesCommunicationChannelBean;
+import cat.albirar.users.models.outbox.EOutboxProcess;
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.verification.ProcessBean;
+
+/**
+ * Row mapper for {@link OutboxMessageBean}.
+ * The {@link ProcessBean message} is flattened, with a group of columns for the destination and other for the sender; the locales are saved as language tags.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class OutboxRowMapper extends AbstractRowMapper implements IPrefixedColsRowMapper<OutboxMessageBean> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxRowMapper.class);
+
+    private static final String TABLE_NAME = "outbox";
+    private static String OUTBOX_TABLE = TABLE_NAME;
+    public static final String COL_ID = "id";
+    public static final String COL_PROCESS = "process";
+    public static final String COL_STATUS = "status";
+    public static final String COL_ATTEMPTS = "attempts";
+    public static final String COL_CREATED = "created";
+    public static final String COL_NEXT_ATTEMPT = "next_attempt";
+    public static final String COL_MESSAGE_ID = "message_id";
+    public static final String COL_LAST_ERROR = "last_error";
+    public static final String COL_TOKEN = "token";
+    public static final String COL_TITLE = "title";
+    public static final String COL_DESTINATION = "dest";
+    public static final String COL_SENDER = "sender";
+    public static final String SUFFIX_NAME = "_name";
+    public static final String SUFFIX_TYPE = "_type";
+    public static final String SUFFIX_VALUE = "_value";
+    public static final String SUFFIX_CHANNEL_LOCALE = "_channel_locale";
+    public static final String SUFFIX_LOCALE = "_locale";
+    
+    public static final String [] NON_KEY_COLUMNS = {
+        COL_PROCESS, COL_STATUS, COL_ATTEMPTS, COL_CREATED, COL_NEXT_ATTEMPT, COL_MESSAGE_ID, COL_LAST_ERROR
+        , COL_TOKEN, COL_TITLE
+        , COL_DESTINATION + SUFFIX_NAME, COL_DESTINATION + SUFFIX_TYPE, COL_DESTINATION + SUFFIX_VALUE, COL_DESTINATION + SUFFIX_CHANNEL_LOCALE, COL_DESTINATION + SUFFIX_LOCALE
+        , COL_SENDER + SUFFIX_NAME, COL_SENDER + SUFFIX_TYPE, COL_SENDER + SUFFIX_VALUE, COL_SENDER + SUFFIX_CHANNEL_LOCALE, COL_SENDER + SUFFIX_LOCALE
+    };
+    
+    @PostConstruct
+    public final void init() {
+        if(StringUtils.hasText(mappingConf.getPrefix()) && mappingConf.getPrefix().endsWith("_")) {
+            OUTBOX_TABLE = mappingConf.getPrefix() + TABLE_NAME;
+            LOGGER.debug("Prefix for tables is {}, outbox table name is {}", mappingConf.getPrefix(), OUTBOX_TABLE);
+        } else {
+            LOGGER.debug("NO prefix is indicated for outbox, outbox table name is {}", OUTBOX_TABLE);
+        }
+    }
+    
+    public static final String TABLENAME () {
+        return OUTBOX_TABLE;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutboxMessageBean mapRow(String colPrefix, ResultSet rs, int rowNum) throws SQLException {
+        return OutboxMessageBean.builder()
+                .id(formatId(rs.getLong(prefixCol(colPrefix, COL_ID))))
+                .process(EOutboxProcess.valueOf(rs.getString(prefixCol(colPrefix, COL_PROCESS))))
+                .status(EOutboxStatus.valueOf(rs.getString(prefixCol(colPrefix, COL_STATUS))))
+                .attempts(rs.getInt(prefixCol(colPrefix, COL_ATTEMPTS)))
+                .created(toLocalDateTime(rs.getTimestamp(prefixCol(colPrefix, COL_CREATED))))
+                .nextAttempt(toLocalDateTime(rs.getTimestamp(prefixCol(colPrefix, COL_NEXT_ATTEMPT))))
+                .messageId(rs.getString(prefixCol(colPrefix, COL_MESSAGE_ID)))
+                .lastError(rs.getString(prefixCol(colPrefix, COL_LAST_ERROR)))
+                .message(ProcessBean.builder()
+                        .token(rs.getString(prefixCol(colPrefix, COL_TOKEN)))
+                        .title(rs.getString(prefixCol(colPrefix, COL_TITLE)))
+                        .destination(mapContact(colPrefix, COL_DESTINATION, rs))
+                        .sender(mapContact(colPrefix, COL_SENDER, rs))
+                        .build())
+                .build()
+                ;
+    }
+    /**
+     * Map a {@link OutboxMessageBean} with values from {@link #OUTBOX_TABLE}.
+     * The mapping is:
+     * <ul>
+     * <li>{@link OutboxMessageBean#getId()} with {@value #COL_ID}</li>
+     * <li>{@link OutboxMessageBean#getProcess()} with {@value #COL_PROCESS}</li>
+     * <li>{@link OutboxMessageBean#getStatus()} with {@value #COL_STATUS}</li>
+     * <li>{@link OutboxMessageBean#getAttempts()} with {@value #COL_ATTEMPTS}</li>
+     * <li>{@link OutboxMessageBean#getCreated()} with {@value #COL_CREATED}</li>
+     * <li>{@link OutboxMessageBean#getNextAttempt()} with {@value #COL_NEXT_ATTEMPT}</li>
+     * <li>{@link OutboxMessageBean#getMessageId()} with {@value #COL_MESSAGE_ID}</li>
+     * <li>{@link OutboxMessageBean#getLastError()} with {@value #COL_LAST_ERROR}</li>
+     * <li>{@link ProcessBean#getToken()} and {@link ProcessBean#getTitle()} of {@link OutboxMessageBean#getMessage()} with {@value #COL_TOKEN} and {@value #COL_TITLE}</li>
+     * <li>{@link ProcessBean#getDestination()} and {@link ProcessBean#getSender()} of {@link OutboxMessageBean#getMessage()} with the columns prefixed by {@value #COL_DESTINATION} and {@value #COL_SENDER}</li>
+     * </ul>
+     */
+    @Override
+    public OutboxMessageBean mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(null, rs, rowNum);
+    }
+    /**
+     * All the values of {@code message} for creation.
+     * @param message The message
+     * @return The parameter values holder
+     */
+    public MapSqlParameterSource mapValuesForCreation(OutboxMessageBean message) {
+        MapSqlParameterSource parms;
+        
+        parms = new MapSqlParameterSource()
+                .addValue(COL_PROCESS, message.getProcess().name())
+                .addValue(COL_STATUS, message.getStatus().name())
+                .addValue(COL_ATTEMPTS, message.getAttempts())
+                .addValue(COL_CREATED, Timestamp.valueOf(message.getCreated()))
+                .addValue(COL_NEXT_ATTEMPT, Timestamp.valueOf(message.getNextAttempt()))
+                .addValue(COL_MESSAGE_ID, message.getMessageId())
+                .addValue(COL_LAST_ERROR, message.getLastError())
+                .addValue(COL_TOKEN, message.getMessage().getToken())
+                .addValue(COL_TITLE, message.getMessage().getTitle())
+                ;
+        mapContactValues(COL_DESTINATION, message.getMessage().getDestination(), parms);
+        mapContactValues(COL_SENDER, message.getMessage().getSender(), parms);
+        return parms;
+    }
+    /**
+     * Map the contact on the columns with {@code contactCol} prefix.
+     * @param colPrefix The prefix of the result set columns, if any
+     * @param contactCol The prefix of the contact columns
+     * @param rs The result set
+     * @return The contact or null if no contact was saved
+     * @throws SQLException If cannot access to result set
+     */
+    private ContactBean mapContact(String colPrefix, String contactCol, ResultSet rs) throws SQLException {
+        String type;
+        
+        type = rs.getString(prefixCol(colPrefix, contactCol + SUFFIX_TYPE));
+        if(type == null) {
+            return null;
+        }
+        return ContactBean.builder()
+                .displayName(rs.getString(prefixCol(colPrefix, contactCol + SUFFIX_NAME)))
+                .channelBean(LocalizableAttributesCommunicationChannelBean.builder()
+                        .channelType(ECommunicationChannelType.valueOf(type))
+                        .channelId(rs.getString(prefixCol(colPrefix, contactCol + SUFFIX_VALUE)))
+                        .locale(toLocale(rs.getString(prefixCol(colPrefix, contactCol + SUFFIX_CHANNEL_LOCALE))))
+                        .build())
+                .preferredLocale(toLocale(rs.getString(prefixCol(colPrefix, contactCol + SUFFIX_LOCALE))))
+                .build()
+                ;
+    }
+    /**
+     * Add the values of {@code contact} for the columns with {@code contactCol} prefix.
+     * @param contactCol The prefix of the contact columns
+     * @param contact The contact, can be null
+     * @param parms The parameter values holder
+     */
+    private void mapContactValues(String contactCol, ContactBean contact, MapSqlParameterSource parms) {
+        if(contact != null && contact.getChannelBean() != null) {
+            parms.addValue(contactCol + SUFFIX_NAME, contact.getDisplayName());
+            parms.addValue(contactCol + SUFFIX_TYPE, contact.getChannelBean().getChannelType().name());
+            parms.addValue(contactCol + SUFFIX_VALUE, contact.getChannelBean().getChannelId());
+            parms.addValue(contactCol + SUFFIX_CHANNEL_LOCALE, contact.getChannelBean().getLocale() == null ? null : contact.getChannelBean().getLocale().toLanguageTag());
+            parms.addValue(contactCol + SUFFIX_LOCALE, contact.getPreferredLocale() == null ? null : contact.getPreferredLocale().toLanguageTag());
+        } else {
+            parms.addValue(contactCol + SUFFIX_NAME, null);
+            parms.addValue(contactCol + SUFFIX_TYPE, null);
+            parms.addValue(contactCol + SUFFIX_VALUE, null);
+            parms.addValue(contactCol + SUFFIX_CHANNEL_LOCALE, null);
+            parms.addValue(contactCol + SUFFIX_LOCALE, null);
+        }
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp ts) {
+        return (ts == null ? null : LocalDateTime.ofInstant(ts.toInstant(), ZoneId.systemDefault()));
+    }
+    
+    private static Locale toLocale(String locale) {
+        return (StringUtils.hasText(locale) ? Locale.forLanguageTag(locale) : null);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of "albirar users-register-mysql".
+ * 
+ * "albirar users-register-mysql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-mysql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-mysql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.repos.sql.mappings;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import cat.albirar.users.models.tokens.TokenEpochBean;
+
+/**
+ * Row mapper for {@link TokenEpochBean}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class TokenEpochRowMapper extends AbstractRowMapper implements IPrefixedColsRowMapper<TokenEpochBean> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenEpochRowMapper.class);
+
+    private static final String TABLE_NAME = "token_epoch";
+    private static String TOKEN_EPOCH_TABLE = TABLE_NAME;
+    public static final String COL_USER_ID = "user_id";
+    public static final String COL_EPOCH = "epoch";
+    public static final String COL_UPDATED = "updated";
+    
+    @PostConstruct
+    public final void init() {
+        if(StringUtils.hasText(mappingConf.getPrefix()) && mappingConf.getPrefix().endsWith("_")) {
+            TOKEN_EPOCH_TABLE = mappingConf.getPrefix() + TABLE_NAME;
+            LOGGER.debug("Prefix for tables is {}, token epoch table name is {}", mappingConf.getPrefix(), TOKEN_EPOCH_TABLE);
+        } else {
+            LOGGER.debug("NO prefix is indicated for token epoch, token epoch table name is {}", TOKEN_EPOCH_TABLE);
+        }
+    }
+    
+    public static final String TABLENAME () {
+        return TOKEN_EPOCH_TABLE;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TokenEpochBean mapRow(String colPrefix, ResultSet rs, int rowNum) throws SQLException {
+        return TokenEpochBean.builder()
+                .idUser(rs.getString(prefixCol(colPrefix, COL_USER_ID)))
+                .epoch(rs.getLong(prefixCol(colPrefix, COL_EPOCH)))
+                .updated(LocalDateTime.ofInstant(rs.getTimestamp(prefixCol(colPrefix, COL_UPDATED)).toInstant(), ZoneId.systemDefault()))
+                .build()
+                ;
+    }
+    /**
+     * Map a {@link TokenEpochBean} with values from {@link #TOKEN_EPOCH_TABLE}.
+     * The mapping is:
+     * <ul>
+     * <li>{@link TokenEpochBean#getIdUser()} with {@value #COL_USER_ID}</li>
+     * <li>{@link TokenEpochBean#getEpoch()} with {@value #COL_EPOCH}</li>
+     * <li>{@link TokenEpochBean#getUpdated()} with {@value #COL_UPDATED}</li>
+     * </ul>
+     */
+    @Override
+    public TokenEpochBean mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(null, rs, rowNum);
+    }
+}
@@ -25,6 +25,7 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,10 +33,8 @@ import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
@@ -43,6 +42,7 @@ import org.springframework.util.StringUtils;
 import cat.albirar.communications.channels.models.CommunicationChannelBean;
 import cat.albirar.communications.channels.models.ECommunicationChannelType;
 import cat.albirar.users.models.users.UserBean;
+import cat.albirar.users.models.users.UserPatchBean;
 
 /**
  * {@link RowMapper} for {@link UserBean}.
@@ -53,9 +53,6 @@ import cat.albirar.users.models.users.UserBean;
 public class UserRowMapper extends AbstractRowMapper implements IPrefixedColsRowMapper<UserBean> {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserRowMapper.class);
 
-    @Autowired
-    private PasswordEncoder passwordEncoder;
-    
     public static final String COL_ID = "id";
     public static final String COL_USERNAME = "username";
     public static final String COL_PREFERREDCHANNEL_TYPE = "pc_type";
@@ -140,6 +137,14 @@ public class UserRowMapper extends AbstractRowMapper implements IPrefixedColsRow
         return mapRow(null, rs, rowNum);
     }
 
+    /**
+     * Truncate the {@code dateTime} to the precision of the timestamp columns (seconds on mysql), so the values written are the same read after on all databases.
+     * @param dateTime The date time, can be null
+     * @return The truncated date time or null if {@code dateTime} is null
+     */
+    public static LocalDateTime toColumnPrecision(LocalDateTime dateTime) {
+        return (dateTime == null ? null : dateTime.truncatedTo(ChronoUnit.SECONDS));
+    }
     /**
      * Add all values for creation.
      * @param user The user with the new values
@@ -161,17 +166,17 @@ public class UserRowMapper extends AbstractRowMapper implements IPrefixedColsRow
         }
         parms.addValue(COL_PASSWORD, user.getPassword());
         if(user.getCreated() != null) {
-            parms.addValue(COL_CREATED, Timestamp.valueOf(user.getCreated()));
+            parms.addValue(COL_CREATED, Timestamp.valueOf(toColumnPrecision(user.getCreated())));
         } else {
-            parms.addValue(COL_CREATED, Timestamp.valueOf(LocalDateTime.now()));
+            parms.addValue(COL_CREATED, Timestamp.valueOf(toColumnPrecision(LocalDateTime.now())));
         }
         if(user.getVerified() != null) {
-            parms.addValue(COL_VERIFIED, Date.from(user.getVerified().atZone(ZoneId.systemDefault()).toInstant()));
+            parms.addValue(COL_VERIFIED, Timestamp.valueOf(toColumnPrecision(user.getVerified())));
         } else {
             parms.addValue(COL_VERIFIED, null);
         }
         if(user.getRegistered() != null) {
-            parms.addValue(COL_REGISTERED, Date.from(user.getRegistered().atZone(ZoneId.systemDefault()).toInstant()));
+            parms.addValue(COL_REGISTERED, Timestamp.valueOf(toColumnPrecision(user.getRegistered())));
         } else {
             parms.addValue(COL_REGISTERED, null);
         }
@@ -229,7 +234,8 @@ public class UserRowMapper extends AbstractRowMapper implements IPrefixedColsRow
                 sets.add(COL_SECONDARYCHANNEL_VALUE.concat("=NULL"));
             }
         }
-        if(StringUtils.hasText(updated.getPassword()) && !passwordEncoder.matches(updated.getPassword(), original.getPassword())) {
+        // Both are encoded (see IUserRepo#save), a plain comparison avoids a hash on each update
+        if(StringUtils.hasText(updated.getPassword()) && !updated.getPassword().equals(original.getPassword())) {
             sets.add(COL_PASSWORD.concat("=:").concat(COL_PASSWORD));
             r.addValue(COL_PASSWORD, updated.getPassword());
         }
@@ -281,6 +287,78 @@ public class UserRowMapper extends AbstractRowMapper implements IPrefixedColsRow
         return r;
     }
 
+    /**
+     * Compose the {@code SET ...} part of update sentence for patch a user with only the informed values of {@code patch}.
+     * @param patch The changes to apply
+     * @return The {@code COL=:COL...} for every informed or cleared value of {@code patch} and the parameter values
+     */
+    public UpdateSets composeSets(UserPatchBean patch) {
+        List<String> sets;
+        UpdateSets r;
+        
+        r = new UpdateSets();
+        sets = new ArrayList<>();
+        if(patch.getUsername() != null) {
+            sets.add(COL_USERNAME.concat("=:").concat(COL_USERNAME));
+            r.addValue(COL_USERNAME, patch.getUsername());
+        }
+        if(patch.getPreferredChannel() != null) {
+            sets.add(COL_PREFERREDCHANNEL_TYPE.concat("=:").concat(COL_PREFERREDCHANNEL_TYPE));
+            r.addValue(COL_PREFERREDCHANNEL_TYPE, patch.getPreferredChannel().getChannelType().name());
+            sets.add(COL_PREFERREDCHANNEL_VALUE.concat("=:").concat(COL_PREFERREDCHANNEL_VALUE));
+            r.addValue(COL_PREFERREDCHANNEL_VALUE, patch.getPreferredChannel().getChannelId());
+        }
+        if(patch.getSecondaryChannel() != null) {
+            sets.add(COL_SECONDARYCHANNEL_TYPE.concat("=:").concat(COL_SECONDARYCHANNEL_TYPE));
+            r.addValue(COL_SECONDARYCHANNEL_TYPE, patch.getSecondaryChannel().getChannelType().name());
+            sets.add(COL_SECONDARYCHANNEL_VALUE.concat("=:").concat(COL_SECONDARYCHANNEL_VALUE));
+            r.addValue(COL_SECONDARYCHANNEL_VALUE, patch.getSecondaryChannel().getChannelId());
+        } else if(patch.isCleared(UserBean.FIELD_SECONDARYCHANNEL)) {
+            sets.add(COL_SECONDARYCHANNEL_TYPE.concat("=NULL"));
+            sets.add(COL_SECONDARYCHANNEL_VALUE.concat("=NULL"));
+        }
+        if(patch.getPassword() != null) {
+            sets.add(COL_PASSWORD.concat("=:").concat(COL_PASSWORD));
+            r.addValue(COL_PASSWORD, patch.getPassword());
+        }
+        if(patch.getVerified() != null) {
+            sets.add(COL_VERIFIED.concat("=:").concat(COL_VERIFIED));
+            r.addValue(COL_VERIFIED, Date.from(patch.getVerified().atZone(ZoneId.systemDefault()).toInstant()));
+        } else if(patch.isCleared(UserBean.FIELD_VERIFIED)) {
+            sets.add(COL_VERIFIED.concat("=NULL"));
+        }
+        if(patch.getRegistered() != null) {
+            sets.add(COL_REGISTERED.concat("=:").concat(COL_REGISTERED));
+            r.addValue(COL_REGISTERED, Date.from(patch.getRegistered().atZone(ZoneId.systemDefault()).toInstant()));
+        } else if(patch.isCleared(UserBean.FIELD_REGISTERED)) {
+            sets.add(COL_REGISTERED.concat("=NULL"));
+        }
+        if(patch.getExpire() != null) {
+            sets.add(COL_EXPIRE.concat("=:").concat(COL_EXPIRE));
+            r.addValue(COL_EXPIRE, Date.valueOf(patch.getExpire()));
+        } else if(patch.isCleared(UserBean.FIELD_EXPIRE)) {
+            sets.add(COL_EXPIRE.concat("=NULL"));
+        }
+        if(patch.getLocked() != null) {
+            sets.add(COL_LOCKED.concat("=:").concat(COL_LOCKED));
+            r.addValue(COL_LOCKED, Date.valueOf(patch.getLocked()));
+        } else if(patch.isCleared(UserBean.FIELD_LOCKED)) {
+            sets.add(COL_LOCKED.concat("=NULL"));
+        }
+        if(patch.getExpireCredentials() != null) {
+            sets.add(COL_EXPIRECREDENTIALS.concat("=:").concat(COL_EXPIRECREDENTIALS));
+            r.addValue(COL_EXPIRECREDENTIALS, Date.valueOf(patch.getExpireCredentials()));
+        } else if(patch.isCleared(UserBean.FIELD_EXPIRECREDENTIALS)) {
+            sets.add(COL_EXPIRECREDENTIALS.concat("=NULL"));
+        }
+        if(patch.getEnabled() != null) {
+            sets.add(COL_ENABLED.concat("=:").concat(COL_ENABLED));
+            r.addValue(COL_ENABLED, patch.getEnabled());
+        }
+        r.setSetsString(String.join(", ", sets));
+        return r;
+    }
+
     public static class UpdateSets {
         private MapSqlParameterSource parms;
         private String setsString;
@@ -35,4 +35,51 @@ CREATE TABLE albirar_user_authorities
 	, authority VARCHAR(255) NOT NULL
 	, PRIMARY KEY (user_id, authority)
 );
-CREATE INDEX albirar_user_authorities_idx1 ON albirar_user_authorities (user_id);
\ No newline at end of file
+CREATE INDEX albirar_user_authorities_idx1 ON albirar_user_authorities (user_id);
+DROP TABLE IF EXISTS albirar_jws_key;
+CREATE TABLE albirar_jws_key
+(
+	kid VARCHAR(50) NOT NULL PRIMARY KEY
+	, secret VARCHAR(255) NOT NULL
+	, valid_from TIMESTAMP NOT NULL DEFAULT NOW()
+	, valid_until TIMESTAMP NULL
+);
+DROP TABLE IF EXISTS albirar_consumed_token;
+CREATE TABLE albirar_consumed_token
+(
+	token_id VARCHAR(50) NOT NULL PRIMARY KEY
+	, expire TIMESTAMP NOT NULL
+);
+CREATE INDEX albirar_consumed_token_idx1 ON albirar_consumed_token (expire);
+DROP TABLE IF EXISTS albirar_token_epoch;
+CREATE TABLE albirar_token_epoch
+(
+	user_id BIGINT NOT NULL PRIMARY KEY
+	, epoch BIGINT NOT NULL
+	, updated TIMESTAMP NOT NULL DEFAULT NOW()
+);
+DROP TABLE IF EXISTS albirar_outbox;
+CREATE TABLE albirar_outbox
+(
+	id SERIAL NOT NULL PRIMARY KEY
+	, process VARCHAR(30) NOT NULL
+	, status VARCHAR(10) NOT NULL
+	, attempts INT NOT NULL DEFAULT 0
+	, created TIMESTAMP NOT NULL DEFAULT NOW()
+	, next_attempt TIMESTAMP NOT NULL
+	, message_id VARCHAR(255) NULL
+	, last_error TEXT NULL
+	, token TEXT NULL
+	, title VARCHAR(255) NULL
+	, dest_name VARCHAR(255) NULL
+	, dest_type VARCHAR(50) NULL
+	, dest_value VARCHAR(255) NULL
+	, dest_channel_locale VARCHAR(35) NULL
+	, dest_locale VARCHAR(35) NULL
+	, sender_name VARCHAR(255) NULL
+	, sender_type VARCHAR(50) NULL
+	, sender_value VARCHAR(255) NULL
+	, sender_channel_locale VARCHAR(35) NULL
+	, sender_locale VARCHAR(35) NULL
+);
+CREATE INDEX albirar_outbox_idx1 ON albirar_outbox (status, next_attempt);
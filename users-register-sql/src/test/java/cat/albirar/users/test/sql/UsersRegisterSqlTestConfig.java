@@ -20,7 +20,7 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
-import cat.albirar.users.config.UsersRegisterConfiguration;
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
 import cat.albirar.users.repos.sql.config.PropertiesSql;
 import cat.albirar.users.repos.sql.config.UsersRegisterSqlConfiguration;
 import cat.albirar.users.test.context.DefaultContextTestConfiguration;
@@ -32,7 +32,7 @@ import cat.albirar.users.test.context.DefaultContextTestConfiguration;
  * @since 1.0.0
  */
 @Configuration
-@Import({UsersRegisterSqlConfiguration.class, DefaultContextTestConfiguration.class, UsersRegisterConfiguration.class})
+@Import({UsersRegisterSqlConfiguration.class, DefaultContextTestConfiguration.class, UsersRegisterServicesConfiguration.class})
 @ComponentScan(basePackageClasses = SqlTestUtils.class)
 public class UsersRegisterSqlTestConfig {
     public static final String SQL_TEST_DBTYPE = PropertiesSql.ROOT_SQL + ".test.databaseType";
@@ -0,0 +1,93 @@
+/*
+ * This file is part of "albirar users-register-sql".
+ * 
+ * "albirar users-register-sql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-sql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-sql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.sql.repos;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+
+import cat.albirar.users.models.tokens.ConsumedTokenBean;
+import cat.albirar.users.repos.IConsumedTokenRepo;
+import cat.albirar.users.repos.sql.ConsumedTokenSqlRepo;
+import cat.albirar.users.test.UsersRegisterTests;
+import cat.albirar.users.test.sql.SqlTestContainterExtension;
+import cat.albirar.users.test.sql.SqlTestUtils;
+import cat.albirar.users.test.sql.UsersRegisterSqlTestConfig;
+
+/**
+ * The sql backed test for {@link ConsumedTokenSqlRepo}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@ContextConfiguration(classes = UsersRegisterSqlTestConfig.class)
+@ExtendWith(SqlTestContainterExtension.class)
+@Sql(scripts = {"/schema.sql"})
+public class ConsumedTokenRepoSqlTest extends UsersRegisterTests {
+    
+    @Autowired
+    private SqlTestUtils sqlTestUtils;
+    
+    @Autowired
+    private IConsumedTokenRepo consumedTokenRepo;
+    
+    @BeforeEach
+    public void setupTestData() {
+        sqlTestUtils.setupData();
+    }
+    
+    @AfterEach
+    public void teardownData() {
+        sqlTestUtils.teardownData();
+    }
+    
+    @Test
+    public void testConsume() {
+        ConsumedTokenBean token;
+        
+        token = ConsumedTokenBean.builder().tokenId(SAMPLE_ID).expire(LocalDateTime.now().plusHours(1)).build();
+        Assertions.assertFalse(consumedTokenRepo.existsById(SAMPLE_ID));
+        Assertions.assertTrue(consumedTokenRepo.consume(token));
+        Assertions.assertTrue(consumedTokenRepo.existsById(SAMPLE_ID));
+        // A replay is rejected
+        Assertions.assertFalse(consumedTokenRepo.consume(token));
+        Assertions.assertFalse(consumedTokenRepo.consume(token.toBuilder().expire(LocalDateTime.now().plusHours(2)).build()));
+        Assertions.assertFalse(consumedTokenRepo.existsById(DUMMY_ID));
+    }
+    
+    @Test
+    public void testActiveAndExpired() {
+        Assertions.assertTrue(consumedTokenRepo.consume(ConsumedTokenBean.builder().tokenId(SAMPLE_ID).expire(LocalDateTime.now().plusHours(1)).build()));
+        Assertions.assertTrue(consumedTokenRepo.consume(ConsumedTokenBean.builder().tokenId(DUMMY_ID).expire(LocalDateTime.now().minusHours(1)).build()));
+        
+        Assertions.assertEquals(1, consumedTokenRepo.findAllActiveIds().size());
+        Assertions.assertEquals(SAMPLE_ID, consumedTokenRepo.findAllActiveIds().get(0));
+        
+        Assertions.assertEquals(1L, consumedTokenRepo.deleteExpired());
+        Assertions.assertFalse(consumedTokenRepo.existsById(DUMMY_ID));
+        Assertions.assertTrue(consumedTokenRepo.existsById(SAMPLE_ID));
+        Assertions.assertEquals(0L, consumedTokenRepo.deleteExpired());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of "albirar users-register-sql".
+ * 
+ * "albirar users-register-sql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-sql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-sql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.sql.repos;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import cat.albirar.communications.channels.models.ContactBean;
+import cat.albirar.communications.channels.models.LocalizableAttributesCommunicationChannelBean;
+import cat.albirar.users.config.PropertiesCore;
+import cat.albirar.users.models.outbox.EOutboxProcess;
+import cat.albirar.users.models.outbox.EOutboxStatus;
+import cat.albirar.users.models.outbox.OutboxMessageBean;
+import cat.albirar.users.models.verification.ProcessBean;
+import cat.albirar.users.repos.IOutboxRepo;
+import cat.albirar.users.repos.sql.OutboxSqlRepo;
+import cat.albirar.users.test.UsersRegisterTests;
+import cat.albirar.users.test.sql.SqlTestContainterExtension;
+import cat.albirar.users.test.sql.SqlTestUtils;
+import cat.albirar.users.test.sql.UsersRegisterSqlTestConfig;
+
+/**
+ * The sql backed test for {@link OutboxSqlRepo}.
+ * The background dispatcher is disabled, so the messages are claimed only by the test.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@ContextConfiguration(classes = UsersRegisterSqlTestConfig.class)
+@ExtendWith(SqlTestContainterExtension.class)
+@Sql(scripts = {"/schema.sql"})
+public class OutboxRepoSqlTest extends UsersRegisterTests {
+    
+    @Autowired
+    private SqlTestUtils sqlTestUtils;
+    
+    @Autowired
+    private IOutboxRepo outboxRepo;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @DynamicPropertySource
+    public static void assignProperties(DynamicPropertyRegistry registry) {
+        registry.add(PropertiesCore.OUTBOX_PROP_POLL, () -> "0");
+    }
+    
+    @BeforeEach
+    public void setupTestData() {
+        sqlTestUtils.setupData();
+    }
+    
+    @AfterEach
+    public void teardownData() {
+        sqlTestUtils.teardownData();
+    }
+    
+    @Test
+    public void testAdd() {
+        OutboxMessageBean message, stored;
+        
+        message = buildMessage(LocalDateTime.now().withNano(0));
+        stored = outboxRepo.add(message);
+        Assertions.assertNotNull(stored.getId());
+        stored = outboxRepo.findById(stored.getId()).get();
+        Assertions.assertEquals(message.getProcess(), stored.getProcess());
+        Assertions.assertEquals(message.getStatus(), stored.getStatus());
+        Assertions.assertEquals(message.getCreated(), stored.getCreated());
+        Assertions.assertEquals(message.getNextAttempt(), stored.getNextAttempt());
+        Assertions.assertEquals(message.getMessage().getToken(), stored.getMessage().getToken());
+        Assertions.assertEquals(message.getMessage().getTitle(), stored.getMessage().getTitle());
+        Assertions.assertEquals(message.getMessage().getDestination().getChannelBean().getChannelId(), stored.getMessage().getDestination().getChannelBean().getChannelId());
+        Assertions.assertEquals(message.getMessage().getSender().getDisplayName(), stored.getMessage().getSender().getDisplayName());
+        Assertions.assertEquals(1L, outboxRepo.countByStatus(EOutboxStatus.PENDING));
+    }
+    
+    @Test
+    public void testClaimDue() {
+        LocalDateTime now, lease;
+        OutboxMessageBean first, second;
+        List<OutboxMessageBean> claimed;
+        
+        now = LocalDateTime.now().withNano(0);
+        lease = now.plusMinutes(5);
+        first = outboxRepo.add(buildMessage(now.minusMinutes(2)));
+        second = outboxRepo.add(buildMessage(now.minusMinutes(1)));
+        // Not due yet
+        outboxRepo.add(buildMessage(now.plusMinutes(1)));
+        // Not pending
+        outboxRepo.markDead(outboxRepo.add(buildMessage(now.minusMinutes(3))).getId(), 1, "Dead");
+        
+        // Oldest first and up to max
+        claimed = outboxRepo.claimDue(now, lease, 1);
+        Assertions.assertEquals(1, claimed.size());
+        Assertions.assertEquals(first.getId(), claimed.get(0).getId());
+        Assertions.assertEquals(lease, claimed.get(0).getNextAttempt());
+        Assertions.assertEquals(lease, outboxRepo.findById(first.getId()).get().getNextAttempt());
+        
+        // The leased message is not claimed again
+        claimed = outboxRepo.claimDue(now, lease, 10);
+        Assertions.assertEquals(1, claimed.size());
+        Assertions.assertEquals(second.getId(), claimed.get(0).getId());
+        Assertions.assertTrue(outboxRepo.claimDue(now, lease, 10).isEmpty());
+        
+        // Until the lease ends, when the not yet due message is due too
+        claimed = outboxRepo.claimDue(lease, lease.plusMinutes(5), 10);
+        Assertions.assertEquals(3, claimed.size());
+    }
+    
+    @Test
+    public void testClaimDueSkipLocked() throws Exception {
+        LocalDateTime now, lease;
+        OutboxMessageBean first, second;
+        TransactionTemplate transaction;
+        List<OutboxMessageBean> claimed;
+        
+        now = LocalDateTime.now().withNano(0);
+        lease = now.plusMinutes(5);
+        first = outboxRepo.add(buildMessage(now.minusMinutes(2)));
+        second = outboxRepo.add(buildMessage(now.minusMinutes(1)));
+        
+        transaction = new TransactionTemplate(transactionManager);
+        claimed = transaction.execute(status -> {
+            List<OutboxMessageBean> locked, other;
+            
+            // The first message stays locked until this transaction ends
+            locked = outboxRepo.claimDue(now, lease, 1);
+            Assertions.assertEquals(1, locked.size());
+            Assertions.assertEquals(first.getId(), locked.get(0).getId());
+            // Other instance skips the locked message without waiting for it
+            try {
+                other = CompletableFuture.supplyAsync(() -> outboxRepo.claimDue(now, lease, 10)).get(10, TimeUnit.SECONDS);
+            } catch(Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return other;
+        });
+        Assertions.assertEquals(1, claimed.size());
+        Assertions.assertEquals(second.getId(), claimed.get(0).getId());
+        Assertions.assertTrue(outboxRepo.claimDue(now, lease, 10).isEmpty());
+    }
+    
+    @Test
+    public void testMarkSent() {
+        OutboxMessageBean message;
+        
+        message = outboxRepo.add(buildMessage(LocalDateTime.now().withNano(0)));
+        outboxRepo.markSent(message.getId(), "MSG-1");
+        message = outboxRepo.findById(message.getId()).get();
+        Assertions.assertEquals(EOutboxStatus.SENT, message.getStatus());
+        Assertions.assertEquals("MSG-1", message.getMessageId());
+        Assertions.assertNull(message.getMessage().getToken());
+        Assertions.assertEquals(0L, outboxRepo.countByStatus(EOutboxStatus.PENDING));
+        Assertions.assertEquals(1L, outboxRepo.countByStatus(EOutboxStatus.SENT));
+        // Sent messages are not claimed
+        Assertions.assertTrue(outboxRepo.claimDue(LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2), 10).isEmpty());
+    }
+    
+    @Test
+    public void testMarkFailed() {
+        OutboxMessageBean message;
+        LocalDateTime next;
+        
+        next = LocalDateTime.now().plusMinutes(10).withNano(0);
+        message = outboxRepo.add(buildMessage(LocalDateTime.now().withNano(0)));
+        outboxRepo.markFailed(message.getId(), 1, next, "Failed");
+        message = outboxRepo.findById(message.getId()).get();
+        Assertions.assertEquals(EOutboxStatus.PENDING, message.getStatus());
+        Assertions.assertEquals(1, message.getAttempts());
+        Assertions.assertEquals(next, message.getNextAttempt());
+        Assertions.assertEquals("Failed", message.getLastError());
+        Assertions.assertEquals(DUMMY_TOKEN, message.getMessage().getToken());
+    }
+    
+    @Test
+    public void testMarkDead() {
+        OutboxMessageBean message;
+        
+        message = outboxRepo.add(buildMessage(LocalDateTime.now().withNano(0)));
+        outboxRepo.markDead(message.getId(), 3, "Dead");
+        message = outboxRepo.findById(message.getId()).get();
+        Assertions.assertEquals(EOutboxStatus.DEAD, message.getStatus());
+        Assertions.assertEquals(3, message.getAttempts());
+        Assertions.assertEquals("Dead", message.getLastError());
+        Assertions.assertNull(message.getMessage().getToken());
+        Assertions.assertEquals(1L, outboxRepo.countByStatus(EOutboxStatus.DEAD));
+        // Dead messages are not claimed
+        Assertions.assertTrue(outboxRepo.claimDue(LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2), 10).isEmpty());
+    }
+    
+    private OutboxMessageBean buildMessage(LocalDateTime nextAttempt) {
+        return OutboxMessageBean.builder()
+                .process(EOutboxProcess.VERIFICATION)
+                .status(EOutboxStatus.PENDING)
+                .created(LocalDateTime.now().withNano(0))
+                .nextAttempt(nextAttempt)
+                .message(ProcessBean.builder()
+                        .destination(ContactBean.builder()
+                                .channelBean(LocalizableAttributesCommunicationChannelBean.builderCopy(SAMPLE_CREATED_USER.getPreferredChannel()).build())
+                                .displayName(SAMPLE_CREATED_USER.getUsername())
+                                .preferredLocale(SAMPLE_CREATED_USER.getPreferredLocale())
+                                .build())
+                        .sender(ContactBean.builder()
+                                .channelBean(LocalizableAttributesCommunicationChannelBean.builderCopy(SAMPLE_CREATED_USER.getPreferredChannel()).build())
+                                .displayName("Sender")
+                                .build())
+                        .token(DUMMY_TOKEN)
+                        .title("Test")
+                        .build())
+                .build()
+                ;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of "albirar users-register-sql".
+ * 
+ * "albirar users-register-sql" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-sql" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-sql" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.sql.repos;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+
+import cat.albirar.users.models.tokens.TokenEpochBean;
+import cat.albirar.users.repos.ITokenEpochRepo;
+import cat.albirar.users.repos.sql.TokenEpochSqlRepo;
+import cat.albirar.users.test.UsersRegisterTests;
+import cat.albirar.users.test.sql.SqlTestContainterExtension;
+import cat.albirar.users.test.sql.SqlTestUtils;
+import cat.albirar.users.test.sql.UsersRegisterSqlTestConfig;
+
+/**
+ * The sql backed test for {@link TokenEpochSqlRepo}.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@ContextConfiguration(classes = UsersRegisterSqlTestConfig.class)
+@ExtendWith(SqlTestContainterExtension.class)
+@Sql(scripts = {"/schema.sql"})
+public class TokenEpochRepoSqlTest extends UsersRegisterTests {
+    
+    @Autowired
+    private SqlTestUtils sqlTestUtils;
+    
+    @Autowired
+    private ITokenEpochRepo tokenEpochRepo;
+    
+    @BeforeEach
+    public void setupTestData() {
+        sqlTestUtils.setupData();
+    }
+    
+    @AfterEach
+    public void teardownData() {
+        sqlTestUtils.teardownData();
+    }
+    
+    @Test
+    public void testIncrement() {
+        Assertions.assertTrue(tokenEpochRepo.findAll().isEmpty());
+        // The first increment inserts the epoch
+        Assertions.assertEquals(1L, tokenEpochRepo.increment(SAMPLE_VERIFIED_USER.getId()));
+        Assertions.assertEquals(2L, tokenEpochRepo.increment(SAMPLE_VERIFIED_USER.getId()));
+        Assertions.assertEquals(3L, tokenEpochRepo.increment(SAMPLE_VERIFIED_USER.getId()));
+        // Each user has his own epoch
+        Assertions.assertEquals(1L, tokenEpochRepo.increment(SAMPLE_REGISTERED_USER.getId()));
+    }
+    
+    @Test
+    public void testFindAll() {
+        List<TokenEpochBean> epochs;
+        
+        tokenEpochRepo.increment(SAMPLE_VERIFIED_USER.getId());
+        tokenEpochRepo.increment(SAMPLE_VERIFIED_USER.getId());
+        tokenEpochRepo.increment(SAMPLE_REGISTERED_USER.getId());
+        
+        epochs = tokenEpochRepo.findAll();
+        Assertions.assertEquals(2, epochs.size());
+        for(TokenEpochBean epoch : epochs) {
+            Assertions.assertNotNull(epoch.getUpdated());
+            if(Long.parseLong(epoch.getIdUser()) == Long.parseLong(SAMPLE_VERIFIED_USER.getId())) {
+                Assertions.assertEquals(2L, epoch.getEpoch());
+            } else {
+                Assertions.assertEquals(Long.parseLong(SAMPLE_REGISTERED_USER.getId()), Long.parseLong(epoch.getIdUser()));
+                Assertions.assertEquals(1L, epoch.getEpoch());
+            }
+        }
+    }
+}
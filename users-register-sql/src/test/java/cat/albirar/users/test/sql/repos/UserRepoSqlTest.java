@@ -18,13 +18,18 @@
  */
 package cat.albirar.users.test.sql.repos;
 
+import java.time.LocalDateTime;
+
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.jdbc.Sql;
 
+import cat.albirar.users.models.users.UserBean;
 import cat.albirar.users.test.repos.UserRepoTest;
 import cat.albirar.users.test.sql.SqlTestContainterExtension;
 import cat.albirar.users.test.sql.SqlTestUtils;
@@ -52,4 +57,25 @@ public class UserRepoSqlTest extends UserRepoTest {
     public void teardownData() {
         sqlTestUtils.teardownData();
     }
+    
+    @Test
+    public void testInsertSameAsStored() {
+        LocalDateTime now;
+        UserBean usr, stored;
+        
+        // With fractions of second, not stored by all databases
+        now = LocalDateTime.now().withNano(123456789);
+        usr = userRepo.insert(USERS[0].toBuilder()
+                .id(null)
+                .username(DUMMY_USERNAME)
+                .preferredChannel(SAMPLE_NEW_CHANNEL)
+                .created(now)
+                .verified(now)
+                .registered(now)
+                .build());
+        stored = userRepo.findById(usr.getId()).get();
+        Assertions.assertEquals(stored.getCreated(), usr.getCreated());
+        Assertions.assertEquals(stored.getVerified(), usr.getVerified());
+        Assertions.assertEquals(stored.getRegistered(), usr.getRegistered());
+    }
 }
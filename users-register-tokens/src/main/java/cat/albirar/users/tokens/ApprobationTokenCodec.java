@@ -0,0 +1,87 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens;
+
+import static cat.albirar.users.tokens.ITokenClaims.CLAIM_APPROVER_ID;
+import static cat.albirar.users.tokens.ITokenClaims.CLAIM_APPROVER_USERNAME;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean.AbstractTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean.ApprobationTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.utils.TokenUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+
+/**
+ * The codec for {@link ApprobationTokenBean}, with the approver id and username as claims.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class ApprobationTokenCodec implements ITokenClassCodec<ApprobationTokenBean> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ETokenClass getTokenClass() {
+        return ETokenClass.APPROBATION;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<ApprobationTokenBean> getTokenBeanClass() {
+        return ApprobationTokenBean.class;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JwtBuilder encodeClaims(JwtBuilder jwts, ApprobationTokenBean tokenBean) {
+        return jwts.claim(CLAIM_APPROVER_ID, tokenBean.getApproverId())
+                .claim(CLAIM_APPROVER_USERNAME, tokenBean.getApproverUsername())
+                ;
+    }
+    /**
+     * {@inheritDoc}
+     * The {@value ITokenClaims#CLAIM_APPROVER_ID} and {@value ITokenClaims#CLAIM_APPROVER_USERNAME} claims should to be not blank.
+     */
+    @Override
+    public Optional<ApprobationTokenBean> decodeClaims(Claims body, Consumer<AbstractTokenBeanBuilder<?, ?>> common) {
+        String approverId;
+        String approverUsername;
+        ApprobationTokenBeanBuilder<?, ?> builder;
+        
+        approverId = body.get(CLAIM_APPROVER_ID, String.class);
+        approverUsername = body.get(CLAIM_APPROVER_USERNAME, String.class);
+        if(!TokenUtils.hasText(approverId) || !TokenUtils.hasText(approverUsername)) {
+            return Optional.empty();
+        }
+        builder = ApprobationTokenBean.builder();
+        common.accept(builder);
+        return Optional.of(builder
+                .approverId(approverId)
+                .approverUsername(approverUsername)
+                .build()
+                );
+    }
+}
@@ -16,7 +16,7 @@
  *
  * Copyright (C) 2020 Octavi Fornés
  */
-package cat.albirar.users.verification;
+package cat.albirar.users.tokens;
 
 /**
  * Configuration of verification process.
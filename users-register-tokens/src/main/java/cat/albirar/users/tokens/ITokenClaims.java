@@ -0,0 +1,54 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+
+/**
+ * The names of the claims of the JWS tokens.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface ITokenClaims {
+    /**
+     * Claim name for {@link AbstractTokenBean#getTokenClass()}.
+     */
+    public final static String CLAIM_TOKEN_CLASS = "tokenClass";
+    /**
+     * Claim name for {@link AbstractTokenBean#getIdUser()}.
+     */
+    public final static String CLAIM_USERID = "userId";
+    /**
+     * Claim name for {@link AbstractTokenBean#getLocale()}.
+     */
+    public final static String CLAIM_LOCALE = "locale";
+    /**
+     * Claim name for {@link ApprobationTokenBean#getApproverId()}.
+     */
+    public final static String CLAIM_APPROVER_ID = "approverId";
+    /**
+     * Claim name for {@link ApprobationTokenBean#getApproverUsername()}.
+     */
+    public final static String CLAIM_APPROVER_USERNAME = "approverUsername";
+    /**
+     * Claim name for {@link AbstractTokenBean#getTokenEpoch()}, only present if not zero.
+     */
+    public final static String CLAIM_TOKEN_EPOCH = "tokenEpoch";
+}
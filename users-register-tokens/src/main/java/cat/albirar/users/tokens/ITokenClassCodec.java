@@ -0,0 +1,63 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.AbstractTokenBean.AbstractTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ETokenClass;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+
+/**
+ * Contract for the encoding and decoding of the claims specific to a {@link ETokenClass}.
+ * <p>The {@link JwsTokenVerifier} deals with the claims common to all tokens and delegates on the codec of the {@link AbstractTokenBean#getTokenClass() token class} for the others.
+ * Any bean implementing this contract is registered on the token manager, so new token classes can be added without changing it.</p>
+ * @param <T> The token bean class
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface ITokenClassCodec<T extends AbstractTokenBean> {
+    /**
+     * The token class managed by this codec.
+     * @return The token class
+     */
+    public ETokenClass getTokenClass();
+    /**
+     * The token bean class managed by this codec.
+     * @return The token bean class
+     */
+    public Class<T> getTokenBeanClass();
+    /**
+     * Add the claims specific to the token class of {@code tokenBean}.
+     * @param jwts The builder, with the common claims already added
+     * @param tokenBean The token bean
+     * @return The same {@code jwts}
+     */
+    public JwtBuilder encodeClaims(JwtBuilder jwts, T tokenBean);
+    /**
+     * Check the claims specific to the token class and build the token bean.
+     * @param body The claims, each specific claim should to be read only once
+     * @param common The setter of the common claims, already read and checked, to apply to the token bean builder
+     * @return The token bean or {@link Optional#empty()} if any specific claim is not valid
+     */
+    public Optional<T> decodeClaims(Claims body, Consumer<AbstractTokenBeanBuilder<?, ?>> common);
+}
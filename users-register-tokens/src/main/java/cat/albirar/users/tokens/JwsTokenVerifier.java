@@ -0,0 +1,429 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens;
+
+import static cat.albirar.users.tokens.ITokenClaims.CLAIM_LOCALE;
+import static cat.albirar.users.tokens.ITokenClaims.CLAIM_TOKEN_CLASS;
+import static cat.albirar.users.tokens.ITokenClaims.CLAIM_TOKEN_EPOCH;
+import static cat.albirar.users.tokens.ITokenClaims.CLAIM_USERID;
+
+import java.security.Key;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.utils.LocaleUtils;
+import cat.albirar.users.tokens.utils.TokenUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.PrematureJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.io.DeserializationException;
+import io.jsonwebtoken.io.Deserializer;
+import io.jsonwebtoken.jackson.io.JacksonDeserializer;
+import io.jsonwebtoken.security.SignatureException;
+
+/**
+ * Verify and decode JWS tokens, without Spring nor any other container.
+ * <p>Only need the issuer, a lookup of the keys by {@link JwsHeader#KEY_ID kid} and the {@link ITokenClassCodec codecs} of the token classes to accept.
+ * For instance, a service that only checks verification and approbation tokens can do:</p>
+ * <pre>
+ * verifier = new JwsTokenVerifier("issuer", kid -&gt; Optional.ofNullable(keys.get(kid))
+ *         , Arrays.asList(new VerificationTokenCodec(), new ApprobationTokenCodec()));
+ * result = verifier.decode(VerificationTokenBean.class, token);
+ * </pre>
+ * <p>The garbage, unknown {@link JwsHeader#KEY_ID kid}, expired and not yet valid tokens are rejected without exceptions, before any signature check; only the signature of the others is verified by a shared {@link JwtParser}.
+ * The {@link JwsHeader#ALGORITHM alg} of each token should to be the one of the key of his {@link JwsHeader#KEY_ID kid}, other algorithms are rejected.
+ * The instances are thread-safe.
+ * The {@link AbstractTokenBean#getTokenEpoch() token epoch} is decoded but not checked, the revocation is a concern of the issuing service.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class JwsTokenVerifier {
+    /**
+     * The token classes by {@link Enum#name() name}, to resolve the {@value ITokenClaims#CLAIM_TOKEN_CLASS} claim without exceptions.
+     */
+    private static final Map<String, ETokenClass> TOKEN_CLASS_NAMES;
+    /**
+     * The maximum length of an acceptable JWS, larger tokens are rejected without decoding.
+     */
+    private static final int MAX_JWS_LENGTH = 4096;
+    
+    static {
+        TOKEN_CLASS_NAMES = new HashMap<>();
+        for(ETokenClass tkc : ETokenClass.values()) {
+            TOKEN_CLASS_NAMES.put(tkc.name(), tkc);
+        }
+    }
+    
+    private final String issuer;
+    
+    private final Function<String, Optional<JwsKeyBean>> keys;
+    
+    /**
+     * The codec of each accepted token class.
+     */
+    private final Map<ETokenClass, ITokenClassCodec<?>> codecs;
+    
+    /**
+     * The parsed locales, to avoid the parsing on each decode.
+     * The locales are read from signed tokens only, so the number of entries is as limited as the issued locales.
+     */
+    private final ConcurrentMap<String, Locale> locales = new ConcurrentHashMap<>();
+    
+    /**
+     * The JSON deserializer of header and claims for the checks before the signature, thread-safe.
+     */
+    private final Deserializer<Object> jsonDeserializer = new JacksonDeserializer<>();
+    
+    /**
+     * The parser that verifies the signature and the standard claims, thread-safe.
+     */
+    private final JwtParser parser;
+    
+    /**
+     * Constructor with all the verification state.
+     * @param issuer The expected {@link Claims#getIssuer() issuer}
+     * @param keys The lookup of the verification keys by {@link JwsHeader#KEY_ID kid}, should to return {@link Optional#empty()} for the unknown or expired keys
+     * @param codecs The codecs of the accepted token classes, the tokens of other classes are rejected as {@link ETokenDecodeStatus#INVALID_CLAIMS}
+     * @throws IllegalArgumentException If any argument is null or there are more than one codec for a token class
+     */
+    public JwsTokenVerifier(String issuer, Function<String, Optional<JwsKeyBean>> keys, Collection<? extends ITokenClassCodec<?>> codecs) {
+        if(!TokenUtils.hasText(issuer) || keys == null || codecs == null) {
+            throw new IllegalArgumentException("The issuer, keys and codecs are required");
+        }
+        this.issuer = issuer;
+        this.keys = keys;
+        this.codecs = new EnumMap<>(ETokenClass.class);
+        for(ITokenClassCodec<?> codec : codecs) {
+            if(this.codecs.putIfAbsent(codec.getTokenClass(), codec) != null) {
+                throw new IllegalArgumentException(String.format("More than one codec for token class %s", codec.getTokenClass()));
+            }
+        }
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new KidSigningKeyResolver())
+                .setCompressionCodecResolver(header -> {
+                    if(header.getCompressionAlgorithm() != null) {
+                        throw new MalformedJwtException("Compressed tokens are not accepted");
+                    }
+                    return null;
+                })
+                .deserializeJsonWith(new JacksonDeserializer<>())
+                .build()
+                ;
+    }
+    /**
+     * Verify and decode the {@code token} of any accepted token class.
+     * @param token The token, can be null
+     * @return The result, with the token bean if {@link ETokenDecodeStatus#VALID}
+     */
+    public TokenDecodeResultBean<AbstractTokenBean> decode(String token) {
+        VerifiedJws jws;
+        Optional<? extends AbstractTokenBean> decoded;
+        
+        jws = verify(token);
+        decoded = (jws.status == ETokenDecodeStatus.VALID ? claimsToBean(jws.body) : Optional.empty());
+        return TokenDecodeResultBean.<AbstractTokenBean>builder()
+                .status(jws.status == ETokenDecodeStatus.VALID && !decoded.isPresent() ? ETokenDecodeStatus.INVALID_CLAIMS : jws.status)
+                .token(token)
+                .tokenBean(decoded.orElse(null))
+                .build()
+                ;
+    }
+    /**
+     * Verify and decode the {@code token} as {@link #decode(String)}, expecting the indicated {@code tokenClass}.
+     * @param <T> The token bean class
+     * @param tokenClass The expected token bean class
+     * @param token The token, can be null
+     * @return The result, {@link ETokenDecodeStatus#WRONG_CLASS} if the token is valid but of other class
+     */
+    public <T extends AbstractTokenBean> TokenDecodeResultBean<T> decode(Class<T> tokenClass, String token) {
+        return decode(token).narrow(tokenClass);
+    }
+    /**
+     * Check if the {@code token} is well signed, not expired and his claims are valid.
+     * @param token The token, can be null
+     * @return true if valid and false otherwise
+     */
+    public boolean isTokenValid(String token) {
+        return decode(token).isValid();
+    }
+    /**
+     * Check if the {@code token} is well signed, not expired and of the indicated {@code tokenClass}.
+     * Only the {@value ITokenClaims#CLAIM_TOKEN_CLASS} claim is checked, not the others.
+     * @param token The token, can be null
+     * @param tokenClass The token class
+     * @return true if is of {@code tokenClass} and false otherwise
+     */
+    public boolean isTokenClass(String token, ETokenClass tokenClass) {
+        VerifiedJws jws;
+        Object tkcls;
+        
+        jws = verify(token);
+        if(jws.status == ETokenDecodeStatus.VALID) {
+            tkcls = jws.body.get(CLAIM_TOKEN_CLASS);
+            return (tkcls instanceof String && decodeTokenClass((String) tkcls).orElse(null) == tokenClass);
+        }
+        return false;
+    }
+    /**
+     * Get the {@value ITokenClaims#CLAIM_USERID} claim of a well signed and not expired {@code token}, without decoding the others.
+     * @param token The token, can be null
+     * @return The user id or {@link Optional#empty()} if the token is not valid
+     */
+    public Optional<String> decodeUserId(String token) {
+        VerifiedJws jws;
+        
+        jws = verify(token);
+        if(jws.status == ETokenDecodeStatus.VALID && jws.body.get(CLAIM_USERID) instanceof String) {
+            return Optional.of((String) jws.body.get(CLAIM_USERID));
+        }
+        return Optional.empty();
+    }
+    /**
+     * Return the {@link ETokenClass} value of the {@value ITokenClaims#CLAIM_TOKEN_CLASS} claim content.
+     * @param name The content of the claim
+     * @return The value of claim or {@link Optional#empty()} if the content of the claim is not one of {@link ETokenClass} elements 
+     */
+    private Optional<ETokenClass> decodeTokenClass(String name) {
+        return Optional.ofNullable(name == null ? null : TOKEN_CLASS_NAMES.get(name));
+    }
+    /**
+     * Check the {@code body} and build the token bean, in one pass over the claims.
+     * Check that:
+     * <ul>
+     * <li>{@link Claims#getId()} is not-blank</li>
+     * <li>{@link Claims#getIssuer()} is not-blank and is equal to the {@link #issuer}</li>
+     * <li>{@link Claims#getIssuedAt()} is not-null and is before now</li>
+     * <li>{@link Claims#getExpiration()} is not-null</li>
+     * <li>{@link Claims#getSubject()} is not-blank</li>
+     * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenClaims#CLAIM_USERID} and his content is not-blank</li>
+     * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenClaims#CLAIM_LOCALE} and his content is not-blank</li>
+     * <li>If {@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenClaims#CLAIM_TOKEN_EPOCH} his content is a number</li>
+     * <li>{@code body} {@link Claims#containsKey(Object) contains} a claim named {@value ITokenClaims#CLAIM_TOKEN_CLASS} and his content is the {@link Enum#name() name} of a {@link ETokenClass} with a registered {@link ITokenClassCodec}</li>
+     * </ul>
+     * The claims specific to the token class are checked and decoded by his {@link ITokenClassCodec#decodeClaims(Claims, java.util.function.Consumer) codec}.
+     * @param body The claims
+     * @return The token bean or {@link Optional#empty()} if not valid
+     */
+    private Optional<? extends AbstractTokenBean> claimsToBean(Claims body) {
+        String id;
+        String iss;
+        Date iat;
+        Date exp;
+        String sub;
+        String userId;
+        String locale;
+        Object epoch;
+        Optional<ETokenClass> tkcls;
+        ITokenClassCodec<?> codec;
+        
+        id = body.getId();
+        iss = body.getIssuer();
+        iat = body.getIssuedAt();
+        exp = body.getExpiration();
+        sub = body.getSubject();
+        userId = body.get(CLAIM_USERID, String.class);
+        locale = body.get(CLAIM_LOCALE, String.class);
+        epoch = body.get(CLAIM_TOKEN_EPOCH);
+        tkcls = decodeTokenClass(body.get(CLAIM_TOKEN_CLASS, String.class));
+        
+        if (TokenUtils.hasText(id)
+                && issuer.equals(iss)
+                && iat != null
+                && iat.before(new Date())
+                && exp != null
+                && TokenUtils.hasText(sub)
+                && TokenUtils.hasText(userId)
+                && TokenUtils.hasText(locale)
+                && (epoch == null || epoch instanceof Number)
+                && tkcls.isPresent() ) {
+            
+            codec = codecs.get(tkcls.get());
+            if(codec != null) {
+                return codec.decodeClaims(body, b -> b
+                        .tokenId(id)
+                        .issued(LocalDateTime.ofInstant(iat.toInstant(), ZoneId.systemDefault()))
+                        .expire(LocalDateTime.ofInstant(exp.toInstant(), ZoneId.systemDefault()))
+                        .idUser(userId)
+                        .locale(toLocale(locale))
+                        .username(sub)
+                        .tokenEpoch(epoch == null ? 0L : ((Number) epoch).longValue())
+                        );
+            }
+        }
+        return Optional.empty();
+    }
+    /**
+     * Parse the {@code strLocale} as {@link LocaleUtils#stringToLocale(String)}, only the first time for each value.
+     * @param strLocale The text representation of locale
+     * @return The locale
+     */
+    private Locale toLocale(String strLocale) {
+        return locales.computeIfAbsent(strLocale, LocaleUtils::stringToLocale);
+    }
+    /**
+     * Verify the indicated {@code token} as JWS and decode his {@link Claims}.
+     * <p>The structure is checked first (length, three not empty base64url segments), so the garbage tokens are rejected without any decoding.
+     * Then the header and the claims are decoded to reject the unknown {@link JwsHeader#KEY_ID kid}, the {@link JwsHeader#ALGORITHM alg} other than the one of the key, the {@link Claims#getExpiration() expired} and the {@link Claims#getNotBefore() not yet valid} tokens, all of them without exceptions.
+     * Only the remaining tokens reach the {@link #parser}, that verifies the signature; so only the signature mismatches cost an exception.</p>
+     * @param token The token
+     * @return The verification status and the claims if {@link ETokenDecodeStatus#VALID}
+     */
+    private VerifiedJws verify(String token) {
+        int iPayload;
+        int iSignature;
+        Map<?, ?> header;
+        Object kid;
+        Optional<JwsKeyBean> key;
+        Map<?, ?> body;
+        long now;
+        
+        if(!TokenUtils.hasText(token) || token.length() > MAX_JWS_LENGTH) {
+            return new VerifiedJws(ETokenDecodeStatus.MALFORMED, null);
+        }
+        iPayload = token.indexOf('.');
+        iSignature = (iPayload < 0 ? -1 : token.indexOf('.', iPayload + 1));
+        if(iSignature < 0 || token.indexOf('.', iSignature + 1) >= 0
+                || !TokenUtils.isBase64Url(token, 0, iPayload)
+                || !TokenUtils.isBase64Url(token, iPayload + 1, iSignature)
+                || !TokenUtils.isBase64Url(token, iSignature + 1, token.length())) {
+            return new VerifiedJws(ETokenDecodeStatus.MALFORMED, null);
+        }
+        header = parseJson(token.substring(0, iPayload));
+        if(header == null || header.containsKey(JwsHeader.COMPRESSION_ALGORITHM)) {
+            return new VerifiedJws(ETokenDecodeStatus.MALFORMED, null);
+        }
+        kid = header.get(JwsHeader.KEY_ID);
+        key = (kid instanceof String ? keys.apply((String) kid) : Optional.empty());
+        if(!key.isPresent() || !keyAlgorithm(key.get()).getValue().equals(header.get(JwsHeader.ALGORITHM))) {
+            return new VerifiedJws(ETokenDecodeStatus.BAD_SIGNATURE, null);
+        }
+        body = parseJson(token.substring(iPayload + 1, iSignature));
+        if(body == null) {
+            return new VerifiedJws(ETokenDecodeStatus.MALFORMED, null);
+        }
+        now = System.currentTimeMillis();
+        // Same rules of the parser: expired after the exp instant, not valid before the nbf instant
+        if(body.get(Claims.EXPIRATION) instanceof Number && ((Number) body.get(Claims.EXPIRATION)).longValue() * 1000L < now) {
+            return new VerifiedJws(ETokenDecodeStatus.EXPIRED, null);
+        }
+        if(body.get(Claims.NOT_BEFORE) instanceof Number && ((Number) body.get(Claims.NOT_BEFORE)).longValue() * 1000L > now) {
+            return new VerifiedJws(ETokenDecodeStatus.INVALID_CLAIMS, null);
+        }
+        try {
+            return new VerifiedJws(ETokenDecodeStatus.VALID, parser.parseClaimsJws(token).getBody());
+        } catch(ExpiredJwtException e) {
+            return new VerifiedJws(ETokenDecodeStatus.EXPIRED, null);
+        } catch(PrematureJwtException e) {
+            return new VerifiedJws(ETokenDecodeStatus.INVALID_CLAIMS, null);
+        } catch(io.jsonwebtoken.security.SecurityException e) {
+            // Signature mismatch, weak key or the key removed meanwhile
+            return new VerifiedJws(ETokenDecodeStatus.BAD_SIGNATURE, null);
+        } catch(JwtException | IllegalArgumentException e) {
+            return new VerifiedJws(ETokenDecodeStatus.MALFORMED, null);
+        }
+    }
+    /**
+     * Decode the base64url {@code segment} of a JWS as a JSON object.
+     * Only the segments that look like a JSON object are deserialized, the deserialization exceptions are reserved for the rare well formed garbage.
+     * @param segment The segment, should to be {@link TokenUtils#isBase64Url(CharSequence, int, int) base64url}
+     * @return The deserialized object or null if is not a JSON object
+     */
+    private Map<?, ?> parseJson(String segment) {
+        byte [] json;
+        Object value;
+        
+        json = Base64.getUrlDecoder().decode(segment);
+        if(json.length < 2 || json[0] != '{' || json[json.length - 1] != '}') {
+            return null;
+        }
+        try {
+            value = jsonDeserializer.deserialize(json);
+        } catch(DeserializationException e) {
+            return null;
+        }
+        return (value instanceof Map ? (Map<?, ?>) value : null);
+    }
+    /**
+     * The signature algorithm of the {@code key}, the {@link JwsKeyBean#getAlgorithm() indicated} or the one that {@link SignatureAlgorithm#forSigningKey(Key) fits} the key.
+     * @param key The key
+     * @return The algorithm
+     */
+    private static SignatureAlgorithm keyAlgorithm(JwsKeyBean key) {
+        return (key.getAlgorithm() != null ? key.getAlgorithm() : SignatureAlgorithm.forSigningKey(key.getKey()));
+    }
+    /**
+     * Resolve the verification key of each token by his {@link JwsHeader#KEY_ID kid}, pinning the algorithm to the one of the key.
+     * <p>The kid and the algorithm were checked before parsing, so this only fails if the key was removed meanwhile.</p>
+     */
+    private final class KidSigningKeyResolver extends SigningKeyResolverAdapter {
+        /**
+         * {@inheritDoc}
+         * @throws SignatureException If the kid is unknown or the {@link JwsHeader#ALGORITHM alg} of the token is not the one of the key
+         */
+        @SuppressWarnings("rawtypes")
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            Optional<JwsKeyBean> key;
+            
+            key = (header.getKeyId() == null ? Optional.empty() : keys.apply(header.getKeyId()));
+            if(!key.isPresent()) {
+                throw new SignatureException(String.format("Unknown key '%s'", header.getKeyId()));
+            }
+            if(!keyAlgorithm(key.get()).getValue().equals(header.getAlgorithm())) {
+                throw new SignatureException(String.format("The algorithm '%s' is not the one of the key '%s'", header.getAlgorithm(), header.getKeyId()));
+            }
+            return key.get().getKey();
+        }
+    }
+    /**
+     * The outcome of {@link JwsTokenVerifier#verify(String)}.
+     */
+    private static final class VerifiedJws {
+        private final ETokenDecodeStatus status;
+        private final Claims body;
+        
+        private VerifiedJws(ETokenDecodeStatus status, Claims body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
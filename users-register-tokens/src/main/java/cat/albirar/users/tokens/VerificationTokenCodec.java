@@ -0,0 +1,83 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import cat.albirar.users.tokens.models.AbstractTokenBean.AbstractTokenBeanBuilder;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean.VerificationTokenBeanBuilder;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+
+/**
+ * The codec for {@link VerificationTokenBean}, with the {@link VerificationTokenBean#getProcess() process} as audience.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class VerificationTokenCodec implements ITokenClassCodec<VerificationTokenBean> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ETokenClass getTokenClass() {
+        return ETokenClass.VERIFICATION;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<VerificationTokenBean> getTokenBeanClass() {
+        return VerificationTokenBean.class;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JwtBuilder encodeClaims(JwtBuilder jwts, VerificationTokenBean tokenBean) {
+        return jwts.setAudience(tokenBean.getProcess().name());
+    }
+    /**
+     * {@inheritDoc}
+     * The audience should to be {@link EVerificationProcess#ONE_STEP} or {@link EVerificationProcess#TWO_STEP}.
+     */
+    @Override
+    public Optional<VerificationTokenBean> decodeClaims(Claims body, Consumer<AbstractTokenBeanBuilder<?, ?>> common) {
+        String audience;
+        EVerificationProcess process;
+        VerificationTokenBeanBuilder<?, ?> builder;
+        
+        audience = body.getAudience();
+        if(EVerificationProcess.ONE_STEP.name().equals(audience)) {
+            process = EVerificationProcess.ONE_STEP;
+        } else if(EVerificationProcess.TWO_STEP.name().equals(audience)) {
+            process = EVerificationProcess.TWO_STEP;
+        } else {
+            return Optional.empty();
+        }
+        builder = VerificationTokenBean.builder();
+        common.accept(builder);
+        return Optional.of(builder
+                .process(process)
+                .build()
+                );
+    }
+}
@@ -16,14 +16,12 @@
  *
  * Copyright (C) 2020 Octavi Fornés
  */
-package cat.albirar.users.utils;
+package cat.albirar.users.tokens.utils;
 
 import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.springframework.util.StringUtils;
-
 /**
  * Some utilities for locale management.
  * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
@@ -54,13 +52,13 @@ public abstract class LocaleUtils {
         
         mt = ptLocale.matcher(strLocale);
         if(mt.matches()) {
-            if(StringUtils.hasText(mt.group(1))) {
+            if(TokenUtils.hasText(mt.group(1))) {
                 l = mt.group(1);
             } else {
                 l = Locale.getDefault().getLanguage();
             }
             
-            if(StringUtils.hasText(mt.group(2))) {
+            if(TokenUtils.hasText(mt.group(2))) {
                 c = mt.group(2);
             } else {
                 c = Locale.getDefault().getCountry();
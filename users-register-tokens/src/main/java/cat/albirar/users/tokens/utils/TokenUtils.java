@@ -0,0 +1,102 @@
+/*
+ * This file is part of "spring-users-register-core".
+ * 
+ * "spring-users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "spring-users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "spring-users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens.utils;
+
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+/**
+ * Some utilities for token verification without exceptions.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public abstract class TokenUtils {
+    
+    /**
+     * The {@link Mac} instances of each thread by algorithm, to avoid the provider lookup on each verification.
+     */
+    private static final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(HashMap::new);
+    
+    /**
+     * Check if the {@code text} has any character that is not a whitespace, without Spring.
+     * @param text The text, can be null
+     * @return true if has text and false otherwise
+     */
+    public static final boolean hasText(CharSequence text) {
+        int n;
+        
+        if(text != null) {
+            for(n = 0; n < text.length(); n++) {
+                if(!Character.isWhitespace(text.charAt(n))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    /**
+     * Check if the {@code text} between {@code start} (inclusive) and {@code end} (exclusive) is a not empty base64url sequence without padding, that can be decoded without errors.
+     * @param text The text
+     * @param start The first position
+     * @param end The position after the last
+     * @return true if is a decodable base64url sequence and false otherwise
+     */
+    public static final boolean isBase64Url(CharSequence text, int start, int end) {
+        int n;
+        char c;
+        
+        if(end <= start || (end - start) % 4 == 1) {
+            return false;
+        }
+        for(n = start; n < end; n++) {
+            c = text.charAt(n);
+            if(!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Compute the HMAC of {@code data} with the {@code key}.
+     * @param algorithm The JCA name of the HMAC algorithm
+     * @param key The key
+     * @param data The data to authenticate
+     * @return The HMAC
+     * @throws IllegalStateException If the {@code algorithm} is not available or the {@code key} is not acceptable
+     */
+    public static final byte [] hmac(String algorithm, SecretKey key, byte [] data) {
+        Mac mac;
+        
+        try {
+            mac = macs.get().get(algorithm);
+            if(mac == null) {
+                mac = Mac.getInstance(algorithm);
+                macs.get().put(algorithm, mac);
+            }
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException(String.format("Cannot compute the %s HMAC", algorithm), e);
+        }
+    }
+}
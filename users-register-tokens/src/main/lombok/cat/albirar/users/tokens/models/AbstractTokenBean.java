@@ -16,7 +16,7 @@
  *
  * Copyright (C) 2020 Octavi Fornés
  */
-package cat.albirar.users.models.tokens;
+package cat.albirar.users.tokens.models;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -60,12 +60,22 @@ public abstract class AbstractTokenBean implements Serializable {
     @NotBlank
     @Setter(onParam_ = {@NotBlank})
     private String idUser;
-    @NotBlank
-    @Setter(onParam_ = {@NotBlank})
+    /**
+     * The username of the user, as on issue time.
+     * Not carried by the compact tokens, where can be derived from the {@link #getIdUser() user id}.
+     * @param username The username
+     * @return The username, null on tokens decoded from the compact format
+     */
     private String username;
     @NotNull
     @Setter(onParam_ = {@NotNull})
     private Locale locale;
+    /**
+     * The token epoch of the user when the token was issued, the tokens with an epoch older than the current of the user are revoked.
+     * @param tokenEpoch The token epoch
+     * @return The token epoch
+     */
+    private long tokenEpoch;
     
     /**
      * The class name for this kind of token.
@@ -16,7 +16,7 @@
  *
  * Copyright (C) 2020 Octavi Fornés
  */
-package cat.albirar.users.models.tokens;
+package cat.albirar.users.tokens.models;
 
 import java.io.Serializable;
 
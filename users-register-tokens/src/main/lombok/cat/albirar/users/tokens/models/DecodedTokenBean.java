@@ -0,0 +1,64 @@
+/*
+ * This file is part of "albirar users-register-core".
+ * 
+ * "albirar users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens.models;
+
+import java.io.Serializable;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * A token already decoded and validated.
+ * Hold the encoded {@link #getToken() token} along with the {@link #getTokenBean() decoded bean}, so the signature check and claims parsing are made only once for each request.
+ * @param <T> The token bean class
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DecodedTokenBean<T extends AbstractTokenBean> implements Serializable {
+    private static final long serialVersionUID = -2271583066720434470L;
+
+    /**
+     * The encoded token.
+     * @param token The encoded token
+     * @return The encoded token
+     */
+    @NotBlank
+    @Setter(onParam_ = {@NotBlank})
+    private String token;
+    /**
+     * The decoded and validated token bean.
+     * @param tokenBean The token bean
+     * @return The token bean
+     */
+    @NotNull
+    @Valid
+    @Setter(onParam_ = {@NotNull})
+    private T tokenBean;
+}
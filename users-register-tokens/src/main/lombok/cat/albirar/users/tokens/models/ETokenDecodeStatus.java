@@ -0,0 +1,60 @@
+/*
+ * This file is part of "albirar users-register-core".
+ * 
+ * "albirar users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens.models;
+
+/**
+ * The outcome of a token decoding.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public enum ETokenDecodeStatus {
+    /**
+     * The token is valid and of the expected token class.
+     */
+    VALID,
+    /**
+     * The token has not the structure of any token format: segments, length or alphabet.
+     */
+    MALFORMED,
+    /**
+     * The signature doesn't match or the signing key is unknown.
+     */
+    BAD_SIGNATURE,
+    /**
+     * The token is well signed but is expired.
+     */
+    EXPIRED,
+    /**
+     * The token is well signed but any claim is missing or not valid.
+     */
+    INVALID_CLAIMS,
+    /**
+     * The token is well signed but was invalidated, his {@link AbstractTokenBean#getTokenEpoch() epoch} is not the current of his user.
+     */
+    REVOKED,
+    /**
+     * The token is well signed but, as single-use token, was already consumed.
+     * Only reported by the introspection, the decoding doesn't check the consumption.
+     */
+    CONSUMED,
+    /**
+     * The token is valid but is not of the expected token class.
+     */
+    WRONG_CLASS
+}
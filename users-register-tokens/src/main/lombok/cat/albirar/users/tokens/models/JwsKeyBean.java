@@ -0,0 +1,89 @@
+/*
+ * This file is part of "albirar users-register-core".
+ * 
+ * "albirar users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens.models;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.crypto.SecretKey;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * A key of the key ring, to sign and verify tokens.
+ * <p>Keys can overlap in time: the key with the most recent {@link #getValidFrom() validFrom} already reached is used for signing,
+ * while any other key not yet {@link #getValidUntil() expired} is still accepted for verification.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = "key")
+public class JwsKeyBean implements Serializable {
+    private static final long serialVersionUID = 5311764820367046817L;
+
+    /**
+     * The key id, stamped as {@link JwsHeader#KEY_ID} on the header of the signed tokens.
+     * @param kid The key id
+     * @return The key id
+     */
+    @NotBlank
+    @Setter(onParam_ = {@NotBlank})
+    private String kid;
+    /**
+     * The secret key.
+     * @param key The secret key
+     * @return The secret key
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private SecretKey key;
+    /**
+     * The signature algorithm for {@link #getKey() key}, resolved by the key ring if not indicated.
+     * @param algorithm The algorithm
+     * @return The algorithm
+     */
+    private SignatureAlgorithm algorithm;
+    /**
+     * From when this key can be used for signing.
+     * @param validFrom The moment from which the key is valid
+     * @return The moment from which the key is valid
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private LocalDateTime validFrom;
+    /**
+     * Until when this key is accepted for verification, or null if never expires.
+     * Should be, at least, the last signing moment plus the token expiration days.
+     * @param validUntil The moment until the key is valid
+     * @return The moment until the key is valid
+     */
+    private LocalDateTime validUntil;
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of "albirar users-register-core".
+ * 
+ * "albirar users-register-core" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register-core" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register-core" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.tokens.models;
+
+import java.io.Serializable;
+import java.util.Optional;
+
+import javax.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * The result of a token decoding, classifying the failures without exceptions.
+ * @param <T> The token bean class
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@SuperBuilder(toBuilder = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenDecodeResultBean<T extends AbstractTokenBean> implements Serializable {
+    private static final long serialVersionUID = 4170961328459251164L;
+
+    /**
+     * The outcome of decoding.
+     * @param status The outcome
+     * @return The outcome
+     */
+    @NotNull
+    @Setter(onParam_ = {@NotNull})
+    private ETokenDecodeStatus status;
+    /**
+     * The encoded token.
+     * @param token The encoded token
+     * @return The encoded token
+     */
+    private String token;
+    /**
+     * The decoded token bean, only if {@link #getStatus() status} is {@link ETokenDecodeStatus#VALID}.
+     * @param tokenBean The token bean
+     * @return The token bean
+     */
+    private T tokenBean;
+    
+    /**
+     * Check if the token was decoded successfully.
+     * @return true if {@link #getStatus() status} is {@link ETokenDecodeStatus#VALID} and false otherwise
+     */
+    public boolean isValid() {
+        return status == ETokenDecodeStatus.VALID;
+    }
+    /**
+     * This result for the expected {@code tokenClass}.
+     * @param <U> The expected token bean class
+     * @param tokenClass The expected token bean class
+     * @return The same result, {@link ETokenDecodeStatus#WRONG_CLASS} if {@link #isValid() valid} but the token bean is of other class
+     */
+    public <U extends AbstractTokenBean> TokenDecodeResultBean<U> narrow(Class<U> tokenClass) {
+        if(isValid() && !tokenBean.getClass().equals(tokenClass)) {
+            return TokenDecodeResultBean.<U>builder()
+                    .status(ETokenDecodeStatus.WRONG_CLASS)
+                    .token(token)
+                    .build()
+                    ;
+        }
+        return TokenDecodeResultBean.<U>builder()
+                .status(status)
+                .token(token)
+                .tokenBean(isValid() ? tokenClass.cast(tokenBean) : null)
+                .build()
+                ;
+    }
+    /**
+     * The decoded token, to pass to other layers.
+     * @return The decoded token or {@link Optional#empty()} if not {@link #isValid() valid}
+     */
+    public Optional<DecodedTokenBean<T>> toDecodedTokenBean() {
+        if(isValid()) {
+            return Optional.of(DecodedTokenBean.<T>builder()
+                    .token(token)
+                    .tokenBean(tokenBean)
+                    .build()
+                    );
+        }
+        return Optional.empty();
+    }
+}
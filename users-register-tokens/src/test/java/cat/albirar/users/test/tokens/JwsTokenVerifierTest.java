@@ -0,0 +1,268 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.tokens;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import cat.albirar.users.tokens.ApprobationTokenCodec;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.ITokenClaims;
+import cat.albirar.users.tokens.JwsTokenVerifier;
+import cat.albirar.users.tokens.VerificationTokenCodec;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.ETokenClass;
+import cat.albirar.users.tokens.models.ETokenDecodeStatus;
+import cat.albirar.users.tokens.models.JwsKeyBean;
+import cat.albirar.users.tokens.models.TokenDecodeResultBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import io.jsonwebtoken.CompressionCodecs;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Test for {@link JwsTokenVerifier}, without any Spring context.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public class JwsTokenVerifierTest {
+    private static final String ISSUER = "test-issuer";
+    private static final String KID = "key-1";
+    
+    private SecretKey key;
+    private JwsTokenVerifier verifier;
+    
+    @BeforeEach
+    public void setup() {
+        key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        verifier = new JwsTokenVerifier(ISSUER
+                , kid -> Optional.ofNullable(KID.equals(kid) ? JwsKeyBean.builder().kid(KID).key(key).validFrom(LocalDateTime.now()).build() : null)
+                , Arrays.asList(new VerificationTokenCodec(), new ApprobationTokenCodec()));
+    }
+    
+    @Test
+    public void testConstructor() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new JwsTokenVerifier(null, kid -> Optional.empty(), Arrays.asList(new VerificationTokenCodec())));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new JwsTokenVerifier(ISSUER, null, Arrays.asList(new VerificationTokenCodec())));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new JwsTokenVerifier(ISSUER, kid -> Optional.empty(), null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new JwsTokenVerifier(ISSUER, kid -> Optional.empty(), Arrays.asList(new VerificationTokenCodec(), new VerificationTokenCodec())));
+    }
+    
+    @Test
+    public void testDecodeVerificationToken() {
+        String token;
+        TokenDecodeResultBean<VerificationTokenBean> result;
+        
+        token = builder(ETokenClass.VERIFICATION, KID, key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .claim(ITokenClaims.CLAIM_TOKEN_EPOCH, 3)
+                .compact();
+        result = verifier.decode(VerificationTokenBean.class, token);
+        Assertions.assertEquals(ETokenDecodeStatus.VALID, result.getStatus());
+        Assertions.assertEquals("1", result.getTokenBean().getIdUser());
+        Assertions.assertEquals("user", result.getTokenBean().getUsername());
+        Assertions.assertEquals(EVerificationProcess.ONE_STEP, result.getTokenBean().getProcess());
+        Assertions.assertEquals(3L, result.getTokenBean().getTokenEpoch());
+        Assertions.assertTrue(verifier.isTokenValid(token));
+        Assertions.assertTrue(verifier.isTokenClass(token, ETokenClass.VERIFICATION));
+        Assertions.assertFalse(verifier.isTokenClass(token, ETokenClass.APPROBATION));
+        Assertions.assertEquals("1", verifier.decodeUserId(token).get());
+        
+        Assertions.assertEquals(ETokenDecodeStatus.WRONG_CLASS, verifier.decode(ApprobationTokenBean.class, token).getStatus());
+        Assertions.assertNull(verifier.decode(ApprobationTokenBean.class, token).getTokenBean());
+    }
+    
+    @Test
+    public void testDecodeApprobationToken() {
+        String token;
+        TokenDecodeResultBean<ApprobationTokenBean> result;
+        
+        token = builder(ETokenClass.APPROBATION, KID, key)
+                .claim(ITokenClaims.CLAIM_APPROVER_ID, "2")
+                .claim(ITokenClaims.CLAIM_APPROVER_USERNAME, "approver")
+                .compact();
+        result = verifier.decode(ApprobationTokenBean.class, token);
+        Assertions.assertEquals(ETokenDecodeStatus.VALID, result.getStatus());
+        Assertions.assertEquals("2", result.getTokenBean().getApproverId());
+        Assertions.assertEquals("approver", result.getTokenBean().getApproverUsername());
+        Assertions.assertEquals(0L, result.getTokenBean().getTokenEpoch());
+        
+        // Without approver
+        token = builder(ETokenClass.APPROBATION, KID, key).compact();
+        Assertions.assertEquals(ETokenDecodeStatus.INVALID_CLAIMS, verifier.decode(token).getStatus());
+    }
+    
+    @Test
+    public void testRejectedTokens() {
+        String token;
+        
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, verifier.decode(null).getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, verifier.decode("   ").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, verifier.decode("XXX").getStatus());
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, verifier.decode("XXX.YYY.ZZZ").getStatus());
+        Assertions.assertFalse(verifier.isTokenValid("XXX"));
+        Assertions.assertFalse(verifier.decodeUserId("XXX").isPresent());
+        
+        // Unknown key
+        token = builder(ETokenClass.VERIFICATION, "other", key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.BAD_SIGNATURE, verifier.decode(token).getStatus());
+        
+        // Other key with the same kid
+        token = builder(ETokenClass.VERIFICATION, KID, Keys.secretKeyFor(SignatureAlgorithm.HS256))
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.BAD_SIGNATURE, verifier.decode(token).getStatus());
+        Assertions.assertFalse(verifier.isTokenClass(token, ETokenClass.VERIFICATION));
+        
+        // Expired
+        token = builder(ETokenClass.VERIFICATION, KID, key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .setIssuedAt(Date.from(LocalDateTime.now().minusDays(2).atZone(ZoneId.systemDefault()).toInstant()))
+                .setExpiration(Date.from(LocalDateTime.now().minusDays(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.EXPIRED, verifier.decode(token).getStatus());
+        
+        // Other issuer
+        token = builder(ETokenClass.VERIFICATION, KID, key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .setIssuer("other")
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.INVALID_CLAIMS, verifier.decode(token).getStatus());
+        
+        // Compressed
+        token = builder(ETokenClass.VERIFICATION, KID, key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compressWith(CompressionCodecs.DEFLATE)
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.MALFORMED, verifier.decode(token).getStatus());
+        
+        // Token class without codec
+        token = builder(ETokenClass.RECOVER_PASSWORD, KID, key).compact();
+        Assertions.assertEquals(ETokenDecodeStatus.INVALID_CLAIMS, verifier.decode(token).getStatus());
+        Assertions.assertTrue(verifier.isTokenClass(token, ETokenClass.RECOVER_PASSWORD));
+    }
+    
+    @Test
+    public void testAlgorithmPinnedToKey() {
+        SecretKey strongKey;
+        JwsTokenVerifier pinned;
+        
+        strongKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        pinned = new JwsTokenVerifier(ISSUER
+                , kid -> Optional.ofNullable(KID.equals(kid) ? JwsKeyBean.builder().kid(KID).key(strongKey).algorithm(SignatureAlgorithm.HS256).validFrom(LocalDateTime.now()).build() : null)
+                , Arrays.asList(new VerificationTokenCodec()));
+        Assertions.assertEquals(ETokenDecodeStatus.VALID, pinned.decode(builder(ETokenClass.VERIFICATION, KID, strongKey)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .signWith(strongKey, SignatureAlgorithm.HS256)
+                .compact()).getStatus());
+        // Well signed with the key, but with other algorithm
+        Assertions.assertEquals(ETokenDecodeStatus.BAD_SIGNATURE, pinned.decode(builder(ETokenClass.VERIFICATION, KID, strongKey)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .signWith(strongKey, SignatureAlgorithm.HS512)
+                .compact()).getStatus());
+    }
+    
+    @Test
+    public void testRejectedBeforeParsing() {
+        AtomicInteger lookups;
+        JwsTokenVerifier counting;
+        String token;
+        
+        // The parser looks up the key again, so a single lookup shows that the parser (and his exceptions) was not reached
+        lookups = new AtomicInteger();
+        counting = new JwsTokenVerifier(ISSUER
+                , kid -> {
+                    lookups.incrementAndGet();
+                    return Optional.ofNullable(KID.equals(kid) ? JwsKeyBean.builder().kid(KID).key(key).validFrom(LocalDateTime.now()).build() : null);
+                }
+                , Arrays.asList(new VerificationTokenCodec()));
+        
+        // Unknown key
+        token = builder(ETokenClass.VERIFICATION, "other", key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.BAD_SIGNATURE, counting.decode(token).getStatus());
+        Assertions.assertEquals(1, lookups.getAndSet(0));
+        
+        // Expired, even with a bad signature
+        token = builder(ETokenClass.VERIFICATION, KID, Keys.secretKeyFor(SignatureAlgorithm.HS256))
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .setIssuedAt(Date.from(LocalDateTime.now().minusDays(2).atZone(ZoneId.systemDefault()).toInstant()))
+                .setExpiration(Date.from(LocalDateTime.now().minusDays(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.EXPIRED, counting.decode(token).getStatus());
+        Assertions.assertEquals(1, lookups.getAndSet(0));
+        
+        // Not yet valid
+        token = builder(ETokenClass.VERIFICATION, KID, key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .setNotBefore(Date.from(LocalDateTime.now().plusHours(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.INVALID_CLAIMS, counting.decode(token).getStatus());
+        Assertions.assertEquals(1, lookups.getAndSet(0));
+        
+        // The valid ones are verified by the parser
+        token = builder(ETokenClass.VERIFICATION, KID, key)
+                .setAudience(EVerificationProcess.ONE_STEP.name())
+                .compact();
+        Assertions.assertEquals(ETokenDecodeStatus.VALID, counting.decode(token).getStatus());
+        Assertions.assertEquals(2, lookups.get());
+    }
+    
+    /**
+     * A builder with all the common claims.
+     * @param tokenClass The token class
+     * @param kid The key id
+     * @param signingKey The key to sign
+     * @return The builder
+     */
+    private JwtBuilder builder(ETokenClass tokenClass, String kid, SecretKey signingKey) {
+        LocalDateTime now;
+        
+        now = LocalDateTime.now();
+        return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, kid)
+                .setId(UUID.randomUUID().toString())
+                .setIssuer(ISSUER)
+                .setSubject("user")
+                .setIssuedAt(Date.from(now.minusSeconds(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .setExpiration(Date.from(now.plusDays(1).atZone(ZoneId.systemDefault()).toInstant()))
+                .claim(ITokenClaims.CLAIM_USERID, "1")
+                .claim(ITokenClaims.CLAIM_LOCALE, "ca_ES")
+                .claim(ITokenClaims.CLAIM_TOKEN_CLASS, tokenClass.name())
+                .signWith(signingKey)
+                ;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.webflux;
+
+import static cat.albirar.users.web.AuthApiPaths.PATH_VAR_TOKEN;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.web.ChangePasswordBean;
+import cat.albirar.users.models.web.ProcessResultBean;
+import cat.albirar.users.models.web.ResultBean;
+import cat.albirar.users.registration.IRegistrationService;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.DecodedTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.verification.ITokenManager;
+import cat.albirar.users.web.AuthApiPaths;
+import cat.albirar.users.web.StacklessResponseStatusException;
+import cat.albirar.users.webflux.config.UsersRegisterWebFluxConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * The reactive counterpart of the Spring MVC {@code AuthApiController}, for verification, approbation and change password.
+ * <p>The token decoding, that can access to the repositories (key ring, epochs, ledger), and the registration calls, that access to the repositories and hashes passwords, are run on the {@link UsersRegisterWebFluxConfiguration#BLOCKING_SCHEDULER bounded scheduler}.</p>
+ * <p>The responses are the same of the Spring MVC front end: {@link HttpStatus#BAD_REQUEST} for invalid or expired tokens, {@link HttpStatus#NOT_FOUND} for unknown users and {@link HttpStatus#SERVICE_UNAVAILABLE} when the scheduler is full.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class AuthApiHandler {
+    @Autowired
+    private ITokenManager tokenManager;
+    
+    @Autowired
+    private IRegistrationService registrationService;
+    
+    @Autowired
+    @Qualifier(UsersRegisterWebFluxConfiguration.BLOCKING_SCHEDULER)
+    private Scheduler blockingScheduler;
+    
+    /**
+     * The verification end-point, on {@value AuthApiPaths#URL_TEMPLATE_VERIFICATION}.
+     * @param request The request, with the token on {@value AuthApiPaths#PATH_VAR_TOKEN} path variable
+     * @return The response with the {@link ProcessResultBean result} of verification
+     */
+    public Mono<ServerResponse> verifyToken(ServerRequest request) {
+        String token;
+        
+        token = request.pathVariable(PATH_VAR_TOKEN);
+        return respond(blocking(() -> {
+            DecodedTokenBean<VerificationTokenBean> dtk;
+            
+            dtk = tokenManager.decodeTokenBean(VerificationTokenBean.class, token).orElseThrow(AuthApiHandler::invalidTokenException);
+            return registrationService.verifyUserCoalesced(dtk).orElseThrow(AuthApiHandler::userNotFound);
+        }));
+    }
+    /**
+     * The approbation end-point, on {@value AuthApiPaths#URL_TEMPLATE_APPROBATION}.
+     * @param request The request, with the token on {@value AuthApiPaths#PATH_VAR_TOKEN} path variable
+     * @return The response with the {@link ProcessResultBean result} of approbation
+     */
+    public Mono<ServerResponse> approveToken(ServerRequest request) {
+        String token;
+        
+        token = request.pathVariable(PATH_VAR_TOKEN);
+        return respond(blocking(() -> {
+            DecodedTokenBean<ApprobationTokenBean> dtk;
+            
+            dtk = tokenManager.decodeTokenBean(ApprobationTokenBean.class, token).orElseThrow(AuthApiHandler::invalidTokenException);
+            return registrationService.approveUser(dtk)
+                    .map(result -> ProcessResultBean.builder()
+                            .tokenId(dtk.getTokenBean().getTokenId())
+                            .date(LocalDateTime.now())
+                            .result(result.booleanValue())
+                            .lastStep(true) // in 2 steps process this is the last step
+                            .build())
+                    .orElseThrow(AuthApiHandler::userNotFound);
+        }));
+    }
+    /**
+     * The change password end-point, on {@value AuthApiPaths#URL_CHANGE_PASSWORD}.
+     * @param request The request, with a {@link ChangePasswordBean} as body
+     * @return The response with the {@link ResultBean result} of change password
+     */
+    public Mono<ServerResponse> changePasswordToken(ServerRequest request) {
+        return respond(request.bodyToMono(ChangePasswordBean.class)
+                .filter(bean -> StringUtils.hasText(bean.getToken()) && StringUtils.hasText(bean.getPassword()))
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Token and password are required!"))))
+                .flatMap(bean -> blocking(() -> {
+                    DecodedTokenBean<RecoverPasswordTokenBean> dtk;
+                    
+                    dtk = tokenManager.decodeTokenBean(RecoverPasswordTokenBean.class, bean.getToken()).orElseThrow(AuthApiHandler::invalidTokenException);
+                    return registrationService.recoverPassword(dtk, bean.getPassword())
+                            .map(result -> ResultBean.builder()
+                                    .tokenId(dtk.getTokenBean().getTokenId())
+                                    .date(LocalDateTime.now())
+                                    .result(result)
+                                    .build())
+                            .orElseThrow(AuthApiHandler::userNotFound);
+                })));
+    }
+    /**
+     * Run the {@code call} on the bounded scheduler.
+     * @param call The blocking call
+     * @return The deferred result
+     */
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(blockingScheduler);
+    }
+    /**
+     * Write the result as JSON, or the error as the equivalent status of the Spring MVC front end.
+     * @param result The result to write
+     * @return The response
+     */
+    private Mono<ServerResponse> respond(Mono<?> result) {
+        return result
+                .flatMap(r -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(r))
+                .onErrorResume(ResponseStatusException.class, e -> ServerResponse.status(e.getStatus()).build())
+                // Fast rejection when the bounded scheduler (or the password hashing pool) is full
+                .onErrorResume(RejectedExecutionException.class, e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .build())
+                ;
+    }
+    private static ResponseStatusException invalidTokenException() {
+        return new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or expired token!");
+    }
+    private static ResponseStatusException userNotFound() {
+        return new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User from token not found!");
+    }
+}
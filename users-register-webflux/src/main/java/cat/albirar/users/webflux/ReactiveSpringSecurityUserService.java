@@ -0,0 +1,67 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.webflux;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import cat.albirar.users.services.SpringSecurityUserService;
+import cat.albirar.users.webflux.config.UsersRegisterWebFluxConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * The reactive counterpart of {@link SpringSecurityUserService}, for WebFlux security.
+ * <p>The search and re-hash are delegated to {@link SpringSecurityUserService} on the {@link UsersRegisterWebFluxConfiguration#BLOCKING_SCHEDULER bounded scheduler}, and the unknown users are answered with an empty result, as expected by reactive authentication managers.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Component
+public class ReactiveSpringSecurityUserService implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
+    @Autowired
+    private SpringSecurityUserService userService;
+    
+    @Autowired
+    @Qualifier(UsersRegisterWebFluxConfiguration.BLOCKING_SCHEDULER)
+    private Scheduler blockingScheduler;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+        return Mono.fromCallable(() -> userService.loadUserByUsername(username))
+                .subscribeOn(blockingScheduler)
+                .onErrorResume(UsernameNotFoundException.class, e -> Mono.empty())
+                ;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails user, String newPassword) {
+        return Mono.fromCallable(() -> userService.updatePassword(user, newPassword))
+                .subscribeOn(blockingScheduler)
+                ;
+    }
+}
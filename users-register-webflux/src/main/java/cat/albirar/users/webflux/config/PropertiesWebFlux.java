@@ -0,0 +1,46 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.webflux.config;
+
+import cat.albirar.users.config.PropertiesCore;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Properties for WebFlux front end configuration.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+public interface PropertiesWebFlux extends PropertiesCore {
+    /**
+     * Root of all WebFlux configuration properties.
+     */
+    public static final String ROOT_WEBFLUX = ROOT_USERS_PROPERTIES + ".webflux";
+    /**
+     * Root of the blocking {@link Scheduler} configuration properties, where the repository and password hashing calls are run.
+     */
+    public static final String WEBFLUX_ROOT_BLOCKING = ROOT_WEBFLUX + ".blocking";
+    /**
+     * Configuration property for the maximum number of threads of the blocking {@link Scheduler}, zero or less for the reactor default (ten times the number of processors).
+     */
+    public static final String WEBFLUX_BLOCKING_THREADS = WEBFLUX_ROOT_BLOCKING + ".threads";
+    /**
+     * Configuration property for the maximum number of tasks queued on each thread of the blocking {@link Scheduler}, the requests over it are rejected.
+     */
+    public static final String WEBFLUX_BLOCKING_QUEUE = WEBFLUX_ROOT_BLOCKING + ".queue";
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.webflux.config;
+
+import static cat.albirar.users.webflux.config.PropertiesWebFlux.WEBFLUX_BLOCKING_QUEUE;
+import static cat.albirar.users.webflux.config.PropertiesWebFlux.WEBFLUX_BLOCKING_THREADS;
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import cat.albirar.users.config.UsersRegisterServicesConfiguration;
+import cat.albirar.users.web.AuthApiPaths;
+import cat.albirar.users.webflux.AuthApiHandler;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Configuration for the reactive front end of users register.
+ * <p>The end-points are published on the {@link AuthApiPaths} URLs, as the Spring MVC front end does, and the blocking calls are run on a bounded {@link Scheduler}, so the event loop threads are never blocked.</p>
+ * <p>Only the {@link UsersRegisterServicesConfiguration services} are imported, without the Spring MVC configuration.</p>
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@Configuration
+@Import(UsersRegisterServicesConfiguration.class)
+@ComponentScan(basePackageClasses = {AuthApiHandler.class})
+@PropertySource("classpath:/cat/albirar/users/webflux/users-webflux.properties")
+public class UsersRegisterWebFluxConfiguration {
+    /**
+     * Name of the bounded {@link Scheduler} for blocking calls.
+     */
+    public static final String BLOCKING_SCHEDULER = "usersRegisterBlockingScheduler";
+    
+    /**
+     * The bounded {@link Scheduler} for the blocking calls (repositories and password hashing).
+     * <p>When full, the tasks are rejected and the end-points answers with a {@code 503} status.</p>
+     * @param threads The maximum number of threads, zero or less for the reactor default
+     * @param queue The maximum number of queued tasks on each thread, zero or less for the reactor default
+     * @return The scheduler
+     */
+    @Bean(name = BLOCKING_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler usersRegisterBlockingScheduler(@Value("${" + WEBFLUX_BLOCKING_THREADS + ":0}") int threads
+            , @Value("${" + WEBFLUX_BLOCKING_QUEUE + ":100}") int queue) {
+        return Schedulers.newBoundedElastic(threads > 0 ? threads : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE
+                , queue > 0 ? queue : Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE
+                , "users-register-blocking");
+    }
+    /**
+     * The routes to the {@link AuthApiHandler}.
+     * @param handler The handler
+     * @return The routes
+     */
+    @Bean
+    public RouterFunction<ServerResponse> usersRegisterRoutes(AuthApiHandler handler) {
+        return RouterFunctions.route()
+                .GET(AuthApiPaths.URL_TEMPLATE_VERIFICATION, accept(MediaType.APPLICATION_JSON), handler::verifyToken)
+                .GET(AuthApiPaths.URL_TEMPLATE_APPROBATION, accept(MediaType.APPLICATION_JSON), handler::approveToken)
+                .PUT(AuthApiPaths.URL_CHANGE_PASSWORD, contentType(MediaType.APPLICATION_JSON), handler::changePasswordToken)
+                .build()
+                ;
+    }
+}
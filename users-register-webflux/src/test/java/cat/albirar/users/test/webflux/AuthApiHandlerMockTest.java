@@ -0,0 +1,169 @@
+/*
+ * This file is part of "albirar users-register".
+ * 
+ * "albirar users-register" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar users-register" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with "albirar users-register" source code.  If not, see <https://www.gnu.org/licenses/gpl-3.0.html>.
+ *
+ * Copyright (C) 2020 Octavi Fornés
+ */
+package cat.albirar.users.test.webflux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import cat.albirar.users.models.tokens.RecoverPasswordTokenBean;
+import cat.albirar.users.models.web.ChangePasswordBean;
+import cat.albirar.users.test.UsersRegisterTests;
+import cat.albirar.users.test.mock.MockUtils;
+import cat.albirar.users.tokens.EVerificationProcess;
+import cat.albirar.users.tokens.models.ApprobationTokenBean;
+import cat.albirar.users.tokens.models.VerificationTokenBean;
+import cat.albirar.users.web.AuthApiPaths;
+import cat.albirar.users.webflux.AuthApiHandler;
+import cat.albirar.users.webflux.ReactiveSpringSecurityUserService;
+import cat.albirar.users.webflux.config.UsersRegisterWebFluxConfiguration;
+
+/**
+ * Test for {@link AuthApiHandler} and {@link ReactiveSpringSecurityUserService}, with the mock backend.
+ * @author Octavi Forn&eacute;s &lt;<a href="mailto:ofornes@albirar.cat">ofornes@albirar.cat</a>&gt;
+ * @since 1.0.0
+ */
+@ContextConfiguration(classes = UsersRegisterWebFluxConfiguration.class)
+public class AuthApiHandlerMockTest extends UsersRegisterTests {
+
+    @Autowired
+    private RouterFunction<ServerResponse> usersRegisterRoutes;
+    
+    @Autowired
+    private ReactiveSpringSecurityUserService reactiveUserService;
+    
+    private WebTestClient webClient;
+    
+    @BeforeEach
+    public void setupTest() {
+        MockUtils.instance().setupRegisteredUsers(userRepo);
+        webClient = WebTestClient.bindToRouterFunction(usersRegisterRoutes).build();
+    }
+    
+    private VerificationTokenBean buildVerificationTokenBean() {
+        return tokenManager.generateVerificationTokenBean(SAMPLE_CREATED_USER, EVerificationProcess.ONE_STEP).get();
+    }
+    
+    private ApprobationTokenBean buildApprobationTokenBean() {
+        return tokenManager.generateApprobationTokenBean(SAMPLE_VERIFIED_USER, SAMPLE_REGISTERED_USER).get();
+    }
+    
+    private RecoverPasswordTokenBean buildRecoverPasswordTokenBean() {
+        return tokenManager.generateRecoverPasswordTokenBean(SAMPLE_REGISTERED_USER, true).get();
+    }
+    
+    private WebTestClient.ResponseSpec changePassword(ChangePasswordBean bean) {
+        return webClient.put().uri(AuthApiPaths.URL_CHANGE_PASSWORD)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(bean)
+                .exchange()
+                ;
+    }
+    
+    @Test
+    public void testVerify() {
+        webClient.get().uri(AuthApiPaths.URL_TEMPLATE_VERIFICATION, DUMMY_TOKEN)
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+        
+        webClient.get().uri(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean().toBuilder()
+                .idUser(DUMMY_ID)
+                .username(DUMMY_USERNAME)
+                .build()))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+        
+        webClient.get().uri(AuthApiPaths.URL_TEMPLATE_VERIFICATION, tokenManager.encodeToken(buildVerificationTokenBean()))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.result").isEqualTo(true)
+            .jsonPath("$.lastStep").isEqualTo(true);
+    }
+    
+    @Test
+    public void testApprove() {
+        webClient.get().uri(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildVerificationTokenBean()))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+        
+        webClient.get().uri(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean().toBuilder()
+                .idUser(DUMMY_ID)
+                .username(DUMMY_USERNAME)
+                .build()))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+        
+        webClient.get().uri(AuthApiPaths.URL_TEMPLATE_APPROBATION, tokenManager.encodeToken(buildApprobationTokenBean()))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.result").isEqualTo(true)
+            .jsonPath("$.lastStep").isEqualTo(true);
+    }
+    
+    @Test
+    public void testChangePassword() {
+        changePassword(ChangePasswordBean.builder().token(" ").password("  ").build())
+            .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+        
+        changePassword(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildVerificationTokenBean())).password(PASSWORDS[2]).build())
+            .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+        
+        changePassword(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildRecoverPasswordTokenBean()
+                .toBuilder().idUser(DUMMY_ID).username(DUMMY_USERNAME).build()))
+                .password(PASSWORDS[2]).build())
+            .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+        
+        changePassword(ChangePasswordBean.builder().token(tokenManager.encodeToken(buildRecoverPasswordTokenBean())).password(PASSWORDS[2]).build())
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.result").isEqualTo(true);
+    }
+    
+    @Test
+    public void testFindByUsername() {
+        UserDetails user;
+        
+        user = reactiveUserService.findByUsername(SAMPLE_REGISTERED_USER.getUsername()).block();
+        assertNotNull(user);
+        assertEquals(SAMPLE_REGISTERED_USER.getUsername(), user.getUsername());
+        
+        assertNull(reactiveUserService.findByUsername(DUMMY_USERNAME).block());
+        assertNull(reactiveUserService.findByUsername("").block());
+    }
+}